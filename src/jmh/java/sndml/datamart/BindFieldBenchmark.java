@@ -0,0 +1,99 @@
+package sndml.datamart;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.sql.JDBCType;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import sndml.servicenow.JsonRecord;
+import sndml.servicenow.SyntheticData;
+
+/**
+ * Convert and bind a value of each SQL type using
+ * {@link DatabaseStatement#bindField(int, DatabaseFieldDefinition, String, String)}
+ * against a {@link StubDriver} prepared statement.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BindFieldBenchmark {
+
+	@Param({"VARCHAR", "INTEGER", "BIGINT", "DOUBLE", "NUMERIC", "BOOLEAN", "TIMESTAMP", "DATE"})
+	String sqltype;
+
+	static final int SIZE = 256; // power of 2
+
+	File propFile;
+	Database db;
+	BindStatement stmt;
+	DatabaseFieldDefinition defn;
+	String[] values = new String[SIZE];
+	int next = 0;
+
+	/**
+	 * A statement with a single bind variable.
+	 */
+	static class BindStatement extends DatabaseStatement {
+
+		BindStatement(Database db) throws SQLException {
+			super(db, "insert", "bench", null);
+		}
+
+		@Override
+		String buildStatement() {
+			return "insert into bench values (?)";
+		}
+	}
+
+	@Setup
+	public void setup() throws IOException, SQLException, URISyntaxException {
+		StubDriver.register();
+		propFile = File.createTempFile("benchmark", ".properties");
+		FileWriter writer = new FileWriter(propFile);
+		writer.write("database.url=" + StubDriver.PREFIX + "bench\n");
+		writer.close();
+		db = new Database(new ConnectionProfile(propFile));
+		stmt = new BindStatement(db);
+		int type = JDBCType.valueOf(sqltype).getVendorTypeNumber();
+		String fieldname = "u_" + sqltype.toLowerCase();
+		defn = new DatabaseFieldDefinition(fieldname, type, 160, fieldname);
+		SyntheticData data = new SyntheticData();
+		stmt.setRecord(new JsonRecord(null, data.record()));
+		for (int i = 0; i < SIZE; ++i) values[i] = value(data, i);
+	}
+
+	private String value(SyntheticData data, int i) {
+		switch (sqltype) {
+		case "INTEGER": return Integer.toString(i % 10);
+		case "BIGINT":  return Long.toString(1000000000L * i);
+		case "DOUBLE":  return Double.toString(i / 7.0);
+		case "NUMERIC": return Integer.toString(i * 13);
+		case "BOOLEAN": return i % 2 == 0 ? "true" : "false";
+		case "TIMESTAMP": return data.dateTime();
+		case "DATE":    return data.date();
+		default:        return data.text(4 + i % 8);
+		}
+	}
+
+	@TearDown
+	public void tearDown() throws SQLException {
+		db.close();
+		propFile.delete();
+	}
+
+	@Benchmark
+	public Object bindField() throws SQLException {
+		next = (next + 1) & (SIZE - 1);
+		stmt.bindField(1, defn, defn.getGlideName(), values[next]);
+		return StubDriver.lastValue;
+	}
+
+}
@@ -0,0 +1,117 @@
+package sndml.datamart;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.sql.DriverPropertyInfo;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.util.Properties;
+import java.util.logging.Logger;
+
+/**
+ * A JDBC driver for URLs beginning with <b>jdbc:stub:</b> whose connections and
+ * statements do nothing, so that benchmarks measure only the work done by this project.
+ * Each call to the driver goes through a {@link Proxy}, which adds a small
+ * constant overhead to every bind.
+ * The last value bound to a {@link PreparedStatement} is kept in {@link #lastValue}.
+ */
+public class StubDriver implements Driver {
+
+	static final String PREFIX = "jdbc:stub:";
+
+	static volatile Object lastValue;
+
+	static {
+		try {
+			DriverManager.registerDriver(new StubDriver());
+		} catch (SQLException e) {
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+
+	/**
+	 * Ensure that the driver is registered.
+	 */
+	static void register() {
+	}
+
+	@Override
+	public Connection connect(String url, Properties info) throws SQLException {
+		if (!acceptsURL(url)) return null;
+		return proxy(Connection.class, (proxy, method, args) -> {
+			switch (method.getName()) {
+			case "createStatement": return proxy(Statement.class, statementHandler());
+			case "prepareStatement": return proxy(PreparedStatement.class, statementHandler());
+			case "isValid": return true;
+			default: return defaultValue(method);
+			}
+		});
+	}
+
+	private static InvocationHandler statementHandler() {
+		return (proxy, method, args) -> {
+			String name = method.getName();
+			if (name.startsWith("set") && args != null && args.length >= 2) {
+				lastValue = args[1];
+				return null;
+			}
+			if (name.equals("executeBatch")) return new int[0];
+			return defaultValue(method);
+		};
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T> T proxy(Class<T> iface, InvocationHandler handler) {
+		return (T) Proxy.newProxyInstance(StubDriver.class.getClassLoader(), new Class<?>[] {iface}, handler);
+	}
+
+	private static Object defaultValue(Method method) {
+		Class<?> type = method.getReturnType();
+		if (!type.isPrimitive() || type == void.class) return null;
+		if (type == boolean.class) return false;
+		if (type == long.class) return 0L;
+		if (type == double.class) return 0.0;
+		if (type == float.class) return 0.0f;
+		if (type == short.class) return (short) 0;
+		if (type == byte.class) return (byte) 0;
+		if (type == char.class) return (char) 0;
+		return 0;
+	}
+
+	@Override
+	public boolean acceptsURL(String url) {
+		return url != null && url.startsWith(PREFIX);
+	}
+
+	@Override
+	public DriverPropertyInfo[] getPropertyInfo(String url, Properties info) {
+		return new DriverPropertyInfo[0];
+	}
+
+	@Override
+	public int getMajorVersion() {
+		return 1;
+	}
+
+	@Override
+	public int getMinorVersion() {
+		return 0;
+	}
+
+	@Override
+	public boolean jdbcCompliant() {
+		return false;
+	}
+
+	@Override
+	public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+		throw new SQLFeatureNotSupportedException();
+	}
+
+}
@@ -0,0 +1,68 @@
+package sndml.datamart;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import sndml.servicenow.RecordKey;
+
+/**
+ * Fill and probe a {@link TimestampHash} of 1 to 10 million keys,
+ * as the {@link Synchronizer} does when comparing a table with ServiceNow.
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+public class TimestampHashBenchmark {
+
+	@Param({"1000000", "10000000"})
+	int size;
+
+	RecordKey[] keys;
+	long[] seconds;
+	TimestampHash filled;
+	int next = 0;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		Random random = new Random(20210101L);
+		keys = new RecordKey[size];
+		seconds = new long[size];
+		filled = new TimestampHash(size);
+		for (int i = 0; i < size; ++i) {
+			keys[i] = new RecordKey(random.nextLong(), random.nextLong());
+			// 2015 to 2024
+			seconds[i] = 1420070400L + random.nextInt(315360000);
+			filled.putSeconds(keys[i], seconds[i]);
+		}
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.SingleShotTime)
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public TimestampHash put() {
+		TimestampHash hash = new TimestampHash(size);
+		for (int i = 0; i < size; ++i) hash.putSeconds(keys[i], seconds[i]);
+		return hash;
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.SingleShotTime)
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public TimestampHash putWithGrowth() {
+		TimestampHash hash = new TimestampHash();
+		for (int i = 0; i < size; ++i) hash.putSeconds(keys[i], seconds[i]);
+		return hash;
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.AverageTime)
+	@OutputTimeUnit(TimeUnit.NANOSECONDS)
+	public long get() {
+		next = (next + 7919) % size;
+		return filled.getSeconds(keys[next]);
+	}
+
+}
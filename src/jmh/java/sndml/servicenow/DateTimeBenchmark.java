@@ -0,0 +1,65 @@
+package sndml.servicenow;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Parse and format {@link DateTime} values as they appear in ServiceNow responses.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DateTimeBenchmark {
+
+	static final int SIZE = 1024; // power of 2
+
+	String[] dateTimes = new String[SIZE];
+	String[] dates = new String[SIZE];
+	DateTime[] values = new DateTime[SIZE];
+	int next = 0;
+
+	@Setup
+	public void setup() {
+		SyntheticData data = new SyntheticData();
+		for (int i = 0; i < SIZE; ++i) {
+			dateTimes[i] = data.dateTime();
+			dates[i] = data.date();
+			values[i] = new DateTime(dateTimes[i]);
+		}
+	}
+
+	private int next() {
+		next = (next + 1) & (SIZE - 1);
+		return next;
+	}
+
+	@Benchmark
+	public DateTime parseDateTime() {
+		return new DateTime(dateTimes[next()]);
+	}
+
+	@Benchmark
+	public DateTime parseDate() {
+		return new DateTime(dates[next()]);
+	}
+
+	@Benchmark
+	public DateTime fromMillis() {
+		return new DateTime(values[next()].toDate());
+	}
+
+	@Benchmark
+	public String toFullString() {
+		return values[next()].toFullString();
+	}
+
+	@Benchmark
+	public long getSeconds() {
+		return values[next()].getSeconds();
+	}
+
+}
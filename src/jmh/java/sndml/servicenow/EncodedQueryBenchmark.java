@@ -0,0 +1,50 @@
+package sndml.servicenow;
+
+import java.io.IOException;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Build a "sys_idIN" query from a slice of a large {@link KeySet},
+ * as the readers do when fetching records by key.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EncodedQueryBenchmark {
+
+	static final int KEYS = 1000000;
+
+	@Param({"100", "1000", "10000"})
+	int sliceSize;
+
+	Table table;
+	KeySet keys;
+	int start = 0;
+
+	@Setup
+	public void setup() throws IOException {
+		// the session is not used to connect
+		Properties props = new Properties();
+		props.setProperty("servicenow.instance", "dev00000");
+		props.setProperty("servicenow.username", "benchmark");
+		props.setProperty("servicenow.password", "benchmark");
+		table = new Session(props).table("incident");
+		keys = new SyntheticData().keys(KEYS);
+		keys.sort();
+	}
+
+	@Benchmark
+	public String keySlice() {
+		start += sliceSize;
+		if (start + sliceSize > KEYS) start = 0;
+		KeySet slice = keys.getSlice(start, start + sliceSize);
+		return new EncodedQuery(table, slice).toString();
+	}
+
+}
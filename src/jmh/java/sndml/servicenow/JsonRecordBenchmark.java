@@ -0,0 +1,55 @@
+package sndml.servicenow;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.fasterxml.jackson.databind.node.ArrayNode;
+
+/**
+ * Read values from a {@link JsonRecord} and construct a {@link RecordList}
+ * from the "result" array of a response which has already been parsed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonRecordBenchmark {
+
+	@Param({"200", "2000"})
+	int rows;
+
+	ArrayNode page;
+	RecordList recs;
+
+	@Setup
+	public void setup() {
+		page = new SyntheticData().page(rows);
+		recs = new RecordList(null, page);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(1000)
+	public void getValue(Blackhole bh) {
+		// one field from each record, cycling through the fields
+		for (int i = 0; i < 1000; ++i) {
+			TableRecord rec = recs.get(i % rows);
+			bh.consume(rec.getValue(SyntheticData.FIELDS[i % SyntheticData.FIELDS.length]));
+		}
+	}
+
+	@Benchmark
+	public void getAllValues(Blackhole bh) {
+		for (TableRecord rec : recs)
+			for (String name : SyntheticData.FIELDS) bh.consume(rec.getValue(name));
+	}
+
+	@Benchmark
+	public RecordList recordList() {
+		return new RecordList(null, page);
+	}
+
+}
@@ -0,0 +1,78 @@
+package sndml.servicenow;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Build, sort and search a {@link KeySet} of 1 to 10 million keys.
+ * Build and sort are measured once per iteration;
+ * lookups are measured per call.
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+public class KeySetBenchmark {
+
+	@Param({"1000000", "10000000"})
+	int size;
+
+	long[] hi;
+	long[] lo;
+	KeySet sorted;
+	int next = 0;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		SyntheticData data = new SyntheticData();
+		hi = new long[size];
+		lo = new long[size];
+		sorted = new KeySet(size);
+		for (int i = 0; i < size; ++i) {
+			hi[i] = data.random.nextLong();
+			lo[i] = data.random.nextLong();
+			sorted.add(new RecordKey(hi[i], lo[i]));
+		}
+		sorted.sort();
+	}
+
+	private KeySet build() {
+		KeySet keys = new KeySet(size);
+		for (int i = 0; i < size; ++i) keys.add(new RecordKey(hi[i], lo[i]));
+		return keys;
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.SingleShotTime)
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public KeySet add() {
+		return build();
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.SingleShotTime)
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public KeySet addAndSort() {
+		KeySet keys = build();
+		keys.sort();
+		return keys;
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.SingleShotTime)
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public void iterate(Blackhole bh) {
+		for (RecordKey key : sorted) bh.consume(key);
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.AverageTime)
+	@OutputTimeUnit(TimeUnit.NANOSECONDS)
+	public boolean contains() {
+		next = (next + 7919) % size;
+		return sorted.contains(new RecordKey(hi[next], lo[next]));
+	}
+
+}
@@ -0,0 +1,67 @@
+package sndml.servicenow;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Compare {@link JsonRecord} with {@link CompactRecord} for a wide record.
+ * Each benchmark parses one record and then reads every column
+ * the way the database binder does.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RecordBenchmark {
+
+	@Param({"20", "200"})
+	int columns;
+	
+	final ObjectMapper mapper = new ObjectMapper();
+	FieldNames fieldNames;
+	FieldIndex index;
+	byte[] json;
+	
+	@Setup
+	public void setup() {
+		fieldNames = new FieldNames();
+		ObjectNode obj = mapper.createObjectNode();
+		fieldNames.add("sys_id");
+		obj.put("sys_id", "0123456789abcdef0123456789abcdef");
+		for (int i = 1; i < columns; ++i) {
+			String name = "u_field_" + i;
+			fieldNames.add(name);
+			obj.put(name, i % 3 == 0 ? "" : "value of field number " + i);
+		}
+		index = new FieldIndex(fieldNames);
+		json = obj.toString().getBytes();
+	}
+	
+	@Benchmark
+	public void jsonRecord(Blackhole bh) throws IOException {
+		ObjectNode obj = (ObjectNode) mapper.readTree(json);
+		JsonRecord rec = new JsonRecord(null, obj);
+		for (String name : fieldNames) bh.consume(rec.getValue(name));
+	}
+	
+	@Benchmark
+	public void compactRecord(Blackhole bh) throws IOException {
+		try (JsonParser parser = mapper.getFactory().createParser(json)) {
+			parser.nextToken();
+			assert parser.currentToken() == JsonToken.START_OBJECT;
+			CompactRecord rec = CompactRecord.parse(null, index, parser);
+			for (int i = 0; i < columns; ++i) bh.consume(rec.getValue(i));
+		}
+	}
+	
+}
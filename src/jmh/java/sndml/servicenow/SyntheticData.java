@@ -0,0 +1,129 @@
+package sndml.servicenow;
+
+import java.util.Random;
+
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Generates records shaped like a REST Table API response for <b>incident</b>
+ * (sysparm_display_value=false, sysparm_exclude_reference_link=true),
+ * where every value is a string and many values are empty.
+ * Data is generated from a fixed seed so that runs are repeatable.
+ */
+public class SyntheticData {
+
+	static final char[] HEX = "0123456789abcdef".toCharArray();
+	static final String[] WORDS = {
+		"unable", "to", "access", "email", "printer", "on", "floor", "vpn", "password",
+		"reset", "laptop", "network", "slow", "error", "when", "opening", "application",
+		"the", "user", "reports", "that", "sap", "outlook", "teams", "is", "not", "working" };
+
+	public static final String[] FIELDS = {
+		"sys_id", "number", "sys_created_on", "sys_created_by", "sys_updated_on", "sys_updated_by",
+		"sys_mod_count", "active", "state", "priority", "impact", "urgency", "category",
+		"subcategory", "short_description", "description", "caller_id", "opened_by", "opened_at",
+		"assignment_group", "assigned_to", "resolved_at", "closed_at", "close_code",
+		"business_duration", "calendar_duration", "reassignment_count", "location", "company" };
+
+	final Random random;
+	final JsonNodeFactory factory = JsonNodeFactory.instance;
+	private int number = 10000;
+
+	public SyntheticData() {
+		this(20210101L);
+	}
+
+	public SyntheticData(long seed) {
+		this.random = new Random(seed);
+	}
+
+	public String guid() {
+		char[] result = new char[32];
+		for (int i = 0; i < result.length; ++i) result[i] = HEX[random.nextInt(16)];
+		return new String(result);
+	}
+
+	public RecordKey key() {
+		return new RecordKey(random.nextLong(), random.nextLong());
+	}
+
+	/**
+	 * A date time between 2015 and 2024 in yyyy-MM-dd HH:mm:ss format.
+	 */
+	public String dateTime() {
+		return String.format("%04d-%02d-%02d %02d:%02d:%02d",
+			2015 + random.nextInt(10), 1 + random.nextInt(12), 1 + random.nextInt(28),
+			random.nextInt(24), random.nextInt(60), random.nextInt(60));
+	}
+
+	public String date() {
+		return dateTime().substring(0, DateTime.DATE_ONLY);
+	}
+
+	public String text(int words) {
+		StringBuilder result = new StringBuilder();
+		for (int i = 0; i < words; ++i) {
+			if (i > 0) result.append(' ');
+			result.append(WORDS[random.nextInt(WORDS.length)]);
+		}
+		return result.toString();
+	}
+
+	private String optional(String value) {
+		return random.nextInt(3) == 0 ? "" : value;
+	}
+
+	public ObjectNode record() {
+		ObjectNode obj = factory.objectNode();
+		boolean closed = random.nextInt(4) > 0;
+		obj.put("sys_id", guid());
+		obj.put("number", String.format("INC%07d", number++));
+		obj.put("sys_created_on", dateTime());
+		obj.put("sys_created_by", "admin");
+		obj.put("sys_updated_on", dateTime());
+		obj.put("sys_updated_by", "system");
+		obj.put("sys_mod_count", Integer.toString(random.nextInt(40)));
+		obj.put("active", closed ? "false" : "true");
+		obj.put("state", Integer.toString(closed ? 7 : 1 + random.nextInt(3)));
+		obj.put("priority", Integer.toString(1 + random.nextInt(5)));
+		obj.put("impact", Integer.toString(1 + random.nextInt(3)));
+		obj.put("urgency", Integer.toString(1 + random.nextInt(3)));
+		obj.put("category", "inquiry");
+		obj.put("subcategory", optional("email"));
+		obj.put("short_description", text(4 + random.nextInt(8)));
+		obj.put("description", optional(text(20 + random.nextInt(80))));
+		obj.put("caller_id", guid());
+		obj.put("opened_by", guid());
+		obj.put("opened_at", dateTime());
+		obj.put("assignment_group", optional(guid()));
+		obj.put("assigned_to", optional(guid()));
+		obj.put("resolved_at", closed ? dateTime() : "");
+		obj.put("closed_at", closed ? dateTime() : "");
+		obj.put("close_code", closed ? "Solved (Permanently)" : "");
+		// durations are returned as offsets from 1970-01-01
+		obj.put("business_duration", closed ? "1970-01-0" + (1 + random.nextInt(9)) + " 04:12:00" : "");
+		obj.put("calendar_duration", closed ? "1970-01-0" + (1 + random.nextInt(9)) + " 11:40:31" : "");
+		obj.put("reassignment_count", Integer.toString(random.nextInt(4)));
+		obj.put("location", optional(guid()));
+		obj.put("company", guid());
+		return obj;
+	}
+
+	/**
+	 * The "result" array of a page.
+	 */
+	public ArrayNode page(int rows) {
+		ArrayNode array = factory.arrayNode(rows);
+		for (int i = 0; i < rows; ++i) array.add(record());
+		return array;
+	}
+
+	public KeySet keys(int size) {
+		KeySet result = new KeySet(size);
+		for (int i = 0; i < size; ++i) result.add(key());
+		return result;
+	}
+
+}
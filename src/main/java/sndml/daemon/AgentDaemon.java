@@ -29,6 +29,7 @@ public class AgentDaemon implements Daemon {
 	private final int threadCount;	
 	private final int intervalSeconds;
 	private final WorkerPool workerPool; // null if threadCount < 2
+	private MetricsServer metricsServer = null; // null if daemon.metrics_port not specified
 	private final Logger logger;
 	
 	private static volatile boolean isRunning = false;
@@ -47,6 +48,7 @@ public class AgentDaemon implements Daemon {
 		if (threadCount > 1) {
 			this.workerPool = new WorkerPool(this, threadCount);
 			this.scanner = new MultiThreadScanner(profile, workerPool);
+			AgentMetrics.getAgentMetrics().setWorkerPool(workerPool);
 		}
 		else {
 			this.workerPool = null;
@@ -114,6 +116,11 @@ public class AgentDaemon implements Daemon {
 	public void runForever() 
 			throws DaemonInitException, InterruptedException, ConfigParseException, IOException, SQLException {
 		init(null);
+		// serve metrics if a port is specified
+		if (profile.getPropertyInt("daemon.metrics_port", 0) != 0) {
+			metricsServer = new MetricsServer(profile);
+			metricsServer.start();
+		}
 		if (threadCount > 1) {
 			start();
 			waitForever();			
@@ -197,6 +204,8 @@ public class AgentDaemon implements Daemon {
 		if (!workerPool.isTerminated()) {
 			logger.warn("Some threads failed to terminate");
 		}
+		AppStatusPublisher.closeAll();
+		if (metricsServer != null) metricsServer.stop();
 		logger.info(Log.FINISH, "End stop");
 	}
 	
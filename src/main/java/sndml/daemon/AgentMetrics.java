@@ -0,0 +1,288 @@
+package sndml.daemon;
+
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import sndml.datamart.DatabaseTableWriter;
+import sndml.servicenow.ConnectionPool;
+import sndml.servicenow.LatencyHistogram;
+import sndml.servicenow.Log;
+import sndml.servicenow.Metrics;
+import sndml.servicenow.Metrics.Phase;
+import sndml.servicenow.RestTableReader;
+import sndml.servicenow.ServiceNowRequest;
+
+/**
+ * Live metrics for the daemon.
+ * <p>The metrics are published as JMX MBeans in the domain <b>sndml</b>
+ * and can be written in Prometheus text format by {@link MetricsHandler}.
+ * Job and table names are in the labels <b>job_name</b> and <b>table_name</b>,
+ * since Prometheus uses the label <b>job</b> for the scrape target.</p>
+ * <ul>
+ * <li>Rows processed and rows per second for each job and each source table</li>
+ * <li>HTTP request latency and connection pool lease waits</li>
+ * <li>JDBC execute and commit latency</li>
+ * <li>{@link WorkerPool} queue depth and active threads</li>
+ * <li>Size of pages which have been fetched but not yet written</li>
+ * </ul>
+ */
+public class AgentMetrics implements AgentMetricsMBean {
+
+	static final String DOMAIN = "sndml";
+
+	private static AgentMetrics instance = null;
+
+	private final Logger logger = LoggerFactory.getLogger(this.getClass());
+	// sorted so that the output is stable
+	private final Map<String,Throughput> jobs = new ConcurrentSkipListMap<String,Throughput>();
+	private final Map<String,Throughput> tables = new ConcurrentSkipListMap<String,Throughput>();
+	private final Map<Metrics,Throughput[]> running = new ConcurrentHashMap<Metrics,Throughput[]>();
+	private volatile WorkerPool workerPool = null;
+
+	AgentMetrics() {
+	}
+
+	/**
+	 * Return the metrics for this process, creating them and registering
+	 * the MBean if necessary.
+	 */
+	static synchronized AgentMetrics getAgentMetrics() {
+		if (instance == null) {
+			instance = new AgentMetrics();
+			instance.register("type=Agent", instance);
+		}
+		return instance;
+	}
+
+	private void register(String properties, Object bean) {
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName name = new ObjectName(DOMAIN + ":" + properties);
+			if (!server.isRegistered(name)) server.registerMBean(bean, name);
+		}
+		catch (JMException e) {
+			logger.warn(Log.INIT, "unable to register MBean " + properties + ": " + e.getMessage());
+		}
+	}
+
+	void setWorkerPool(WorkerPool workerPool) {
+		this.workerPool = workerPool;
+	}
+
+	/**
+	 * Called when a job starts. The job is included in the totals for
+	 * the job name and for the source table (if not null).
+	 * Calling this method more than once for the same metrics has no effect.
+	 */
+	void jobStarted(String jobName, String tableName, Metrics metrics) {
+		assert jobName != null;
+		assert metrics != null;
+		running.computeIfAbsent(metrics, m -> {
+			Throughput job = getThroughput(jobs, "Job", jobName);
+			Throughput table = tableName == null ? null : getThroughput(tables, "Table", tableName);
+			job.begin(m);
+			if (table != null) table.begin(m);
+			return new Throughput[] {job, table};
+		});
+	}
+
+	/**
+	 * Called when a job finishes, whether or not it was successful.
+	 */
+	void jobFinished(Metrics metrics) {
+		Throughput[] throughputs = running.remove(metrics);
+		if (throughputs == null) return;
+		for (Throughput throughput : throughputs) {
+			if (throughput != null) throughput.end(metrics);
+		}
+	}
+
+	private Throughput getThroughput(Map<String,Throughput> map, String type, String name) {
+		return map.computeIfAbsent(name, key -> {
+			Throughput throughput = new Throughput(key);
+			register("type=" + type + ",name=" + ObjectName.quote(key), throughput);
+			return throughput;
+		});
+	}
+
+	@Override
+	public int getActiveJobs() {
+		return running.size();
+	}
+
+	@Override
+	public long getRowsProcessed() {
+		long result = 0;
+		for (Throughput job : jobs.values()) result += job.getRowsProcessed();
+		return result;
+	}
+
+	@Override
+	public double getRowsPerSecond() {
+		double result = 0;
+		for (Throughput job : jobs.values()) result += job.getRowsPerSecond();
+		return result;
+	}
+
+	@Override
+	public int getWorkerQueueDepth() {
+		WorkerPool pool = workerPool;
+		return pool == null ? 0 : pool.getQueue().size();
+	}
+
+	@Override
+	public int getWorkerActiveThreads() {
+		WorkerPool pool = workerPool;
+		return pool == null ? 0 : pool.getActiveCount();
+	}
+
+	@Override
+	public long getInFlightPageBytes() {
+		return RestTableReader.getInFlightBytes();
+	}
+
+	@Override
+	public long getHttpRequests() {
+		return ServiceNowRequest.getLatencyHistogram().getCount();
+	}
+
+	@Override
+	public double getHttpMeanLatencyMillis() {
+		return ServiceNowRequest.getLatencyHistogram().getMeanMillis();
+	}
+
+	@Override
+	public long getHttpLeaseWaitMillis() {
+		long result = 0;
+		for (ConnectionPool pool : ConnectionPool.getPools()) result += pool.getLeaseWaitMillis();
+		return result;
+	}
+
+	@Override
+	public long getHttpMaxLeaseWaitMillis() {
+		long result = 0;
+		for (ConnectionPool pool : ConnectionPool.getPools())
+			result = Math.max(result, pool.getMaxLeaseWaitMillis());
+		return result;
+	}
+
+	@Override
+	public long getJdbcExecuteCount() {
+		return DatabaseTableWriter.getExecuteLatency().getCount();
+	}
+
+	@Override
+	public double getJdbcExecuteMeanMillis() {
+		return DatabaseTableWriter.getExecuteLatency().getMeanMillis();
+	}
+
+	@Override
+	public long getJdbcCommitCount() {
+		return DatabaseTableWriter.getCommitLatency().getCount();
+	}
+
+	@Override
+	public double getJdbcCommitMeanMillis() {
+		return DatabaseTableWriter.getCommitLatency().getMeanMillis();
+	}
+
+	/**
+	 * Write all metrics in Prometheus text exposition format (version 0.0.4).
+	 */
+	void writePrometheus(PrintWriter out) {
+		writeThroughput(out, "job", jobs);
+		writeThroughput(out, "table", tables);
+		writeHeader(out, "sndml_jobs_active", "gauge", "Jobs currently running");
+		writeSample(out, "sndml_jobs_active", "", getActiveJobs());
+		writeHistogram(out, "sndml_http_request_duration_seconds",
+			"Time from sending a request to ServiceNow until the response headers are received",
+			ServiceNowRequest.getLatencyHistogram());
+		writeHeader(out, "sndml_http_pool_leases_total", "counter", "Connections leased from the HTTP pool");
+		for (ConnectionPool pool : ConnectionPool.getPools())
+			writeSample(out, "sndml_http_pool_leases_total", label("pool", pool.getName()), pool.getLeaseCount());
+		writeHeader(out, "sndml_http_pool_lease_wait_seconds_total", "counter",
+			"Time spent waiting to lease a connection from the HTTP pool");
+		for (ConnectionPool pool : ConnectionPool.getPools())
+			writeSample(out, "sndml_http_pool_lease_wait_seconds_total", label("pool", pool.getName()),
+				pool.getLeaseWaitMillis() / 1000.0);
+		writeHeader(out, "sndml_http_pool_lease_wait_max_seconds", "gauge",
+			"Longest wait to lease a connection from the HTTP pool");
+		for (ConnectionPool pool : ConnectionPool.getPools())
+			writeSample(out, "sndml_http_pool_lease_wait_max_seconds", label("pool", pool.getName()),
+				pool.getMaxLeaseWaitMillis() / 1000.0);
+		writeHistogram(out, "sndml_jdbc_execute_duration_seconds",
+			"Time to execute each batch of SQL statements", DatabaseTableWriter.getExecuteLatency());
+		writeHistogram(out, "sndml_jdbc_commit_duration_seconds",
+			"Time to commit each database transaction", DatabaseTableWriter.getCommitLatency());
+		writeHeader(out, "sndml_worker_queue_depth", "gauge", "Jobs waiting for a worker thread");
+		writeSample(out, "sndml_worker_queue_depth", "", getWorkerQueueDepth());
+		writeHeader(out, "sndml_worker_active_threads", "gauge", "Worker threads running a job");
+		writeSample(out, "sndml_worker_active_threads", "", getWorkerActiveThreads());
+		writeHeader(out, "sndml_inflight_page_bytes", "gauge",
+			"Decoded size of pages fetched but not yet written");
+		writeSample(out, "sndml_inflight_page_bytes", "", getInFlightPageBytes());
+	}
+
+	private void writeThroughput(PrintWriter out, String type, Map<String,Throughput> map) {
+		String nameLabel = type + "_name";
+		String rows = "sndml_" + type + "_rows_processed_total";
+		String rate = "sndml_" + type + "_rows_per_second";
+		String phases = "sndml_" + type + "_phase_seconds_total";
+		writeHeader(out, rows, "counter", "Rows processed for each " + type);
+		for (Throughput throughput : map.values())
+			writeSample(out, rows, label(nameLabel, throughput.getName()), throughput.getRowsProcessed());
+		writeHeader(out, rate, "gauge", "Rows per second for each " + type + " (running jobs only)");
+		for (Throughput throughput : map.values())
+			writeSample(out, rate, label(nameLabel, throughput.getName()), throughput.getRowsPerSecond());
+		writeHeader(out, phases, "counter", "Time spent in each phase for each " + type);
+		for (Throughput throughput : map.values()) {
+			for (Phase phase : Phase.values()) {
+				String labels = label(nameLabel, throughput.getName()) + "," +
+					label("phase", phase.name().toLowerCase());
+				writeSample(out, phases, labels, throughput.getSeconds(phase));
+			}
+		}
+	}
+
+	private static void writeHistogram(PrintWriter out, String name, String help, LatencyHistogram histogram) {
+		writeHeader(out, name, "histogram", help);
+		for (int i = 0; i < LatencyHistogram.getBucketCount(); ++i) {
+			double bound = LatencyHistogram.getUpperBound(i);
+			String le = Double.isInfinite(bound) ? "+Inf" : String.valueOf(bound);
+			writeSample(out, name + "_bucket", label("le", le), histogram.getCumulativeCount(i));
+		}
+		writeSample(out, name + "_sum", "", histogram.getSumSeconds());
+		writeSample(out, name + "_count", "", histogram.getCount());
+	}
+
+	private static void writeHeader(PrintWriter out, String name, String type, String help) {
+		out.print("# HELP " + name + " " + help + "\n");
+		out.print("# TYPE " + name + " " + type + "\n");
+	}
+
+	private static void writeSample(PrintWriter out, String name, String labels, long value) {
+		out.print(labels.isEmpty() ? name : name + "{" + labels + "}");
+		out.print(" " + value + "\n");
+	}
+
+	private static void writeSample(PrintWriter out, String name, String labels, double value) {
+		out.print(labels.isEmpty() ? name : name + "{" + labels + "}");
+		out.print(" " + Double.toString(value) + "\n");
+	}
+
+	static String label(String name, String value) {
+		String escaped = value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+		return name + "=\"" + escaped + "\"";
+	}
+
+}
@@ -0,0 +1,37 @@
+package sndml.daemon;
+
+/**
+ * JMX view of the daemon.
+ * Per-job and per-table values are published as {@link ThroughputMBean}s.
+ */
+public interface AgentMetricsMBean {
+
+	int getActiveJobs();
+
+	long getRowsProcessed();
+
+	double getRowsPerSecond();
+
+	int getWorkerQueueDepth();
+
+	int getWorkerActiveThreads();
+
+	long getInFlightPageBytes();
+
+	long getHttpRequests();
+
+	double getHttpMeanLatencyMillis();
+
+	long getHttpLeaseWaitMillis();
+
+	long getHttpMaxLeaseWaitMillis();
+
+	long getJdbcExecuteCount();
+
+	double getJdbcExecuteMeanMillis();
+
+	long getJdbcCommitCount();
+
+	double getJdbcCommitMeanMillis();
+
+}
@@ -12,6 +12,13 @@ import com.sun.net.httpserver.HttpServer;
 import sndml.datamart.ConnectionProfile;
 import sndml.servicenow.Log;
 
+/**
+ * HTTP server for the agent.
+ * <ul>
+ * <li><b>server.context</b> (default /start) - start a job</li>
+ * <li><b>server.metrics_context</b> (default /metrics) - metrics in Prometheus text format</li>
+ * </ul>
+ */
 public class AgentServer {
 
 	final int port;
@@ -27,6 +34,8 @@ public class AgentServer {
 		String context = profile.getProperty("server.context", "/start");
 		handler = new AppJobHandler(profile);
 		server.createContext(context, handler);
+		String metricsContext = profile.getProperty("server.metrics_context", "/metrics");
+		server.createContext(metricsContext, new MetricsHandler());
 		server.setExecutor(null); // creates a default executor
 	}
 			
@@ -35,4 +44,9 @@ public class AgentServer {
 		server.start();
 	}
 	
+	public void stop() {
+		logger.info(Log.FINISH, String.format("stop port=%d", port));
+		server.stop(0);
+	}
+	
 }
@@ -49,6 +49,7 @@ public class AppJobRunner extends JobRunner implements Runnable {
 		else {
 			textLogger =  new Log4jProgressLogger(this.getClass(), action, jobMetrics);
 		}
+		AgentMetrics.getAgentMetrics().jobStarted(config.getName(), config.getSource(), jobMetrics);
 		appLogger =	new AppProgressLogger(profile, session, jobMetrics, number, runKey);
 		assert appLogger.getMetrics() == jobMetrics;
 		ProgressLogger compositeLogger = new CompositeProgressLogger(textLogger, appLogger);
@@ -77,12 +78,23 @@ public class AppJobRunner extends JobRunner implements Runnable {
 		assert config.getNumber() != null;
 		boolean onExceptionContinue = profile.getPropertyBoolean("daemon.continue", false);
 		setThreadName();
+		boolean ownDatabase = (database == null);
 		try {
 			if (session == null) session = profile.getSession();
 			statusLogger = new AppStatusLogger(profile, session);		
 			if (database == null) database = profile.getDatabase();
 			assert database != null;
-			super.call();
+			try {
+				super.call();
+			}
+			finally {
+				if (jobMetrics != null) AgentMetrics.getAgentMetrics().jobFinished(jobMetrics);
+				// return the connection to the pool (or close it) before rescanning
+				if (ownDatabase) {
+					close();
+					database = null;
+				}
+			}
 			scanner.rescan();
 		} catch (SQLException | IOException | InterruptedException e) {
 			Log.setJobContext(this.getName());
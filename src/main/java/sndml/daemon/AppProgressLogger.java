@@ -1,6 +1,5 @@
 package sndml.daemon;
 
-import java.io.IOException;
 import java.net.URI;
 
 import com.fasterxml.jackson.databind.node.JsonNodeFactory;
@@ -9,8 +8,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import sndml.datamart.ConnectionProfile;
-import sndml.datamart.DatePart;
-import sndml.datamart.ResourceException;
+import sndml.datamart.PartitionPart;
 import sndml.servicenow.*;
 
 public class AppProgressLogger extends ProgressLogger {
@@ -20,6 +18,7 @@ public class AppProgressLogger extends ProgressLogger {
 	final URI putRunStatusURI;
 	final String number;
 	final RecordKey runKey;
+	final AppStatusPublisher publisher;
 	final Logger logger = LoggerFactory.getLogger(this.getClass());	
 
 	AppProgressLogger(
@@ -37,7 +36,7 @@ public class AppProgressLogger extends ProgressLogger {
 			Metrics metrics,
 			String number, 
 			RecordKey runKey,
-			DatePart part) {
+			PartitionPart part) {
 		super(metrics, part);
 		assert runKey != null;
 		this.profile = profile;
@@ -45,10 +44,11 @@ public class AppProgressLogger extends ProgressLogger {
 		this.number = number;
 		this.runKey = runKey;
 		this.putRunStatusURI = profile.getAPI("putrunstatus");
+		this.publisher = AppStatusPublisher.getPublisher(profile);
 	}
 
 	@Override
-	public ProgressLogger newPartLogger(Metrics newMetrics, DatePart newPart) {
+	public ProgressLogger newPartLogger(Metrics newMetrics, PartitionPart newPart) {
 		// logger.info(Log.INIT, "newPartLogger");
 		return new AppProgressLogger(
 			this.profile, this.session, newMetrics, this.number, this.runKey, newPart);
@@ -90,7 +90,7 @@ public class AppProgressLogger extends ProgressLogger {
 			body.put("elapsed", String.format("%.1f", metrics.getElapsedSec()));			
 		}
 		appendMetrics(body, metrics);
-		putRunStatus(body);
+		putRunStatus(body, true);
 	}
 
 	/**
@@ -101,7 +101,7 @@ public class AppProgressLogger extends ProgressLogger {
 		ObjectNode body = JsonNodeFactory.instance.objectNode();
 		body.put("sys_id", runKey.toString());		
 		if (hasPart()) {
-			body.put("part_name", datePart.getName());
+			body.put("part_name", part.getName());
 			body.put("part_status", status);	
 		}
 		else {
@@ -138,19 +138,16 @@ public class AppProgressLogger extends ProgressLogger {
 	}
 	
 	void putRunStatus(ObjectNode body) {
-		logger.debug(Log.REQUEST, String.format(
-			"putRunStatus %s %s", runKey, body.toString()));
-		JsonRequest request = new JsonRequest(session, putRunStatusURI, HttpMethod.PUT, body);		
-		ObjectNode response;
-		try {
-			response = request.execute();
-		} catch (IOException e) {
-			throw new ResourceException(e);
-		}
-		if (logger.isDebugEnabled())
-			logger.debug(Log.RESPONSE, String.format(
-				"putRunStatus %s %s", runKey, response.toString()));		
+		putRunStatus(body, false);
 	}
-
 	
+	/**
+	 * Queue the status for the {@link AppStatusPublisher}.
+	 * Updates for the same run and part are coalesced.
+	 */
+	void putRunStatus(ObjectNode body, boolean isFinal) {
+		String key = hasPart() ? runKey.toString() + "." + part.getName() : runKey.toString();
+		publisher.publish(key, session, putRunStatusURI, body, isFinal);
+	}
+
 }
@@ -32,6 +32,8 @@ public class AppStatusLogger {
 		assert session != null;
 		assert runKey != null;
 		Log.setJobContext(runKey.toString());
+		// pending progress updates must not overwrite this status
+		AppStatusPublisher.flushAll();
 		ObjectNode body = JsonNodeFactory.instance.objectNode();
 		body.put("sys_id", runKey.toString());		
 		body.put("status", status);
@@ -47,6 +49,7 @@ public class AppStatusLogger {
 		assert runKey != null;
 		logger.error(Log.PROCESS, "logError " + e.getClass().getSimpleName());
 		Log.setJobContext(runKey.toString());
+		AppStatusPublisher.flushAll();
 		ObjectNode body = JsonNodeFactory.instance.objectNode();
 		body.put("sys_id", runKey.toString());		
 		body.put("status", "failed");
@@ -0,0 +1,187 @@
+package sndml.daemon;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import sndml.datamart.ConnectionProfile;
+import sndml.servicenow.HttpMethod;
+import sndml.servicenow.JsonRequest;
+import sndml.servicenow.Log;
+import sndml.servicenow.Session;
+
+/**
+ * Sends run status updates (<b>putrunstatus</b>) to the instance from a background thread,
+ * so that reader and writer threads do not wait for a round trip to ServiceNow.
+ * <p>Updates are coalesced by key (the run sys_id and partition name),
+ * so only the most recent update for each key is sent, and each key is sent at most
+ * once every <b>daemon.status_interval</b> seconds (default 10).
+ * A final update (complete) is sent immediately, after any pending updates.
+ * If <b>daemon.status_interval</b> is 0 then updates are sent synchronously.
+ * When the publisher is closed any pending updates are sent before the thread stops.</p>
+ */
+public class AppStatusPublisher {
+
+	static final int DEFAULT_INTERVAL = 10;
+	static final String THREAD_NAME = "status";
+
+	private static AppStatusPublisher publisher = null;
+
+	private final Logger logger = LoggerFactory.getLogger(this.getClass());
+	private final int intervalSeconds;
+	private final ScheduledExecutorService executor; // null if interval is 0
+	// pending updates in the order in which they were last modified
+	private final LinkedHashMap<String,Update> pending = new LinkedHashMap<String,Update>();
+
+	static class Update {
+		final Session session;
+		final URI uri;
+		final ObjectNode body;
+
+		Update(Session session, URI uri, ObjectNode body) {
+			this.session = session;
+			this.uri = uri;
+			this.body = body;
+		}
+	}
+
+	AppStatusPublisher(int intervalSeconds) {
+		assert intervalSeconds >= 0;
+		this.intervalSeconds = intervalSeconds;
+		if (intervalSeconds > 0) {
+			executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+				Thread thread = new Thread(runnable, THREAD_NAME);
+				thread.setDaemon(true);
+				return thread;
+			});
+			executor.scheduleWithFixedDelay(this::sendPending,
+				intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+		}
+		else {
+			executor = null;
+		}
+	}
+
+	/**
+	 * Return the publisher, creating it if necessary.
+	 */
+	static synchronized AppStatusPublisher getPublisher(ConnectionProfile profile) {
+		if (publisher == null) {
+			int interval = profile.getPropertyInt("daemon.status_interval", DEFAULT_INTERVAL);
+			publisher = new AppStatusPublisher(interval);
+		}
+		return publisher;
+	}
+
+	/**
+	 * Queue an update, replacing any pending update with the same key.
+	 * This method does not block.
+	 * @param isFinal If true then the update is sent as soon as possible
+	 */
+	void publish(String key, Session session, URI uri, ObjectNode body, boolean isFinal) {
+		Update update = new Update(session, uri, body);
+		if (executor == null || executor.isShutdown()) {
+			send(update);
+			return;
+		}
+		synchronized (pending) {
+			// move the key to the end of the queue
+			pending.remove(key);
+			pending.put(key, update);
+		}
+		if (isFinal) executor.execute(this::sendPending);
+	}
+
+	/**
+	 * Wait until all pending updates have been sent.
+	 * Called before a status which must not be overwritten (failed)
+	 * and when the daemon stops.
+	 */
+	void flush() {
+		if (executor == null || executor.isShutdown()) return;
+		try {
+			executor.submit(this::sendPending).get(intervalSeconds + 60, TimeUnit.SECONDS);
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		catch (ExecutionException | TimeoutException e) {
+			logger.warn(Log.FINISH, "flush: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Flush the publisher if one has been created.
+	 */
+	static void flushAll() {
+		AppStatusPublisher current;
+		synchronized (AppStatusPublisher.class) {
+			current = publisher;
+		}
+		if (current != null) current.flush();
+	}
+
+	/**
+	 * Send any pending updates and stop the background thread.
+	 * Updates which are published after the publisher is closed are sent synchronously.
+	 */
+	void close() {
+		flush();
+		if (executor != null) executor.shutdown();
+	}
+
+	/**
+	 * Close the publisher if one has been created.
+	 * A new publisher is created if {@link #getPublisher} is called again.
+	 */
+	static void closeAll() {
+		AppStatusPublisher current;
+		synchronized (AppStatusPublisher.class) {
+			current = publisher;
+			publisher = null;
+		}
+		if (current != null) current.close();
+	}
+
+	// runs in the publisher thread
+	private void sendPending() {
+		while (true) {
+			Update update;
+			synchronized (pending) {
+				Iterator<Map.Entry<String,Update>> iter = pending.entrySet().iterator();
+				if (!iter.hasNext()) return;
+				update = iter.next().getValue();
+				iter.remove();
+			}
+			send(update);
+		}
+	}
+
+	// overridden by tests
+	void send(Update update) {
+		logger.debug(Log.REQUEST, "putRunStatus " + update.body.toString());
+		JsonRequest request = new JsonRequest(update.session, update.uri, HttpMethod.PUT, update.body);
+		try {
+			ObjectNode response = request.execute();
+			if (logger.isDebugEnabled())
+				logger.debug(Log.RESPONSE, "putRunStatus " + response.toString());
+		}
+		catch (IOException | RuntimeException e) {
+			// a lost progress update is not fatal
+			logger.warn(Log.PROCESS, "putRunStatus failed: " + e.getMessage());
+		}
+	}
+
+}
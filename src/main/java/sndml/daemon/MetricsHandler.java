@@ -0,0 +1,46 @@
+package sndml.daemon;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+/**
+ * Returns {@link AgentMetrics} in Prometheus text format.
+ */
+public class MetricsHandler implements HttpHandler {
+
+	static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+	private final AgentMetrics metrics;
+
+	public MetricsHandler() {
+		this.metrics = AgentMetrics.getAgentMetrics();
+	}
+
+	@Override
+	public void handle(HttpExchange exchange) throws IOException {
+		try {
+			if (!"GET".equalsIgnoreCase(exchange.getRequestMethod())) {
+				exchange.sendResponseHeaders(405, -1);
+				return;
+			}
+			StringWriter text = new StringWriter();
+			metrics.writePrometheus(new PrintWriter(text));
+			byte[] responseBytes = text.toString().getBytes(StandardCharsets.UTF_8);
+			exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+			exchange.sendResponseHeaders(200, responseBytes.length);
+			OutputStream stream = exchange.getResponseBody();
+			stream.write(responseBytes);
+			stream.close();
+		}
+		finally {
+			exchange.close();
+		}
+	}
+
+}
@@ -0,0 +1,48 @@
+package sndml.daemon;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.sun.net.httpserver.HttpServer;
+
+import sndml.datamart.ConnectionProfile;
+import sndml.servicenow.Log;
+
+/**
+ * HTTP server for the daemon which only serves metrics.
+ * Unlike {@link AgentServer} it cannot be used to start a job.
+ * <ul>
+ * <li><b>daemon.metrics_port</b> - port (required)</li>
+ * <li><b>daemon.metrics_context</b> (default /metrics) - metrics in Prometheus text format</li>
+ * </ul>
+ */
+public class MetricsServer {
+
+	final int port;
+	final HttpServer server;
+	private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+	public MetricsServer(ConnectionProfile profile) throws IOException {
+		this.port = profile.getPropertyInt("daemon.metrics_port", 0);
+		if (port == 0) throw new AssertionError("daemon.metrics_port not specified");
+		int backlog = profile.getPropertyInt("server.backlog",  3);
+		this.server = HttpServer.create(new InetSocketAddress(port), backlog);
+		String context = profile.getProperty("daemon.metrics_context", "/metrics");
+		server.createContext(context, new MetricsHandler());
+		server.setExecutor(null); // creates a default executor
+	}
+
+	public void start() {
+		logger.info(Log.INIT, String.format("start metrics port=%d", port));
+		server.start();
+	}
+
+	public void stop() {
+		logger.info(Log.FINISH, String.format("stop metrics port=%d", port));
+		server.stop(0);
+	}
+
+}
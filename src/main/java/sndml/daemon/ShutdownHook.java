@@ -44,6 +44,7 @@ public class ShutdownHook extends Thread {
 				logger.warn(Log.FINISH, "Some threads failed to terminate");
 			}
 		}
+		AppStatusPublisher.closeAll();
 		logger.info(Log.FINISH, "ShutdownHook complete");
 	}
 	
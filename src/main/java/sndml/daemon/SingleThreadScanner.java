@@ -53,6 +53,7 @@ public class SingleThreadScanner extends AgentScanner {
 				job.setDatabase(database);
 				job.run();																					
 			}				
+			database.close();
 			Log.setGlobalContext();			
 		}
 		return joblist.size();
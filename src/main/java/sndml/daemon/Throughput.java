@@ -0,0 +1,95 @@
+package sndml.daemon;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import sndml.servicenow.Metrics;
+import sndml.servicenow.Metrics.Phase;
+
+/**
+ * Rows processed and time spent in each phase by a job or for a table
+ * since the daemon started.
+ * The {@link Metrics} of running jobs are read when the values are requested;
+ * when a job finishes its totals are added to this object.
+ */
+class Throughput implements ThroughputMBean {
+
+	private final String name;
+	private final Set<Metrics> active = new LinkedHashSet<Metrics>();
+	private long completedRows = 0;
+	private final long[] completedNanos = new long[Phase.values().length];
+
+	Throughput(String name) {
+		this.name = name;
+	}
+
+	synchronized void begin(Metrics metrics) {
+		active.add(metrics);
+	}
+
+	synchronized void end(Metrics metrics) {
+		if (!active.remove(metrics)) return;
+		completedRows += metrics.getProcessed();
+		for (Phase phase : Phase.values())
+			completedNanos[phase.ordinal()] += metrics.getNanos(phase);
+	}
+
+	@Override
+	public String getName() {
+		return name;
+	}
+
+	@Override
+	public synchronized int getActiveJobs() {
+		return active.size();
+	}
+
+	@Override
+	public synchronized long getRowsProcessed() {
+		long result = completedRows;
+		for (Metrics metrics : active) result += metrics.getProcessed();
+		return result;
+	}
+
+	@Override
+	public synchronized double getRowsPerSecond() {
+		double result = 0.0;
+		for (Metrics metrics : active) {
+			double elapsed = metrics.getElapsedSec();
+			if (elapsed > 0) result += metrics.getProcessed() / elapsed;
+		}
+		return result;
+	}
+
+	synchronized double getSeconds(Phase phase) {
+		long result = completedNanos[phase.ordinal()];
+		for (Metrics metrics : active) result += metrics.getNanos(phase);
+		return result / 1e9;
+	}
+
+	@Override
+	public double getFetchSeconds() {
+		return getSeconds(Phase.FETCH);
+	}
+
+	@Override
+	public double getParseSeconds() {
+		return getSeconds(Phase.PARSE);
+	}
+
+	@Override
+	public double getBindSeconds() {
+		return getSeconds(Phase.BIND);
+	}
+
+	@Override
+	public double getExecuteSeconds() {
+		return getSeconds(Phase.EXECUTE);
+	}
+
+	@Override
+	public double getCommitSeconds() {
+		return getSeconds(Phase.COMMIT);
+	}
+
+}
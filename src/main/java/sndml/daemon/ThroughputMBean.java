@@ -0,0 +1,27 @@
+package sndml.daemon;
+
+/**
+ * JMX view of the rows processed by a job or for a table.
+ * Totals include completed runs; rates include only running jobs.
+ */
+public interface ThroughputMBean {
+
+	String getName();
+
+	int getActiveJobs();
+
+	long getRowsProcessed();
+
+	double getRowsPerSecond();
+
+	double getFetchSeconds();
+
+	double getParseSeconds();
+
+	double getBindSeconds();
+
+	double getExecuteSeconds();
+
+	double getCommitSeconds();
+
+}
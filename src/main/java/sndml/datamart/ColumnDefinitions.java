@@ -19,6 +19,8 @@ public class ColumnDefinitions extends ArrayList<DatabaseFieldDefinition> {
 	private static final long serialVersionUID = 1L;
 
 	final private Logger logger = Log.logger(this.getClass());
+	
+	private FieldIndex fieldIndex = null;
 
 	/**
 	 * Generate SQL data type information for all columns in the table
@@ -72,6 +74,19 @@ public class ColumnDefinitions extends ArrayList<DatabaseFieldDefinition> {
 		Log.setJobContext(saveJob);	
 	}
 	
+	/**
+	 * Return a {@link FieldIndex} of the Glide names 
+	 * in which the position of each field matches the position of the column.
+	 */
+	public synchronized FieldIndex getFieldIndex() {
+		if (fieldIndex == null) {
+			FieldNames glideNames = new FieldNames(this.size());
+			for (DatabaseFieldDefinition defn : this) glideNames.add(defn.getGlideName());
+			fieldIndex = new FieldIndex(glideNames);
+		}
+		return fieldIndex;
+	}
+	
 	private ResultSet getColumnDefinitions(Database database, String tablename) 
 			throws SQLException {
 		assert tablename != null;
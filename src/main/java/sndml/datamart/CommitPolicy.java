@@ -0,0 +1,65 @@
+package sndml.datamart;
+
+/**
+ * Determines when a {@link DatabaseTableWriter} commits.
+ * <p>By default the writer commits at the end of each page.
+ * If <b>commitrows</b>, <b>commitbytes</b> or <b>commitseconds</b> is specified
+ * then the writer commits when any one of the limits is reached
+ * (checked after each batch and each page), regardless of the page size.
+ * If <b>singletransaction</b> is true then the writer only commits when it is closed.</p>
+ * <p>If the dialect uses auto-commit then it is turned off while the job runs
+ * (see {@link Database#disableAutoCommit()}), so that these options still apply.</p>
+ */
+class CommitPolicy {
+
+	static final CommitPolicy EVERY_PAGE = new CommitPolicy(null, null, null, false);
+
+	final Integer rows;
+	final Long bytes;
+	final Integer seconds;
+	final boolean singleTransaction;
+
+	CommitPolicy(Integer rows, Long bytes, Integer seconds, boolean singleTransaction) {
+		assert !singleTransaction || (rows == null && bytes == null && seconds == null);
+		this.rows = rows;
+		this.bytes = bytes;
+		this.seconds = seconds;
+		this.singleTransaction = singleTransaction;
+	}
+
+	/**
+	 * Return true if the writer should commit at the end of every page.
+	 */
+	boolean isEveryPage() {
+		return !singleTransaction && rows == null && bytes == null && seconds == null;
+	}
+
+	/**
+	 * Return true if bytes should be counted.
+	 */
+	boolean hasBytes() {
+		return bytes != null;
+	}
+
+	/**
+	 * Return true if a limit has been reached.
+	 * @param uncommittedRows Rows written since the last commit
+	 * @param uncommittedBytes Estimated bytes written since the last commit
+	 * @param elapsedMillis Milliseconds since the last commit
+	 */
+	boolean isDue(int uncommittedRows, long uncommittedBytes, long elapsedMillis) {
+		if (singleTransaction || uncommittedRows == 0) return false;
+		if (rows != null && uncommittedRows >= rows) return true;
+		if (bytes != null && uncommittedBytes >= bytes) return true;
+		if (seconds != null && elapsedMillis >= 1000L * seconds) return true;
+		return false;
+	}
+
+	@Override
+	public String toString() {
+		if (singleTransaction) return "singletransaction";
+		if (isEveryPage()) return "page";
+		return String.format("rows=%s bytes=%s seconds=%s", rows, bytes, seconds);
+	}
+
+}
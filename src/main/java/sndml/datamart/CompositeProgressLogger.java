@@ -14,7 +14,7 @@ public class CompositeProgressLogger extends ProgressLogger {
 	
 	@Deprecated
 	public CompositeProgressLogger(TableReader reader, Action action, 
-			AppProgressLogger appLogger, DatePart part) {
+			AppProgressLogger appLogger, PartitionPart part) {
 		super(appLogger.getMetrics(), part);
 		this.textLogger = new Log4jProgressLogger(reader, action);
 		this.appLogger = appLogger; 		
@@ -27,7 +27,7 @@ public class CompositeProgressLogger extends ProgressLogger {
 	}
 	
 	@Override
-	public CompositeProgressLogger newPartLogger(Metrics newMetrics, DatePart newPart) {
+	public CompositeProgressLogger newPartLogger(Metrics newMetrics, PartitionPart newPart) {
 		Log4jProgressLogger newTextLogger =
 				(Log4jProgressLogger) textLogger.newPartLogger(newMetrics,  newPart);
 		AppProgressLogger newAppLogger = 
@@ -37,6 +37,7 @@ public class ConnectionProfile {
 	private final Properties properties = new Properties();
 	private long lastModified;
 	private final Pattern cmdPattern = Pattern.compile("^`(.+)`$");
+	private DatabasePool databasePool = null;
 	
 	public ConnectionProfile(File profile) throws IOException {
 		this.profile = profile;
@@ -164,8 +165,13 @@ public class ConnectionProfile {
 
 	/**
 	 * Opens and returns a new connection to the JDBC database.
+	 * If <b>database.pool_size</b> is greater than 0 then the connection
+	 * is obtained from a {@link DatabasePool}
+	 * and {@link Database#close()} will return it to the pool.
 	 */
 	public synchronized Database getDatabase() throws SQLException {
+		DatabasePool pool = getDatabasePool();
+		if (pool != null) return pool.acquire();
 		Database database;
 		try {
 			database = new Database(this);
@@ -175,6 +181,18 @@ public class ConnectionProfile {
 		return database;
 	}
 
+	/**
+	 * Return the connection pool, or null if <b>database.pool_size</b> is not specified.
+	 */
+	public synchronized DatabasePool getDatabasePool() {
+		int poolSize = getPropertyInt("database.pool_size", 0);
+		if (databasePool == null && poolSize > 0) {
+			logger.info(Log.INIT, "database.pool_size=" + poolSize);
+			databasePool = new DatabasePool(this, poolSize);
+		}
+		return databasePool;
+	}
+
 	/**
 	 * Return the URI of an API. This will be dependent on the application scope
 	 * which is available from the property daemon.scope.
@@ -184,7 +202,8 @@ public class ConnectionProfile {
 	}
 	
 	public URI getAPI(String apiName, String parameter) {
-		Instance instance = new Instance(getProperty("servicenow.instance"));
+		Instance instance = new Instance(getProperty("servicenow.instance"),
+			Boolean.parseBoolean(getProperty("servicenow.allow_http", "false")));
 		ConnectionProfile profile = AgentDaemon.getConnectionProfile();
 		assert profile != null;		
 		String appScope = getProperty("daemon.scope", "x_108443_sndml");
@@ -7,11 +7,16 @@ import java.net.URISyntaxException;
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
 import java.sql.DriverManager;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Savepoint;
 import java.sql.Statement;
 import java.util.Calendar;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.Map;
 import java.util.TimeZone;
 
 import org.slf4j.Logger;
@@ -26,7 +31,18 @@ import sndml.servicenow.*;
  * These statements should be used to ensure that the session time zone is GMT
  * and the date format is <tt>YYYY-MM-DD HH24:MI:SS</tt>.
  * </p>
- * 
+ * <p><b>Transactions.</b> The <tt>&lt;autocommit&gt;</tt> setting of the dialect
+ * determines whether the connection is opened with autocommit enabled.
+ * Writers group the statements of each JDBC batch using {@link #beginBatch()}
+ * so that a failed batch can be rolled back and retried one row at a time.
+ * If autocommit is currently enabled then the batch is a transaction of its own,
+ * which is committed by {@link #endBatch}. Otherwise the batch is a savepoint
+ * within the current transaction, which is released by {@link #endBatch},
+ * and the rows are not committed until {@link #commit()} is called.
+ * These methods check whether autocommit is currently enabled rather than using
+ * the setting of the dialect, so a job which turns autocommit off
+ * (using {@link #disableAutoCommit()}) is never committed by a batch.
+ * </p>
  */
 public class Database {
 
@@ -39,12 +55,35 @@ public class Database {
 	private final String dbuser;
 	private final String dbpass;
 	private final boolean warnOnTruncate;
+	private final int batchSize;
+	private final int bulkSize;
+	private final boolean upsert;
 	private final String schema;
 	private final File templates;
 	
 	private Connection dbc = null;
 	private Generator generator;
+	private DatabasePool pool = null; // null if not pooled
+	// prepared statements which are not in use, keyed by template and table
+	private final Map<String,CachedStatement> statements = new HashMap<String,CachedStatement>();
+
+	private static class CachedStatement {
+		final String sqlTableName;
+		final String sql;
+		final PreparedStatement stmt;
 
+		CachedStatement(String sqlTableName, String sql, PreparedStatement stmt) {
+			this.sqlTableName = sqlTableName;
+			this.sql = sql;
+			this.stmt = stmt;
+		}
+	}
+
+	// number of rows sent to the database in one JDBC batch; 1 disables batching
+	static final String DEFAULT_BATCH_SIZE = "100";
+	// maximum number of rows sent in one bulk load (see DatabaseBulkWriter)
+	static final String DEFAULT_BULK_SIZE = "10000";
+	
 	public final static Calendar GMT = Calendar.getInstance(TimeZone.getTimeZone("GMT"));
 	
 	public Database(ConnectionProfile profile) throws SQLException, URISyntaxException {
@@ -77,6 +116,11 @@ public class Database {
 		String templateName = profile.getProperty("datamart.templates", "");
 		this.templates = (templateName.length() > 0) ? new File(templateName) : null;
 		this.warnOnTruncate = profile.getPropertyBoolean("loader.warn_on_truncate", true);
+		this.batchSize = Integer.parseInt(databaseProperty("batch_size", DEFAULT_BATCH_SIZE));
+		if (batchSize < 1) throw new IllegalArgumentException("database.batch_size=" + batchSize);
+		this.bulkSize = Integer.parseInt(databaseProperty("bulk_size", DEFAULT_BULK_SIZE));
+		if (bulkSize < 1) throw new IllegalArgumentException("database.bulk_size=" + bulkSize);
+		this.upsert = Boolean.parseBoolean(databaseProperty("upsert", "false"));
 				
 		this.open();
 		assert dbc != null;
@@ -90,6 +134,20 @@ public class Database {
 		return value;
 	}
 	
+	/**
+	 * Return a new Database object with its own connection
+	 * using the same connection profile.
+	 */
+	public Database duplicate() throws SQLException {
+		if (pool != null) return pool.acquire();
+		try {
+			return new Database(this.profile);
+		} catch (URISyntaxException e) {
+			// the URI has already been parsed successfully
+			throw new AssertionError(e);
+		}
+	}
+	
 	/**
 	 * Open the database connection.
 	 * Set the timezoneName to GMT.
@@ -110,13 +168,99 @@ public class Database {
 		commit();		
 	}
 		
+	/**
+	 * Close the connection, or return it to the pool if it is pooled.
+	 */
 	public void close() throws SQLException {
+		if (pool != null)
+			pool.release(this);
+		else
+			closeConnection();
+	}
+
+	void closeConnection() throws SQLException {
 		logger.info(Log.FINISH, "Database connection closed");
+		forgetStatements(null);
 		this.dbc.close();
 		this.dbc = null;
 		assert this.isClosed();
 	}
 
+	void setPool(DatabasePool pool) {
+		this.pool = pool;
+	}
+
+	/**
+	 * Return true if the connection is open and valid.
+	 */
+	boolean isValid(int timeoutSeconds) {
+		if (dbc == null) return false;
+		try {
+			return dbc.isValid(timeoutSeconds);
+		}
+		catch (SQLException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Roll back any uncommitted work and restore the initial auto-commit setting
+	 * before the connection is reused.
+	 */
+	void reset() throws SQLException {
+		if (!dbc.getAutoCommit()) dbc.rollback();
+		dbc.setAutoCommit(generator.getAutoCommit());
+	}
+
+	/**
+	 * Return a prepared statement, reusing a cached statement 
+	 * for the same template and table if the SQL is unchanged.
+	 * The statement should be returned using {@link #releaseStatement}.
+	 */
+	synchronized PreparedStatement prepareStatement(String templateName, String sqlTableName, String sql) 
+			throws SQLException {
+		CachedStatement cached = statements.remove(templateName + " " + sqlTableName);
+		if (cached != null) {
+			if (cached.sql.equals(sql)) {
+				logger.debug(Log.SCHEMA, "reusing prepared statement");
+				return cached.stmt;
+			}
+			cached.stmt.close();
+		}
+		return dbc.prepareStatement(sql);
+	}
+
+	/**
+	 * Return a statement obtained from {@link #prepareStatement} to the cache.
+	 */
+	synchronized void releaseStatement(String templateName, String sqlTableName, String sql, 
+			PreparedStatement stmt) throws SQLException {
+		String key = templateName + " " + sqlTableName;
+		if (dbc == null || stmt.isClosed()) return;
+		if (statements.containsKey(key)) {
+			stmt.close();
+			return;
+		}
+		stmt.clearBatch();
+		stmt.clearParameters();
+		statements.put(key, new CachedStatement(sqlTableName, sql, stmt));
+	}
+
+	/**
+	 * Close cached statements for a table which has been dropped or created,
+	 * or all cached statements if sqlTableName is null.
+	 */
+	synchronized void forgetStatements(String sqlTableName) throws SQLException {
+		Iterator<CachedStatement> iter = statements.values().iterator();
+		while (iter.hasNext()) {
+			CachedStatement cached = iter.next();
+			if (sqlTableName == null || sqlTableName.equalsIgnoreCase(cached.sqlTableName)) {
+				cached.stmt.close();
+				iter.remove();
+			}
+		}
+	}
+
 	boolean isClosed() {
 		return (this.dbc == null);
 	}
@@ -149,6 +293,22 @@ public class Database {
 		return this.warnOnTruncate;
 	}
 	
+	int getBatchSize() {
+		return this.batchSize;
+	}
+	
+	int getBulkSize() {
+		return this.bulkSize;
+	}
+	
+	/**
+	 * Return true if updates should use the <b>upsert</b> template.
+	 * Requires <b>database.upsert=true</b> and a dialect which has the template.
+	 */
+	boolean getUpsert() {
+		return this.upsert && generator.hasTemplate("upsert");
+	}
+	
 	URI getURI() {
 		return this.dbURI;
 	}
@@ -198,15 +358,102 @@ public class Database {
 		stmt.close();
 	}
 	
-	void commit() throws SQLException {
-		if (!generator.getAutoCommit()) dbc.commit();
+	/**
+	 * Commit the current transaction.
+	 * @return false if autocommit is enabled, in which case there is nothing to commit
+	 */
+	boolean commit() throws SQLException {
+		if (dbc.getAutoCommit()) return false;
+		dbc.commit();
+		return true;
+	}
+	
+	/**
+	 * Turn autocommit off so that nothing is committed until {@link #commit()} is called.
+	 * @return true if autocommit was enabled, in which case it should be turned back on
+	 * using {@link #restoreAutoCommit(boolean)}
+	 */
+	boolean disableAutoCommit() throws SQLException {
+		if (!dbc.getAutoCommit()) return false;
+		dbc.setAutoCommit(false);
+		return true;
+	}
+	
+	/**
+	 * Roll back anything which has not been committed and turn autocommit back on.
+	 * This does nothing if enable is false.
+	 */
+	void restoreAutoCommit(boolean enable) throws SQLException {
+		if (enable && !dbc.getAutoCommit()) {
+			dbc.rollback();
+			dbc.setAutoCommit(true);
+		}
+	}
+	
+	/**
+	 * Start a batch of statements which can be rolled back as a unit.
+	 * If autocommit is enabled it is turned off until the batch ends.
+	 * @return A savepoint, or null if autocommit is enabled
+	 */
+	Savepoint beginBatch() throws SQLException {
+		if (dbc.getAutoCommit()) {
+			dbc.setAutoCommit(false);
+			return null;
+		}
+		return dbc.setSavepoint();
+	}
+	
+	/**
+	 * End a batch which was started with {@link #beginBatch()}.
+	 * If the batch started a transaction then it is committed,
+	 * otherwise the savepoint is released.
+	 */
+	void endBatch(Savepoint savepoint) throws SQLException {
+		if (savepoint == null) {
+			dbc.commit();
+			dbc.setAutoCommit(true);
+		}
+		else {
+			releaseSavepoint(savepoint);
+		}
+	}
+	
+	/**
+	 * Undo a batch which was started with {@link #beginBatch()}.
+	 */
+	void rollbackBatch(Savepoint savepoint) throws SQLException {
+		if (savepoint == null) {
+			dbc.rollback();
+			dbc.setAutoCommit(true);
+		}
+		else {
+			dbc.rollback(savepoint);
+			releaseSavepoint(savepoint);
+		}
+	}
+	
+	private void releaseSavepoint(Savepoint savepoint) throws SQLException {
+		try {
+			dbc.releaseSavepoint(savepoint);
+		}
+		catch (SQLFeatureNotSupportedException e) {
+			// Oracle does not release savepoints; they end with the transaction
+		}
 	}
 	
 	void truncateTable(String sqlTableName) throws SQLException {
+		truncateTable(sqlTableName, true);
+	}
+	
+	/**
+	 * Truncate a table. If commit is false then the truncate will be committed
+	 * with the rows which are subsequently loaded (if the database supports it).
+	 */
+	void truncateTable(String sqlTableName, boolean commit) throws SQLException {
 		String sql = generator.getTemplate("truncate", sqlTableName);
 		logger.info(Log.INIT, sql);
 		executeStatement(sql);
-		commit();
+		if (commit) commit();
 	}
 	
 	/**
@@ -257,6 +504,7 @@ public class Database {
 	 */
 	void dropTable(String sqlTableName, boolean addSchema) 
 			throws SQLException {
+		forgetStatements(sqlTableName);
 		if (tableExists(sqlTableName)) {
 			String fullName = addSchema ? this.qualifiedName(sqlTableName) : sqlTableName;
 			logger.warn(Log.INIT, String.format("dropTable: %s", fullName));
@@ -282,6 +530,7 @@ public class Database {
 		assert table != null;
 		assert sqlTableName != null;
 		Log.setTableContext(table);
+		forgetStatements(sqlTableName);
 		Statement stmt = dbc.createStatement();
 		String createSql = generator.getCreateTable(table, sqlTableName, columns);
 		logger.info(Log.INIT, createSql);
@@ -0,0 +1,150 @@
+package sndml.datamart;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TimeZone;
+
+import sndml.servicenow.CompactRecord;
+import sndml.servicenow.Log;
+import sndml.servicenow.Metrics;
+import sndml.servicenow.RecordList;
+import sndml.servicenow.Table;
+import sndml.servicenow.TableRecord;
+
+/**
+ * Inserts records using the native bulk load interface of the database
+ * rather than INSERT statements. There is one subclass for each method
+ * which may appear in the <b>bulkload</b> property of a dialect in <tt>sqltemplates.xml</tt>:
+ * <ul>
+ * <li><b>copy</b> - {@link PostgreSQLCopyWriter}</li>
+ * <li><b>load_data</b> - {@link MySQLLoadDataWriter}</li>
+ * <li><b>bulk_copy</b> - {@link MSSQLBulkCopyWriter}</li>
+ * </ul>
+ * <p>Values are converted using the same rules as {@link DatabaseStatement}.
+ * Rows are sent in groups of up to <b>database.bulk_size</b>.
+ * If a bulk load fails (for example because of a duplicate key) then it is rolled back
+ * and the rows are inserted using {@link DatabaseInsertWriter}.</p>
+ * <p>This writer is used if the job specifies <b>bulkload: true</b>.</p>
+ */
+public abstract class DatabaseBulkWriter extends DatabaseInsertWriter {
+
+	protected FieldConverter converter;
+	private final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
+	private final SimpleDateFormat timestampFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+
+	public DatabaseBulkWriter(Database db, Table table, String sqlTableName, String writerName)
+			throws IOException, SQLException {
+		super(db, table, sqlTableName, writerName);
+		this.batchSize = db.getBulkSize();
+		// values are written in the time zone that would be used to bind them
+		TimeZone tz = (db.getCalendar() == null) ? TimeZone.getDefault() : db.getCalendar().getTimeZone();
+		dateFormat.setTimeZone(tz);
+		timestampFormat.setTimeZone(tz);
+	}
+
+	/**
+	 * Return a bulk writer for the dialect of the database,
+	 * or null if the dialect does not have a <b>bulkload</b> property.
+	 */
+	static DatabaseBulkWriter create(Database db, Table table, String sqlTableName, String writerName)
+			throws IOException, SQLException {
+		String method = db.getGenerator().getBulkLoad();
+		if (method == null) return null;
+		switch (method) {
+		case "copy":
+			return new PostgreSQLCopyWriter(db, table, sqlTableName, writerName);
+		case "load_data":
+			return new MySQLLoadDataWriter(db, table, sqlTableName, writerName);
+		case "bulk_copy":
+			return new MSSQLBulkCopyWriter(db, table, sqlTableName, writerName);
+		default:
+			throw new ResourceException("Invalid bulkload: " + method);
+		}
+	}
+
+	@Override
+	public DatabaseBulkWriter open(Metrics writerMetrics) throws SQLException, IOException {
+		super.open(writerMetrics);
+		converter = new FieldConverter(db, logger);
+		return this;
+	}
+
+	/**
+	 * Send rows to the database.
+	 * @param rows One array of converted values per row, in the order of {@link #columns}
+	 * @return Number of rows inserted
+	 */
+	abstract long bulkLoad(List<Object[]> rows) throws SQLException, IOException;
+
+	@Override
+	void writeBatch(RecordList recs, Metrics writerMetrics) throws SQLException {
+		Savepoint savepoint = db.beginBatch();
+		try {
+			List<Object[]> rows = new ArrayList<Object[]>(recs.size());
+			long start = System.nanoTime();
+			for (TableRecord rec : recs) rows.add(convertRecord(rec));
+			bindNanos += System.nanoTime() - start;
+			long count = bulkLoad(rows);
+			db.endBatch(savepoint);
+			logger.debug(Log.PROCESS, String.format("bulk loaded %d of %d rows", count, recs.size()));
+			writerMetrics.addInserted((int) count);
+			if (count < recs.size()) {
+				logger.warn(Log.PROCESS, String.format(
+					"%d duplicate rows skipped", recs.size() - count));
+				writerMetrics.addSkipped(recs.size() - (int) count);
+			}
+		}
+		catch (SQLException | IOException | NumberFormatException e) {
+			logger.warn(Log.PROCESS, String.format(
+				"bulk load of %d rows failed; using insert: %s", recs.size(), e.getMessage()));
+			db.rollbackBatch(savepoint);
+			super.writeBatch(recs, writerMetrics);
+		}
+	}
+
+	/**
+	 * Convert the values of a record.
+	 */
+	Object[] convertRecord(TableRecord rec) {
+		CompactRecord compactRec = (rec instanceof CompactRecord &&
+			((CompactRecord) rec).getIndex() == columns.getFieldIndex()) ? (CompactRecord) rec : null;
+		int n = columns.size();
+		Object[] row = new Object[n];
+		for (int i = 0; i < n; ++i) {
+			DatabaseFieldDefinition defn = columns.get(i);
+			String fieldname = defn.getGlideName();
+			String value = (compactRec == null) ? rec.getValue(fieldname) : compactRec.getValue(i);
+			row[i] = converter.convert(rec.getKey(), defn, fieldname, value);
+		}
+		return row;
+	}
+
+	/**
+	 * Return a comma separated list of quoted column names.
+	 */
+	String getColumnList() {
+		StringBuilder result = new StringBuilder();
+		for (int i = 0; i < columns.size(); ++i) {
+			if (i > 0) result.append(",");
+			result.append(db.getGenerator().sqlQuote(columns.get(i).getName()));
+		}
+		return result.toString();
+	}
+
+	/**
+	 * Format a converted value as text, or return null for a null value.
+	 * Booleans are returned as 1 or 0.
+	 */
+	String formatValue(Object value) {
+		if (value == null) return null;
+		if (value instanceof java.sql.Timestamp) return timestampFormat.format(value);
+		if (value instanceof java.sql.Date) return dateFormat.format(value);
+		if (value instanceof Boolean) return ((Boolean) value) ? "1" : "0";
+		return value.toString();
+	}
+
+}
@@ -23,4 +23,13 @@ public class DatabaseDeleteStatement extends DatabaseStatement {
 		int count = stmt.executeUpdate();
 		return (count > 0);
 	}
+
+	/**
+	 * Add a key to the JDBC batch.
+	 * The batch is run using {@link #executeBatch()}.
+	 */
+	void addBatch(RecordKey key) throws SQLException {
+		this.bindField(1, key.toString());
+		stmt.addBatch();
+	}
 }
@@ -2,18 +2,25 @@ package sndml.datamart;
 
 import java.io.IOException;
 import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
 
 import sndml.servicenow.RecordKey;
 import sndml.servicenow.KeySet;
 import sndml.servicenow.Log;
 import sndml.servicenow.Metrics;
+import sndml.servicenow.Metrics.Phase;
 import sndml.servicenow.ProgressLogger;
+import sndml.servicenow.RecordList;
 import sndml.servicenow.TableRecord;
 import sndml.servicenow.Table;
 
 public class DatabaseDeleteWriter extends DatabaseTableWriter {
 
 	protected DatabaseDeleteStatement deleteStmt;
+	private boolean batchCounts = true; // false if the driver does not report a count for each key
 		
 	public DatabaseDeleteWriter(Database db, Table table, String sqlTableName, String writerName)
 			throws IOException, SQLException {
@@ -23,11 +30,20 @@ public class DatabaseDeleteWriter extends DatabaseTableWriter {
 	@Override
 	public DatabaseDeleteWriter open(Metrics writerMetrics) throws SQLException, IOException {
 		super.open(writerMetrics);
-		deleteStmt = new DatabaseDeleteStatement(this.db, this.sqlTableName);
+		deleteStmt = addStatement(new DatabaseDeleteStatement(this.db, this.sqlTableName));
 //		progressLogger.setOperation("Deleted");
 		return this;
 	}
 	
+	/**
+	 * Records are read from sys_audit_delete, which does not have the columns
+	 * of the target table, so they cannot be streamed using {@link #getFieldIndex()}.
+	 */
+	@Override
+	public boolean isStreaming() {
+		return false;
+	}
+
 	@Override
 	void writeRecord(TableRecord rec, Metrics writerMetrics) throws SQLException {
 		assert rec.getTable().getName().equals("sys_audit_delete");
@@ -36,18 +52,113 @@ public class DatabaseDeleteWriter extends DatabaseTableWriter {
 		deleteRecord(key, writerMetrics);
 	}
 	
+	@Override
+	void writeBatch(RecordList recs, Metrics writerMetrics) throws SQLException {
+		List<RecordKey> keys = new ArrayList<RecordKey>(recs.size());
+		for (TableRecord rec : recs) {
+			assert rec.getTable().getName().equals("sys_audit_delete");
+			RecordKey key = rec.getKey("documentkey");
+			assert key != null;
+			keys.add(key);
+		}
+		deleteBatch(keys, writerMetrics);
+	}
+
 	void  deleteRecords(KeySet keys, Metrics writerMetrics, ProgressLogger progressLogger) 
 			throws SQLException {
+		int deletedBefore = writerMetrics.getDeleted();
+		int skippedBefore = writerMetrics.getSkipped();
+		long start = System.nanoTime();
+		List<RecordKey> batch = new ArrayList<RecordKey>(batchSize);
 		for (RecordKey key : keys) {
-			deleteRecord(key, writerMetrics);
+			batch.add(key);
+			if (batch.size() >= batchSize) {
+				deleteBatch(batch, writerMetrics);
+				batch.clear();
+			}
 		}
-		db.commit();		
+		if (batch.size() > 0) deleteBatch(batch, writerMetrics);
+		long executed = System.nanoTime();
+		writerMetrics.addNanos(Phase.EXECUTE, executed - start);
+		db.commit();
+		long committed = System.nanoTime() - executed;
+		writerMetrics.addNanos(Phase.COMMIT, committed);
+		commitLatency.observe(committed);
+		logger.info(Log.PROCESS, String.format("Deleted %d of %d keys (not found=%d)",
+			writerMetrics.getDeleted() - deletedBefore, keys.size(),
+			writerMetrics.getSkipped() - skippedBefore));
 	}
-	
+
+	/**
+	 * Delete the keys using a JDBC batch.
+	 * A key is counted as skipped if its update count is zero.
+	 * If the batch fails then it is rolled back and the keys are deleted one at a time.
+	 * If the driver does not report a count for each key ({@link Statement#SUCCESS_NO_INFO})
+	 * then the batch is also rolled back, and all later keys are deleted one at a time,
+	 * so that the number of rows deleted is always known.
+	 */
+	void deleteBatch(List<RecordKey> keys, Metrics writerMetrics) throws SQLException {
+		if (keys.size() == 1 || !batchCounts) {
+			for (RecordKey key : keys) {
+				deleteRecord(key, writerMetrics);
+			}
+			return;
+		}
+		Savepoint savepoint = db.beginBatch();
+		int[] counts;
+		try {
+			for (RecordKey key : keys) {
+				logger.trace(Log.PROCESS, "Delete " + key);
+				deleteStmt.addBatch(key);
+			}
+			long start = System.nanoTime();
+			counts = deleteStmt.executeBatch();
+			executeLatency.observe(System.nanoTime() - start);
+		}
+		catch (SQLException e) {
+			logger.debug(Log.PROCESS, String.format(
+				"batch of %d failed: %s: %s", keys.size(), e.getClass().getName(), e.getMessage()));
+			deleteStmt.clearBatch();
+			db.rollbackBatch(savepoint);
+			for (RecordKey key : keys) {
+				deleteRecord(key, writerMetrics);
+			}
+			return;
+		}
+		assert counts.length == keys.size();
+		for (int i = 0; i < counts.length; ++i) {
+			if (counts[i] < 0) {
+				logger.info(Log.PROCESS, String.format(
+					"driver did not report delete counts (%d); deleting one key at a time", counts[i]));
+				batchCounts = false;
+				db.rollbackBatch(savepoint);
+				for (RecordKey key : keys) {
+					deleteRecord(key, writerMetrics);
+				}
+				return;
+			}
+		}
+		db.endBatch(savepoint);
+		int deleted = 0, skipped = 0;
+		for (int i = 0; i < counts.length; ++i) {
+			if (counts[i] > 0) {
+				deleted += 1;
+			}
+			else {
+				logger.debug(Log.PROCESS, "Delete: Not found: " + keys.get(i));
+				skipped += 1;
+			}
+		}
+		logger.debug(Log.PROCESS, String.format(
+			"batch of %d: deleted=%d not found=%d", keys.size(), deleted, skipped));
+		writerMetrics.addDeleted(deleted);
+		writerMetrics.addSkipped(skipped);
+	}
+
 	private void deleteRecord(RecordKey key, Metrics writerMetrics) throws SQLException {
-		logger.info(Log.PROCESS, "Delete " + key);		
+		logger.debug(Log.PROCESS, "Delete " + key);
 		if (deleteStmt.deleteRecord(key)) {
-			writerMetrics.incrementDeleted();			
+			writerMetrics.incrementDeleted();
 		}
 		else {
 			logger.warn(Log.PROCESS, "Delete: Not found: " + key);
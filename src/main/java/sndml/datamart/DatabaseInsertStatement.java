@@ -30,15 +30,30 @@ public class DatabaseInsertStatement extends DatabaseStatement {
 		return generator.getTemplate(templateName, sqlTableName, map);
 	}
 	
-	public void insert(TableRecord rec) throws SQLException {
+	private void bind(TableRecord rec) throws SQLException {
+		long start = System.nanoTime();
 		setRecord(rec);
 		int n = columns.size();
 		for (int i = 0; i < n; ++i) {
 			bindField(i + 1, i);
 		}
+		bindNanos += System.nanoTime() - start;
+	}
+	
+	public void insert(TableRecord rec) throws SQLException {
+		bind(rec);
 		int count = stmt.executeUpdate();
 		if (count > 1) throw new AssertionError("insert count=" + count);		
 	}
+	
+	/**
+	 * Bind a record and add it to the current batch.
+	 * The batch is sent by {@link #executeBatch()}.
+	 */
+	public void addBatch(TableRecord rec) throws SQLException {
+		bind(rec);
+		stmt.addBatch();
+	}
 		
 
 }
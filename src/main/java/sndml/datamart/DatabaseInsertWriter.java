@@ -2,12 +2,14 @@ package sndml.datamart;
 
 import java.io.IOException;
 import java.sql.SQLException;
+import java.sql.Savepoint;
 import java.sql.SQLIntegrityConstraintViolationException;
 import java.util.regex.Pattern;
 
 import sndml.servicenow.RecordKey;
 import sndml.servicenow.Log;
 import sndml.servicenow.Metrics;
+import sndml.servicenow.RecordList;
 import sndml.servicenow.TableRecord;
 import sndml.servicenow.Table;
 
@@ -24,27 +26,38 @@ public class DatabaseInsertWriter extends DatabaseTableWriter {
 	public DatabaseInsertWriter open(Metrics writerMetrics) 
 			throws SQLException, IOException {
 		super.open(writerMetrics);
-		insertStmt = new DatabaseInsertStatement(this.db, this.sqlTableName, columns);
+		insertStmt = addStatement(new DatabaseInsertStatement(this.db, this.sqlTableName, columns));
 		return this;
 	}
 	
 	Pattern primaryKeyViolation = 
 			Pattern.compile("\\b(primary key|unique constraint)\\b", Pattern.CASE_INSENSITIVE);
 		
+	/**
+	 * Insert a single record, skipping it if the key is a duplicate.
+	 * The insert is run as a batch of one (see {@link Database#beginBatch()}),
+	 * so that if a transaction is in progress a duplicate only rolls back to the
+	 * savepoint. Otherwise a database such as PostgreSQL would refuse every later
+	 * statement in the transaction.
+	 */
 	@Override
 	void writeRecord(TableRecord rec, Metrics writerMetrics) throws SQLException {
 		RecordKey key = rec.getKey();
 		logger.trace(Log.PROCESS, "Insert " + key);
+		Savepoint savepoint = db.beginBatch();
 		try {
 			insertStmt.insert(rec);
+			db.endBatch(savepoint);
 			writerMetrics.incrementInserted();
 		}
 		catch (SQLIntegrityConstraintViolationException e) {
+			db.rollbackBatch(savepoint);
 			logger.debug(Log.PROCESS, e.getClass().getName() + ": " + e.getMessage());
 			logger.warn(Log.PROCESS, "Failed/Skipped " + key);
 			writerMetrics.incrementSkipped();
 		}
 		catch (SQLException e) {
+			db.rollbackBatch(savepoint);
 			logger.debug(Log.PROCESS, e.getClass().getName() + ": " + e.getMessage());
 			if (primaryKeyViolation.matcher(e.getMessage()).find()) {
 				logger.warn(Log.PROCESS, "Failed/Skipped " + key);
@@ -55,5 +68,34 @@ public class DatabaseInsertWriter extends DatabaseTableWriter {
 			}
 		}
 	}
+	
+	/**
+	 * Insert the records using a JDBC batch.
+	 * If the batch fails (for example because of a duplicate key)
+	 * then it is rolled back and the records are inserted one at a time,
+	 * so that duplicates are skipped.
+	 */
+	@Override
+	void writeBatch(RecordList recs, Metrics writerMetrics) throws SQLException {
+		Savepoint savepoint = db.beginBatch();
+		try {
+			for (TableRecord rec : recs) {
+				logger.trace(Log.PROCESS, "Insert " + rec.getKey());
+				insertStmt.addBatch(rec);
+			}
+			insertStmt.executeBatch();
+			db.endBatch(savepoint);
+			writerMetrics.addInserted(recs.size());
+		}
+		catch (SQLException e) {
+			logger.debug(Log.PROCESS, String.format(
+				"batch of %d failed: %s: %s", recs.size(), e.getClass().getName(), e.getMessage()));
+			insertStmt.clearBatch();
+			db.rollbackBatch(savepoint);
+			for (TableRecord rec : recs) {
+				writeRecord(rec, writerMetrics);
+			}
+		}
+	}
 
 }
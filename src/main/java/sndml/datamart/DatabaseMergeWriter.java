@@ -0,0 +1,171 @@
+package sndml.datamart;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+import sndml.servicenow.Log;
+import sndml.servicenow.Metrics;
+import sndml.servicenow.RecordList;
+import sndml.servicenow.Table;
+import sndml.servicenow.TableRecord;
+
+/**
+ * Updates or inserts records by loading each page into a staging table
+ * and then applying the page to the target table with set-based statements.
+ * <p>The staging table is created when the writer is opened
+ * (using the <b>create_staging</b> template and the columns of the target table)
+ * and dropped when it is closed. The name of the staging table is derived from
+ * the writer name plus a random suffix, so that jobs which write to the same
+ * target table do not share a staging table. For each page the writer</p>
+ * <ol>
+ * <li>inserts the records into the staging table using a JDBC batch,</li>
+ * <li>runs the <b>merge_update</b> template (an UPDATE ... FROM or MERGE),</li>
+ * <li>runs the <b>merge_insert</b> template (an INSERT ... SELECT WHERE NOT EXISTS) if present,</li>
+ * <li>and deletes the rows from the staging table.</li>
+ * </ol>
+ * <p>If any step fails then the page is rolled back and
+ * written by {@link DatabaseUpdateWriter}.</p>
+ * <p>This writer is used if the job specifies <b>staging: true</b>.</p>
+ */
+public class DatabaseMergeWriter extends DatabaseUpdateWriter {
+
+	static final String STAGING_INFIX = "_stg_";
+	// leaves room for the infix and suffix within a 30 character identifier
+	static final int STAGING_PREFIX_LENGTH = 16;
+
+	protected final String stagingTableName;
+	protected DatabaseInsertStatement stagingStmt;
+	private String mergeUpdate;
+	private String mergeInsert; // null if the dialect does a single MERGE
+	private String clearStaging;
+
+	public DatabaseMergeWriter(Database db, Table table, String sqlTableName, String writerName)
+			throws IOException, SQLException {
+		super(db, table, sqlTableName, writerName);
+		this.stagingTableName = getStagingTableName(writerName == null ? sqlTableName : writerName);
+		this.batchSize = db.getBulkSize();
+	}
+
+	/**
+	 * Return a staging table name which is unique to this writer.
+	 */
+	static String getStagingTableName(String writerName) {
+		String prefix = writerName.toLowerCase().replaceAll("[^a-z0-9_]", "_");
+		if (prefix.length() > STAGING_PREFIX_LENGTH) prefix = prefix.substring(0, STAGING_PREFIX_LENGTH);
+		return String.format("%s%s%08x", prefix, STAGING_INFIX, ThreadLocalRandom.current().nextInt());
+	}
+
+	/**
+	 * Return true if the dialect has the templates required by this writer.
+	 */
+	static boolean isSupported(Database db) {
+		Generator generator = db.getGenerator();
+		return generator.hasTemplate("create_staging") &&
+			generator.hasTemplate("merge_update") &&
+			generator.hasTemplate("merge_assign");
+	}
+
+	@Override
+	public DatabaseMergeWriter open(Metrics writerMetrics) throws SQLException, IOException {
+		super.open(writerMetrics);
+		Generator generator = db.getGenerator();
+		Map<String,String> vars = getTemplateVars();
+		db.executeStatement(generator.getTemplate("create_staging", sqlTableName, vars));
+		db.commit();
+		stagingStmt = addStatement(new DatabaseInsertStatement(this.db, stagingTableName, columns));
+		mergeUpdate = generator.getTemplate("merge_update", sqlTableName, vars);
+		mergeInsert = generator.hasTemplate("merge_insert") ?
+			generator.getTemplate("merge_insert", sqlTableName, vars) : null;
+		clearStaging = "DELETE FROM " + generator.qualifiedTableName(stagingTableName);
+		logger.debug(Log.INIT, mergeUpdate);
+		if (mergeInsert != null) logger.debug(Log.INIT, mergeInsert);
+		return this;
+	}
+
+	/**
+	 * Variables for the staging templates.
+	 * In addition to those documented in {@link DatabaseUpsertStatement}
+	 * <b>$staging</b> is the name of the staging table.
+	 */
+	private Map<String,String> getTemplateVars() {
+		Generator generator = db.getGenerator();
+		final String fieldSeparator = ",\n";
+		StringBuilder fieldnames = new StringBuilder();
+		StringBuilder updatemap = new StringBuilder();
+		StringBuilder sourcevalues = new StringBuilder();
+		for (int i = 0; i < columns.size(); ++i) {
+			String name = generator.sqlQuote(columns.get(i).getName());
+			if (i > 0) {
+				fieldnames.append(fieldSeparator);
+				sourcevalues.append(",");
+			}
+			fieldnames.append(name);
+			sourcevalues.append("s." + name);
+			// Skip column 0 which is the sys_id
+			if (i > 0) {
+				if (i > 1) updatemap.append(fieldSeparator);
+				HashMap<String,String> assign = new HashMap<String,String>();
+				assign.put("column", name);
+				updatemap.append(generator.getTemplate("merge_assign", sqlTableName, assign));
+			}
+		}
+		HashMap<String,String> vars = new HashMap<String,String>();
+		vars.put("staging", generator.sqlCase(stagingTableName));
+		vars.put("fieldnames", fieldnames.toString());
+		vars.put("updatemap", updatemap.toString());
+		vars.put("sourcevalues", sourcevalues.toString());
+		return vars;
+	}
+
+	@Override
+	void writeBatch(RecordList recs, Metrics writerMetrics) throws SQLException {
+		Savepoint savepoint = db.beginBatch();
+		Statement stmt = db.getConnection().createStatement();
+		try {
+			for (TableRecord rec : recs) {
+				stagingStmt.addBatch(rec);
+			}
+			stagingStmt.executeBatch();
+			int updated = stmt.executeUpdate(mergeUpdate);
+			int inserted = (mergeInsert == null) ? 0 : stmt.executeUpdate(mergeInsert);
+			stmt.executeUpdate(clearStaging);
+			db.endBatch(savepoint);
+			logger.debug(Log.PROCESS, String.format(
+				"merged %d rows: updated=%d inserted=%d", recs.size(), updated, inserted));
+			// a single MERGE does not report which rows were inserted
+			writerMetrics.addUpdated(updated);
+			writerMetrics.addInserted(inserted);
+		}
+		catch (SQLException e) {
+			logger.warn(Log.PROCESS, String.format(
+				"merge of %d rows failed; using update: %s", recs.size(), e.getMessage()));
+			stagingStmt.clearBatch();
+			db.rollbackBatch(savepoint);
+			super.writeBatch(recs, writerMetrics);
+		}
+		finally {
+			stmt.close();
+		}
+	}
+
+	@Override
+	public void close(Metrics metrics) {
+		try {
+			super.close(metrics);
+		}
+		finally {
+			try {
+				db.dropTable(stagingTableName, true);
+				db.commit();
+			} catch (SQLException e) {
+				throw new ResourceException(e);
+			}
+		}
+	}
+
+}
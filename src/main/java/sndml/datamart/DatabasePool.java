@@ -0,0 +1,153 @@
+package sndml.datamart;
+
+import java.net.URISyntaxException;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+
+import org.slf4j.Logger;
+
+import sndml.servicenow.Log;
+
+/**
+ * Retains idle {@link Database} connections so that they can be reused
+ * by later jobs, avoiding the cost of connecting, running the
+ * <tt>&lt;initialize&gt;</tt> statements and preparing statements.
+ * <p>The pool is enabled by setting <b>database.pool_size</b> to a value greater than 0,
+ * which is the maximum number of idle connections retained.
+ * The number of connections in use is not limited.
+ * An idle connection is closed after <b>database.pool_idle_timeout</b> seconds (default 300),
+ * and is validated using <tt>Connection.isValid</tt> with a timeout of
+ * <b>database.pool_validate_timeout</b> seconds (default 5) before it is reused.</p>
+ * <p>A pooled connection is returned to the pool by {@link Database#close()}.</p>
+ */
+public class DatabasePool {
+
+	static final String DEFAULT_IDLE_TIMEOUT = "300";
+	static final String DEFAULT_VALIDATE_TIMEOUT = "5";
+
+	private final Logger logger = Log.logger(this.getClass());
+	private final ConnectionProfile profile;
+	private final int maxIdle;
+	private final long idleMillis;
+	private final int validateSeconds;
+	private final Deque<Idle> idle = new ArrayDeque<Idle>();
+
+	private int created = 0;
+	private int reused = 0;
+
+	private static class Idle {
+		final Database db;
+		final long released;
+
+		Idle(Database db) {
+			this.db = db;
+			this.released = System.currentTimeMillis();
+		}
+	}
+
+	DatabasePool(ConnectionProfile profile, int maxIdle) {
+		assert maxIdle > 0;
+		this.profile = profile;
+		this.maxIdle = maxIdle;
+		this.idleMillis = 1000L * Integer.parseInt(
+			profile.getProperty("database.pool_idle_timeout", DEFAULT_IDLE_TIMEOUT));
+		this.validateSeconds = Integer.parseInt(
+			profile.getProperty("database.pool_validate_timeout", DEFAULT_VALIDATE_TIMEOUT));
+	}
+
+	/**
+	 * Return an idle connection which is still valid, or open a new one.
+	 */
+	public Database acquire() throws SQLException {
+		while (true) {
+			Idle entry;
+			synchronized (this) {
+				evictExpired();
+				entry = idle.pollFirst();
+			}
+			if (entry == null) break;
+			if (entry.db.isValid(validateSeconds)) {
+				synchronized (this) { reused += 1; }
+				logger.debug(Log.INIT, "reusing database connection");
+				return entry.db;
+			}
+			logger.info(Log.INIT, "discarding invalid database connection");
+			closeQuietly(entry.db);
+		}
+		Database db;
+		try {
+			db = new Database(profile);
+		} catch (URISyntaxException e) {
+			throw new ResourceException(e);
+		}
+		db.setPool(this);
+		synchronized (this) { created += 1; }
+		return db;
+	}
+
+	/**
+	 * Return a connection to the pool.
+	 * Any uncommitted work is rolled back.
+	 * The connection is closed if the pool is full or the connection cannot be reset.
+	 */
+	void release(Database db) {
+		try {
+			db.reset();
+		}
+		catch (SQLException e) {
+			logger.warn(Log.FINISH, "unable to reset database connection: " + e.getMessage());
+			closeQuietly(db);
+			return;
+		}
+		Database discard = null;
+		synchronized (this) {
+			evictExpired();
+			if (idle.size() < maxIdle)
+				idle.addFirst(new Idle(db));
+			else
+				discard = db;
+		}
+		if (discard != null) closeQuietly(discard);
+	}
+
+	// called while synchronized
+	private void evictExpired() {
+		long now = System.currentTimeMillis();
+		Iterator<Idle> iter = idle.descendingIterator();
+		while (iter.hasNext()) {
+			Idle entry = iter.next();
+			if (now - entry.released < idleMillis) break;
+			iter.remove();
+			logger.debug(Log.FINISH, "closing idle database connection");
+			closeQuietly(entry.db);
+		}
+	}
+
+	/**
+	 * Close all idle connections.
+	 */
+	public synchronized void close() {
+		while (!idle.isEmpty()) closeQuietly(idle.pollFirst().db);
+	}
+
+	private void closeQuietly(Database db) {
+		try {
+			db.closeConnection();
+		}
+		catch (SQLException e) {
+			logger.warn(Log.FINISH, "close: " + e.getMessage());
+		}
+	}
+
+	synchronized int getIdleCount() {
+		return idle.size();
+	}
+
+	@Override
+	public synchronized String toString() {
+		return String.format("created=%d reused=%d idle=%d", created, reused, idle.size());
+	}
+
+}
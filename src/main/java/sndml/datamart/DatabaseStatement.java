@@ -1,16 +1,12 @@
 package sndml.datamart;
 
-import java.io.UnsupportedEncodingException;
-import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.sql.Types;
 import java.util.Calendar;
-import java.util.regex.Pattern;
 import org.slf4j.Logger;
 
-import sndml.servicenow.DateTime;
-import sndml.servicenow.InvalidDateTimeException;
+import sndml.servicenow.CompactRecord;
 import sndml.servicenow.Log;
 import sndml.servicenow.TableRecord;
 import sndml.servicenow.RecordKey;
@@ -35,13 +31,13 @@ public abstract class DatabaseStatement {
 	final String stmtText;
 	final PreparedStatement stmt;
 	TableRecord rec;
+	// non-null if rec values can be read by column position
+	CompactRecord compactRec;
 
-    private final Pattern dateTimePattern = 
-        	Pattern.compile("\\d\\d\\d\\d-\\d\\d-\\d\\d \\d\\d:\\d\\d:\\d\\d");
-
-    
 	final protected Logger logger = Log.logger(this.getClass());
 	final boolean traceEnabled;
+	final FieldConverter converter;
+	long bindNanos = 0; // time spent converting and binding values
 	
 	public DatabaseStatement(Database db, String templateName, String sqlTableName, ColumnDefinitions columns) throws SQLException {
 		this.db = db;
@@ -49,18 +45,43 @@ public abstract class DatabaseStatement {
 		this.sqlTableName = sqlTableName;
 		this.templateName = templateName;
 		this.generator = db.getGenerator();
-		Connection dbc = db.getConnection();
 		this.columns = columns;
 		this.stmtText = buildStatement();
 		logger.debug(Log.SCHEMA, stmtText);
-		this.stmt = dbc.prepareStatement(stmtText);
+		this.stmt = db.prepareStatement(templateName, sqlTableName, stmtText);
 		traceEnabled = logger.isTraceEnabled(Log.BIND);
+		converter = new FieldConverter(db, logger);
 	}
 
 	abstract String buildStatement() throws SQLException;
+	
+	/**
+	 * Execute all statements added with <b>addBatch</b>.
+	 * @return The update count for each statement
+	 */
+	int[] executeBatch() throws SQLException {
+		return stmt.executeBatch();
+	}
+	
+	void clearBatch() throws SQLException {
+		stmt.clearBatch();
+	}
+
+	/**
+	 * Return the prepared statement to the statement cache of the database.
+	 * This object cannot be used after it is closed.
+	 */
+	void close() throws SQLException {
+		db.releaseStatement(templateName, sqlTableName, stmtText, stmt);
+	}
 		
 	protected void setRecord(TableRecord rec) {
 		this.rec = rec;
+		if (rec instanceof CompactRecord && 
+				((CompactRecord) rec).getIndex() == columns.getFieldIndex())
+			this.compactRec = (CompactRecord) rec;
+		else
+			this.compactRec = null;
 	}
 		
 	/**
@@ -86,7 +107,8 @@ public abstract class DatabaseStatement {
 		assert this.rec != null;
 		DatabaseFieldDefinition defn = columns.get(glideCol);
 		String fieldname = defn.getGlideName();
-		String value = rec.getValue(fieldname);
+		String value = 
+			compactRec == null ? rec.getValue(fieldname) : compactRec.getValue(glideCol);
 		try {
 			bindField(bindCol, defn, fieldname, value);
 		}
@@ -115,184 +137,37 @@ public abstract class DatabaseStatement {
 	protected void bindField(int bindCol, DatabaseFieldDefinition defn, String fieldname, String value) 
 			throws SQLException {
 		int sqltype = defn.sqltype;
+		Object obj = converter.convert(rec.getKey(), defn, fieldname, value);
 		// If value is null then bind to null and exit
-		if (value == null) {
+		if (obj == null) {
 			stmt.setNull(bindCol, sqltype);
 			return;
 		}		
-		if ((sqltype == Types.NUMERIC || sqltype == Types.DECIMAL || sqltype == Types.INTEGER || 
-					sqltype == Types.DOUBLE || sqltype == Types.BIGINT) && 
-				value.length() == 19) {
-			// If the target data type is numeric
-			// and the value appears to be a date (dddd-dd-dd dd:dd:dd)
-			// then it must be a duration
-			// so try to convert it to a number of seconds
-			if (dateTimePattern.matcher(value).matches()) {
-				try {
-					DateTime timestamp = new DateTime(value, DateTime.DATE_TIME);
-					long seconds = timestamp.toDate().getTime() / 1000L;
-					if (traceEnabled)
-						logger.trace(Log.BIND, "date " + fieldname + " " + value + "=" + seconds);
-					if (seconds < 0L) {
-						logger.warn(Log.PROCESS, rec.getKey() + " duration underflow: " +
-							fieldname + "=" + value);
-						value = null;
-					}
-					if (seconds > 999999999L && sqltype == Types.INTEGER) {
-						logger.warn(Log.PROCESS, rec.getKey() + " duration overflow: " +
-							fieldname + "=" + value);
-						value = null;
-					}
-					if (value != null) {
-						value = Long.toString(seconds);
-					}
-				} catch (InvalidDateTimeException e) {
-					logger.warn(Log.PROCESS, rec.getKey() + " duration error: " +
-							fieldname + "=" + value);
-					value = null;
-				}
-				if (value == null) {
-					stmt.setNull(bindCol, sqltype);
-					return;					
-				}
-			}
-		}
-		assert value != null;
-		// If the SQL type is VARCHAR, then check for an over-size value
-		// and truncate if necessary
-		if (sqltype == Types.VARCHAR || sqltype == Types.CHAR) {
-			int oldSize = value.length();
-			int maxSize = defn.getSize();
-			if (value.length() > maxSize) {
-				value = value.substring(0,  maxSize);
-			}
-			if (generator.getDialectName().equals("oracle_")) {
-				// This is a workaround for an apparent bug in the Oracle JDBC 
-				// driver which occasionally generates an ORA-01461 error when 
-				// inserting from a text field containing multi-byte characters
-				// into a VARCHAR2 column.
-				// Keep chopping more characters off the end of the string until
-				// the number of BYTES is less than the field size.
-				try {
-					while (value.getBytes("UTF8").length > maxSize)
-						value = value.substring(0, value.length() - 1);										
-				}
-				catch (UnsupportedEncodingException e) {
-					throw new RuntimeException(e);
-				}
-			}
-			if (db.isPostgreSQL()) {
-				// PostgreSQL doesn't support storing NULL characters in text fields
-				value = value.replaceAll("\u0000", "");
-			}
-			if (value.length() != oldSize) {
-				String message = rec.getKey() + " truncated: " + fieldname +
-					" from " + oldSize + " to " + value.length();
-				if (db.getWarnOnTruncate())
-					logger.warn(Log.PROCESS, message);
-				else
-					logger.debug(Log.PROCESS, message);
-			}
-		}
 		if (traceEnabled) {
-			int len = (value == null ? 0 : value.length());
-			logger.trace(Log.BIND, String.format("bind %d %s %s=%s (len=%d)",
-					bindCol, sqlTypeName(sqltype), fieldname, value, len));
-		}
-		assert value != null;
-		switch (sqltype) {
-		case Types.DATE :
-			DateTime dt;
-			try {
-				dt = new DateTime(value);
-				java.sql.Date sqldate = new java.sql.Date(dt.getMillisec());
-				stmt.setDate(bindCol, sqldate, calendar);
-			}
-			catch (InvalidDateTimeException e) {
-				logger.warn(Log.PROCESS, rec.getKey() + " date error: " +
-						fieldname + "=" + value);
-				stmt.setDate(bindCol,  null);			
-			}
-			break;
-		case Types.TIMESTAMP :
-			// If the SQL type is TIMESTAMP, then try to bind the field to a java.sql.Timesetamp.
-			// Note that in Oracle the DATE fields have a java.sql type of TIMESTAMP.
-			DateTime ts;
-			try { 
-				ts = new DateTime(value);
-				java.sql.Timestamp sqlts = new java.sql.Timestamp(ts.getMillisec());
-				assert sqlts.getTime() == ts.getMillisec();
-				if (traceEnabled)
-					logger.trace(Log.BIND, String.format("timestamp %s=%s", fieldname, sqlts.toString()));
-				stmt.setTimestamp(bindCol, sqlts, calendar);
-			}
-			catch (InvalidDateTimeException e) {
-				logger.warn(Log.PROCESS, rec.getKey() + " timestamp error: " +
-						fieldname + "=" + value);
-				stmt.setTimestamp(bindCol, null);				
-			}
-			break;
-		case Types.BOOLEAN :
-		case Types.BIT :
-			if (value.equals("1") || value.equalsIgnoreCase("true"))
-				stmt.setBoolean(bindCol, true);
-			else if (value.equals("0") || value.equalsIgnoreCase("false"))
-				stmt.setBoolean(bindCol,  false);
-			else {
-				logger.warn(Log.PROCESS, rec.getKey() + "boolean error: " +
-						fieldname + "=" + value);
-				stmt.setNull(bindCol, sqltype);
-			}
-			break;
-		case Types.TINYINT :
-			value = truncate(fieldname, value);
-			stmt.setByte(bindCol, Byte.parseByte(value));
-			break;
-		case Types.SMALLINT :
-			value = truncate(fieldname, value);
-			stmt.setShort(bindCol, Short.parseShort(value));
-			break;			
-		case Types.INTEGER :
-			value = truncate(fieldname, value);
-			stmt.setInt(bindCol, Integer.parseInt(value));
-			break;
-		case Types.BIGINT:
-			stmt.setLong(bindCol, Long.parseLong(value));
-			break;
-		case Types.DOUBLE :
-		case Types.FLOAT :
-		case Types.NUMERIC :
-		case Types.DECIMAL :
-			stmt.setDouble(bindCol, Double.parseDouble(value));
-			break;
-		default :
-			if (db.isPostgreSQL()) {
-				// PostgreSQL doesn't support storing NULL characters in text fields
-				value = value.replaceAll("\u0000", "");
-			}
-			stmt.setString(bindCol, value);			
+			logger.trace(Log.BIND, String.format("bind %d %s %s=%s",
+					bindCol, sqlTypeName(sqltype), fieldname, obj));
 		}
+		if (obj instanceof java.sql.Date)
+			stmt.setDate(bindCol, (java.sql.Date) obj, calendar);
+		else if (obj instanceof java.sql.Timestamp)
+			stmt.setTimestamp(bindCol, (java.sql.Timestamp) obj, calendar);
+		else if (obj instanceof Boolean)
+			stmt.setBoolean(bindCol, (Boolean) obj);
+		else if (obj instanceof Byte)
+			stmt.setByte(bindCol, (Byte) obj);
+		else if (obj instanceof Short)
+			stmt.setShort(bindCol, (Short) obj);
+		else if (obj instanceof Integer)
+			stmt.setInt(bindCol, (Integer) obj);
+		else if (obj instanceof Long)
+			stmt.setLong(bindCol, (Long) obj);
+		else if (obj instanceof Double)
+			stmt.setDouble(bindCol, (Double) obj);
+		else
+			stmt.setString(bindCol, (String) obj);
 	}
 
-	// Return a string that will not throw an error when parseInt is called
-	private String truncate(String fieldname, String value) {
-		if (value.length() == 0) return "0";
-		// This is a workaround for the fact that ServiceNow includes decimal portions
-		// in integer fields, which can cause JDBC to choke.
-		int p = value.indexOf('.');
-		if (p > -1) {
-			String message = rec.getKey() + " decimal truncated: " +
-					fieldname + "=" + value;
-			if (db.getWarnOnTruncate())
-				logger.warn(Log.PROCESS, message);
-			else
-				logger.debug(Log.PROCESS, message);
-			return value.substring(0,  p);
-		}
-		return value;
-	}
-	
-	private static String sqlTypeName(int sqltype) {
+	static String sqlTypeName(int sqltype) {
 		switch (sqltype) {
 			case Types.ARRAY:         return "ARRAY";
 			case Types.BIGINT:        return "BIGINT";
@@ -2,11 +2,17 @@ package sndml.datamart;
 
 import java.io.IOException;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.slf4j.Logger;
 
+import sndml.servicenow.CompactRecord;
+import sndml.servicenow.FieldIndex;
+import sndml.servicenow.LatencyHistogram;
 import sndml.servicenow.Log;
 import sndml.servicenow.Metrics;
+import sndml.servicenow.Metrics.Phase;
 import sndml.servicenow.ProgressLogger;
 import sndml.servicenow.TableRecord;
 import sndml.servicenow.RecordList;
@@ -21,7 +27,9 @@ import sndml.servicenow.Table;
  * <li>{@link DatabaseUpdateWriter}</li>
  * <li>{@link DatabaseDeleteWriter}</li>
  * </ul>
- *
+ * <p>Records are collected and passed to {@link #writeBatch} in groups of
+ * <b>database.batch_size</b> so that subclasses can use JDBC batches.</p>
+ * <p>By default the writer commits after each page. See {@link CommitPolicy}.</p>
  */
 public abstract class DatabaseTableWriter extends RecordWriter {
 
@@ -30,6 +38,26 @@ public abstract class DatabaseTableWriter extends RecordWriter {
 	final protected String sqlTableName;
 	
 	protected ColumnDefinitions columns;
+	protected int batchSize;
+	private RecordList pending;
+	private long pendingBytes = 0;
+	// records streamed from the current response, which are written by endPage
+	private RecordList streamed;
+	private CommitPolicy commitPolicy = CommitPolicy.EVERY_PAGE;
+	// rows and estimated bytes written since the last commit
+	private int uncommittedRows = 0;
+	private long uncommittedBytes = 0;
+	private long lastCommit = System.currentTimeMillis();
+	// true if autocommit was turned off when the writer was opened
+	private boolean restoreAutoCommit = false;
+	// statements which are returned to the database when the writer is closed
+	private final List<DatabaseStatement> statements = new ArrayList<DatabaseStatement>();
+	// time spent converting values by subclasses which do not use a DatabaseStatement
+	protected long bindNanos = 0;
+	
+	// latency of SQL execution (each batch) and commits for all writers
+	static final LatencyHistogram executeLatency = new LatencyHistogram();
+	static final LatencyHistogram commitLatency = new LatencyHistogram();
 	
 	final Logger logger = Log.logger(this.getClass());
 	
@@ -42,13 +70,46 @@ public abstract class DatabaseTableWriter extends RecordWriter {
 		this.db = db;
 		this.table = table;
 		this.sqlTableName = sqlTableName;
+		this.batchSize = db.getBatchSize();
+		this.pending = new RecordList(table, batchSize);
+		this.streamed = new RecordList(table);
 		Log.setTableContext(this.table);
 	}
 		
+	/**
+	 * Use column definitions which have already been read for this table,
+	 * so that writers for the same table share a {@link FieldIndex}.
+	 * Must be called before {@link #open(Metrics)}.
+	 */
+	void setColumns(ColumnDefinitions columns) {
+		this.columns = columns;
+	}
+
+	ColumnDefinitions getColumns() {
+		return this.columns;
+	}
+
+	public static LatencyHistogram getExecuteLatency() {
+		return executeLatency;
+	}
+	
+	public static LatencyHistogram getCommitLatency() {
+		return commitLatency;
+	}
+	
+	void setCommitPolicy(CommitPolicy policy) {
+		assert policy != null;
+		this.commitPolicy = policy;
+	}
+
 	@Override
 	public DatabaseTableWriter open(Metrics metrics) throws SQLException, IOException {
 		super.open(metrics);
-		columns = new ColumnDefinitions(this.db, this.table, this.sqlTableName);
+		if (columns == null)
+			columns = new ColumnDefinitions(this.db, this.table, this.sqlTableName);
+		// the job turns autocommit off on its own connection, but not on the other connections
+		// of a DatabaseWriterPool
+		if (!commitPolicy.isEveryPage()) restoreAutoCommit = db.disableAutoCommit();
 		metrics.start();
 		return this;
 	}
@@ -56,7 +117,11 @@ public abstract class DatabaseTableWriter extends RecordWriter {
 	@Override
 	public void close(Metrics metrics) {
 		try {
-			db.commit();
+			flush(metrics);
+			commit(metrics);
+			for (DatabaseStatement stmt : statements) stmt.close();
+			statements.clear();
+			if (restoreAutoCommit) db.restoreAutoCommit(true);
 		} catch (SQLException e) {
 			throw new ResourceException(e);
 		}
@@ -64,6 +129,21 @@ public abstract class DatabaseTableWriter extends RecordWriter {
 		super.close(metrics);
 	}
 
+	/**
+	 * Register a statement so that its bind time is recorded
+	 * and it is returned to the statement cache when the writer is closed.
+	 */
+	protected <T extends DatabaseStatement> T addStatement(T stmt) {
+		statements.add(stmt);
+		return stmt;
+	}
+
+	private long getBindNanos() {
+		long result = bindNanos;
+		for (DatabaseStatement stmt : statements) result += stmt.bindNanos;
+		return result;
+	}
+
 	@Override
 	public synchronized void processRecords(
 			RecordList recs, Metrics metrics, ProgressLogger progressLogger) 
@@ -73,12 +153,134 @@ public abstract class DatabaseTableWriter extends RecordWriter {
 		for (TableRecord rec : recs) {
 			logger.debug(Log.PROCESS, String.format(
 				"processing %s %s", rec.getCreatedTimestamp(), rec.getKey()));
-			writeRecord(rec, metrics);
+			addPending(rec, metrics);
+		}
+		flush(metrics);
+		if (commitPolicy.isEveryPage()) commit(metrics); else commitIfDue(metrics);
+		progressLogger.logProgress();
+	}
+	
+	@Override
+	public boolean isStreaming() {
+		return true;
+	}
+	
+	@Override
+	public FieldIndex getFieldIndex() {
+		assert columns != null;
+		return columns.getFieldIndex();
+	}
+	
+	/**
+	 * Hold a streamed record until {@link #endPage(Metrics, ProgressLogger)}.
+	 * Nothing is written while the response is being read, so that the
+	 * request permit is not held while waiting for the database.
+	 */
+	@Override
+	public synchronized void processRecord(TableRecord rec, Metrics metrics) 
+			throws IOException, SQLException {
+		assert metrics != null;
+		streamed.add(rec);
+	}
+	
+	@Override
+	public synchronized void endPage(Metrics metrics, ProgressLogger progressLogger) 
+			throws IOException, SQLException {
+		assert progressLogger != null;
+		RecordList recs = streamed;
+		streamed = new RecordList(table);
+		for (TableRecord rec : recs) {
+			logger.debug(Log.PROCESS, String.format(
+				"processing %s %s", rec.getCreatedTimestamp(), rec.getKey()));
+			addPending(rec, metrics);
 		}
-		db.commit();
+		flush(metrics);
+		if (commitPolicy.isEveryPage()) commit(metrics); else commitIfDue(metrics);
 		progressLogger.logProgress();
 	}
 	
+	private void addPending(TableRecord rec, Metrics metrics) throws SQLException {
+		pending.add(rec);
+		if (commitPolicy.hasBytes()) pendingBytes += estimateBytes(rec);
+		if (pending.size() >= batchSize) {
+			flush(metrics);
+			if (!commitPolicy.isEveryPage()) commitIfDue(metrics);
+		}
+	}
+	
+	/**
+	 * Estimate the size of a record as the total length of its column values.
+	 */
+	private long estimateBytes(TableRecord rec) {
+		CompactRecord compactRec = (rec instanceof CompactRecord &&
+			((CompactRecord) rec).getIndex() == columns.getFieldIndex()) ? (CompactRecord) rec : null;
+		long result = 0;
+		for (int i = 0; i < columns.size(); ++i) {
+			String value = (compactRec == null) ? 
+				rec.getValue(columns.get(i).getGlideName()) : compactRec.getValue(i);
+			if (value != null) result += value.length();
+		}
+		return result;
+	}
+	
+	private void commitIfDue(Metrics metrics) throws SQLException {
+		long elapsed = System.currentTimeMillis() - lastCommit;
+		if (commitPolicy.isDue(uncommittedRows, uncommittedBytes, elapsed)) commit(metrics);
+	}
+	
+	/**
+	 * Commit and count the commit if any rows have been written since the last commit.
+	 * Nothing is counted if autocommit is enabled.
+	 */
+	private void commit(Metrics metrics) throws SQLException {
+		long start = System.nanoTime();
+		boolean committed = db.commit();
+		long elapsed = System.nanoTime() - start;
+		metrics.addNanos(Phase.COMMIT, elapsed);
+		if (committed && uncommittedRows > 0) {
+			commitLatency.observe(elapsed);
+			logger.debug(Log.PROCESS, String.format(
+				"commit rows=%d bytes=%d", uncommittedRows, uncommittedBytes));
+			metrics.incrementCommits();
+		}
+		uncommittedRows = 0;
+		uncommittedBytes = 0;
+		lastCommit = System.currentTimeMillis();
+	}
+	
+	/**
+	 * Write any records which have not yet been written.
+	 * The elapsed time is recorded as bind time and execute time.
+	 */
+	protected void flush(Metrics metrics) throws SQLException {
+		if (pending.isEmpty()) return;
+		long bindBefore = getBindNanos();
+		long start = System.nanoTime();
+		if (pending.size() == 1)
+			writeRecord(pending.get(0), metrics);
+		else
+			writeBatch(pending, metrics);
+		long elapsed = System.nanoTime() - start;
+		long bind = getBindNanos() - bindBefore;
+		metrics.addNanos(Phase.BIND, bind);
+		metrics.addNanos(Phase.EXECUTE, Math.max(elapsed - bind, 0));
+		executeLatency.observe(Math.max(elapsed - bind, 0));
+		uncommittedRows += pending.size();
+		uncommittedBytes += pendingBytes;
+		pendingBytes = 0;
+		pending = new RecordList(table, batchSize);
+	}
+	
 	abstract void writeRecord(TableRecord rec, Metrics writerMetrics) throws SQLException;
 	
+	/**
+	 * Write a group of records. 
+	 * The default implementation calls {@link #writeRecord} for each record.
+	 */
+	void writeBatch(RecordList recs, Metrics writerMetrics) throws SQLException {
+		for (TableRecord rec : recs) {
+			writeRecord(rec, writerMetrics);
+		}
+	}
+	
 }
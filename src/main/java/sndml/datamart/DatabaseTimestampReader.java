@@ -5,7 +5,11 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Timestamp;
+import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.TimeZone;
 
 import org.slf4j.Logger;
@@ -15,6 +19,8 @@ import sndml.servicenow.*;
 
 public class DatabaseTimestampReader {
 
+	static final int FETCH_SIZE = 5000;
+
 	final Database database;
 	final Connection dbc;
 	final Logger logger = LoggerFactory.getLogger(this.getClass());
@@ -76,37 +82,137 @@ public class DatabaseTimestampReader {
 	}
 	
 	TimestampHash getTimestamps(String tableName, DateTimeRange created) throws SQLException {
+		PreparedStatement stmt = prepareTimestamps(tableName, created, false);
+		return getQueryResult(stmt);
+	}
+	
+	/**
+	 * Read the next group of keys and timestamps ordered by sys_id.
+	 * Keys which are less than or equal to <b>after</b> are skipped;
+	 * if <b>after</b> is null then reading starts with the first key.
+	 * At most <b>seconds.length</b> rows are read. The keys are added to <b>keys</b>
+	 * and sys_updated_on is stored in <b>seconds</b> as seconds since the epoch.
+	 * The statement is closed before this method returns,
+	 * so the connection may be used for writing between calls.
+	 * @return Number of rows read
+	 */
+	int getOrderedTimestamps(String tableName, DateTimeRange created, RecordKey after,
+			KeySet keys, long[] seconds) throws SQLException {
+		KeyRange range = (after == null) ? null : new KeyRange(after, null);
+		PreparedStatement stmt = prepareTimestamps(tableName, created, range, true);
+		// one more row than requested in case the first row is the starting key
+		stmt.setMaxRows(seconds.length + 1);
+		stmt.setFetchSize(Math.min(seconds.length + 1, FETCH_SIZE));
+		int count = 0;
+		try {
+			ResultSet rs = stmt.executeQuery();
+			while (count < seconds.length && rs.next()) {
+				RecordKey key = new RecordKey(rs.getString(1));
+				if (after != null && key.compareTo(after) <= 0) continue;
+				keys.add(key);
+				seconds[count++] = rs.getTimestamp(2, tzGMT).getTime() / 1000;
+			}
+			rs.close();
+		}
+		finally {
+			stmt.close();
+		}
+		return count;
+	}
+	
+	private PreparedStatement prepareTimestamps(String tableName, DateTimeRange created, boolean ordered) 
+			throws SQLException {
+		return prepareTimestamps(tableName, created, null, ordered);
+	}
+	
+	private PreparedStatement prepareTimestamps(
+			String tableName, DateTimeRange created, KeyRange keys, boolean ordered) throws SQLException {
 		assert tableName != null;
 		Generator generator = database.getGenerator();
 		String stmtText = generator.getTemplate("select_updated", tableName);
-		boolean hasStart = created != null && created.hasStart();
-		boolean hasEnd   = created != null && created.hasEnd();
-		if (hasStart || hasEnd) {
-			stmtText += " WHERE ";
-			String sys_created_name = generator.sqlName("sys_created_on");
-			if (hasStart) stmtText += sys_created_name + " >= ?";
-			if (hasStart && hasEnd) stmtText += " AND ";
-			if (hasEnd) stmtText += sys_created_name + " < ?";
-		}
+		String where = getWhereClause(created, keys);
+		if (where.length() > 0) stmtText += " " + where;
+		if (ordered) stmtText += " ORDER BY " + generator.sqlName("sys_id");
 		logger.debug(Log.INIT, stmtText);
 		PreparedStatement stmt = dbc.prepareStatement(stmtText);
+		bindWhereClause(stmt, created, keys);
+		return stmt;
+	}
+	
+	/**
+	 * Return a WHERE clause for a created range and a key range (either of which may be null),
+	 * or an empty string if there are no conditions.
+	 */
+	private String getWhereClause(DateTimeRange created, KeyRange keys) {
+		Generator generator = database.getGenerator();
+		List<String> terms = new ArrayList<String>(4);
+		String sys_created_name = generator.sqlName("sys_created_on");
+		String sys_id_name = generator.sqlName("sys_id");
+		if (created != null && created.hasStart()) terms.add(sys_created_name + " >= ?");
+		if (created != null && created.hasEnd())   terms.add(sys_created_name + " < ?");
+		if (keys != null && keys.getStart() != null) terms.add(sys_id_name + " >= ?");
+		if (keys != null && keys.getEnd() != null)   terms.add(sys_id_name + " < ?");
+		return terms.isEmpty() ? "" : "WHERE " + String.join(" AND ", terms);
+	}
+	
+	private void bindWhereClause(PreparedStatement stmt, DateTimeRange created, KeyRange keys) 
+			throws SQLException {
 		int bind = 0;
-		if (hasStart) stmt.setTimestamp(++bind, created.getStart().toTimestamp());
-		if (hasEnd)   stmt.setTimestamp(++bind, created.getEnd().toTimestamp());
-		return getQueryResult(stmt);
+		if (created != null && created.hasStart()) stmt.setTimestamp(++bind, created.getStart().toTimestamp());
+		if (created != null && created.hasEnd())   stmt.setTimestamp(++bind, created.getEnd().toTimestamp());
+		if (keys != null && keys.getStart() != null) stmt.setString(++bind, keys.getStart().toString());
+		if (keys != null && keys.getEnd() != null)   stmt.setString(++bind, keys.getEnd().toString());
+	}
+	
+	/**
+	 * Add the keys and timestamps for a range of keys to an existing hash.
+	 */
+	void getTimestamps(String tableName, DateTimeRange created, KeyRange keys, TimestampHash result) 
+			throws SQLException {
+		PreparedStatement stmt = prepareTimestamps(tableName, created, keys, false);
+		getQueryResult(stmt, result);
+	}
+	
+	/**
+	 * Return the row count and maximum sys_updated_on grouped by sys_id prefix.
+	 * Uses the <b>select_buckets</b> template.
+	 */
+	KeyBuckets getBuckets(String tableName, DateTimeRange created, int depth) throws SQLException {
+		Generator generator = database.getGenerator();
+		Map<String,String> vars = new HashMap<String,String>();
+		vars.put("prefix", Integer.toString(depth));
+		vars.put("where", getWhereClause(created, null));
+		String stmtText = generator.getTemplate("select_buckets", tableName, vars);
+		logger.debug(Log.INIT, stmtText);
+		PreparedStatement stmt = dbc.prepareStatement(stmtText);
+		bindWhereClause(stmt, created, null);
+		KeyBuckets result = new KeyBuckets(depth);
+		ResultSet rs = stmt.executeQuery();
+		while (rs.next()) {
+			String prefix = rs.getString(1);
+			int count = rs.getInt(2);
+			Timestamp maxUpdated = rs.getTimestamp(3, tzGMT);
+			result.add(prefix, count, maxUpdated == null ? 0 : maxUpdated.getTime() / 1000);
+		}
+		rs.close();
+		stmt.close();
+		return result;
 	}
 	
 	private TimestampHash getQueryResult(PreparedStatement stmt) throws SQLException {
 		TimestampHash result = new TimestampHash();
+		getQueryResult(stmt, result);
+		return result;	
+	}
+	
+	private void getQueryResult(PreparedStatement stmt, TimestampHash result) throws SQLException {
 		ResultSet rs = stmt.executeQuery();
 		while (rs.next()) {
 			String sys_id = rs.getString(1);
 			Timestamp sys_updated_on = rs.getTimestamp(2, tzGMT);
 			RecordKey key = new RecordKey(sys_id);
-			DateTime value = new DateTime(sys_updated_on);
-			result.put(key, value);
+			result.putSeconds(key, sys_updated_on.getTime() / 1000);
 		}
 		rs.close();
-		return result;	
 	}
 }
@@ -26,7 +26,8 @@ public class DatabaseUpdateStatement extends DatabaseStatement {
 		return generator.getTemplate(templateName, sqlTableName, map);
 	}
 	
-	public boolean update(TableRecord rec) throws SQLException {
+	private void bind(TableRecord rec) throws SQLException {
+		long start = System.nanoTime();
 		setRecord(rec);
 		// Checked when columns is instantiated
 		// assert columns.get(0).getName().toLowerCase().equals("sys_id");
@@ -38,9 +39,23 @@ public class DatabaseUpdateStatement extends DatabaseStatement {
 		// Bind sys_id to the last position
 		// bindField(n, columns.get(0), "sys_id", rec.getKey().toString());
 		bindField(n, 0);
+		bindNanos += System.nanoTime() - start;
+	}
+	
+	public boolean update(TableRecord rec) throws SQLException {
+		bind(rec);
 		int count = stmt.executeUpdate();
 		if (count > 1) throw new AssertionError("update count=" + count);
 		return (count > 0);		
 	}
+	
+	/**
+	 * Bind a record and add it to the current batch.
+	 * The batch is sent by {@link #executeBatch()}.
+	 */
+	public void addBatch(TableRecord rec) throws SQLException {
+		bind(rec);
+		stmt.addBatch();
+	}
 			
 }
@@ -2,10 +2,12 @@ package sndml.datamart;
 
 import java.io.IOException;
 import java.sql.SQLException;
+import java.sql.Savepoint;
 
 import sndml.servicenow.RecordKey;
 import sndml.servicenow.Log;
 import sndml.servicenow.Metrics;
+import sndml.servicenow.RecordList;
 import sndml.servicenow.TableRecord;
 import sndml.servicenow.Table;
 
@@ -13,6 +15,7 @@ public class DatabaseUpdateWriter extends DatabaseTableWriter {
 
 	protected DatabaseInsertStatement insertStmt;
 	protected DatabaseUpdateStatement updateStmt;
+	protected DatabaseUpsertStatement upsertStmt; // null unless database.upsert is true
 	
 	public DatabaseUpdateWriter(Database db, Table table, String sqlTableName, String writerName) 
 			throws IOException, SQLException {
@@ -22,14 +25,24 @@ public class DatabaseUpdateWriter extends DatabaseTableWriter {
 	@Override
 	public DatabaseUpdateWriter open(Metrics writerMetrics) throws SQLException, IOException {
 		super.open(writerMetrics);
-		insertStmt = new DatabaseInsertStatement(this.db, this.sqlTableName, columns);
-		updateStmt = new DatabaseUpdateStatement(this.db, this.sqlTableName, columns);
+		insertStmt = addStatement(new DatabaseInsertStatement(this.db, this.sqlTableName, columns));
+		updateStmt = addStatement(new DatabaseUpdateStatement(this.db, this.sqlTableName, columns));
+		if (db.getUpsert())
+			upsertStmt = addStatement(new DatabaseUpsertStatement(this.db, this.sqlTableName, columns));
 		return this;
 	}
+	
 		
 	@Override
 	void writeRecord(TableRecord rec, Metrics writerMetrics) throws SQLException {
 		RecordKey key = rec.getKey();
+		if (upsertStmt != null) {
+			// most databases do not report whether the row was inserted or updated
+			logger.trace(Log.PROCESS, "Upsert " + key);
+			upsertStmt.upsert(rec);
+			writerMetrics.incrementUpdated();
+			return;
+		}
 		logger.trace(Log.PROCESS, "Update " + key);
 		if (updateStmt.update(rec)) {
 			writerMetrics.incrementUpdated();
@@ -39,5 +52,93 @@ public class DatabaseUpdateWriter extends DatabaseTableWriter {
 			writerMetrics.incrementInserted();
 		}
 	}
+	
+	/**
+	 * Update the records using a JDBC batch, then insert any records
+	 * which were not found using a second batch.
+	 * If either batch fails then both are rolled back 
+	 * and the records are written one at a time.
+	 */
+	@Override
+	void writeBatch(RecordList recs, Metrics writerMetrics) throws SQLException {
+		if (upsertStmt != null) {
+			writeUpsertBatch(recs, writerMetrics);
+			return;
+		}
+		Savepoint savepoint = db.beginBatch();
+		try {
+			for (TableRecord rec : recs) {
+				logger.trace(Log.PROCESS, "Update " + rec.getKey());
+				updateStmt.addBatch(rec);
+			}
+			int[] counts = updateStmt.executeBatch();
+			assert counts.length == recs.size();
+			int updated = 0, inserted = 0;
+			RecordList unknown = new RecordList(table);
+			for (int i = 0; i < counts.length; ++i) {
+				if (counts[i] > 0) {
+					updated += 1;
+				}
+				else if (counts[i] == 0) {
+					logger.trace(Log.PROCESS, "Insert " + recs.get(i).getKey());
+					insertStmt.addBatch(recs.get(i));
+					inserted += 1;
+				}
+				else {
+					// driver returned SUCCESS_NO_INFO
+					unknown.add(recs.get(i));
+				}
+			}
+			if (inserted > 0) insertStmt.executeBatch();
+			// updating the same values a second time is harmless
+			for (TableRecord rec : unknown) {
+				if (updateStmt.update(rec))
+					updated += 1;
+				else {
+					insertStmt.insert(rec);
+					inserted += 1;
+				}
+			}
+			db.endBatch(savepoint);
+			writerMetrics.addUpdated(updated);
+			writerMetrics.addInserted(inserted);
+		}
+		catch (SQLException e) {
+			logger.debug(Log.PROCESS, String.format(
+				"batch of %d failed: %s: %s", recs.size(), e.getClass().getName(), e.getMessage()));
+			updateStmt.clearBatch();
+			insertStmt.clearBatch();
+			db.rollbackBatch(savepoint);
+			for (TableRecord rec : recs) {
+				writeRecord(rec, writerMetrics);
+			}
+		}
+	}
+
+	/**
+	 * Write the records using a batch of upsert statements.
+	 * If the batch fails then it is rolled back and the records are written one at a time.
+	 */
+	private void writeUpsertBatch(RecordList recs, Metrics writerMetrics) throws SQLException {
+		Savepoint savepoint = db.beginBatch();
+		try {
+			for (TableRecord rec : recs) {
+				logger.trace(Log.PROCESS, "Upsert " + rec.getKey());
+				upsertStmt.addBatch(rec);
+			}
+			upsertStmt.executeBatch();
+			db.endBatch(savepoint);
+			writerMetrics.addUpdated(recs.size());
+		}
+		catch (SQLException e) {
+			logger.debug(Log.PROCESS, String.format(
+				"batch of %d failed: %s: %s", recs.size(), e.getClass().getName(), e.getMessage()));
+			upsertStmt.clearBatch();
+			db.rollbackBatch(savepoint);
+			for (TableRecord rec : recs) {
+				writeRecord(rec, writerMetrics);
+			}
+		}
+	}
 
 }
@@ -0,0 +1,88 @@
+package sndml.datamart;
+
+import java.sql.SQLException;
+import java.util.HashMap;
+
+import sndml.servicenow.TableRecord;
+
+/**
+ * Inserts a record, or updates it if the key already exists, in a single statement.
+ * <p>Uses the <b>upsert</b> template (for example INSERT ... ON CONFLICT or MERGE).
+ * The template can refer to the following variables:</p>
+ * <ul>
+ * <li><b>$fieldnames</b> - all column names</li>
+ * <li><b>$fieldvalues</b> - one bind variable per column</li>
+ * <li><b>$updatemap</b> - the <b>upsert_assign</b> template applied to each column except sys_id</li>
+ * <li><b>$sourcefields</b> - one "? AS column" per column</li>
+ * <li><b>$sourcevalues</b> - "s.column" for each column</li>
+ * </ul>
+ * <p>All columns are bound in order, the same as {@link DatabaseInsertStatement}.</p>
+ */
+public class DatabaseUpsertStatement extends DatabaseStatement {
+
+	public DatabaseUpsertStatement(Database db, String sqlTableName, ColumnDefinitions columns)
+			throws SQLException {
+		super(db, "upsert", sqlTableName, columns);
+	}
+
+	String buildStatement() throws SQLException {
+		final String fieldSeparator = ",\n";
+		StringBuilder fieldnames = new StringBuilder();
+		StringBuilder fieldvalues = new StringBuilder();
+		StringBuilder updatemap = new StringBuilder();
+		StringBuilder sourcefields = new StringBuilder();
+		StringBuilder sourcevalues = new StringBuilder();
+		for (int i = 0; i < columns.size(); ++i) {
+			String name = generator.sqlQuote(columns.get(i).getName());
+			if (i > 0) {
+				fieldnames.append(fieldSeparator);
+				fieldvalues.append(",");
+				sourcefields.append(",");
+				sourcevalues.append(",");
+			}
+			fieldnames.append(name);
+			fieldvalues.append("?");
+			sourcefields.append("? AS " + name);
+			sourcevalues.append("s." + name);
+			// Skip column 0 which is the sys_id
+			if (i > 0) {
+				if (i > 1) updatemap.append(fieldSeparator);
+				HashMap<String,String> assign = new HashMap<String,String>();
+				assign.put("column", name);
+				updatemap.append(generator.getTemplate("upsert_assign", sqlTableName, assign));
+			}
+		}
+		HashMap<String,String> map = new HashMap<String,String>();
+		map.put("fieldnames", fieldnames.toString());
+		map.put("fieldvalues", fieldvalues.toString());
+		map.put("updatemap", updatemap.toString());
+		map.put("sourcefields", sourcefields.toString());
+		map.put("sourcevalues", sourcevalues.toString());
+		return generator.getTemplate(templateName, sqlTableName, map);
+	}
+
+	private void bind(TableRecord rec) throws SQLException {
+		long start = System.nanoTime();
+		setRecord(rec);
+		int n = columns.size();
+		for (int i = 0; i < n; ++i) {
+			bindField(i + 1, i);
+		}
+		bindNanos += System.nanoTime() - start;
+	}
+
+	public void upsert(TableRecord rec) throws SQLException {
+		bind(rec);
+		stmt.executeUpdate();
+	}
+
+	/**
+	 * Bind a record and add it to the current batch.
+	 * The batch is sent by {@link #executeBatch()}.
+	 */
+	public void addBatch(TableRecord rec) throws SQLException {
+		bind(rec);
+		stmt.addBatch();
+	}
+
+}
@@ -0,0 +1,186 @@
+package sndml.datamart;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.slf4j.Logger;
+
+import sndml.servicenow.FieldIndex;
+import sndml.servicenow.Log;
+import sndml.servicenow.Metrics;
+import sndml.servicenow.ProgressLogger;
+import sndml.servicenow.RecordList;
+import sndml.servicenow.RecordWriter;
+import sndml.servicenow.TableRecord;
+
+/**
+ * A {@link RecordWriter} which gives each reader thread its own
+ * {@link DatabaseTableWriter} with its own database connection,
+ * so that the partitions of a multi-threaded job are written concurrently.
+ * <p>The primary writer, which uses the original connection, is opened with the pool
+ * and is used by the first thread which passes records to the pool.
+ * For each other thread a writer is created the first time the thread passes records
+ * to the pool, using a connection obtained from {@link Database#duplicate()}.
+ * All writers share the column definitions of the primary writer.</p>
+ * <p>Record counts are added to the metrics passed by each part reader,
+ * so they are aggregated to the job as usual. Each extra writer also has its own metrics,
+ * which record its commits and timings. When the pool is closed every extra writer is
+ * flushed, committed and closed with its own metrics, which are then added to the
+ * metrics of the pool, and the extra connections are closed.
+ * The primary writer is closed with the metrics of the pool.</p>
+ * <p>This writer is used if the job is partitioned and <b>threads</b> is greater than 1.</p>
+ */
+public class DatabaseWriterPool extends RecordWriter {
+
+	/**
+	 * Creates a writer for a database connection.
+	 */
+	public interface WriterFactory {
+		DatabaseTableWriter create(Database db) throws IOException, SQLException;
+	}
+
+	final Database db;
+	final String writerName;
+	final WriterFactory factory;
+	final Logger logger = Log.logger(this.getClass());
+
+	private DatabaseTableWriter primary;
+	private boolean primaryInUse = false;
+	private Metrics poolMetrics;
+	private final List<DatabaseTableWriter> workers = new ArrayList<DatabaseTableWriter>();
+	private final List<Metrics> workerMetrics = new ArrayList<Metrics>();
+	private final List<Database> connections = new ArrayList<Database>();
+	private final ThreadLocal<DatabaseTableWriter> threadWriter = new ThreadLocal<DatabaseTableWriter>();
+
+	public DatabaseWriterPool(Database db, String writerName, WriterFactory factory) {
+		this.db = db;
+		this.writerName = writerName;
+		this.factory = factory;
+	}
+
+	@Override
+	public DatabaseWriterPool open(Metrics metrics) throws IOException, SQLException {
+		super.open(metrics);
+		this.poolMetrics = metrics;
+		primary = factory.create(db);
+		primary.open(metrics);
+		return this;
+	}
+
+	/**
+	 * Return the writer for the current thread, creating it if necessary.
+	 * The first thread is given the primary writer.
+	 */
+	DatabaseTableWriter getWriter() throws IOException, SQLException {
+		DatabaseTableWriter writer = threadWriter.get();
+		if (writer == null) {
+			synchronized (this) {
+				if (!primaryInUse) {
+					primaryInUse = true;
+					threadWriter.set(primary);
+					logger.debug(Log.INIT, String.format("%s opened for thread %s",
+						writerName, Thread.currentThread().getName()));
+					return primary;
+				}
+			}
+			Database workerDb = db.duplicate();
+			String workerName;
+			synchronized (this) {
+				connections.add(workerDb);
+				workerName = writerName + ".W" + connections.size();
+			}
+			writer = factory.create(workerDb);
+			writer.setColumns(primary.getColumns());
+			Metrics metrics = new Metrics(workerName);
+			writer.open(metrics);
+			synchronized (this) {
+				workers.add(writer);
+				workerMetrics.add(metrics);
+			}
+			threadWriter.set(writer);
+			logger.debug(Log.INIT, String.format("%s opened for thread %s",
+				workerName, Thread.currentThread().getName()));
+		}
+		return writer;
+	}
+
+	/**
+	 * Return the number of writers which have been created in addition to the primary.
+	 */
+	int getWorkerCount() {
+		synchronized (this) {
+			return workers.size();
+		}
+	}
+
+	@Override
+	public void processRecords(RecordList recs, Metrics metrics, ProgressLogger progressLogger)
+			throws IOException, SQLException {
+		getWriter().processRecords(recs, metrics, progressLogger);
+	}
+
+	@Override
+	public boolean isStreaming() {
+		return primary.isStreaming();
+	}
+
+	@Override
+	public FieldIndex getFieldIndex() {
+		return primary.getFieldIndex();
+	}
+
+	@Override
+	public void processRecord(TableRecord rec, Metrics metrics) throws IOException, SQLException {
+		getWriter().processRecord(rec, metrics);
+	}
+
+	@Override
+	public void endPage(Metrics metrics, ProgressLogger progressLogger) throws IOException, SQLException {
+		getWriter().endPage(metrics, progressLogger);
+	}
+
+	/**
+	 * Flush and commit every writer, then close the extra connections.
+	 * This must only be called after all of the reader threads have completed.
+	 */
+	@Override
+	public synchronized void close(Metrics metrics) {
+		logger.info(Log.FINISH, String.format("closing %d writers", workers.size()));
+		try {
+			for (int i = 0; i < workers.size(); ++i) {
+				Metrics writerMetrics = workerMetrics.get(i);
+				workers.get(i).close(writerMetrics);
+				metrics.add(writerMetrics);
+			}
+			primary.close(metrics);
+		}
+		finally {
+			workers.clear();
+			workerMetrics.clear();
+			closeConnections();
+		}
+		super.close(metrics);
+	}
+
+	/**
+	 * Close the extra connections without flushing the writers.
+	 * Anything which has not been committed is discarded.
+	 * This is called by {@link #close(Metrics)}, and by the job if it fails.
+	 * It does nothing if the connections have already been closed.
+	 */
+	synchronized void closeConnections() {
+		SQLException error = null;
+		for (Database workerDb : connections) {
+			try {
+				workerDb.close();
+			} catch (SQLException e) {
+				if (error == null) error = e;
+			}
+		}
+		connections.clear();
+		if (error != null) throw new ResourceException(error);
+	}
+
+}
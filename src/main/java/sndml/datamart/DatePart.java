@@ -6,9 +6,11 @@ import sndml.servicenow.DateTimeRange;
 /**
  * One piece of a {@link DatePartition}. 
  * Both start and end must be on an {@link Interval} boundary.
+ * A part normally spans a single interval, but adaptive partitions
+ * may contain parts which span several intervals.
  *
  */
-public class DatePart extends DateTimeRange {
+public class DatePart extends DateTimeRange implements PartitionPart {
 
 	protected final Interval interval;
 	
@@ -21,10 +23,11 @@ public class DatePart extends DateTimeRange {
 		assert start.compareTo(end) < 0;
 		assert start.equals(start.truncate(interval)) : String.format("DatePart.start=%s", start);
 		assert end.equals(end.truncate(interval)) : String.format("DatePart end=%s", end);
-		assert start.incrementBy(interval).equals(end) :
+		assert start.incrementBy(interval).compareTo(end) <= 0 :
 			String.format("DatePart start=%s end=%s", start, end);
 	}
 	
+	@Override
 	public String getName() {
 		return getName(interval, start);
 	}
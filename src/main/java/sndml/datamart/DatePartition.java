@@ -1,6 +1,8 @@
 package sndml.datamart;
 
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
 
 import sndml.servicenow.DateTimeRange;
 
@@ -8,8 +10,18 @@ public class DatePartition implements Iterable<DatePart> {
 	
 	private final DateTimeRange range;
 	private final Interval interval;
+	private final List<DatePart> parts;
 
 	public DatePartition(DateTimeRange range, Interval interval) {
+		this(range, interval, null);
+	}
+	
+	/**
+	 * Create a partition from an explicit list of parts, 
+	 * which may span multiple intervals.
+	 * The parts must be ordered from the most recent to the earliest.
+	 */
+	public DatePartition(DateTimeRange range, Interval interval, List<DatePart> parts) {
 		assert range != null;
 		assert interval != null;
 		if (range.getStart() == null)
@@ -20,6 +32,7 @@ public class DatePartition implements Iterable<DatePart> {
 			throw new IllegalArgumentException("end date is before start date");
 		this.range = range;
 		this.interval = interval;
+		this.parts = (parts == null) ? null : Collections.unmodifiableList(parts);
 	}
 	
 	public DateTimeRange getRange() {
@@ -30,7 +43,17 @@ public class DatePartition implements Iterable<DatePart> {
 		return this.interval;			
 	}
 		
+	/**
+	 * Return true if the parts were supplied to the constructor
+	 * rather than generated from the interval.
+	 */
+	public boolean isExplicit() {
+		return this.parts != null;
+	}
+	
 	public String toString() {
+		if (parts != null) 
+			return range.toString() + " by " + interval.toString() + " " + parts.toString();
 		return range.toString() + " by " + interval.toString();
 	}
 	
@@ -40,6 +63,7 @@ public class DatePartition implements Iterable<DatePart> {
 	 * and ending with the earliest.
 	 */
 	public Iterator<DatePart> iterator() {
+		if (parts != null) return parts.iterator();
 		return new DatePartitionIterator(this.range, this.interval);
 	}
 
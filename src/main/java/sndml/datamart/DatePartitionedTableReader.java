@@ -1,85 +1,53 @@
 package sndml.datamart;
 
 import java.io.IOException;
-import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-import java.util.Objects;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
-import java.util.concurrent.TimeUnit;
-
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
 import sndml.servicenow.*;
 
-public final class DatePartitionedTableReader extends TableReader {
+/**
+ * A {@link PartitionedTableReader} which divides sys_created_on into ranges.
+ * If {@link PartitionBy} is INTERVAL then each range is a single {@link Interval}.
+ * If {@link PartitionBy} is ADAPTIVE then the ranges are sized using the Stats API
+ * so that each range contains a similar number of rows.
+ */
+public final class DatePartitionedTableReader extends PartitionedTableReader {
 
-	final JobConfig config;
-	final Database db;
-	final int threads;
+	// number of parts per thread if partitionrows is not specified
+	static final int PARTS_PER_THREAD = 4;
+	
 	final Interval interval;
+	final boolean adaptive;
 	
 	private DateTimeRange range;
 	private DatePartition partition;
-	private List<Future<Metrics>> futures;
-	
-	private Logger logger = LoggerFactory.getLogger(this.getClass());
 		
 	public DatePartitionedTableReader(Table table, JobConfig config, Database db) {
-		super(table);
-		this.config = config;
-		this.db = db;
-		assert config != null;
-		if (config.getAction() == Action.SYNC) assert db != null;
-		setCreatedRange(config.getCreatedRange(null));
-		setUpdatedRange(config.getUpdatedRange());
-		setFilter(config.getFilter(table));
-		this.interval = config.getPartitionInterval();
-		this.threads = (config.getThreads()==null) ? 1 : config.getThreads();
+		super(table, config, db);
+		this.adaptive = config.getPartitionBy() == PartitionBy.ADAPTIVE;
+		Interval interval = config.getPartitionInterval();
+		// for adaptive partitions the interval is only the granularity
+		this.interval = (adaptive && interval == null) ? Interval.DAY : interval;
+		assert this.interval != null;
 	}
 		
 	public DatePartition getPartition() {
 		assert partition != null : "Not initialized";
 		return partition;
 	}
-		
-	@SuppressWarnings("unused")
-	private int getThreadCount() {
-		return this.threads;
-	}
-
+	
 	@Override
-	public Metrics getMetrics() {
-		return this.metrics;
+	protected Iterable<DatePart> getParts() {
+		return getPartition();
 	}
-
-	private int numPartsTotal() {
-		assert futures != null;
-		return futures.size();
+	
+	@Override
+	protected void freeParts() {
+		partition = null;
 	}
 		
-	@SuppressWarnings("unused")
-	private int numPartsComplete() {
-		assert futures != null;
-		int count = 0;
-		for (Future<Metrics> part : futures) {
-			count += (part.isDone() ? 1 : 0);
-		}
-		return count;
-	}
-
-	private int numPartsIncomplete() {
-		assert futures != null;
-		int count = 0;
-		for (Future<Metrics> part : futures) {
-			count += (part.isDone() ? 0 : 1);
-		}
-		return count;
-	}
-	
 	@Override
 	public void prepare(RecordWriter writer, Metrics metrics, ProgressLogger progress) 
 			throws IOException, InterruptedException {
@@ -100,62 +68,117 @@ public final class DatePartitionedTableReader extends TableReader {
 		range = stats.getCreated();
 		assert range.getStart() != null;
 		assert range.getEnd() != null;
-		this.partition = new DatePartition(range, interval);
+		if (adaptive) {
+			int target = getTargetRows(expected);
+			List<DatePart> parts = balance(range, expected, target);
+			logger.debug(Log.INIT, String.format("target=%d parts=%d", target, parts.size()));
+			this.partition = new DatePartition(range, interval, parts);
+		}
+		else
+			this.partition = new DatePartition(range, interval);
 		logger.debug(Log.INIT, String.format(
 				"range=%s partition=%s expected=%d", 
 				range.toString(), partition.toString(), expected));
+		logger.info(Log.INIT, "partition=" + partition.toString());
 		super.endPrepare(expected);
 	}
 	
-	private TableReader createReader(DatePart datePart) 
-			throws IOException, SQLException, InterruptedException {
-		String partName = datePart.getName();
-		boolean createNewSession = (threads > 1) ? true : false;
-		TableReader partReader = config.createReader(table, db, datePart, createNewSession);
-		String jobName = config.getName();
-		String partReaderName = Objects.isNull(partName) ? jobName : jobName + "." + partName;
-		assert partReaderName != null;
-		Metrics partMetrics = new Metrics(partReaderName, this.metrics);
-		ProgressLogger partLogger = progress.newPartLogger(partMetrics, datePart);
-		partReader.prepare(writer, partMetrics, partLogger);
-		return partReader;		
+	int getTargetRows(int expected) {
+		Integer rows = config.getPartitionRows();
+		if (rows != null) return rows;
+		int numParts = PARTS_PER_THREAD * getThreadCount();
+		return Math.max((expected + numParts - 1) / numParts, 1);
 	}
-
-	@Override
-	public Metrics call() throws IOException, SQLException, InterruptedException {
-		progress.logStart();
-		if (getExpected() == 0) {
-			logger.debug(Log.PROCESS, "expecting 0 rows; bypassing call");
-			return metrics;
+	
+	/**
+	 * A range of sys_created_on and the number of rows it contains.
+	 */
+	static class Bucket {
+		final DateTime start;
+		final DateTime end;
+		final int count;
+		
+		Bucket(DateTime start, DateTime end, int count) {
+			assert start.compareTo(end) < 0;
+			this.start = start;
+			this.end = end;
+			this.count = count;
 		}
-		if (threads > 1) {			
-			futures = new ArrayList<Future<Metrics>>();
-			logger.info(Log.INIT, String.format("starting %d threads", threads));			
-			ExecutorService executor = Executors.newFixedThreadPool(this.threads);
-			for (DatePart partRange : partition) {
-				TableReader partReader = createReader(partRange);
-				logger.debug("Submit " + metrics.getName());
-				Future<Metrics> future = executor.submit(partReader);
-				futures.add(future);				
-			}
-			executor.shutdown();
-			while (!executor.awaitTermination(60, TimeUnit.SECONDS)) {
-				logger.info(Log.FINISH, String.format("Waiting for %d / %d partitions to complete", 
-					numPartsIncomplete(), numPartsTotal()));
-			}
+	}
+	
+	private int countRows(DateTime start, DateTime end) throws IOException {
+		EncodedQuery query = this.getStatsQuery().addCreated(start, end);
+		return table.rest().getStats(query, false).getCount();
+	}
+	
+	/**
+	 * Bisect the created range on interval boundaries until each bucket 
+	 * contains no more than the target number of rows (or is a single interval), 
+	 * and then merge adjacent buckets into parts.
+	 * Each bisection costs one call to the Stats API.
+	 * The parts are returned in order from the most recent to the earliest.
+	 */
+	List<DatePart> balance(DateTimeRange range, int expected, int target) throws IOException {
+		DateTime start = range.getStart().truncate(interval);
+		// the end of the stats range is the newest record, which must be included
+		DateTime end = range.getEnd().truncate(interval).incrementBy(interval);
+		List<Bucket> buckets = new ArrayList<Bucket>();
+		addBucket(buckets, start, end, expected, target);
+		return merge(buckets, target);
+	}
+	
+	private void addBucket(List<Bucket> buckets, DateTime start, DateTime end, int count, int target) 
+			throws IOException {
+		DateTime mid = (count > target) ? midpoint(start, end) : null;
+		if (mid == null) {
+			if (count > target) 
+				logger.debug(Log.INIT, String.format(
+					"unable to split start=%s end=%s count=%d", start, end, count));
+			buckets.add(new Bucket(start, end, count));
+			return;
 		}
-		else {
-			for (DatePart partRange : partition) {
-				TableReader partReader = createReader(partRange);
-				assert partReader.getProgressLogger() != null;
-				partReader.call();				
+		int leftCount = countRows(start, mid);
+		int rightCount = Math.max(count - leftCount, 0);
+		addBucket(buckets, start, mid, leftCount, target);
+		addBucket(buckets, mid, end, rightCount, target);
+	}
+	
+	/**
+	 * Return an interval boundary between start and end,
+	 * or null if the range is a single interval.
+	 */
+	DateTime midpoint(DateTime start, DateTime end) {
+		long millis = (start.getMillisec() + end.getMillisec()) / 2;
+		DateTime mid = new DateTime(new java.util.Date(millis)).truncate(interval);
+		if (mid.compareTo(start) <= 0) mid = start.incrementBy(interval);
+		return (mid.compareTo(end) < 0) ? mid : null;
+	}
+	
+	/**
+	 * Combine adjacent buckets as long as the total does not exceed the target.
+	 * Buckets must be in chronological order. 
+	 * Parts are returned in reverse chronological order.
+	 */
+	List<DatePart> merge(List<Bucket> buckets, int target) {
+		List<DatePart> parts = new ArrayList<DatePart>();
+		DateTime partStart = null, partEnd = null;
+		int partCount = 0;
+		for (Bucket bucket : buckets) {
+			if (partStart != null && partCount + bucket.count > target) {
+				parts.add(new DatePart(interval, partStart, partEnd));
+				partStart = null;
 			}
+			if (partStart == null) {
+				partStart = bucket.start;
+				partCount = 0;
+			}
+			assert bucket.start.equals(partEnd) || partStart.equals(bucket.start);
+			partEnd = bucket.end;
+			partCount += bucket.count;
 		}
-		progress.logComplete();
-		// Free resources
-		futures = null;
-		partition = null;
-		return metrics;
+		if (partStart != null) parts.add(new DatePart(interval, partStart, partEnd));
+		Collections.reverse(parts);
+		return parts;
 	}
-
+	
 }
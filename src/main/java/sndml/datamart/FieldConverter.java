@@ -0,0 +1,204 @@
+package sndml.datamart;
+
+import java.io.UnsupportedEncodingException;
+import java.sql.Types;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+
+import sndml.servicenow.DateTime;
+import sndml.servicenow.InvalidDateTimeException;
+import sndml.servicenow.Log;
+import sndml.servicenow.RecordKey;
+
+/**
+ * Converts a ServiceNow field value to a Java object suitable for a database column.
+ * <p>These rules are shared by {@link DatabaseStatement}, which binds the result to
+ * a prepared statement, and {@link DatabaseBulkWriter}, which sends it to a
+ * native bulk load interface.</p>
+ * <p>The result is null or one of:
+ * String, Boolean, Byte, Short, Integer, Long, Double, java.sql.Date, java.sql.Timestamp.</p>
+ */
+class FieldConverter {
+
+	final Database db;
+	final Generator generator;
+	final Logger logger;
+	final boolean traceEnabled;
+
+	private final Pattern dateTimePattern =
+		Pattern.compile("\\d\\d\\d\\d-\\d\\d-\\d\\d \\d\\d:\\d\\d:\\d\\d");
+
+	FieldConverter(Database db, Logger logger) {
+		this.db = db;
+		this.generator = db.getGenerator();
+		this.logger = logger;
+		this.traceEnabled = logger.isTraceEnabled(Log.BIND);
+	}
+
+	/**
+	 * Convert a value.
+	 *
+	 * @param key sys_id of the record (used for warnings)
+	 * @param defn Database field definition
+	 * @param fieldname Name of the field
+	 * @param value Value from ServiceNow
+	 * @return Converted value or null
+	 * @throws NumberFormatException if a numeric value cannot be parsed
+	 */
+	Object convert(RecordKey key, DatabaseFieldDefinition defn, String fieldname, String value) {
+		int sqltype = defn.sqltype;
+		if (value == null) return null;
+		if ((sqltype == Types.NUMERIC || sqltype == Types.DECIMAL || sqltype == Types.INTEGER ||
+					sqltype == Types.DOUBLE || sqltype == Types.BIGINT) &&
+				value.length() == 19) {
+			// If the target data type is numeric
+			// and the value appears to be a date (dddd-dd-dd dd:dd:dd)
+			// then it must be a duration
+			// so try to convert it to a number of seconds
+			if (dateTimePattern.matcher(value).matches()) {
+				try {
+					DateTime timestamp = new DateTime(value, DateTime.DATE_TIME);
+					long seconds = timestamp.toDate().getTime() / 1000L;
+					if (traceEnabled)
+						logger.trace(Log.BIND, "date " + fieldname + " " + value + "=" + seconds);
+					if (seconds < 0L) {
+						logger.warn(Log.PROCESS, key + " duration underflow: " +
+							fieldname + "=" + value);
+						value = null;
+					}
+					if (seconds > 999999999L && sqltype == Types.INTEGER) {
+						logger.warn(Log.PROCESS, key + " duration overflow: " +
+							fieldname + "=" + value);
+						value = null;
+					}
+					if (value != null) {
+						value = Long.toString(seconds);
+					}
+				} catch (InvalidDateTimeException e) {
+					logger.warn(Log.PROCESS, key + " duration error: " +
+							fieldname + "=" + value);
+					value = null;
+				}
+				if (value == null) return null;
+			}
+		}
+		assert value != null;
+		// If the SQL type is VARCHAR, then check for an over-size value
+		// and truncate if necessary
+		if (sqltype == Types.VARCHAR || sqltype == Types.CHAR) {
+			int oldSize = value.length();
+			int maxSize = defn.getSize();
+			if (value.length() > maxSize) {
+				value = value.substring(0,  maxSize);
+			}
+			if (generator.getDialectName().equals("oracle_")) {
+				// This is a workaround for an apparent bug in the Oracle JDBC
+				// driver which occasionally generates an ORA-01461 error when
+				// inserting from a text field containing multi-byte characters
+				// into a VARCHAR2 column.
+				// Keep chopping more characters off the end of the string until
+				// the number of BYTES is less than the field size.
+				try {
+					while (value.getBytes("UTF8").length > maxSize)
+						value = value.substring(0, value.length() - 1);
+				}
+				catch (UnsupportedEncodingException e) {
+					throw new RuntimeException(e);
+				}
+			}
+			if (db.isPostgreSQL()) {
+				// PostgreSQL doesn't support storing NULL characters in text fields
+				value = value.replaceAll("\u0000", "");
+			}
+			if (value.length() != oldSize) {
+				String message = key + " truncated: " + fieldname +
+					" from " + oldSize + " to " + value.length();
+				if (db.getWarnOnTruncate())
+					logger.warn(Log.PROCESS, message);
+				else
+					logger.debug(Log.PROCESS, message);
+			}
+		}
+		switch (sqltype) {
+		case Types.DATE :
+			try {
+				DateTime dt = new DateTime(value);
+				return new java.sql.Date(dt.getMillisec());
+			}
+			catch (InvalidDateTimeException e) {
+				logger.warn(Log.PROCESS, key + " date error: " +
+						fieldname + "=" + value);
+				return null;
+			}
+		case Types.TIMESTAMP :
+			// If the SQL type is TIMESTAMP, then try to convert the field to a java.sql.Timestamp.
+			// Note that in Oracle the DATE fields have a java.sql type of TIMESTAMP.
+			try {
+				DateTime ts = new DateTime(value);
+				java.sql.Timestamp sqlts = new java.sql.Timestamp(ts.getMillisec());
+				assert sqlts.getTime() == ts.getMillisec();
+				if (traceEnabled)
+					logger.trace(Log.BIND, String.format("timestamp %s=%s", fieldname, sqlts.toString()));
+				return sqlts;
+			}
+			catch (InvalidDateTimeException e) {
+				logger.warn(Log.PROCESS, key + " timestamp error: " +
+						fieldname + "=" + value);
+				return null;
+			}
+		case Types.BOOLEAN :
+		case Types.BIT :
+			if (value.equals("1") || value.equalsIgnoreCase("true"))
+				return Boolean.TRUE;
+			if (value.equals("0") || value.equalsIgnoreCase("false"))
+				return Boolean.FALSE;
+			logger.warn(Log.PROCESS, key + "boolean error: " +
+					fieldname + "=" + value);
+			return null;
+		case Types.TINYINT :
+			return Byte.parseByte(truncate(key, fieldname, value));
+		case Types.SMALLINT :
+			return Short.parseShort(truncate(key, fieldname, value));
+		case Types.INTEGER :
+			return Integer.parseInt(truncate(key, fieldname, value));
+		case Types.BIGINT:
+			return Long.parseLong(value);
+		case Types.DOUBLE :
+		case Types.FLOAT :
+		case Types.NUMERIC :
+		case Types.DECIMAL :
+			return Double.parseDouble(value);
+		default :
+			if (db.isPostgreSQL()) {
+				// PostgreSQL doesn't support storing NULL characters in text fields
+				value = value.replaceAll("\u0000", "");
+			}
+			return value;
+		}
+	}
+
+	// Return a string that will not throw an error when parseInt is called.
+	// This applies to all dialects: "true" and "false" become 1 and 0.
+	private String truncate(RecordKey key, String fieldname, String value) {
+		if (value.length() == 0) return "0";
+		// Boolean fields are stored in integer columns if the database has no boolean type
+		// (for example SQLite, or a template which maps boolean to SMALLINT)
+		if (value.equalsIgnoreCase("true")) return "1";
+		if (value.equalsIgnoreCase("false")) return "0";
+		// This is a workaround for the fact that ServiceNow includes decimal portions
+		// in integer fields, which can cause JDBC to choke.
+		int p = value.indexOf('.');
+		if (p > -1) {
+			String message = key + " decimal truncated: " +
+					fieldname + "=" + value;
+			if (db.getWarnOnTruncate())
+				logger.warn(Log.PROCESS, message);
+			else
+				logger.debug(Log.PROCESS, message);
+			return value.substring(0,  p);
+		}
+		return value;
+	}
+
+}
@@ -26,6 +26,7 @@ public class Generator {
 	private final boolean autocommit;
 	private final NameCase namecase; 
 	private final NameQuotes namequotes;
+	private final String bulkload;
 	private final String schemaName;
 	private final NameMap namemap;
 	
@@ -100,6 +101,7 @@ public class Generator {
 		autocommit = Boolean.parseBoolean(dialogProps.getChildText("autocommit").toLowerCase());
 		namecase = NameCase.valueOf(dialogProps.getChildText("namecase").toUpperCase());
 		namequotes = NameQuotes.valueOf(dialogProps.getChildText("namequotes").toUpperCase());
+		bulkload = dialogProps.getChildTextTrim("bulkload");
 		
 		logger.info(Log.INIT, String.format(
 				"dialect=%s schema=%s namecase=%s namequotes=%s autocommit=%b", 
@@ -148,6 +150,21 @@ public class Generator {
 		return this.autocommit;
 	}
 	
+	/**
+	 * Return the native bulk load method for this dialect
+	 * (<b>copy</b>, <b>load_data</b> or <b>bulk_copy</b>), or null if there is none.
+	 */
+	String getBulkLoad() {
+		return (bulkload == null || bulkload.length() == 0) ? null : bulkload;
+	}
+	
+	/**
+	 * Return a table name qualified by the schema (if any).
+	 */
+	String qualifiedTableName(String tableName) {
+		return replaceVars("$schema.$table", getTemplateVars(tableName));
+	}
+	
 	List<String> getInitializations() {
 		Variables myvars = new Variables();
 		myvars.put("schema", this.schemaName);
@@ -225,6 +242,14 @@ public class Generator {
 		return sqltype;
 	}
 	
+	/**
+	 * Return true if the dialect defines the named template.
+	 * Optional templates may be missing from a custom templates file.
+	 */
+	boolean hasTemplate(String templateName) {
+		return dialectTree.getChild("templates").getChild(templateName) != null;
+	}
+	
 	String getTemplate(String templateName, Table table, Map<String,String> vars) {
 		return getTemplate(templateName, table.getName(), vars);
 	}
@@ -239,12 +264,17 @@ public class Generator {
 			Map<String,String> vars) {
 		String sql = dialectTree.getChild("templates").getChildText(templateName);
 		assert sql != null : "Template not found: " + templateName;
+		Variables myvars = getTemplateVars(tableName);
+		if (vars != null) myvars.putAll(vars);
+		return replaceVars(sql, myvars);
+	}
+	
+	private Variables getTemplateVars(String tableName) {
 		Variables myvars = new Variables();
 		myvars.put("schema", this.schemaName);
 		myvars.put("table", sqlCase(tableName));
 		myvars.put("keyvalue", "?");
-		if (vars != null) myvars.putAll(vars);
-		return replaceVars(sql, myvars);
+		return myvars;
 	}
 	
 	String getCreateTable(Table table) throws IOException, InterruptedException {
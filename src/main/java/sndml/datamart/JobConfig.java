@@ -31,6 +31,12 @@ public class JobConfig {
 	public Action action;
 	public RecordKey doc_id; // Action SINGLE only
 	public Boolean truncate;
+	@JsonProperty("bulkload") public Boolean bulkLoad;
+	public Boolean staging;
+	public Integer commitRows;
+	public Long commitBytes;
+	public Integer commitSeconds;
+	public Boolean singleTransaction;
 	@JsonProperty("drop") public Boolean dropTable;
 	@JsonProperty("created") public JsonNode createdExpr;
 	@JsonProperty("since") public String sinceExpr;
@@ -38,6 +44,9 @@ public class JobConfig {
 	@JsonIgnore public DateTime sinceDate;
 	public String filter;
 	public Interval partition;
+	@JsonProperty("partitionby") public PartitionBy partitionBy;
+	@JsonProperty("partitionrows") public Integer partitionRows;
+	@JsonProperty("syncmode") public SyncMode syncMode;
 	public Integer pageSize;
 	public Integer minRows;
 	public Integer maxRows;
@@ -47,6 +56,7 @@ public class JobConfig {
 	public Boolean autoCreate;
 	@JsonIgnore public FieldNames includeColumns;
 	public Integer threads;
+	public Integer prefetch;
 	
 	static EnumSet<Action> anyLoadAction =
 			EnumSet.of(Action.INSERT, Action.UPDATE, Action.SYNC);
@@ -60,6 +70,11 @@ public class JobConfig {
 	public Action getAction() { return action; }
 	public RecordKey getDocID() { return doc_id; }
 	boolean getTruncate() {	return this.truncate == null ? false : this.truncate.booleanValue(); }
+	boolean getBulkLoad() { return this.bulkLoad == null ? false : this.bulkLoad.booleanValue(); }
+	boolean getStaging() { return this.staging == null ? false : this.staging.booleanValue(); }
+	boolean getSingleTransaction() { 
+		return this.singleTransaction == null ? false : this.singleTransaction.booleanValue(); 
+	}
 	boolean getDropTable() { return this.dropTable == null ? false : this.dropTable.booleanValue(); }
 	DateTime getSince() { return this.sinceDate; }
 	
@@ -81,6 +96,24 @@ public class JobConfig {
 		
 	Interval getPartitionInterval() { return this.partition; }
 	
+	PartitionBy getPartitionBy() {
+		if (partitionBy != null) return partitionBy;
+		return partition == null ? null : PartitionBy.INTERVAL;
+	}
+	
+	boolean isPartitioned() { return getPartitionBy() != null; }
+	
+	Integer getPartitionRows() { return this.partitionRows; }
+	
+	SyncMode getSyncMode() { return syncMode == null ? SyncMode.HASH : syncMode; }
+	
+	CommitPolicy getCommitPolicy() {
+		if (getSingleTransaction()) return new CommitPolicy(null, null, null, true);
+		if (commitRows == null && commitBytes == null && commitSeconds == null) 
+			return CommitPolicy.EVERY_PAGE;
+		return new CommitPolicy(commitRows, commitBytes, commitSeconds, false);
+	}
+	
 	FieldNames getIncludeColumns() { return this.includeColumns; }
 	
 	String getSql() { return this.sql; }
@@ -90,6 +123,7 @@ public class JobConfig {
 	Integer getMinRows() { return this.minRows;	}
 	Integer getMaxRows() { return this.maxRows;	}
 	Integer getThreads() { return this.threads;	}	
+	Integer getPrefetch() { return this.prefetch; }
 
 	boolean getAutoCreate() { 
 		return this.autoCreate == null ? true : this.autoCreate.booleanValue();	
@@ -229,13 +263,31 @@ public class JobConfig {
 		}
 				
 		booleanValidForActions("Truncate", truncate, EnumSet.of(Action.INSERT));
+		booleanValidForActions("BulkLoad", bulkLoad, EnumSet.of(Action.INSERT));
+		booleanValidForActions("Staging", staging, EnumSet.of(Action.UPDATE));
 		booleanValidForActions("Drop", dropTable, EnumSet.of(Action.CREATE));
+		booleanValidForActions("SingleTransaction", singleTransaction, Action.INSERT_UPDATE);
+		validForActions("CommitRows", commitRows, Action.INSERT_UPDATE);
+		validForActions("CommitBytes", commitBytes, Action.INSERT_UPDATE);
+		validForActions("CommitSeconds", commitSeconds, Action.INSERT_UPDATE);
+		if (getSingleTransaction() && 
+				(commitRows != null || commitBytes != null || commitSeconds != null))
+			configError("SingleTransaction not valid with CommitRows, CommitBytes or CommitSeconds");
+		if (commitRows != null && commitRows < 1)
+			configError("Invalid CommitRows: " + commitRows);
+		if (commitBytes != null && commitBytes < 1)
+			configError("Invalid CommitBytes: " + commitBytes);
+		if (commitSeconds != null && commitSeconds < 1)
+			configError("Invalid CommitSeconds: " + commitSeconds);
 		validForActions("Created", createdRange, Action.INSERT_UPDATE_SYNC);
 		validForActions("Partition", partition, Action.INSERT_UPDATE_SYNC);
 		validForActions("Filter", filter, Action.INSERT_UPDATE_SYNC);
 		validForActions("Since", sinceDate, Action.INSERT_UPDATE_PRUNE);
 		validForActions("SQL", sql, Action.EXECUTE_ONLY);
 		validForActions("Doc_ID", doc_id, Action.SINGLE_ONLY);
+		validForActions("Prefetch", prefetch, Action.INSERT_UPDATE);
+		validForActions("PartitionBy", partitionBy, Action.INSERT_UPDATE_SYNC);
+		validForActions("SyncMode", syncMode, EnumSet.of(Action.SYNC));
 		
 		if (sinceExpr != null && sinceDate == null)
 			configError("Missing Since Date");
@@ -244,8 +296,24 @@ public class JobConfig {
 		if (action == Action.SINGLE && doc_id == null)
 			configError("Missing doc_id");
 		
-		if (threads != null && partition == null)
+		if (threads != null && !isPartitioned())
 			configError("Threads only valid with Partition");
+		if (partitionBy == PartitionBy.INTERVAL && partition == null)
+			configError("Missing Partition Interval");
+		if (partitionBy == PartitionBy.KEYS) {
+			if (partition != null) 
+				configError("Partition Interval not valid with PartitionBy: " + partitionBy);
+			if (action == Action.SYNC)
+				notValid("PartitionBy " + partitionBy, action);
+		}
+		if (partitionRows != null) {
+			if (partitionBy != PartitionBy.ADAPTIVE)
+				configError("PartitionRows only valid with PartitionBy: " + PartitionBy.ADAPTIVE);
+			if (partitionRows < 1)
+				configError("Invalid PartitionRows: " + partitionRows);
+		}
+		if (prefetch != null && prefetch < 0)
+			configError("Invalid Prefetch: " + prefetch);
 		
 		if (sqlBefore != null) logger.warn(Log.INIT, "Deprecated option: SQLBefore");
 		if (sqlAfter != null) logger.warn(Log.INIT, "Deprecated option: SQLAfter");		
@@ -279,7 +347,7 @@ public class JobConfig {
 		return createReader(table, db, null, false);
 	}
 	
-	public TableReader createReader(Table table, Database db, DatePart datePart, boolean createNewSession) 
+	public TableReader createReader(Table table, Database db, PartitionPart part, boolean createNewSession) 
 			throws IOException {
 
 		assert table != null;
@@ -287,7 +355,9 @@ public class JobConfig {
 		String jobName = getName();
 		validate();
 		assert jobName != null;
-		String partName = Objects.isNull(datePart) ? null : datePart.getName();
+		String partName = Objects.isNull(part) ? null : part.getName();
+		DatePart datePart = (part instanceof DatePart) ? (DatePart) part : null;
+		KeyRange keyRange = (part instanceof KeyRangePart) ? (KeyRangePart) part : null;
 		String readerName = Objects.isNull(partName) ? jobName : jobName + "." + partName;
 		
 		Table myTable = table;
@@ -299,16 +369,25 @@ public class JobConfig {
 		if (action == Action.SYNC) {
 			// Database connection is required for Synchronizer only
 			assert db != null;
-			reader = new Synchronizer(myTable, db, sqlTableName, readerName);
+			if (getSyncMode() == SyncMode.MERGE)
+				reader = new MergeSynchronizer(myTable, db, sqlTableName, readerName);
+			else if (getSyncMode() == SyncMode.BUCKET)
+				reader = new Synchronizer(myTable, db, sqlTableName, readerName)
+					.setBucketDepth(Synchronizer.DEFAULT_BUCKET_DEPTH);
+			else
+				reader = new Synchronizer(myTable, db, sqlTableName, readerName);
 		}
 		else {
-			reader = new RestTableReader(myTable);
+			RestTableReader restReader = new RestTableReader(myTable);
+			restReader.setPrefetch(getPrefetch());
+			reader = restReader;
 		}
 		reader.setReaderName(readerName);
 		reader.setPartName(partName);
 		reader.setFilter(getFilter(myTable));		
 		reader.setCreatedRange(getCreatedRange(datePart));		
 		reader.setUpdatedRange(getUpdatedRange());
+		reader.setKeyRange(keyRange);
 		reader.setFilter(getFilter(myTable));
 		reader.setFields(getColumns());
 		reader.setPageSize(getPageSize());
@@ -329,6 +408,12 @@ public class JobConfig {
 		node.put("action", this.action.toString());
 		if (doc_id != null) node.put("doc_id", doc_id.toString());
 		if (getTruncate()) node.put("truncate", true);
+		if (getBulkLoad()) node.put("bulkload", true);
+		if (getStaging()) node.put("staging", true);
+		if (commitRows != null) node.put("commitrows", commitRows);
+		if (commitBytes != null) node.put("commitbytes", commitBytes);
+		if (commitSeconds != null) node.put("commitseconds", commitSeconds);
+		if (getSingleTransaction()) node.put("singletransaction", true);
 		if (getDropTable()) node.put("drop", true);
 		if (getAutoCreate()) node.put("autocreate", getAutoCreate());
 		if (sinceExpr != null) 
@@ -337,10 +422,14 @@ public class JobConfig {
 			node.set("created", getCreatedRange(null).toJsonNode());
 		if (getPartitionInterval() != null) 
 			node.put("partition",  getPartitionInterval().toString());
+		if (partitionBy != null) node.put("partitionby", partitionBy.toString());
+		if (partitionRows != null) node.put("partitionrows", partitionRows);
+		if (syncMode != null) node.put("syncmode", syncMode.toString());
 		if (filter != null) node.put("filter",this.filter);
 		if (includeColumns != null) node.put("columns", includeColumns.toString());
 		if (minRows != null) node.put("minrows", minRows);
 		if (maxRows != null) node.put("maxrows", maxRows);
+		if (prefetch != null) node.put("prefetch", prefetch);
 		String yaml;
 		try {
 			yaml = mapper.writeValueAsString(node);
@@ -164,61 +164,86 @@ public class JobRunner implements Callable<Metrics> {
 		logger.debug(Log.INIT, "runLoad " + config.toString());
 		if (config.getAutoCreate()) 
 			database.createMissingTable(table, sqlTableName, config.getColumns());
-		Interval partitionInterval = config.getPartitionInterval();
 		TableReader reader;
-		if (partitionInterval == null) {
+		if (!config.isPartitioned()) {
 			reader = config.createReader(table, database);			
 			ProgressLogger progressLogger = createJobProgressLogger(reader);
 			reader.prepare(null, jobMetrics, progressLogger);
 		}
 		else {
-			DatePartitionedTableReader multiReader = 
-				new DatePartitionedTableReader(table, config, database);
+			PartitionedTableReader multiReader = createPartitionedReader();
 			reader = multiReader;
 			ProgressLogger progressLogger = createJobProgressLogger(multiReader);	
 			reader.prepare(null, jobMetrics, progressLogger);
-			DatePartition partition = multiReader.getPartition();
-			logger.info(Log.INIT, "partition=" + partition.toString());
 		}
 		Log.setTableContext(table, config.getName());
 		reader.call();
 	}
 	
+	private PartitionedTableReader createPartitionedReader() {
+		switch (config.getPartitionBy()) {
+		case KEYS:
+			return new KeyRangePartitionedTableReader(table, config, database);
+		default:
+			return new DatePartitionedTableReader(table, config, database);
+		}
+	}
+	
 	private void runLoad() throws SQLException, IOException, InterruptedException {
 		String sqlTableName = config.getTarget();
 		assert sqlTableName != null;
-		Action action = config.getAction();	
 		logger.debug(Log.INIT, "runLoad " + config.toString());
 		if (config.getAutoCreate()) 
 			database.createMissingTable(table, sqlTableName, config.getColumns());
-		if (config.getTruncate()) database.truncateTable(sqlTableName);
-		
-		DatabaseTableWriter writer;
-		if (Action.INSERT.equals(action) || Action.LOAD.equals(action)) {
-			writer = new DatabaseInsertWriter(database, table, sqlTableName, config.getName());
+		// a commit policy needs a transaction, so autocommit is turned off while the job runs
+		boolean autoCommit = config.getCommitPolicy().isEveryPage() ? false : database.disableAutoCommit();
+		try {
+			// in a single transaction the truncate is not committed until the load is complete
+			if (config.getTruncate()) database.truncateTable(sqlTableName, !config.getSingleTransaction());
+			runLoad(sqlTableName);
+		}
+		finally {
+			// anything which was not committed is rolled back
+			database.restoreAutoCommit(autoCommit);
+		}
+	}
+
+	private void runLoad(String sqlTableName) throws SQLException, IOException, InterruptedException {
+		RecordWriter writer;
+		int threads = (config.getThreads() == null) ? 1 : config.getThreads();
+		if (config.isPartitioned() && threads > 1 && !config.getStaging() && !config.getSingleTransaction()) {
+			// each reader thread writes using its own connection
+			writer = new DatabaseWriterPool(database, config.getName(), db -> createWriter(db, sqlTableName));
 		}
 		else {
-			writer = new DatabaseUpdateWriter(database, table, sqlTableName, config.getName());
+			writer = createWriter(database, sqlTableName);
 		}
 		writer.open(jobMetrics);
-		Interval partitionInterval = config.getPartitionInterval();
+		try {
+			runLoad(writer);
+		}
+		finally {
+			// if the job failed then the connections of the pool must still be released
+			if (writer instanceof DatabaseWriterPool) ((DatabaseWriterPool) writer).closeConnections();
+		}
+	}
+
+	private void runLoad(RecordWriter writer) throws SQLException, IOException, InterruptedException {
 		DateTime since = config.getSince();	
 		logger.debug(Log.INIT, "since=" + config.sinceExpr + "=" + since);
 		TableReader reader;
 		Log.setTableContext(table, config.getName());					
-		if (partitionInterval == null) {
+		if (!config.isPartitioned()) {
 			reader = config.createReader(table, database);
 			ProgressLogger progressLogger = createJobProgressLogger(reader);
 			if (since != null) logger.info(Log.INIT, "getKeys " + reader.getQuery().toString());
 			reader.prepare(writer, jobMetrics, progressLogger);
 		}
 		else {
-			DatePartitionedTableReader multiReader = new DatePartitionedTableReader(table, config, database);
+			PartitionedTableReader multiReader = createPartitionedReader();
 			reader = multiReader;
 			ProgressLogger progressLogger = createJobProgressLogger(multiReader);
 			reader.prepare(writer, jobMetrics, progressLogger);
-			DatePartition partition = multiReader.getPartition();
-			logger.info(Log.INIT, "partition=" + partition.toString());
 		}
 		assert reader.getMetrics() != null;
 		assert reader.getMetrics().getName() == config.getName();
@@ -227,4 +252,34 @@ public class JobRunner implements Callable<Metrics> {
 		writer.close(jobMetrics);
 	}
 
+	private DatabaseTableWriter createWriter(Database db, String sqlTableName) 
+			throws SQLException, IOException {
+		Action action = config.getAction();
+		DatabaseTableWriter writer = null;
+		if (config.getBulkLoad()) {
+			writer = DatabaseBulkWriter.create(db, table, sqlTableName, config.getName());
+			if (writer == null) 
+				logger.warn(Log.INIT, "bulkload is not supported for this database; using insert");
+		}
+		if (config.getStaging()) {
+			if (DatabaseMergeWriter.isSupported(db))
+				writer = new DatabaseMergeWriter(db, table, sqlTableName, config.getName());
+			else
+				logger.warn(Log.INIT, "staging is not supported for this database; using update");
+		}
+		if (writer != null) {
+			logger.info(Log.INIT, "using " + writer.getClass().getSimpleName());
+		}
+		else if (Action.INSERT.equals(action) || Action.LOAD.equals(action)) {
+			writer = new DatabaseInsertWriter(db, table, sqlTableName, config.getName());
+		}
+		else {
+			writer = new DatabaseUpdateWriter(db, table, sqlTableName, config.getName());
+		}
+		CommitPolicy commitPolicy = config.getCommitPolicy();
+		if (!commitPolicy.isEveryPage()) logger.info(Log.INIT, "commit " + commitPolicy.toString());
+		writer.setCommitPolicy(commitPolicy);
+		return writer;
+	}
+
 }
@@ -0,0 +1,87 @@
+package sndml.datamart;
+
+import sndml.servicenow.*;
+
+/**
+ * Row count and maximum <b>sys_updated_on</b> of a database table
+ * for each <b>sys_id</b> prefix of a fixed length (the depth).
+ * <p>Values for shorter prefixes are obtained by adding up the longer ones,
+ * so that the table only needs to be read once.
+ * Bucket <i>i</i> at depth <i>d</i> holds the keys whose first <i>d</i> hex digits
+ * equal <i>i</i>. Keys which are not hex are counted in the first or last bucket
+ * because the first and last {@link KeyRange} are unbounded.</p>
+ */
+class KeyBuckets {
+
+	static final int MAX_DEPTH = 4;
+
+	final int depth;
+	private final int[] counts;
+	private final long[] maxSeconds;
+
+	KeyBuckets(int depth) {
+		if (depth < 1 || depth > MAX_DEPTH) throw new IllegalArgumentException("depth=" + depth);
+		this.depth = depth;
+		this.counts = new int[size(depth)];
+		this.maxSeconds = new long[size(depth)];
+	}
+
+	/**
+	 * Number of buckets at a depth
+	 */
+	static int size(int depth) {
+		return 1 << (4 * depth);
+	}
+
+	void add(String prefix, int count, long seconds) {
+		int index = indexOf(prefix);
+		counts[index] += count;
+		if (seconds > maxSeconds[index]) maxSeconds[index] = seconds;
+	}
+
+	private int indexOf(String prefix) {
+		try {
+			if (prefix.length() == depth) return Integer.parseInt(prefix, 16);
+		}
+		catch (NumberFormatException e) {
+			// fall through
+		}
+		return prefix.compareTo("0") < 0 ? 0 : counts.length - 1;
+	}
+
+	int getCount(int level, int index) {
+		int result = 0;
+		int shift = 4 * (depth - level);
+		for (int i = index << shift; i < (index + 1) << shift; ++i) result += counts[i];
+		return result;
+	}
+
+	/**
+	 * Maximum sys_updated_on as seconds since the epoch, or 0 if the bucket is empty
+	 */
+	long getMaxSeconds(int level, int index) {
+		long result = 0;
+		int shift = 4 * (depth - level);
+		for (int i = index << shift; i < (index + 1) << shift; ++i)
+			if (maxSeconds[i] > result) result = maxSeconds[i];
+		return result;
+	}
+
+	/**
+	 * Return the range of keys for a bucket.
+	 * The first bucket has no start and the last bucket has no end.
+	 */
+	static KeyRange getRange(int level, int index) {
+		assert index >= 0 && index < size(level);
+		RecordKey start = (index == 0) ? null : prefixKey(level, index);
+		RecordKey end = (index + 1 == size(level)) ? null : prefixKey(level, index + 1);
+		return new KeyRange(start, end);
+	}
+
+	private static RecordKey prefixKey(int level, int index) {
+		StringBuilder result = new StringBuilder(String.format("%0" + level + "x", index));
+		while (result.length() < 32) result.append('0');
+		return new RecordKey(result.toString());
+	}
+
+}
@@ -0,0 +1,33 @@
+package sndml.datamart;
+
+import sndml.servicenow.KeyRange;
+import sndml.servicenow.RecordKey;
+
+/**
+ * One piece of a {@link KeyRangePartitionedTableReader}.
+ */
+public class KeyRangePart extends KeyRange implements PartitionPart {
+
+	protected final String name;
+	
+	public KeyRangePart(String name, RecordKey start, RecordKey end) {
+		super(start, end);
+		assert name != null;
+		this.name = name;
+	}
+	
+	public KeyRangePart(String name, KeyRange range) {
+		this(name, range.getStart(), range.getEnd());
+	}
+	
+	@Override
+	public String getName() {
+		return name;
+	}
+	
+	@Override
+	public String toString() {
+		return getName();
+	}
+	
+}
@@ -0,0 +1,133 @@
+package sndml.datamart;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import sndml.servicenow.*;
+
+/**
+ * A {@link PartitionedTableReader} which divides the sys_id space 
+ * into contiguous ranges ("sys_id&gt;=X^sys_id&lt;Y"). 
+ * The Stats API is used to size the ranges so that each range
+ * contains a similar number of rows. There is one range per thread.
+ */
+public final class KeyRangePartitionedTableReader extends PartitionedTableReader {
+
+	// number of equal width buckets counted per part before balancing
+	static final int BUCKETS_PER_PART = 4;
+	// maximum number of times that a large bucket will be halved
+	static final int MAX_SPLITS = 4;
+	
+	private List<KeyRangePart> parts;
+	
+	public KeyRangePartitionedTableReader(Table table, JobConfig config, Database db) {
+		super(table, config, db);
+	}
+
+	public List<KeyRangePart> getPartition() {
+		assert parts != null : "Not initialized";
+		return parts;
+	}
+	
+	@Override
+	protected Iterable<KeyRangePart> getParts() {
+		return getPartition();
+	}
+
+	@Override
+	protected void freeParts() {
+		parts = null;
+	}
+	
+	@Override
+	public void prepare(RecordWriter writer, Metrics metrics, ProgressLogger progress)
+			throws IOException, InterruptedException {
+		super.beginPrepare(writer, metrics, progress);
+		assert writer != null;
+		assert metrics != null;
+		assert progress != null;
+		EncodedQuery query = this.getStatsQuery();
+		logger.debug(Log.INIT, String.format("initialize query=\"%s\"", query));
+		int expected = table.rest().getStats(query, false).getCount();
+		logger.debug(Log.INIT, String.format("expected=%d", expected));
+		if (expected == 0) {
+			logger.debug(Log.PROCESS, "expecting 0 rows; no readers created");
+			parts = new ArrayList<KeyRangePart>();
+		}
+		else {
+			parts = balance(expected, getThreadCount());			
+		}
+		logger.info(Log.INIT, String.format(
+			"partition=%s expected=%d", parts.toString(), expected));
+		super.endPrepare(expected);
+	}
+	
+	/**
+	 * A key range and the number of rows it contains.
+	 */
+	private static class Bucket {
+		final KeyRange range;
+		final int count;
+		
+		Bucket(KeyRange range, int count) {
+			this.range = range;
+			this.count = count;
+		}
+	}
+	
+	private int countRows(KeyRange range) throws IOException {
+		EncodedQuery query = this.getStatsQuery().addKeyRange(range);
+		return table.rest().getStats(query, false).getCount();
+	}
+	
+	/**
+	 * Count rows in equal width buckets, halving any bucket which is too large,
+	 * and then merge adjacent buckets into parts with similar row counts.
+	 */
+	List<KeyRangePart> balance(int expected, int numParts) throws IOException {
+		assert numParts > 0;
+		int target = (expected + numParts - 1) / numParts;
+		List<Bucket> buckets = new ArrayList<Bucket>();
+		for (KeyRange range : KeyRange.all().split(numParts * BUCKETS_PER_PART)) {
+			addBucket(buckets, range, countRows(range), target, 0);
+		}
+		int total = 0;
+		for (Bucket bucket : buckets) total += bucket.count;
+		List<KeyRangePart> result = new ArrayList<KeyRangePart>(numParts);
+		KeyRange current = null;
+		int cumulative = 0;
+		for (Bucket bucket : buckets) {
+			current = (current == null) ? bucket.range : current.merge(bucket.range);
+			cumulative += bucket.count;
+			// close the part once it reaches its share of the cumulative total
+			long boundary = (long) total * (result.size() + 1) / numParts;
+			if (cumulative >= boundary && result.size() < numParts - 1) {
+				result.add(newPart(result.size(), numParts, current));
+				current = null;
+			}
+		}
+		if (current != null) result.add(newPart(result.size(), numParts, current));
+		return result;
+	}
+	
+	private void addBucket(List<Bucket> buckets, KeyRange range, int count, int target, int depth) 
+			throws IOException {
+		List<KeyRange> halves = (count > target / 2 && depth < MAX_SPLITS) ? range.split(2) : null;
+		if (halves == null || halves.size() < 2) {
+			buckets.add(new Bucket(range, count));
+			return;
+		}
+		int leftCount = countRows(halves.get(0));
+		int rightCount = Math.max(count - leftCount, 0);
+		addBucket(buckets, halves.get(0), leftCount, target, depth + 1);
+		addBucket(buckets, halves.get(1), rightCount, target, depth + 1);
+	}
+	
+	private static KeyRangePart newPart(int index, int numParts, KeyRange range) {
+		int width = Integer.toString(numParts).length();
+		String name = String.format("K%0" + width + "d", index + 1);
+		return new KeyRangePart(name, range);
+	}
+	
+}
@@ -14,7 +14,7 @@ public class Log4jProgressLogger extends ProgressLogger {
 		this(reader, action, null);
 	}
 	
-	public Log4jProgressLogger(TableReader reader, Action action, DatePart part) {
+	public Log4jProgressLogger(TableReader reader, Action action, PartitionPart part) {
 		this(reader.getClass(), action, null, null);
 	}
 
@@ -24,7 +24,7 @@ public class Log4jProgressLogger extends ProgressLogger {
 	}
 	
 	@SuppressWarnings("rawtypes")
-	public Log4jProgressLogger(Class clazz, Action action, Metrics metrics, DatePart part) {
+	public Log4jProgressLogger(Class clazz, Action action, Metrics metrics, PartitionPart part) {
 		super(metrics, part);
 		assert action != null;
 		assert metrics != null;
@@ -32,7 +32,7 @@ public class Log4jProgressLogger extends ProgressLogger {
 		this.logger = LoggerFactory.getLogger(clazz);
 	}
 	
-	protected Log4jProgressLogger(Logger logger, Action action, Metrics metrics, DatePart part) {
+	protected Log4jProgressLogger(Logger logger, Action action, Metrics metrics, PartitionPart part) {
 		super(metrics, part);
 		assert action != null;
 		assert metrics != null;
@@ -41,12 +41,12 @@ public class Log4jProgressLogger extends ProgressLogger {
 	}
 		
 			
-	public Log4jProgressLogger newPartLogger(TableReader newReader, DatePart newPart) {
+	public Log4jProgressLogger newPartLogger(TableReader newReader, PartitionPart newPart) {
 		return new Log4jProgressLogger(newReader, action, newPart);
 	}
 
 	@Override
-	public ProgressLogger newPartLogger(Metrics newMetrics, DatePart newPart) {
+	public ProgressLogger newPartLogger(Metrics newMetrics, PartitionPart newPart) {
 		return new Log4jProgressLogger(logger, action, newMetrics, newPart);
 	}
 
@@ -73,7 +73,7 @@ public class Log4jProgressLogger extends ProgressLogger {
 			assert metrics.hasParent();			
 			Integer parentExpected = metrics.getParent().getExpected();
 			logger.info(Log.INIT, String.format(
-				"Starting %s (%d / %d rows)", datePart,	expected, parentExpected));			
+				"Starting %s (%d / %d rows)", part,	expected, parentExpected));			
 		}
 		else {
 			logger.info(Log.INIT, String.format(
@@ -103,7 +103,7 @@ public class Log4jProgressLogger extends ProgressLogger {
 		}
 		if (hasPart()) {
 			logger.info(Log.FINISH, String.format(
-					"Completed %s (%d rows)", datePart, processed));					
+					"Completed %s (%d rows)", part, processed));					
 		}
 		else {
 			logger.info(Log.FINISH, String.format(
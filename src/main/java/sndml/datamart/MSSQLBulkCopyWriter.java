@@ -0,0 +1,125 @@
+package sndml.datamart;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import com.microsoft.sqlserver.jdbc.ISQLServerBulkData;
+import com.microsoft.sqlserver.jdbc.SQLServerBulkCopy;
+import com.microsoft.sqlserver.jdbc.SQLServerBulkCopyOptions;
+
+import sndml.servicenow.Log;
+import sndml.servicenow.Table;
+
+/**
+ * Loads rows into SQL Server using the bulk copy API of the JDBC driver.
+ * The copy runs in the transaction of the connection.
+ */
+public class MSSQLBulkCopyWriter extends DatabaseBulkWriter {
+
+	public MSSQLBulkCopyWriter(Database db, Table table, String sqlTableName, String writerName)
+			throws IOException, SQLException {
+		super(db, table, sqlTableName, writerName);
+	}
+
+	@Override
+	long bulkLoad(List<Object[]> rows) throws SQLException, IOException {
+		String tableName = db.getGenerator().qualifiedTableName(sqlTableName);
+		logger.debug(Log.PROCESS, String.format("bulk copy %d rows to %s", rows.size(), tableName));
+		SQLServerBulkCopyOptions options = new SQLServerBulkCopyOptions();
+		options.setUseInternalTransaction(false);
+		options.setBulkCopyTimeout(0);
+		try (SQLServerBulkCopy bulkCopy = new SQLServerBulkCopy(db.getConnection())) {
+			bulkCopy.setBulkCopyOptions(options);
+			bulkCopy.setDestinationTableName(tableName);
+			for (int i = 0; i < columns.size(); ++i) {
+				bulkCopy.addColumnMapping(i + 1, columns.get(i).getName());
+			}
+			bulkCopy.writeToServer(new BulkData(rows));
+		}
+		return rows.size();
+	}
+
+	/**
+	 * Bulk copy source for a list of converted rows.
+	 * Dates and timestamps are passed as wall clock values in the database time zone.
+	 */
+	@SuppressWarnings("serial")
+	class BulkData implements ISQLServerBulkData {
+
+		final Iterator<Object[]> iter;
+		Object[] current;
+
+		BulkData(List<Object[]> rows) {
+			this.iter = rows.iterator();
+		}
+
+		@Override
+		public Set<Integer> getColumnOrdinals() {
+			Set<Integer> result = new TreeSet<Integer>();
+			for (int i = 1; i <= columns.size(); ++i) result.add(i);
+			return result;
+		}
+
+		@Override
+		public String getColumnName(int column) {
+			return columns.get(column - 1).getName();
+		}
+
+		@Override
+		public int getColumnType(int column) {
+			switch (columns.get(column - 1).getType()) {
+			case Types.DATE: return Types.DATE;
+			case Types.TIMESTAMP: return Types.TIMESTAMP;
+			case Types.BOOLEAN:
+			case Types.BIT: return Types.BIT;
+			case Types.TINYINT: return Types.TINYINT;
+			case Types.SMALLINT: return Types.SMALLINT;
+			case Types.INTEGER: return Types.INTEGER;
+			case Types.BIGINT: return Types.BIGINT;
+			case Types.DOUBLE:
+			case Types.FLOAT:
+			case Types.NUMERIC:
+			case Types.DECIMAL: return Types.DOUBLE;
+			default: return Types.NVARCHAR;
+			}
+		}
+
+		@Override
+		public int getPrecision(int column) {
+			return Math.max(columns.get(column - 1).getSize(), 1);
+		}
+
+		@Override
+		public int getScale(int column) {
+			return 0;
+		}
+
+		@Override
+		public boolean next() {
+			if (!iter.hasNext()) return false;
+			current = iter.next();
+			return true;
+		}
+
+		@Override
+		public Object[] getRowData() {
+			Object[] result = new Object[current.length];
+			for (int i = 0; i < current.length; ++i) {
+				Object value = current[i];
+				if (value instanceof java.sql.Timestamp)
+					value = java.sql.Timestamp.valueOf(formatValue(value));
+				else if (value instanceof java.sql.Date)
+					value = java.sql.Date.valueOf(formatValue(value));
+				result[i] = value;
+			}
+			return result;
+		}
+
+	}
+
+}
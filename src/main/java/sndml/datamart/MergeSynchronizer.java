@@ -0,0 +1,244 @@
+package sndml.datamart;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.sql.SQLException;
+
+import sndml.servicenow.*;
+
+/**
+ * A streaming alternative to {@link Synchronizer}.
+ * <p>Rather than loading all keys and timestamps into memory,
+ * this class reads the database keys in sys_id order (one page at a time)
+ * and the ServiceNow keys in sys_id order (one page at a time),
+ * and merges the two streams. Each page of database keys is read
+ * with a statement which is closed before any rows are written,
+ * so the reads and writes can share one connection. Inserts, updates and deletes are written
+ * in batches as they are discovered, so memory use does not depend on
+ * the size of the table.</p>
+ * <p>This class is used if the job specifies <b>syncmode: merge</b>.</p>
+ */
+public class MergeSynchronizer extends TableReader {
+
+	static final int KEY_PAGE_SIZE = 10000;
+
+	final Database db;
+	final String sqlTableName;
+	final String writerName;
+
+	private DatabaseTimestampReader dbReader;
+	private KeySet dbChunk; // database keys which have been read
+	private long[] dbChunkSeconds;
+	private int dbChunkSize = 0;
+	private int dbChunkNext = 0; // position in the chunk of the row after dbKey
+	private boolean dbFinished = false; // no more rows after the current chunk
+	private RecordKey dbKey; // current database row; null if no more rows
+	private long dbSeconds;
+	private RecordKey lastKey; // previous ServiceNow key
+
+	private KeySet insertSet = new KeySet();
+	private KeySet updateSet = new KeySet();
+	private KeySet deleteSet = new KeySet();
+	private DatabaseInsertWriter insertWriter;
+	private DatabaseUpdateWriter updateWriter;
+	private DatabaseDeleteWriter deleteWriter;
+	private Metrics insertMetrics;
+	private Metrics updateMetrics;
+	private Metrics deleteMetrics;
+
+	public MergeSynchronizer(Table table, Database db, String sqlTableName, String writerName) {
+		super(table);
+		this.db = db;
+		this.sqlTableName = sqlTableName;
+		this.writerName = writerName;
+		this.metrics = new Metrics(writerName);
+	}
+
+	@Override
+	public void prepare(RecordWriter writer, Metrics metrics, ProgressLogger progress)
+			throws IOException, SQLException, InterruptedException {
+		assert writer == null;
+		beginPrepare(writer, metrics, progress);
+		// The number of changes is not known until the merge is complete,
+		// so use the number of rows in ServiceNow
+		EncodedQuery query = getStatsQuery();
+		int expected = table.rest().getStats(query, false).getCount();
+		logger.debug(Log.INIT, String.format("expected=%d query=\"%s\"", expected, query));
+		endPrepare(expected);
+	}
+
+	/**
+	 * Receives pages of ServiceNow keys in sys_id order.
+	 */
+	private class MergeWriter extends RecordWriter {
+
+		@Override
+		public void processRecords(RecordList recs, Metrics keyMetrics, ProgressLogger progressLogger)
+				throws IOException, SQLException {
+			for (TableRecord rec : recs) {
+				merge(rec.getKey(), rec.getUpdatedTimestamp());
+			}
+			flush(false);
+		}
+
+	}
+
+	@Override
+	public Metrics call() throws IOException, SQLException, InterruptedException {
+		assert initialized;
+		assert progress != null;
+		progress.logStart();
+		openWriters();
+		try {
+			dbReader = new DatabaseTimestampReader(db);
+			dbChunkSeconds = new long[getPageSize()];
+			advanceDatabase();
+			RestTableReader keyReader = new RestTableReader(this.table);
+			keyReader.setReaderName(writerName + ".KEYS");
+			keyReader.setFields(new FieldNames("sys_id,sys_updated_on"));
+			keyReader.setCreatedRange(this.createdRange);
+			keyReader.setFilter(this.filter);
+			keyReader.setPageSize(KEY_PAGE_SIZE);
+			keyReader.setStreaming(false);
+			keyReader.prepare(new MergeWriter(), new Metrics(writerName + ".KEYS"), new NullProgressLogger());
+			keyReader.call();
+			Log.setTableContext(table, writerName);
+			// any remaining database rows are not in ServiceNow
+			while (dbKey != null) {
+				deleteSet.add(dbKey);
+				advanceDatabase();
+				flush(false);
+			}
+			flush(true);
+		}
+		finally {
+			closeWriters();
+		}
+		progress.logComplete();
+		return metrics;
+	}
+
+	/**
+	 * Compare the next ServiceNow key with the database cursor.
+	 * Any database keys which are less than the ServiceNow key must be deleted.
+	 */
+	private void merge(RecordKey snKey, DateTime snUpdated) throws SQLException {
+		assert snKey != null;
+		if (lastKey != null && snKey.compareTo(lastKey) <= 0)
+			throw new IllegalStateException(String.format(
+				"ServiceNow keys out of order: %s after %s", snKey, lastKey));
+		lastKey = snKey;
+		while (dbKey != null && dbKey.compareTo(snKey) < 0) {
+			deleteSet.add(dbKey);
+			advanceDatabase();
+		}
+		if (dbKey != null && dbKey.equals(snKey)) {
+			if (dbSeconds == snUpdated.getSeconds())
+				metrics.incrementSkipped();
+			else
+				updateSet.add(snKey);
+			advanceDatabase();
+		}
+		else {
+			insertSet.add(snKey);
+		}
+	}
+
+	private void advanceDatabase() throws SQLException {
+		if (dbChunkNext == dbChunkSize && !dbFinished) readChunk();
+		if (dbChunkNext < dbChunkSize) {
+			RecordKey key = dbChunk.get(dbChunkNext);
+			if (dbKey != null && key.compareTo(dbKey) <= 0)
+				throw new SQLException(String.format(
+					"%s: sys_id out of order: %s after %s", sqlTableName, key, dbKey));
+			dbKey = key;
+			dbSeconds = dbChunkSeconds[dbChunkNext++];
+		}
+		else {
+			dbKey = null;
+		}
+	}
+
+	/**
+	 * Read the next page of database keys which follow the current key.
+	 * Any keys inserted since the previous page was read are less than
+	 * the current key, so they are not read again.
+	 */
+	private void readChunk() throws SQLException {
+		dbChunk = new KeySet(dbChunkSeconds.length);
+		dbChunkSize = dbReader.getOrderedTimestamps(
+			sqlTableName, createdRange, dbKey, dbChunk, dbChunkSeconds);
+		dbChunkNext = 0;
+		if (dbChunkSize < dbChunkSeconds.length) dbFinished = true;
+		logger.debug(Log.PROCESS, String.format("read %d database keys", dbChunkSize));
+	}
+
+	private void openWriters() throws IOException, SQLException {
+		String insertPartName = writerName + ".INSERT";
+		String updatePartName = writerName + ".UPDATE";
+		String deletePartName = writerName + ".DELETE";
+		insertMetrics = new Metrics(insertPartName, this.metrics);
+		updateMetrics = new Metrics(updatePartName, this.metrics);
+		deleteMetrics = new Metrics(deletePartName, this.metrics);
+		insertWriter = new DatabaseInsertWriter(db, table, sqlTableName, insertPartName);
+		updateWriter = new DatabaseUpdateWriter(db, table, sqlTableName, updatePartName);
+		deleteWriter = new DatabaseDeleteWriter(db, table, sqlTableName, deletePartName);
+		insertWriter.open(insertMetrics);
+		updateWriter.open(updateMetrics);
+		deleteWriter.open(deleteMetrics);
+	}
+
+	private void closeWriters() {
+		try {
+			insertWriter.close(insertMetrics);
+		}
+		finally {
+			try {
+				updateWriter.close(updateMetrics);
+			}
+			finally {
+				deleteWriter.close(deleteMetrics);
+			}
+		}
+		logger.info(Log.FINISH, String.format("inserted=%d updated=%d deleted=%d skipped=%d",
+			insertMetrics.getInserted(), updateMetrics.getUpdated(),
+			deleteMetrics.getDeleted(), metrics.getSkipped()));
+	}
+
+	/**
+	 * Write any batch which has reached the page size,
+	 * or all batches if final is true.
+	 */
+	private void flush(boolean all) throws IOException, SQLException {
+		int pageSize = getPageSize();
+		if (insertSet.size() >= pageSize || (all && insertSet.size() > 0)) {
+			readKeys(insertSet, insertWriter, insertMetrics, ".INSERT");
+			insertSet = new KeySet();
+		}
+		if (updateSet.size() >= pageSize || (all && updateSet.size() > 0)) {
+			readKeys(updateSet, updateWriter, updateMetrics, ".UPDATE");
+			updateSet = new KeySet();
+		}
+		if (deleteSet.size() >= pageSize || (all && deleteSet.size() > 0)) {
+			logger.debug(Log.PROCESS, String.format("Deleting %d rows", deleteSet.size()));
+			deleteWriter.deleteRecords(deleteSet, deleteMetrics, progress);
+			deleteSet = new KeySet();
+		}
+	}
+
+	private void readKeys(KeySet keys, DatabaseTableWriter writer, Metrics writerMetrics, String suffix)
+			throws IOException, SQLException {
+		logger.debug(Log.PROCESS, String.format("Reading %d rows for %s", keys.size(), suffix));
+		KeySetTableReader reader = new KeySetTableReader(table);
+		reader.setReaderName(writerName + suffix);
+		reader.setFields(this.fieldNames);
+		reader.setPageSize(this.getPageSize());
+		reader.prepare(keys, writer, writerMetrics, progress);
+		try {
+			reader.call();
+		} catch (InterruptedException e) {
+			throw new InterruptedIOException(e.getMessage());
+		}
+	}
+
+}
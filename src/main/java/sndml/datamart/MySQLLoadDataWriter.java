@@ -0,0 +1,82 @@
+package sndml.datamart;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+import com.mysql.cj.jdbc.JdbcStatement;
+
+import sndml.servicenow.Log;
+import sndml.servicenow.Table;
+
+/**
+ * Loads rows into MySQL using <b>LOAD DATA LOCAL INFILE</b>
+ * from an in-memory stream of tab separated values.
+ * <p>The connection URL must include <b>allowLoadLocalInfile=true</b>.
+ * MySQL skips rows with duplicate keys (with a warning) rather than failing.</p>
+ */
+public class MySQLLoadDataWriter extends DatabaseBulkWriter {
+
+	public MySQLLoadDataWriter(Database db, Table table, String sqlTableName, String writerName)
+			throws IOException, SQLException {
+		super(db, table, sqlTableName, writerName);
+	}
+
+	@Override
+	long bulkLoad(List<Object[]> rows) throws SQLException, IOException {
+		String sql = "LOAD DATA LOCAL INFILE 'sndml' INTO TABLE " + 
+			db.getGenerator().qualifiedTableName(sqlTableName) +
+			" CHARACTER SET utf8mb4" +
+			" FIELDS TERMINATED BY '\\t' ESCAPED BY '\\\\' LINES TERMINATED BY '\\n'" +
+			" (" + getColumnList() + ")";
+		logger.debug(Log.PROCESS, sql);
+		StringBuilder text = new StringBuilder(rows.size() * 256);
+		for (Object[] row : rows) appendRow(text, row);
+		byte[] bytes = text.toString().getBytes(StandardCharsets.UTF_8);
+		Statement stmt = db.getConnection().createStatement();
+		try {
+			stmt.unwrap(JdbcStatement.class).setLocalInfileInputStream(new ByteArrayInputStream(bytes));
+			return stmt.executeUpdate(sql);
+		}
+		finally {
+			stmt.close();
+		}
+	}
+
+	/**
+	 * Append a row of converted values as a line of tab separated values.
+	 */
+	void appendRow(StringBuilder text, Object[] row) {
+		for (int i = 0; i < row.length; ++i) {
+			if (i > 0) text.append('\t');
+			appendField(text, formatValue(row[i]));
+		}
+		text.append('\n');
+	}
+
+	/**
+	 * Append a field using the default LOAD DATA escapes.
+	 * Null is written as \N.
+	 */
+	static void appendField(StringBuilder text, String value) {
+		if (value == null) {
+			text.append("\\N");
+			return;
+		}
+		for (int i = 0; i < value.length(); ++i) {
+			char c = value.charAt(i);
+			switch (c) {
+			case '\\': text.append("\\\\"); break;
+			case '\t': text.append("\\t"); break;
+			case '\n': text.append("\\n"); break;
+			case '\r': text.append("\\r"); break;
+			case '\0': text.append("\\0"); break;
+			default: text.append(c);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,10 @@
+package sndml.datamart;
+
+/**
+ * Strategy used to divide a table for parallel processing.
+ */
+public enum PartitionBy {
+	INTERVAL, // sys_created_on divided by Interval (the default)
+	KEYS,     // sys_id divided into ranges of similar size
+	ADAPTIVE  // sys_created_on divided into ranges of similar size
+}
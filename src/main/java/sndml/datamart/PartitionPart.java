@@ -0,0 +1,14 @@
+package sndml.datamart;
+
+/**
+ * One piece of a partitioned table read.
+ * Each part is read by a separate {@link sndml.servicenow.TableReader}.
+ */
+public interface PartitionPart {
+
+	/**
+	 * Name which is appended to the job name to form the part reader name.
+	 */
+	String getName();
+	
+}
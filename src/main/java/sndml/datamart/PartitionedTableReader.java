@@ -0,0 +1,170 @@
+package sndml.datamart;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import sndml.servicenow.*;
+
+/**
+ * A {@link TableReader} which divides the table into parts 
+ * and creates a separate reader for each part.
+ * If the number of threads is greater than one then the parts are read concurrently,
+ * and each part reader has its own {@link Session}.
+ */
+public abstract class PartitionedTableReader extends TableReader {
+
+	final JobConfig config;
+	final Database db;
+	final int threads;
+	
+	private List<Future<Metrics>> futures;
+	
+	public PartitionedTableReader(Table table, JobConfig config, Database db) {
+		super(table);
+		this.config = config;
+		this.db = db;
+		assert config != null;
+		if (config.getAction() == Action.SYNC) assert db != null;
+		setCreatedRange(config.getCreatedRange(null));
+		setUpdatedRange(config.getUpdatedRange());
+		setFilter(config.getFilter(table));
+		this.threads = (config.getThreads()==null) ? 1 : config.getThreads();
+	}
+	
+	/**
+	 * Return the parts in the order in which they should be read.
+	 * Only called after {@link #prepare} if there are expected rows.
+	 */
+	protected abstract Iterable<? extends PartitionPart> getParts();
+	
+	/**
+	 * Release the parts after all of them have been read.
+	 */
+	protected abstract void freeParts();
+	
+	int getThreadCount() {
+		return this.threads;
+	}
+
+	@Override
+	public Metrics getMetrics() {
+		return this.metrics;
+	}
+
+	private int numPartsTotal() {
+		assert futures != null;
+		return futures.size();
+	}
+		
+	int numPartsComplete() {
+		assert futures != null;
+		int count = 0;
+		for (Future<Metrics> part : futures) {
+			count += (part.isDone() ? 1 : 0);
+		}
+		return count;
+	}
+
+	private int numPartsIncomplete() {
+		assert futures != null;
+		int count = 0;
+		for (Future<Metrics> part : futures) {
+			count += (part.isDone() ? 0 : 1);
+		}
+		return count;
+	}
+		
+	private TableReader createReader(PartitionPart part) 
+			throws IOException, SQLException, InterruptedException {
+		String partName = part.getName();
+		boolean createNewSession = (threads > 1) ? true : false;
+		TableReader partReader = config.createReader(table, db, part, createNewSession);
+		String jobName = config.getName();
+		String partReaderName = Objects.isNull(partName) ? jobName : jobName + "." + partName;
+		assert partReaderName != null;
+		Metrics partMetrics = new Metrics(partReaderName, this.metrics);
+		ProgressLogger partLogger = progress.newPartLogger(partMetrics, part);
+		partReader.prepare(writer, partMetrics, partLogger);
+		return partReader;		
+	}
+
+	@Override
+	public Metrics call() throws IOException, SQLException, InterruptedException {
+		progress.logStart();
+		if (getExpected() == 0) {
+			logger.debug(Log.PROCESS, "expecting 0 rows; bypassing call");
+			return metrics;
+		}
+		if (threads > 1) {			
+			futures = new ArrayList<Future<Metrics>>();
+			logger.info(Log.INIT, String.format("starting %d threads", threads));			
+			ExecutorService executor = Executors.newFixedThreadPool(this.threads);
+			for (PartitionPart part : getParts()) {
+				TableReader partReader = createReader(part);
+				logger.debug("Submit " + metrics.getName());
+				Future<Metrics> future = executor.submit(() -> {
+					try {
+						return partReader.call();
+					}
+					finally {
+						// add the part to the totals of the job
+						partReader.getMetrics().finish();
+					}
+				});
+				futures.add(future);				
+			}
+			executor.shutdown();
+			while (!executor.awaitTermination(60, TimeUnit.SECONDS)) {
+				logger.info(Log.FINISH, String.format("Waiting for %d / %d partitions to complete", 
+					numPartsIncomplete(), numPartsTotal()));
+			}
+			// if any part failed then throw the exception from the first one
+			for (Future<Metrics> future : futures) getPartResult(future);
+		}
+		else {
+			for (PartitionPart part : getParts()) {
+				TableReader partReader = createReader(part);
+				assert partReader.getProgressLogger() != null;
+				try {
+					partReader.call();
+				}
+				finally {
+					// add the part to the totals of the job
+					partReader.getMetrics().finish();
+				}
+			}
+		}
+		progress.logComplete();
+		// lease waits indicate that the connection pool is too small for the threads
+		logger.info(Log.FINISH, "pool " + table.getSession().getConnectionPool().toString());
+		logger.info(Log.FINISH, "limiter " + table.getSession().getRateLimiter().toString());
+		// Free resources
+		futures = null;
+		freeParts();
+		return metrics;
+	}
+	
+	private void getPartResult(Future<Metrics> future) 
+			throws IOException, SQLException, InterruptedException {
+		try {
+			future.get();
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException) throw (IOException) cause;
+			if (cause instanceof SQLException) throw (SQLException) cause;
+			if (cause instanceof InterruptedException) throw (InterruptedException) cause;
+			if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+			if (cause instanceof Error) throw (Error) cause;
+			throw new ResourceException(cause);
+		}
+	}
+	
+}
@@ -0,0 +1,74 @@
+package sndml.datamart;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.List;
+
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.postgresql.copy.CopyManager;
+
+import sndml.servicenow.Log;
+import sndml.servicenow.Table;
+
+/**
+ * Loads rows into PostgreSQL using <b>COPY FROM STDIN</b> in CSV format.
+ * Rows are streamed to the server as they are formatted.
+ */
+public class PostgreSQLCopyWriter extends DatabaseBulkWriter {
+
+	public PostgreSQLCopyWriter(Database db, Table table, String sqlTableName, String writerName)
+			throws IOException, SQLException {
+		super(db, table, sqlTableName, writerName);
+	}
+
+	@Override
+	long bulkLoad(List<Object[]> rows) throws SQLException, IOException {
+		String sql = "COPY " + db.getGenerator().qualifiedTableName(sqlTableName) +
+			" (" + getColumnList() + ") FROM STDIN WITH (FORMAT csv)";
+		logger.debug(Log.PROCESS, sql);
+		CopyManager copyAPI = db.getConnection().unwrap(PGConnection.class).getCopyAPI();
+		CopyIn copyIn = copyAPI.copyIn(sql);
+		try {
+			StringBuilder line = new StringBuilder();
+			for (Object[] row : rows) {
+				line.setLength(0);
+				appendRow(line, row);
+				byte[] bytes = line.toString().getBytes(StandardCharsets.UTF_8);
+				copyIn.writeToCopy(bytes, 0, bytes.length);
+			}
+			return copyIn.endCopy();
+		}
+		finally {
+			if (copyIn.isActive()) copyIn.cancelCopy();
+		}
+	}
+
+	/**
+	 * Append a row of converted values as a line of CSV.
+	 */
+	void appendRow(StringBuilder line, Object[] row) {
+		for (int i = 0; i < row.length; ++i) {
+			if (i > 0) line.append(',');
+			appendCsv(line, formatValue(row[i]));
+		}
+		line.append('\n');
+	}
+
+	/**
+	 * Append a CSV field. Null is written as an empty unquoted field.
+	 * Any other value is quoted so that an empty string is not read as null.
+	 */
+	static void appendCsv(StringBuilder line, String value) {
+		if (value == null) return;
+		line.append('"');
+		for (int i = 0; i < value.length(); ++i) {
+			char c = value.charAt(i);
+			if (c == '"') line.append('"');
+			line.append(c);
+		}
+		line.append('"');
+	}
+
+}
@@ -0,0 +1,10 @@
+package sndml.datamart;
+
+/**
+ * Method used by Action SYNC to compare ServiceNow with the database.
+ */
+public enum SyncMode {
+	HASH, // load all keys and timestamps into memory (the default)
+	MERGE, // merge the two key streams in sys_id order
+	BUCKET // like HASH, but skip sys_id prefixes whose count and max(sys_updated_on) match
+}
@@ -2,6 +2,8 @@ package sndml.datamart;
 
 import java.io.IOException;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
 
 import sndml.servicenow.*;
 
@@ -10,10 +12,16 @@ import sndml.servicenow.*;
  * with the keys and timestamps from a database table
  * and figure out which records need to be inserted, which ones need to be updated,
  * and which ones need to be deleted in the database table.
- *
+ * <p>If a bucket depth is set then the row count and maximum sys_updated_on
+ * are first compared for each sys_id prefix, and only the key ranges
+ * which differ are read and compared key by key.</p>
  */
 public class Synchronizer extends TableReader {
 
+	static final int DEFAULT_BUCKET_DEPTH = 3;
+	// buckets with more rows than this are split into 16 smaller buckets
+	static final int MIN_SPLIT_ROWS = 50000;
+	
 	final Database db;
 	final String sqlTableName;
 	final String writerName;
@@ -24,6 +32,8 @@ public class Synchronizer extends TableReader {
 	KeySet updateSet;
 	KeySet deleteSet;
 	KeySet skipSet;
+	int bucketDepth = 0;
+	int skipCount = 0; // rows in unchanged buckets
 	
 	public Synchronizer(Table table, Database db, String sqlTableName, String writerName) {
 		super(table);
@@ -33,6 +43,16 @@ public class Synchronizer extends TableReader {
 		this.metrics = new Metrics(writerName);
 	}
 
+	/**
+	 * Compare row counts and maximum sys_updated_on for each sys_id prefix
+	 * of this length before comparing individual keys. Zero disables the comparison.
+	 */
+	public Synchronizer setBucketDepth(int depth) {
+		if (depth < 0 || depth > KeyBuckets.MAX_DEPTH) throw new IllegalArgumentException("depth=" + depth);
+		this.bucketDepth = depth;
+		return this;
+	}
+	
 	public void prepare(Metrics metrics, ProgressLogger progress) 
 			throws IOException, SQLException, InterruptedException {
 		prepare(null, metrics, progress);
@@ -62,10 +82,22 @@ public class Synchronizer extends TableReader {
 			throws IOException, SQLException, InterruptedException {
 		assert writer == null;
 		beginPrepare(writer, metrics, progress);
-		dbTimestamps = getDatabaseTimestamps();
-		snTimestamps = getServiceNowTimestamps();
+		List<KeyRange> changed = getChangedRanges();
+		if (changed == null) {
+			dbTimestamps = getDatabaseTimestamps();
+			snTimestamps = getServiceNowTimestamps(null);
+		}
+		else {
+			DatabaseTimestampReader dbtsr = new DatabaseTimestampReader(db);
+			dbTimestamps = new TimestampHash();
+			snTimestamps = new RecordList(table);
+			for (KeyRange range : changed) {
+				dbtsr.getTimestamps(sqlTableName, createdRange, range, dbTimestamps);
+				snTimestamps.addAll(getServiceNowTimestamps(range));
+			}
+		}
 		compareTimestamps();
-		int expected = insertSet.size() + updateSet.size() + deleteSet.size() + skipSet.size();
+		int expected = insertSet.size() + updateSet.size() + deleteSet.size() + skipSet.size() + skipCount;
 		endPrepare(expected);		
 	}
 		
@@ -90,10 +122,63 @@ public class Synchronizer extends TableReader {
 		return dbTimestamps;		
 	}
 	
-	private RecordList getServiceNowTimestamps() throws IOException, InterruptedException {
+	/**
+	 * Compare the database with ServiceNow one bucket at a time
+	 * and return the key ranges which differ,
+	 * or null if all keys must be compared.
+	 */
+	private List<KeyRange> getChangedRanges() throws IOException, SQLException {
+		if (bucketDepth == 0) return null;
+		if (!EncodedQuery.isEmpty(filter) || keyRange != null || updatedRange != null) {
+			logger.warn(Log.INIT, "bucket comparison ignored because the job has a filter");
+			return null;
+		}
+		if (!db.getGenerator().hasTemplate("select_buckets")) {
+			logger.warn(Log.INIT, "bucket comparison ignored because template select_buckets is missing");
+			return null;
+		}
+		KeyBuckets dbBuckets = new DatabaseTimestampReader(db).getBuckets(sqlTableName, createdRange, bucketDepth);
+		List<KeyRange> changed = new ArrayList<KeyRange>();
+		for (int index = 0; index < KeyBuckets.size(1); ++index) {
+			compareBucket(dbBuckets, 1, index, changed);
+		}
+		Log.setTableContext(table, writerName);
+		logger.info(Log.INIT, String.format("unchanged rows=%d changed ranges=%d", skipCount, changed.size()));
+		return changed;
+	}
+	
+	private void compareBucket(KeyBuckets dbBuckets, int level, int index, List<KeyRange> changed) 
+			throws IOException {
+		KeyRange range = KeyBuckets.getRange(level, index);
+		TableStats stats = table.rest().getUpdatedStats(getStatsQuery().addKeyRange(range));
+		int dbCount = dbBuckets.getCount(level, index);
+		long dbMax = dbBuckets.getMaxSeconds(level, index);
+		long snMax = (stats.getMaxUpdated() == null) ? 0 : stats.getMaxUpdated().getSeconds();
+		if (stats.getCount() == dbCount && snMax == dbMax) {
+			skipCount += dbCount;
+			return;
+		}
+		logger.debug(Log.INIT, String.format("bucket %s sn=%d/%d db=%d/%d", 
+			range, stats.getCount(), snMax, dbCount, dbMax));
+		if (level < dbBuckets.depth && Math.max(stats.getCount(), dbCount) > MIN_SPLIT_ROWS) {
+			for (int i = 0; i < KeyBuckets.size(1); ++i) {
+				compareBucket(dbBuckets, level + 1, index * KeyBuckets.size(1) + i, changed);
+			}
+			return;
+		}
+		// combine with the previous range if adjacent
+		int last = changed.size() - 1;
+		if (last >= 0 && range.getStart() != null && range.getStart().equals(changed.get(last).getEnd()))
+			changed.set(last, changed.get(last).merge(range));
+		else
+			changed.add(range);
+	}
+	
+	private RecordList getServiceNowTimestamps(KeyRange range) throws IOException, InterruptedException {
 		RestTableReader sntsr = new RestTableReader(this.table);
 		sntsr.setFields(new FieldNames("sys_id,sys_updated_on"));
 		sntsr.setCreatedRange(this.createdRange);
+		sntsr.setKeyRange(range);
 		sntsr.setFilter(this.filter);
 		sntsr.setPageSize(10000);
 		sntsr.enableStats(true);
@@ -110,7 +195,7 @@ public class Synchronizer extends TableReader {
 	private void compareTimestamps() throws IOException, InterruptedException {
 		RecordKey snMinKey = snTimestamps.minKey(); // for debug
 		RecordKey snMaxKey = snTimestamps.maxKey(); // for debug
-		TimestampHash examined = new TimestampHash();
+		TimestampHash examined = new TimestampHash(snTimestamps.size());
 		insertSet = new KeySet();
 		updateSet = new KeySet();
 		deleteSet = new KeySet();
@@ -121,22 +206,22 @@ public class Synchronizer extends TableReader {
 			assert !examined.containsKey(key) :
 				String.format("duplicate key: %s", key.toString());				
 			DateTime snts = rec.getUpdatedTimestamp();
-			DateTime dbts = dbTimestamps.get(key);
+			long dbts = dbTimestamps.getSeconds(key);
 			if (key.equals(snMinKey)) {			
 				logger.debug(Log.INIT, String.format(
-						"ServiceNow min key=%s snts=%s dbts=%s", key, snts, dbts));
+						"ServiceNow min key=%s snts=%s dbts=%s", key, snts, dbTimestamps.get(key)));
 			}
 			if (key.equals(snMaxKey)) {			
 				logger.debug(Log.INIT, String.format(
-						"ServiceNow max key=%s snts=%s dbts=%s", key, snts, dbts));
+						"ServiceNow max key=%s snts=%s dbts=%s", key, snts, dbTimestamps.get(key)));
 			}
-			if (dbts == null)
+			if (dbts == TimestampHash.NO_VALUE)
 				insertSet.add(key);
-			else if (dbts.equals(snts))
+			else if (dbts == snts.getSeconds())
 				skipSet.add(key);
 			else
 				updateSet.add(key);
-			examined.put(key, snts);
+			examined.putSeconds(key, snts.getSeconds());
 		}
 		logger.debug(Log.INIT, String.format("inserts=%d updated=%d skips=%d", 
 				insertSet.size(), updateSet.size(), skipSet.size()));
@@ -144,7 +229,7 @@ public class Synchronizer extends TableReader {
 			String.format("examined=%d inserts=%d updated=%d skips=%d", 
 					examined.size(), insertSet.size(), updateSet.size(), skipSet.size());
 		for (RecordKey key : dbTimestamps.keySet()) {
-			if (examined.get(key) == null) 
+			if (!examined.containsKey(key)) 
 				deleteSet.add(key);
 		}
 		
@@ -225,7 +310,7 @@ public class Synchronizer extends TableReader {
 	public Metrics call() throws IOException, SQLException, InterruptedException {
 		assert initialized;
 		assert progress != null;
-		metrics.addSkipped(skipSet.size());
+		metrics.addSkipped(skipSet.size() + skipCount);
 		progress.logStart();
 		processInserts();
 		processUpdates();
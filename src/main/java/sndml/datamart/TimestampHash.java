@@ -1,15 +1,161 @@
 package sndml.datamart;
 
-import java.util.Hashtable;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
 
 import sndml.servicenow.*;
 
-public class TimestampHash extends Hashtable<RecordKey, DateTime> {
+/**
+ * Map from <b>sys_id</b> to <b>sys_updated_on</b>.
+ * <p>The map uses open addressing (linear probing) over primitive arrays.
+ * Each GUID is stored as two longs and each timestamp as seconds since the epoch,
+ * so no objects are created per entry. Keys which are not GUIDs are held in a
+ * separate {@link HashMap}. This class is not synchronized.</p>
+ */
+public class TimestampHash {
 
-	private static final long serialVersionUID = 4282304281964973453L;
+	static final long NO_VALUE = Long.MIN_VALUE;
+	static final float LOAD_FACTOR = 0.7f;
+
+	private long[] keys;   // hi and lo of slot i are at 2*i and 2*i+1
+	private long[] values; // seconds, or NO_VALUE if the slot is empty
+	private int mask;
+	private int count = 0;
+	private int threshold;
+	private final Map<RecordKey, Long> others = new HashMap<RecordKey, Long>();
+
+	public TimestampHash() {
+		this(1024);
+	}
+
+	public TimestampHash(int expectedSize) {
+		int capacity = Integer.highestOneBit(Math.max((int) (expectedSize / LOAD_FACTOR), 16) - 1) << 1;
+		allocate(capacity);
+	}
+
+	private void allocate(int capacity) {
+		assert Integer.bitCount(capacity) == 1;
+		keys = new long[2 * capacity];
+		values = new long[capacity];
+		Arrays.fill(values, NO_VALUE);
+		mask = capacity - 1;
+		threshold = (int) (capacity * LOAD_FACTOR);
+	}
+
+	private static int hash(long hi, long lo) {
+		// sys_ids are partly sequential, so mix all of the bits
+		long h = hi * 0x9E3779B97F4A7C15L ^ lo;
+		h ^= (h >>> 33);
+		h *= 0xff51afd7ed558ccdL;
+		h ^= (h >>> 33);
+		return (int) h;
+	}
+
+	/**
+	 * Return the slot containing the key,
+	 * or the empty slot where it should be inserted.
+	 */
+	private int slot(long hi, long lo) {
+		int i = hash(hi, lo) & mask;
+		while (values[i] != NO_VALUE) {
+			if (keys[2 * i] == hi && keys[2 * i + 1] == lo) return i;
+			i = (i + 1) & mask;
+		}
+		return i;
+	}
+
+	private void grow() {
+		long[] oldKeys = keys;
+		long[] oldValues = values;
+		allocate(2 * oldValues.length);
+		for (int j = 0; j < oldValues.length; ++j) {
+			if (oldValues[j] != NO_VALUE) {
+				int i = slot(oldKeys[2 * j], oldKeys[2 * j + 1]);
+				keys[2 * i] = oldKeys[2 * j];
+				keys[2 * i + 1] = oldKeys[2 * j + 1];
+				values[i] = oldValues[j];
+			}
+		}
+	}
+
+	/**
+	 * Return the number of seconds since the epoch,
+	 * or {@link #NO_VALUE} if the key is not in the map.
+	 */
+	public long getSeconds(RecordKey key) {
+		if (!key.isGUID()) {
+			Long value = others.get(key);
+			return value == null ? NO_VALUE : value.longValue();
+		}
+		return values[slot(key.getHigh(), key.getLow())];
+	}
+
+	/**
+	 * Add or replace a value.
+	 * @return The previous value in seconds, or {@link #NO_VALUE}
+	 */
+	public long putSeconds(RecordKey key, long seconds) {
+		assert seconds != NO_VALUE;
+		if (!key.isGUID()) {
+			Long previous = others.put(key, seconds);
+			return previous == null ? NO_VALUE : previous.longValue();
+		}
+		long hi = key.getHigh(), lo = key.getLow();
+		int i = slot(hi, lo);
+		long previous = values[i];
+		if (previous == NO_VALUE) {
+			if (count >= threshold) {
+				grow();
+				i = slot(hi, lo);
+			}
+			keys[2 * i] = hi;
+			keys[2 * i + 1] = lo;
+			count += 1;
+		}
+		values[i] = seconds;
+		return previous;
+	}
+
+	public DateTime get(RecordKey key) {
+		long seconds = getSeconds(key);
+		return seconds == NO_VALUE ? null : new DateTime(new Date(1000 * seconds));
+	}
+
+	public DateTime put(RecordKey key, DateTime value) {
+		if (value == null) throw new NullPointerException();
+		long previous = putSeconds(key, value.getSeconds());
+		return previous == NO_VALUE ? null : new DateTime(new Date(1000 * previous));
+	}
+
+	public boolean containsKey(RecordKey key) {
+		return getSeconds(key) != NO_VALUE;
+	}
+
+	public int size() {
+		return count + others.size();
+	}
+
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	/**
+	 * Return all of the keys in the map (in no particular order).
+	 */
+	public KeySet keySet() {
+		KeySet result = new KeySet(size());
+		for (int i = 0; i < values.length; ++i) {
+			if (values[i] != NO_VALUE)
+				result.add(new RecordKey(keys[2 * i], keys[2 * i + 1]));
+		}
+		result.addAll(others.keySet());
+		return result;
+	}
 
 	KeySet getKeys() {
-		return new KeySet(this.keySet());
+		return keySet();
 	}
 
 }
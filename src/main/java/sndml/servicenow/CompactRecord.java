@@ -0,0 +1,144 @@
+package sndml.servicenow;
+
+import java.io.IOException;
+import java.util.Iterator;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * A {@link TableRecord} which holds its values in an array 
+ * whose positions are assigned by a {@link FieldIndex}.
+ * Fields which are not in the index are discarded when the record is parsed.
+ */
+public class CompactRecord extends TableRecord {
+
+	final FieldIndex index;
+	final String[] values;
+	String[] displayValues = null;
+	
+	public CompactRecord(Table table, FieldIndex index) {
+		this.table = table;
+		this.index = index;
+		this.values = new String[index.size()];
+	}
+	
+	/**
+	 * Read a record from a parser which is positioned at a START_OBJECT token.
+	 * On return the parser will be positioned at the matching END_OBJECT token.
+	 * Empty strings are stored as null.
+	 */
+	public static CompactRecord parse(Table table, FieldIndex index, JsonParser parser) 
+			throws IOException {
+		assert parser.currentToken() == JsonToken.START_OBJECT;
+		CompactRecord rec = new CompactRecord(table, index);
+		while (parser.nextToken() == JsonToken.FIELD_NAME) {
+			String fieldname = parser.getCurrentName();
+			JsonToken token = parser.nextToken();
+			int pos = index.indexOf(fieldname);
+			if (pos < 0) {
+				parser.skipChildren();
+				continue;
+			}
+			if (token == JsonToken.START_OBJECT) {
+				// REST Table API with sysparm_display_value=all
+				while (parser.nextToken() == JsonToken.FIELD_NAME) {
+					String name = parser.getCurrentName();
+					parser.nextToken();
+					if (name.equals("value"))
+						rec.values[pos] = scalarText(parser, fieldname);
+					else if (name.equals("display_value"))
+						rec.setDisplayValue(pos, scalarText(parser, fieldname));
+					else
+						parser.skipChildren();
+				}
+			}
+			else {
+				rec.values[pos] = scalarText(parser, fieldname);
+			}
+		}
+		assert parser.currentToken() == JsonToken.END_OBJECT;
+		return rec;
+	}
+	
+	private static String scalarText(JsonParser parser, String fieldname) throws IOException {
+		JsonToken token = parser.currentToken();
+		if (token == JsonToken.VALUE_NULL) return null;
+		if (!token.isScalarValue())
+			throw new JsonResponseError(fieldname + " type is " + token.toString());
+		String value = parser.getText();
+		return value.length() == 0 ? null : value;
+	}
+	
+	private void setDisplayValue(int pos, String value) {
+		if (displayValues == null) displayValues = new String[values.length];
+		displayValues[pos] = value;
+	}
+	
+	public FieldIndex getIndex() {
+		return this.index;
+	}
+	
+	/**
+	 * Get a value by its position in the {@link FieldIndex}.
+	 */
+	public String getValue(int pos) {
+		return values[pos];
+	}
+	
+	public void setValue(int pos, String value) {
+		values[pos] = (value == null || value.length() == 0) ? null : value;
+	}
+	
+	@Override
+	public String getValue(String fieldname) {
+		int pos = index.indexOf(fieldname);
+		return pos < 0 ? null : values[pos];
+	}
+
+	@Override
+	public String getDisplayValue(String fieldname) {
+		if (displayValues == null) return null;
+		int pos = index.indexOf(fieldname);
+		return pos < 0 ? null : displayValues[pos];
+	}
+
+	@Override
+	public Iterator<String> keys() {
+		return getFieldNames().iterator();
+	}
+
+	/**
+	 * Get the names of the fields which have values.
+	 */
+	@Override
+	public FieldNames getFieldNames() {
+		FieldNames names = new FieldNames();
+		for (int i = 0; i < values.length; ++i) {
+			if (values[i] != null) names.add(index.getName(i));
+		}
+		return names;
+	}
+
+	private ObjectNode toJson() {
+		ObjectNode obj = new ObjectMapper().createObjectNode();
+		for (int i = 0; i < values.length; ++i) {
+			if (values[i] != null) obj.put(index.getName(i), values[i]);
+		}
+		return obj;
+	}
+	
+	@Override
+	public String toString() {
+		return toJson().toString();
+	}
+	
+	@Override
+	public String asText(boolean pretty) {
+		ObjectNode obj = toJson();
+		return pretty ? obj.toPrettyString() : obj.toString();
+	}
+	
+}
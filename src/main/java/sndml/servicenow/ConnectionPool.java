@@ -0,0 +1,177 @@
+package sndml.servicenow;
+
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.http.HttpClientConnection;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.conn.ConnectionRequest;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.IdleConnectionEvictor;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+import org.slf4j.Logger;
+
+/**
+ * A pool of HTTP connections which is shared by all {@link Session}s
+ * for the same instance and user.
+ * The pool is configured from the following properties of the first Session
+ * which requests it:
+ * <ul>
+ * <li><b>servicenow.pool.max_per_route</b> - maximum connections per route (default 20)</li>
+ * <li><b>servicenow.pool.max_total</b> - maximum connections (default max_per_route)</li>
+ * <li><b>servicenow.pool.keep_alive</b> - seconds to keep a connection alive
+ * if the server does not specify (default 60)</li>
+ * <li><b>servicenow.pool.idle_timeout</b> - seconds after which an idle connection
+ * is closed (default 30)</li>
+ * </ul>
+ * The pool also records the time spent waiting to lease a connection,
+ * which indicates whether the pool size is limiting throughput.
+ */
+public class ConnectionPool extends PoolingHttpClientConnectionManager {
+
+	static final int DEFAULT_MAX_PER_ROUTE = 20;
+	static final int DEFAULT_KEEP_ALIVE = 60;
+	static final int DEFAULT_IDLE_TIMEOUT = 30;
+
+	private static final ConcurrentHashMap<String, ConnectionPool> pools =
+			new ConcurrentHashMap<String, ConnectionPool>();
+
+	private final String name;
+	private final long keepAliveMillis;
+	private final IdleConnectionEvictor evictor;
+	private final AtomicLong leaseCount = new AtomicLong();
+	private final AtomicLong leaseWaitNanos = new AtomicLong();
+	private final AtomicLong maxLeaseWaitNanos = new AtomicLong();
+
+	private static final Logger logger = Log.logger(ConnectionPool.class);
+
+	private ConnectionPool(String name, Session session) {
+		super();
+		this.name = name;
+		int maxPerRoute = session.getPropertyInt("pool.max_per_route", DEFAULT_MAX_PER_ROUTE);
+		int maxTotal = session.getPropertyInt("pool.max_total", maxPerRoute);
+		int keepAlive = session.getPropertyInt("pool.keep_alive", DEFAULT_KEEP_ALIVE);
+		int idleTimeout = session.getPropertyInt("pool.idle_timeout", DEFAULT_IDLE_TIMEOUT);
+		if (maxPerRoute < 1) throw new IllegalArgumentException("pool.max_per_route=" + maxPerRoute);
+		if (maxTotal < maxPerRoute) throw new IllegalArgumentException("pool.max_total=" + maxTotal);
+		setDefaultMaxPerRoute(maxPerRoute);
+		setMaxTotal(maxTotal);
+		this.keepAliveMillis = 1000L * keepAlive;
+		if (idleTimeout > 0) {
+			evictor = new IdleConnectionEvictor(this, idleTimeout, TimeUnit.SECONDS);
+			evictor.start();
+		}
+		else
+			evictor = null;
+		logger.debug(Log.INIT, String.format(
+			"pool=%s max_per_route=%d max_total=%d keep_alive=%d idle_timeout=%d",
+			name, maxPerRoute, maxTotal, keepAlive, idleTimeout));
+	}
+
+	/**
+	 * Return the pool for the instance and user of a {@link Session},
+	 * creating it if necessary.
+	 */
+	static ConnectionPool get(Session session) {
+		String key = session.getInstance().getURL().toString() + "|" + session.getUsername();
+		return pools.computeIfAbsent(key, name -> new ConnectionPool(name, session));
+	}
+
+	/**
+	 * Return all pools which have been created by this process.
+	 */
+	public static Collection<ConnectionPool> getPools() {
+		return pools.values();
+	}
+
+	public String getName() {
+		return this.name;
+	}
+
+	/**
+	 * Keep-alive strategy which honors the Keep-Alive header if present,
+	 * otherwise uses the servicenow.pool.keep_alive property.
+	 */
+	ConnectionKeepAliveStrategy getKeepAliveStrategy() {
+		return (response, context) -> {
+			long duration = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+			return duration > 0 ? duration : keepAliveMillis;
+		};
+	}
+
+	@Override
+	public ConnectionRequest requestConnection(HttpRoute route, Object state) {
+		final ConnectionRequest request = super.requestConnection(route, state);
+		return new ConnectionRequest() {
+
+			@Override
+			public boolean cancel() {
+				return request.cancel();
+			}
+
+			@Override
+			public HttpClientConnection get(long timeout, TimeUnit tunit)
+					throws InterruptedException, ExecutionException, ConnectionPoolTimeoutException {
+				long started = System.nanoTime();
+				try {
+					return request.get(timeout, tunit);
+				}
+				finally {
+					recordLease(System.nanoTime() - started);
+				}
+			}
+		};
+	}
+
+	private void recordLease(long nanos) {
+		leaseCount.incrementAndGet();
+		leaseWaitNanos.addAndGet(nanos);
+		maxLeaseWaitNanos.accumulateAndGet(nanos, Math::max);
+		if (logger.isTraceEnabled())
+			logger.trace(Log.REQUEST, String.format(
+				"lease wait=%dms %s", TimeUnit.NANOSECONDS.toMillis(nanos), getTotalStats()));
+	}
+
+	/**
+	 * Number of connections leased from this pool.
+	 */
+	public long getLeaseCount() {
+		return leaseCount.get();
+	}
+
+	/**
+	 * Total milliseconds spent waiting for a connection from this pool.
+	 */
+	public long getLeaseWaitMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(leaseWaitNanos.get());
+	}
+
+	/**
+	 * Longest time in milliseconds spent waiting for a single connection.
+	 */
+	public long getMaxLeaseWaitMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(maxLeaseWaitNanos.get());
+	}
+
+	@Override
+	public void shutdown() {
+		if (evictor != null) evictor.shutdown();
+		super.shutdown();
+	}
+
+	@Override
+	public String toString() {
+		PoolStats stats = getTotalStats();
+		return String.format(
+			"leased=%d available=%d pending=%d max=%d leases=%d lease_wait=%dms max_lease_wait=%dms",
+			stats.getLeased(), stats.getAvailable(), stats.getPending(), stats.getMax(),
+			getLeaseCount(), getLeaseWaitMillis(), getMaxLeaseWaitMillis());
+	}
+
+}
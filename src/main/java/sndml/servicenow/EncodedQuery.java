@@ -209,6 +209,19 @@ public class EncodedQuery implements Cloneable {
 		return addCreated(created.getStart(), created.getEnd());
 	}
 	
+	/**
+	 * Adds a range of sys_id values to a filter.
+	 * 
+	 * @param keys Select records with sys_id greater than or equal to the start 
+	 * and less than the end of the range
+	 * @return The modified original filter
+	 */
+	public EncodedQuery addKeyRange(KeyRange keys) {
+		if (keys.getStart() != null) this.addQuery("sys_id>=" + keys.getStart().toString());
+		if (keys.getEnd()   != null) this.addQuery("sys_id<" + keys.getEnd().toString());
+		return this;
+	}
+	
 	public EncodedQuery addOrderByKeys() {
 		assert this.orderBy != OrderBy.FIELDS;
 		this.addQuery(ORDER_BY + "sys_id");
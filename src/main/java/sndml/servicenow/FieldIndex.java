@@ -0,0 +1,59 @@
+package sndml.servicenow;
+
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * An immutable list of field names which assigns a position to each field.
+ * Used by {@link CompactRecord} to store field values in an array.
+ */
+public class FieldIndex {
+
+	private final String[] names;
+	private final HashMap<String,Integer> positions;
+	
+	public FieldIndex(List<String> fieldnames) {
+		int size = fieldnames.size();
+		this.names = fieldnames.toArray(new String[size]);
+		this.positions = new HashMap<String,Integer>(size * 2);
+		for (int i = 0; i < size; ++i) {
+			String name = names[i];
+			assert name != null;
+			if (positions.containsKey(name))
+				throw new IllegalArgumentException("duplicate field name: " + name);
+			positions.put(name, i);
+		}
+	}
+	
+	public int size() {
+		return names.length;
+	}
+	
+	public String getName(int index) {
+		return names[index];
+	}
+	
+	/**
+	 * Return the position of a field or -1 if the field is not in the index.
+	 */
+	public int indexOf(String fieldname) {
+		Integer result = positions.get(fieldname);
+		return result == null ? -1 : result.intValue();
+	}
+	
+	public boolean contains(String fieldname) {
+		return positions.containsKey(fieldname);
+	}
+	
+	public FieldNames getFieldNames() {
+		FieldNames result = new FieldNames(names.length);
+		for (String name : names) result.add(name);
+		return result;
+	}
+	
+	@Override
+	public String toString() {
+		return getFieldNames().toString();
+	}
+	
+}
@@ -1,9 +1,11 @@
 package sndml.servicenow;
 
+import java.net.InetAddress;
 import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.net.UnknownHostException;
 import java.util.Properties;
 
 import org.apache.http.HttpHost;
@@ -12,6 +14,9 @@ import org.apache.http.client.utils.URIBuilder;
 /**
  * Holds the URL for a ServiceNow instance.
  * Does not hold connection credentials, cookies or session ID.
+ * <p>An <b>http</b> URL is only accepted if the host is a loopback address
+ * (such as a local stand-in for testing) or if <b>servicenow.allow_http</b> is true,
+ * since credentials would otherwise be sent in plain text.</p>
  */
 public class Instance {
 
@@ -20,40 +25,64 @@ public class Instance {
 
 	public Instance(URL url) {
 		this.url = url;
-		this.host = new HttpHost(url.getHost());
+		this.host = getHost(url);
 	}
 
 	public Instance(Properties properties) {
-		this(properties.getProperty("servicenow.instance"));
+		this(properties.getProperty("servicenow.instance"),
+			Boolean.parseBoolean(properties.getProperty("servicenow.allow_http", "false")));
 	}
 	
 	public Instance(String name) {
+		this(name, false);
+	}
+	
+	public Instance(String name, boolean allowHttp) {
 		assert name != null;
 		assert name.length() > 0;
 		try {
-			this.url = getURL(name);
+			this.url = getURL(name, allowHttp);
 		} catch (MalformedURLException e) {
 			throw new ServiceNowError(e);
 		}
-		this.host = new HttpHost(url.getHost());
+		this.host = getHost(url);
+	}
+	
+	private static HttpHost getHost(URL url) {
+		return new HttpHost(url.getHost(), url.getPort(), url.getProtocol());
 	}
 	
-	private URL getURL(String name) throws MalformedURLException {
+	private URL getURL(String name, boolean allowHttp) throws MalformedURLException {
 		if (name == null || name.length() == 0)
 			throw new AssertionError("Instance URL or name not provided");
 		if (name.matches("[\\w-]+")) {
 			// name is the instance name; build the URL
 			return new URL("https://" + name + ".service-now.com/");			
 		}
-		if (name.startsWith("https://")) {
+		if (name.startsWith("https://") || name.startsWith("http://")) {
 			// name is the the full URL
 			// make sure it ends with a slash
 			if (!name.endsWith("/")) name += "/";
-			return new URL(name);			
+			URL url = new URL(name);
+			if (url.getProtocol().equals("http") && !allowHttp && !isLoopback(url.getHost()))
+				throw new AssertionError(
+					"Instance URL not secure: " + name + " (set servicenow.allow_http=true to permit)");
+			return url;
 		}
 		throw new AssertionError("Instance URL not valid: " + name);
 	}
 	
+	// true if host is localhost or a loopback IP address; does not do a DNS lookup
+	private static boolean isLoopback(String host) {
+		if (host.equalsIgnoreCase("localhost")) return true;
+		if (!host.matches("[\\d.]+|\\[[\\p{XDigit}:.]+\\]")) return false;
+		try {
+			return InetAddress.getByName(host).isLoopbackAddress();
+		} catch (UnknownHostException e) {
+			return false;
+		}
+	}
+	
 	public URI getURI(String path) {
 		return getURI(path, null);
 	}
@@ -1,7 +1,9 @@
 package sndml.servicenow;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
+import java.sql.SQLException;
 
 import org.apache.http.Header;
 import org.apache.http.HttpEntity;
@@ -14,10 +16,12 @@ import org.apache.http.client.methods.HttpPut;
 import org.apache.http.client.methods.HttpUriRequest;
 import org.apache.http.entity.ContentType;
 import org.apache.http.entity.StringEntity;
-import org.apache.http.util.EntityUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
@@ -27,15 +31,26 @@ public class JsonRequest extends ServiceNowRequest {
 	final ObjectNode requestObj;
 	ObjectNode responseObj;
 	boolean executed = false;
+	private long excludedNanos = 0;
 	
 	final private Logger logger = LoggerFactory.getLogger(this.getClass());
 
+	/**
+	 * Receives the elements of a JSON array as it is streamed from a response.
+	 * The parser is positioned at the START_OBJECT token of the element
+	 * and the handler must consume the element through its END_OBJECT token.
+	 */
+	@FunctionalInterface
+	public interface ElementHandler {
+		void processElement(JsonParser parser) throws IOException, SQLException;
+	}
+	
 	public JsonRequest(Session session, URI uri) {
 		this(session, uri, HttpMethod.GET, null);
 	}
 	
 	public JsonRequest(Session session, URI uri, HttpMethod method, ObjectNode body) {
-		super(session.getClient(), uri, method);
+		super(session, uri, method);
 		this.requestObj = body;
 	}
 
@@ -43,7 +58,9 @@ public class JsonRequest extends ServiceNowRequest {
 		assert executed == false;
 		executeRequest();		
 		if (responseText == null) return null;
+		long start = System.nanoTime();
 		responseObj = (ObjectNode) mapper.readTree(responseText);
+		if (metrics != null) metrics.addNanos(Metrics.Phase.PARSE, System.nanoTime() - start);
 		if (responseObj.has("error")) {
 			logger.warn(Log.RESPONSE, method.toString() + " " + uri.toString());
 			logger.warn(Log.RESPONSE, responseText);
@@ -51,7 +68,102 @@ public class JsonRequest extends ServiceNowRequest {
 		return responseObj;
 	}
 	
-	private void executeRequest() throws IOException {
+	/**
+	 * Execute the request and pass each element of the named top level array to a handler
+	 * as it is read from the response stream. The response is not read into a String
+	 * and no tree is built for the array. Other top level fields (such as "error") 
+	 * are collected in the response object.
+	 * @return Number of array elements processed
+	 */
+	public int executeStream(String arrayName, ElementHandler handler) throws IOException, SQLException {
+		assert executed == false;
+		assert arrayName != null;
+		assert handler != null;
+		HttpUriRequest request = createRequest();
+		CloseableHttpResponse response = sendRequest(request);
+		int count;
+		try {
+			setResponseStatus(response);
+			HttpEntity responseEntity = response.getEntity();
+			if (statusCode == 200 && responseEntity != null && isJsonContent()) {
+				logger.debug(Log.RESPONSE,
+						String.format("status=\"%s\" contentType=%s len=%d (streaming)", 
+							statusLine, responseContentType, responseEntity.getContentLength()));
+				InputStream responseStream = getContent(responseEntity);
+				long start = System.nanoTime();
+				try (JsonParser parser = mapper.getFactory().createParser(responseStream)) {
+					count = parseStream(parser, arrayName, handler);
+				}
+				if (metrics != null) {
+					// parse time excludes waiting for the network and processing by the handler
+					long parseNanos = System.nanoTime() - start - getReadNanos() - excludedNanos;
+					metrics.addNanos(Metrics.Phase.PARSE, Math.max(parseNanos, 0));
+				}
+			}
+			else {
+				// Not a normal response, so read it as text and apply the usual checks
+				responseText = 
+					responseEntity == null ? null : readText(responseEntity);
+				logResponseStatus();
+				checkResponse();
+				if (responseText == null) return 0;
+				try (JsonParser parser = mapper.getFactory().createParser(responseText)) {
+					count = parseStream(parser, arrayName, handler);
+				}
+			}
+		}
+		finally {
+			closeResponse(response);
+		}
+		executed = true;
+		if (responseObj.has("error")) {
+			logger.warn(Log.RESPONSE, method.toString() + " " + uri.toString());
+			logger.warn(Log.RESPONSE, responseObj.toString());
+		}
+		return count;
+	}
+	
+	/**
+	 * Called by an {@link ElementHandler} to report time which it spent 
+	 * processing (rather than parsing) an element, so that it is not counted as parse time.
+	 */
+	public void excludeNanos(long nanos) {
+		excludedNanos += nanos;
+	}
+	
+	private int parseStream(JsonParser parser, String arrayName, ElementHandler handler) 
+			throws IOException, SQLException {
+		responseObj = mapper.createObjectNode();
+		int count = 0;
+		if (parser.nextToken() != JsonToken.START_OBJECT)
+			throw new JsonResponseError("Expected object: " + uri.toString());
+		while (parser.nextToken() == JsonToken.FIELD_NAME) {
+			String fieldName = parser.getCurrentName();
+			JsonToken token = parser.nextToken();
+			if (fieldName.equals(arrayName) && token == JsonToken.START_ARRAY) {
+				while (parser.nextToken() == JsonToken.START_OBJECT) {
+					handler.processElement(parser);
+					// ObjectMapper.readTree clears the current token after reading an object
+					assert parser.currentToken() == JsonToken.END_OBJECT || parser.currentToken() == null;
+					count += 1;
+				}
+				if (parser.currentToken() != JsonToken.END_ARRAY)
+					throw new JsonResponseError("Expected object in array \"" + arrayName + "\"");
+			}
+			else {
+				JsonNode node = mapper.readTree(parser);
+				responseObj.set(fieldName, node);
+			}
+		}
+		return count;
+	}
+	
+	private boolean isJsonContent() {
+		return responseContentType != null && 
+			responseContentType.startsWith("application/json");
+	}
+	
+	private HttpUriRequest createRequest() throws IOException {
 		assert client != null;
 		assert uri != null;
 		assert method != null;
@@ -99,24 +211,51 @@ public class JsonRequest extends ServiceNowRequest {
 			throw new AssertionError();
 		}
 		request.setHeader("Accept", "application/json");
-		CloseableHttpResponse response = client.execute(request);		
+		return request;
+	}
+	
+	private void setResponseStatus(CloseableHttpResponse response) {
 		statusLine = response.getStatusLine();		
 		statusCode = statusLine.getStatusCode();
 		HttpEntity responseEntity = response.getEntity();
 		responseContentType = null;
-		if (responseEntity == null) {
-			responseText = null;
-		}
-		else {
+		if (responseEntity != null) {
 			Header contentTypeHeader = responseEntity.getContentType();
 			if (contentTypeHeader != null) responseContentType = contentTypeHeader.getValue();
-			responseText = EntityUtils.toString(responseEntity);			
 		}
-		response.close();
+	}
+	
+	private void logResponseStatus() {
 		int responseLen = responseText == null ? 0 : responseText.length();
 		logger.debug(Log.RESPONSE,
-				String.format("status=\"%s\" contentType=%s len=%d", 
-					statusLine, responseContentType, responseLen));
+				String.format("status=\"%s\" contentType=%s len=%d received=%d", 
+					statusLine, responseContentType, responseLen, getBytesReceived()));		
+	}
+	
+	private void executeRequest() throws IOException {
+		HttpUriRequest request = createRequest();
+		CloseableHttpResponse response = sendRequest(request);
+		try {
+			setResponseStatus(response);
+			HttpEntity responseEntity = response.getEntity();
+			if (responseEntity == null) {
+				responseText = null;
+			}
+			else {
+				responseText = readText(responseEntity);
+			}
+		}
+		finally {
+			closeResponse(response);
+		}
+		logResponseStatus();
+		checkResponse();
+	}
+	
+	/**
+	 * Throw an exception if the status or content of the response is not acceptable.
+	 */
+	private void checkResponse() throws IOException {
 		if (statusCode == 204) {
 			// Success - No Content
 			executed = true;
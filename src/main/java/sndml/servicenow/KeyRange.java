@@ -0,0 +1,96 @@
+package sndml.servicenow;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A contiguous range of sys_id values.
+ * The start is inclusive and the end is exclusive.
+ * A null start or end means that the range is unbounded on that side.
+ */
+public class KeyRange {
+
+	// sys_id values are 32 hex digits, i.e. 128 bits
+	static final BigInteger KEY_SPACE = BigInteger.ONE.shiftLeft(128);
+	
+	protected final RecordKey start;
+	protected final RecordKey end;
+	
+	public KeyRange(RecordKey start, RecordKey end) {
+		if (start != null && end != null) assert start.compareTo(end) < 0;
+		this.start = start;
+		this.end = end;
+	}
+	
+	/**
+	 * Return a range containing all keys.
+	 */
+	public static KeyRange all() {
+		return new KeyRange(null, null);
+	}
+	
+	public RecordKey getStart() {
+		return this.start;
+	}
+	
+	public RecordKey getEnd() {
+		return this.end;
+	}
+	
+	public boolean contains(RecordKey key) {
+		if (start != null && key.compareTo(start) < 0) return false;
+		if (end != null && key.compareTo(end) >= 0) return false;
+		return true;
+	}
+	
+	/**
+	 * Split this range into a number of ranges of equal width.
+	 * Fewer ranges may be returned if the range is too narrow to split.
+	 */
+	public List<KeyRange> split(int count) {
+		assert count > 0;
+		BigInteger lo = toNumber(start, BigInteger.ZERO);
+		BigInteger hi = toNumber(end, KEY_SPACE);
+		BigInteger width = hi.subtract(lo);
+		List<KeyRange> result = new ArrayList<KeyRange>(count);
+		RecordKey prev = start;
+		for (int i = 1; i < count; ++i) {
+			BigInteger boundary = lo.add(width.multiply(BigInteger.valueOf(i)).divide(BigInteger.valueOf(count)));
+			RecordKey next = toKey(boundary);
+			if (prev != null && next.compareTo(prev) <= 0) continue;
+			result.add(new KeyRange(prev, next));
+			prev = next;
+		}
+		result.add(new KeyRange(prev, end));
+		return result;
+	}
+	
+	/**
+	 * Return a range which spans this range and a following adjacent range.
+	 */
+	public KeyRange merge(KeyRange next) {
+		assert this.end != null && this.end.equals(next.start);
+		return new KeyRange(this.start, next.end);
+	}
+	
+	static BigInteger toNumber(RecordKey key, BigInteger defaultValue) {
+		if (key == null) return defaultValue;
+		assert key.isGUID();
+		return new BigInteger(key.toString(), 16);
+	}
+	
+	static RecordKey toKey(BigInteger value) {
+		assert value.signum() >= 0;
+		assert value.compareTo(KEY_SPACE) < 0;
+		return new RecordKey(String.format("%032x", value));
+	}
+	
+	@Override
+	public String toString() {
+		return String.format("[%s,%s)", 
+			start == null ? "" : start.toString(), 
+			end == null ? "" : end.toString());
+	}
+	
+}
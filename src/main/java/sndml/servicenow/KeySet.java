@@ -1,9 +1,12 @@
 package sndml.servicenow;
 
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Hashtable;
-import java.util.Set;
-
+import java.util.RandomAccess;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ArrayNode;
@@ -11,18 +14,30 @@ import com.fasterxml.jackson.databind.node.ArrayNode;
 /**
  * Holds a list of <b>sys_id</b>s (GUIDs) 
  * as returned from a <b>getKeys</b> Web Services call. 
- * 
+ * <p>GUIDs are packed into a long[] (two longs per key) rather than stored as objects.
+ * The packed keys are the start of the list. Once a key which is not a GUID has been added,
+ * that key and every key which follows it are held as objects.</p>
+ * <p>The list is only reordered by {@link #sort}. If the list is sorted then
+ * {@link #contains}, {@link #minValue} and {@link #maxValue} use binary search,
+ * otherwise they scan the list. Since reading does not change the list,
+ * a KeySet which is no longer being modified may be read by several threads.</p>
  */
-public class KeySet extends ArrayList<RecordKey> {
+public class KeySet extends AbstractList<RecordKey> implements RandomAccess, java.io.Serializable {
 
 	private static final long serialVersionUID = 1L;
 
+	private long[] packed; // hi and lo of key i are at 2*i and 2*i+1
+	private int count = 0; // number of packed keys
+	private boolean sorted = true; // packed keys and other keys are each in order
+	private final ArrayList<RecordKey> others = new ArrayList<RecordKey>(0); // keys which follow the packed keys
+
 	public KeySet() {
-		super();
+		this(16);
 	}
 	
 	public KeySet(int size) {
-		super(size);
+		super();
+		packed = new long[2 * Math.max(size, 1)];
 	}
 	
 	public KeySet(ArrayNode array) {		
@@ -33,18 +48,183 @@ public class KeySet extends ArrayList<RecordKey> {
 		}		
 	}
 		
-	public KeySet(Set<RecordKey> set) {
-		super(set.size());
-		for (RecordKey key : set) {
+	public KeySet(Collection<RecordKey> keys) {
+		this(keys.size());
+		for (RecordKey key : keys) {
 			this.add(key);
 		}
 	}
+
+	public void ensureCapacity(int size) {
+		if (2 * size > packed.length) packed = Arrays.copyOf(packed, 2 * size);
+	}
+
+	@Override
+	public int size() {
+		return count + others.size();
+	}
+
+	@Override
+	public RecordKey get(int index) {
+		if (index < 0 || index >= size())
+			throw new IndexOutOfBoundsException("index=" + index + " size=" + size());
+		if (index < count) return new RecordKey(packed[2 * index], packed[2 * index + 1]);
+		return others.get(index - count);
+	}
+
+	@Override
+	public boolean add(RecordKey key) {
+		assert key != null;
+		if (key.isGUID() && others.isEmpty()) {
+			if (2 * count == packed.length)
+				packed = Arrays.copyOf(packed, 2 * packed.length);
+			if (sorted && count > 0 &&
+					RecordKey.compare(packed[2 * count - 2], packed[2 * count - 1], key.hi, key.lo) > 0)
+				sorted = false;
+			packed[2 * count] = key.hi;
+			packed[2 * count + 1] = key.lo;
+			count += 1;
+		}
+		else {
+			if (sorted && !others.isEmpty() && others.get(others.size() - 1).greaterThan(key))
+				sorted = false;
+			others.add(key);
+		}
+		modCount++;
+		return true;
+	}
+
+	@Override
+	public void add(int index, RecordKey key) {
+		assert key != null;
+		if (index < 0 || index > size())
+			throw new IndexOutOfBoundsException("index=" + index + " size=" + size());
+		if (index == size()) {
+			add(key);
+			return;
+		}
+		if (index <= count && key.isGUID()) {
+			if (2 * count == packed.length)
+				packed = Arrays.copyOf(packed, 2 * packed.length);
+			System.arraycopy(packed, 2 * index, packed, 2 * index + 2, 2 * (count - index));
+			packed[2 * index] = key.hi;
+			packed[2 * index + 1] = key.lo;
+			count += 1;
+		}
+		else {
+			if (index < count) {
+				// keys which follow a key that is not a GUID are held as objects
+				ArrayList<RecordKey> moved = new ArrayList<RecordKey>(count - index);
+				for (int i = index; i < count; ++i) moved.add(get(i));
+				others.addAll(0, moved);
+				count = index;
+			}
+			others.add(index - count, key);
+		}
+		sorted = false;
+		modCount++;
+	}
+
+	@Override
+	public void clear() {
+		count = 0;
+		others.clear();
+		sorted = true;
+		modCount++;
+	}
+
+	@Override
+	public boolean contains(Object obj) {
+		if (!(obj instanceof RecordKey)) return false;
+		RecordKey key = (RecordKey) obj;
+		if (key.isGUID() && indexOfPacked(key.hi, key.lo) >= 0) return true;
+		return others.contains(key);
+	}
+
+	private int indexOfPacked(long hi, long lo) {
+		if (sorted) return search(hi, lo);
+		for (int i = 0; i < count; ++i) {
+			if (packed[2 * i] == hi && packed[2 * i + 1] == lo) return i;
+		}
+		return -1;
+	}
+
+	/**
+	 * Binary search of the packed keys, which must be sorted.
+	 * Returns the index of the key if found, otherwise a negative number.
+	 */
+	private int search(long hi, long lo) {
+		assert sorted;
+		int low = 0, high = count - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			int cmp = RecordKey.compare(packed[2 * mid], packed[2 * mid + 1], hi, lo);
+			if (cmp < 0) low = mid + 1;
+			else if (cmp > 0) high = mid - 1;
+			else return mid;
+		}
+		return -(low + 1);
+	}
+
+	/**
+	 * Sort the keys in place.
+	 * This is a modification of the list, so it must not be called 
+	 * while the list is being iterated or read by another thread.
+	 */
+	public void sort() {
+		if (sorted) return;
+		quickSort(0, count - 1);
+		others.sort(null);
+		sorted = true;
+		modCount++;
+	}
+
+	private void quickSort(int low, int high) {
+		while (high - low > 16) {
+			int mid = (low + high) >>> 1;
+			// median of three
+			if (less(mid, low)) swap(mid, low);
+			if (less(high, low)) swap(high, low);
+			if (less(high, mid)) swap(high, mid);
+			long pivotHi = packed[2 * mid], pivotLo = packed[2 * mid + 1];
+			int i = low, j = high;
+			while (i <= j) {
+				while (RecordKey.compare(packed[2 * i], packed[2 * i + 1], pivotHi, pivotLo) < 0) i++;
+				while (RecordKey.compare(packed[2 * j], packed[2 * j + 1], pivotHi, pivotLo) > 0) j--;
+				if (i <= j) swap(i++, j--);
+			}
+			// recurse on the smaller side to bound the stack depth
+			if (j - low < high - i) {
+				quickSort(low, j);
+				low = i;
+			}
+			else {
+				quickSort(i, high);
+				high = j;
+			}
+		}
+		for (int i = low + 1; i <= high; ++i) {
+			for (int j = i; j > low && less(j, j - 1); --j) swap(j, j - 1);
+		}
+	}
+
+	private boolean less(int i, int j) {
+		return RecordKey.compare(packed[2 * i], packed[2 * i + 1], packed[2 * j], packed[2 * j + 1]) < 0;
+	}
+
+	private void swap(int i, int j) {
+		long hi = packed[2 * i], lo = packed[2 * i + 1];
+		packed[2 * i] = packed[2 * j];
+		packed[2 * i + 1] = packed[2 * j + 1];
+		packed[2 * j] = hi;
+		packed[2 * j + 1] = lo;
+	}
 	
 	/**
 	 * Returns the complete list as a comma separated list of sys_ids.
 	 */
 	public String toString() {	
-		StringBuffer result = new StringBuffer();
+		StringBuilder result = new StringBuilder(size() * (RecordKey.LENGTH + 1));
 		for (int i = 0; i < size(); ++i) {
 			if (i > 0) result.append(",");
 			result.append(get(i).toString());
@@ -73,16 +253,32 @@ public class KeySet extends ArrayList<RecordKey> {
 		
 	public RecordKey maxValue() {
 		RecordKey result = null;
-		for (RecordKey key : this) {
-			if (result == null || key.greaterThan(result)) result = key;
+		if (count > 0) {
+			int max = count - 1;
+			if (!sorted) {
+				for (int i = 0; i < count - 1; ++i) if (less(max, i)) max = i;
+			}
+			result = get(max);
+		}
+		if (!others.isEmpty()) {
+			RecordKey other = sorted ? others.get(others.size() - 1) : Collections.max(others);
+			if (result == null || other.greaterThan(result)) result = other;
 		}
 		return result;		
 	}
 	
 	public RecordKey minValue() {
 		RecordKey result = null;
-		for (RecordKey key : this) {
-			if (result == null || key.lessThan(result)) result = key;
+		if (count > 0) {
+			int min = 0;
+			if (!sorted) {
+				for (int i = 1; i < count; ++i) if (less(i, min)) min = i;
+			}
+			result = get(min);
+		}
+		if (!others.isEmpty()) {
+			RecordKey other = sorted ? others.get(0) : Collections.min(others);
+			if (result == null || other.lessThan(result)) result = other;
 		}
 		return result;
 	}
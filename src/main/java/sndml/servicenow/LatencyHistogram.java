@@ -0,0 +1,75 @@
+package sndml.servicenow;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram of elapsed times with fixed buckets, suitable for
+ * export in Prometheus text format.
+ * Counts are cumulative from when the process started.
+ */
+public class LatencyHistogram {
+
+	/**
+	 * Upper bounds of the buckets in seconds.
+	 * The last bucket (+Inf) is implied.
+	 */
+	static final double[] BOUNDS =
+		{0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10, 30, 60};
+
+	private final LongAdder[] buckets = new LongAdder[BOUNDS.length + 1];
+	private final LongAdder count = new LongAdder();
+	private final LongAdder sumNanos = new LongAdder();
+
+	public LatencyHistogram() {
+		for (int i = 0; i < buckets.length; ++i) buckets[i] = new LongAdder();
+	}
+
+	/**
+	 * Record an elapsed time.
+	 */
+	public void observe(long nanos) {
+		double seconds = nanos / 1e9;
+		int i = 0;
+		while (i < BOUNDS.length && seconds > BOUNDS[i]) ++i;
+		buckets[i].increment();
+		count.increment();
+		sumNanos.add(nanos);
+	}
+
+	public static int getBucketCount() {
+		return BOUNDS.length + 1;
+	}
+
+	/**
+	 * Upper bound of a bucket in seconds, or positive infinity for the last bucket
+	 */
+	public static double getUpperBound(int bucket) {
+		return bucket < BOUNDS.length ? BOUNDS[bucket] : Double.POSITIVE_INFINITY;
+	}
+
+	/**
+	 * Number of observations less than or equal to the upper bound of a bucket.
+	 */
+	public long getCumulativeCount(int bucket) {
+		long result = 0;
+		for (int i = 0; i <= bucket; ++i) result += buckets[i].sum();
+		return result;
+	}
+
+	public long getCount() {
+		return count.sum();
+	}
+
+	public double getSumSeconds() {
+		return sumNanos.sum() / 1e9;
+	}
+
+	/**
+	 * Mean elapsed time in milliseconds, or 0 if there are no observations.
+	 */
+	public double getMeanMillis() {
+		long n = count.sum();
+		return n == 0 ? 0.0 : sumNanos.sum() / 1e6 / n;
+	}
+
+}
@@ -2,28 +2,62 @@ package sndml.servicenow;
 
 import java.io.PrintWriter;
 import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
 
+/**
+ * Counters for a job or part of a job.
+ * <p>Counters are striped ({@link LongAdder}) so that threads do not contend
+ * when they update the same object. A child only updates its own counters;
+ * the value returned by a getter is the sum of this object and all of its descendants.</p>
+ * <p>When a child is finished its counters are added to its parent and it is removed from
+ * the parent, so that a job with many partitions does not accumulate children.
+ * Anything which is added to a child after it has been finished is also added to the parent.
+ * A child should not be finished while it is still being updated by other threads.</p>
+ * <p>In addition to row counts, the time spent in each {@link Phase} is recorded
+ * so that it is possible to tell whether a job is limited by ServiceNow or by the database.</p>
+ */
 public final class Metrics {
 
+	/**
+	 * Phases for which elapsed time is recorded.
+	 */
+	public enum Phase {
+		FETCH,   // waiting for ServiceNow (request until headers, plus reading the response body)
+		PARSE,   // decompressing and parsing JSON
+		BIND,    // converting and binding values
+		EXECUTE, // executing SQL statements or bulk loads
+		COMMIT   // database commits
+	}
+
 	private final String name; // name as it appears in properties file; null if global
 	private final Metrics parent;
+	private final List<Metrics> children = new CopyOnWriteArrayList<Metrics>();
+	private volatile boolean detached = false; // true if finished and removed from parent
 	private Integer expected = null;
-	private int input = 0;
-	private int inserted = 0;
-	private int updated = 0;
-	private int deleted = 0;
-	private int skipped = 0;
+	private final LongAdder input = new LongAdder();
+	private final LongAdder inserted = new LongAdder();
+	private final LongAdder updated = new LongAdder();
+	private final LongAdder deleted = new LongAdder();
+	private final LongAdder skipped = new LongAdder();
+	private final LongAdder commits = new LongAdder();
+	private final LongAdder bytesReceived = new LongAdder(); // before decompression
+	private final LongAdder bytesDecoded = new LongAdder();  // after decompression
+	private final LongAdder[] nanos = new LongAdder[Phase.values().length];
 	private Date started = null;
 	private Date finished = null;
 			
 	public Metrics(String name) {
-		this.name = name;
-		this.parent = null;
+		this(name, null);
 	}
 	
 	public Metrics(String name, Metrics parent) {
 		this.name = name;
 		this.parent = parent;
+		for (int i = 0; i < nanos.length; ++i) nanos[i] = new LongAdder();
+		if (parent != null) parent.children.add(this);
 	}
 		
 	public String getName() {
@@ -47,10 +81,45 @@ public final class Metrics {
 	}
 	
 	public synchronized Metrics finish() {
-		finished = new Date();
-		if (parent != null) parent.finish();
+		setFinished();
+		if (parent != null && !detached) {
+			detached = true;
+			parent.children.remove(this);
+			parent.addTotals(this);
+		}
 		return this;
 	}
+
+	// update the finish time of this object and its ancestors
+	private synchronized void setFinished() {
+		finished = new Date();
+		if (parent != null) parent.setFinished();
+	}
+
+	/**
+	 * Add the totals of a child which has been removed to the counters of this object.
+	 */
+	private void addTotals(Metrics child) {
+		input.add(child.total(m -> m.input));
+		inserted.add(child.total(m -> m.inserted));
+		updated.add(child.total(m -> m.updated));
+		deleted.add(child.total(m -> m.deleted));
+		skipped.add(child.total(m -> m.skipped));
+		commits.add(child.total(m -> m.commits));
+		bytesReceived.add(child.total(m -> m.bytesReceived));
+		bytesDecoded.add(child.total(m -> m.bytesDecoded));
+		for (Phase phase : Phase.values())
+			nanos[phase.ordinal()].add(child.total(m -> m.nanos[phase.ordinal()]));
+	}
+
+	/**
+	 * Add to a counter of this object, and to the counters of any ancestors
+	 * which no longer include this object in their totals.
+	 */
+	private void add(Function<Metrics,LongAdder> counter, long value) {
+		counter.apply(this).add(value);
+		for (Metrics m = this; m.detached; m = m.parent) counter.apply(m.parent).add(value);
+	}
 	
 	public DateTime getStarted() {
 		assert started != null;
@@ -87,11 +156,20 @@ public final class Metrics {
 		return expected;
 	}
 		
+	/**
+	 * Return the sum of a counter for this object and all of its descendants.
+	 */
+	private long total(Function<Metrics,LongAdder> counter) {
+		long result = counter.apply(this).sum();
+		for (Metrics child : children) result += child.total(counter);
+		return result;
+	}
+
 	/**
 	 * Return the number of rows read from the reader
 	 */
 	public int getInput() {
-		return this.input;
+		return (int) total(m -> m.input);
 	}
 	
 	public int getProcessed() {
@@ -99,19 +177,68 @@ public final class Metrics {
 	}
 	
 	public int getInserted() {
-		return this.inserted;
+		return (int) total(m -> m.inserted);
 	}
 	
+	/**
+	 * Rows updated. If <b>database.upsert</b> is true then every row written
+	 * by an upsert is counted as updated, including rows which were inserted,
+	 * since most databases do not report which action was taken.
+	 */
 	public int getUpdated() {
-		return this.updated;
+		return (int) total(m -> m.updated);
 	}
 	
 	public int getDeleted() {
-		return this.deleted;
+		return (int) total(m -> m.deleted);
 	}
 	
 	public int getSkipped() {
-		return this.skipped;
+		return (int) total(m -> m.skipped);
+	}
+	
+	/**
+	 * Return the number of database commits which included at least one row.
+	 * Rows which are committed by autocommit are not counted.
+	 */
+	public int getCommits() {
+		return (int) total(m -> m.commits);
+	}
+	
+	/**
+	 * Return the number of commits per second
+	 */
+	public double getCommitRate() {
+		double elapsed = getElapsedSec();
+		return elapsed > 0 ? getCommits() / elapsed : 0.0;
+	}
+	
+	/**
+	 * Return the number of bytes received from the instance (before decompression)
+	 */
+	public long getBytesReceived() {
+		return total(m -> m.bytesReceived);
+	}
+	
+	/**
+	 * Return the number of bytes received from the instance after decompression
+	 */
+	public long getBytesDecoded() {
+		return total(m -> m.bytesDecoded);
+	}
+
+	/**
+	 * Return the time spent in a phase in nanoseconds
+	 */
+	public long getNanos(Phase phase) {
+		return total(m -> m.nanos[phase.ordinal()]);
+	}
+
+	/**
+	 * Return the time spent in a phase in seconds
+	 */
+	public double getSeconds(Phase phase) {
+		return getNanos(phase) / 1e9;
 	}
 	
 	public void incrementInput() {
@@ -134,29 +261,37 @@ public final class Metrics {
 		addSkipped(1);
 	}
 
-	public synchronized void addInput(int count) {
-		input += count;
-		if (parent != null) parent.addInput(count);;
-		
+	public void addInput(int count) {
+		add(m -> m.input, count);
+	}
+	
+	public void addInserted(int count) {
+		add(m -> m.inserted, count);
 	}
-	public synchronized void addInserted(int count) {
-		inserted += count;
-		if (parent != null) parent.addInserted(count);		
+	
+	public void addUpdated(int count) {
+		add(m -> m.updated, count);
 	}
 	
-	public synchronized void addUpdated(int count) {
-		updated += count;
-		if (parent != null) parent.addUpdated(count);
+	public void addDeleted(int count) {
+		add(m -> m.deleted, count);
 	}
 	
-	public synchronized void addDeleted(int count) {
-		deleted += count;
-		if (parent != null) parent.addDeleted(count);
+	public void addSkipped(int count) {
+		add(m -> m.skipped, count);
 	}
 	
-	public synchronized void addSkipped(int count) {
-		skipped += count;
-		if (parent != null) parent.addSkipped(count);
+	public void incrementCommits() {
+		add(m -> m.commits, 1);
+	}
+
+	public void addBytesReceived(long received, long decoded) {
+		add(m -> m.bytesReceived, received);
+		add(m -> m.bytesDecoded, decoded);
+	}
+
+	public void addNanos(Phase phase, long value) {
+		add(m -> m.nanos[phase.ordinal()], value);
 	}
 	
 	public synchronized void add(Metrics stats) {
@@ -165,10 +300,13 @@ public final class Metrics {
 		assert stats.finished != null;
 		if (started == null || started.getTime() > stats.started.getTime()) started = stats.started;
 		if (finished == null || finished.getTime() < stats.finished.getTime()) finished = stats.finished;
-		inserted += stats.inserted;
-		updated += stats.updated;
-		deleted += stats.deleted;
-		skipped += stats.skipped;
+		addInserted(stats.getInserted());
+		addUpdated(stats.getUpdated());
+		addDeleted(stats.getDeleted());
+		addSkipped(stats.getSkipped());
+		add(m -> m.commits, stats.getCommits());
+		addBytesReceived(stats.getBytesReceived(), stats.getBytesDecoded());
+		for (Phase phase : Phase.values()) addNanos(phase, stats.getNanos(phase));
 	}
 		
 	public void write(PrintWriter writer) {
@@ -181,6 +319,20 @@ public final class Metrics {
 		writer.println(prefix + "deleted="   + String.valueOf(getDeleted()));
 		writer.println(prefix + "skipped="   + String.valueOf(getSkipped()));
 		writer.println(prefix + "processed=" + String.valueOf(getProcessed()));		
+		writer.println(prefix + "commits="   + String.valueOf(getCommits()));
+		writer.println(prefix + "commitrate=" + String.format("%.2f", getCommitRate()));
+		writer.println(prefix + "bytesreceived=" + String.valueOf(getBytesReceived()));
+		writer.println(prefix + "bytesdecoded="  + String.valueOf(getBytesDecoded()));
+		// times are totals across all threads so they may exceed elapsed
+		for (Phase phase : Phase.values()) {
+			writer.println(prefix + phase.name().toLowerCase() + "time=" +
+				String.format("%.3f", getSeconds(phase)));
+		}
+	}
+
+	// Used for testing
+	int getChildCount() {
+		return children.size();
 	}
 	
 	// Used for debugging
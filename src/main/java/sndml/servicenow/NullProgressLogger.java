@@ -1,6 +1,6 @@
 package sndml.servicenow;
 
-import sndml.datamart.DatePart;
+import sndml.datamart.PartitionPart;
 
 /**
  * {@link ProgressLogger} that discards metrics.
@@ -11,12 +11,12 @@ public class NullProgressLogger extends ProgressLogger {
 		super(null, null);
 	}
 	
-	public NullProgressLogger(Metrics metrics, DatePart datePart) {
-		super(metrics, datePart);
+	public NullProgressLogger(Metrics metrics, PartitionPart part) {
+		super(metrics, part);
 	}
 		
 	@Override
-	public NullProgressLogger newPartLogger(Metrics newMetrics, DatePart newPart) {
+	public NullProgressLogger newPartLogger(Metrics newMetrics, PartitionPart newPart) {
 		return new NullProgressLogger(null, newPart);
 	}
 	
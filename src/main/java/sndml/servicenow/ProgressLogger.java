@@ -1,30 +1,30 @@
 package sndml.servicenow;
 
-import sndml.datamart.DatePart;
+import sndml.datamart.PartitionPart;
 
 public abstract class ProgressLogger {
 
-	protected final DatePart datePart;
+	protected final PartitionPart part;
 	protected final Metrics metrics;
 	
-	public ProgressLogger(Metrics metrics, DatePart datePart) {
-		this.datePart = datePart;
+	public ProgressLogger(Metrics metrics, PartitionPart part) {
+		this.part = part;
 		this.metrics = metrics;
 	}
 	
-	public DatePart getPart() {
-		return datePart;
+	public PartitionPart getPart() {
+		return part;
 	}
 	
 	public boolean hasPart() {
-		return datePart != null;
+		return part != null;
 	}
 	
 	public Metrics getMetrics() {
 		return metrics;
 	}
 	
-	public abstract ProgressLogger newPartLogger(Metrics newMetrics, DatePart newPart);	
+	public abstract ProgressLogger newPartLogger(Metrics newMetrics, PartitionPart newPart);	
 
 	/**
 	 * We are starting the initialization process, which includes
@@ -0,0 +1,297 @@
+package sndml.servicenow;
+
+import java.io.InterruptedIOException;
+import java.util.Date;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.Header;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.utils.DateUtils;
+import org.slf4j.Logger;
+
+/**
+ * Paces the requests sent to an instance. There is one limiter per instance,
+ * shared by every {@link Session}, {@link JsonRequest} and {@link XmlRequest}.
+ * <p>The limiter combines a token bucket (requests per second) with
+ * a concurrency cap which is adjusted using AIMD (additive increase,
+ * multiplicative decrease). The cap is halved when the instance responds with
+ * 429 (Too Many Requests), 502, 503 or 504, and grows by one request per
+ * round trip while responses are healthy. A Retry-After header pauses
+ * all requests to the instance; without one, only the request which is
+ * retried waits (exponential backoff).</p>
+ * <p>The limiter is configured from the properties of the first Session
+ * for the instance:</p>
+ * <ul>
+ * <li><b>servicenow.limiter.rate</b> - requests per second; 0 means no limit (default 0)</li>
+ * <li><b>servicenow.limiter.burst</b> - size of the token bucket (default rate)</li>
+ * <li><b>servicenow.limiter.max_concurrency</b> - upper bound for the cap (default 16)</li>
+ * <li><b>servicenow.limiter.min_concurrency</b> - lower bound for the cap (default 1)</li>
+ * <li><b>servicenow.limiter.retries</b> - retries for a 429 or 503 response (default 5)</li>
+ * <li><b>servicenow.limiter.max_backoff</b> - maximum seconds to wait before a retry (default 60)</li>
+ * </ul>
+ */
+public class RateLimiter {
+
+	static final int DEFAULT_MAX_CONCURRENCY = 16;
+	static final int DEFAULT_RETRIES = 5;
+	static final int DEFAULT_MAX_BACKOFF = 60;
+	static final long INITIAL_BACKOFF_MILLIS = 1000;
+
+	private static final ConcurrentHashMap<String, RateLimiter> limiters =
+			new ConcurrentHashMap<String, RateLimiter>();
+
+	private final String name;
+	private final double rate; // tokens per nanosecond
+	private final double burst;
+	private final int minConcurrency;
+	private final int maxConcurrency;
+	private final int maxRetries;
+	private final long maxBackoffMillis;
+
+	// all of the following are guarded by this
+	private double tokens;
+	private long lastRefill;
+	private double concurrency;
+	private int inFlight = 0;
+	private long pausedUntil;
+	private long lastDecrease;
+	private long throttleCount = 0;
+	private long waitNanos = 0;
+
+	private static final Logger logger = Log.logger(RateLimiter.class);
+
+	RateLimiter(String name, double requestsPerSecond, double burst,
+			int minConcurrency, int maxConcurrency, int maxRetries, int maxBackoffSeconds) {
+		if (requestsPerSecond < 0) throw new IllegalArgumentException("rate=" + requestsPerSecond);
+		if (minConcurrency < 1 || maxConcurrency < minConcurrency)
+			throw new IllegalArgumentException(
+				String.format("min_concurrency=%d max_concurrency=%d", minConcurrency, maxConcurrency));
+		this.name = name;
+		this.rate = requestsPerSecond / TimeUnit.SECONDS.toNanos(1);
+		this.burst = Math.max(burst, 1.0);
+		this.minConcurrency = minConcurrency;
+		this.maxConcurrency = maxConcurrency;
+		this.maxRetries = maxRetries;
+		this.maxBackoffMillis = 1000L * maxBackoffSeconds;
+		long now = System.nanoTime();
+		this.tokens = this.burst;
+		this.lastRefill = now;
+		this.pausedUntil = now;
+		this.lastDecrease = now;
+		this.concurrency = maxConcurrency;
+	}
+
+	private RateLimiter(String name, Session session) {
+		this(name,
+			session.getPropertyInt("limiter.rate", 0),
+			session.getPropertyInt("limiter.burst", session.getPropertyInt("limiter.rate", 0)),
+			session.getPropertyInt("limiter.min_concurrency", 1),
+			session.getPropertyInt("limiter.max_concurrency", DEFAULT_MAX_CONCURRENCY),
+			session.getPropertyInt("limiter.retries", DEFAULT_RETRIES),
+			session.getPropertyInt("limiter.max_backoff", DEFAULT_MAX_BACKOFF));
+		logger.debug(Log.INIT, String.format(
+			"limiter=%s rate=%s max_concurrency=%d retries=%d",
+			name, session.getProperty("limiter.rate"), maxConcurrency, maxRetries));
+	}
+
+	/**
+	 * Return the limiter for the instance of a {@link Session}, creating it if necessary.
+	 */
+	static RateLimiter get(Session session) {
+		String key = session.getInstance().getURL().toString();
+		return limiters.computeIfAbsent(key, name -> new RateLimiter(name, session));
+	}
+
+	public String getName() {
+		return this.name;
+	}
+
+	/**
+	 * A permit to send one request.
+	 * The permit must be released once the response has been read.
+	 */
+	public class Permit {
+		private final long started = System.nanoTime();
+		private boolean released = false;
+
+		/**
+		 * Release the permit and adjust the concurrency cap.
+		 * @param statusCode HTTP status of the response, or 0 if there was no response
+		 * @param retryAfterMillis Time that the instance asked us to wait, or 0
+		 */
+		public void release(int statusCode, long retryAfterMillis) {
+			if (released) return;
+			released = true;
+			RateLimiter.this.release(this, statusCode, retryAfterMillis);
+		}
+	}
+
+	/**
+	 * Wait until the cap, the token bucket and any Retry-After pause
+	 * allow another request.
+	 */
+	public Permit acquire() throws InterruptedIOException {
+		long begin = System.nanoTime();
+		synchronized (this) {
+			try {
+				while (true) {
+					long now = System.nanoTime();
+					if (now - pausedUntil < 0) {
+						waitNanos(pausedUntil - now);
+						continue;
+					}
+					if (inFlight >= (int) concurrency) {
+						wait();
+						continue;
+					}
+					if (rate > 0) {
+						tokens = Math.min(burst, tokens + (now - lastRefill) * rate);
+						lastRefill = now;
+						if (tokens < 1.0) {
+							waitNanos((long) Math.ceil((1.0 - tokens) / rate));
+							continue;
+						}
+						tokens -= 1.0;
+					}
+					inFlight += 1;
+					waitNanos += System.nanoTime() - begin;
+					return new Permit();
+				}
+			}
+			catch (InterruptedException e) {
+				throw new InterruptedIOException("interrupted waiting for " + name);
+			}
+		}
+	}
+
+	private void waitNanos(long nanos) throws InterruptedException {
+		long millis = Math.max(TimeUnit.NANOSECONDS.toMillis(nanos), 1);
+		wait(millis);
+	}
+
+	private synchronized void release(Permit permit, int statusCode, long retryAfterMillis) {
+		assert inFlight > 0;
+		inFlight -= 1;
+		long now = System.nanoTime();
+		if (isThrottled(statusCode)) {
+			throttleCount += 1;
+			// decrease at most once for all requests which were already in flight
+			if (permit.started - lastDecrease > 0) {
+				concurrency = Math.max(minConcurrency, concurrency / 2);
+				lastDecrease = now;
+				logger.info(Log.RESPONSE, String.format(
+					"status=%d concurrency=%d", statusCode, (int) concurrency));
+			}
+		}
+		else if (statusCode > 0) {
+			concurrency = Math.min(maxConcurrency, concurrency + 1.0 / concurrency);
+		}
+		if (retryAfterMillis > 0) {
+			long until = now + TimeUnit.MILLISECONDS.toNanos(retryAfterMillis);
+			if (until - pausedUntil > 0) pausedUntil = until;
+		}
+		notifyAll();
+	}
+
+	/**
+	 * Return true if the status indicates that the instance (or a gateway in front of it)
+	 * is overloaded. Other 5xx errors are not caused by load.
+	 */
+	static boolean isThrottled(int statusCode) {
+		return statusCode == 429 || statusCode == 502 || statusCode == 503 || statusCode == 504;
+	}
+
+	/**
+	 * Return true if a request with this status can be safely sent again.
+	 * The instance did not process the request.
+	 */
+	static boolean isRetryable(int statusCode) {
+		return statusCode == 429 || statusCode == 503;
+	}
+
+	public int getMaxRetries() {
+		return this.maxRetries;
+	}
+
+	/**
+	 * Return the number of milliseconds that the instance asked us to wait
+	 * in a Retry-After header, or -1 if there is no header.
+	 */
+	long getRetryAfter(HttpResponse response) {
+		long delay = parseRetryAfter(response.getFirstHeader("Retry-After"));
+		return delay < 0 ? -1 : Math.min(delay, maxBackoffMillis);
+	}
+
+	/**
+	 * Return the number of milliseconds that a single request should wait
+	 * before a retry if there is no Retry-After header.
+	 * This is an exponential backoff with jitter.
+	 */
+	long getBackoff(int attempt) {
+		assert attempt > 0;
+		long backoff = INITIAL_BACKOFF_MILLIS << Math.min(attempt - 1, 16);
+		long delay = backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1);
+		return Math.min(delay, maxBackoffMillis);
+	}
+
+	/**
+	 * Parse a Retry-After header which is either a number of seconds or an HTTP date.
+	 * Return -1 if the header is missing or cannot be parsed.
+	 */
+	static long parseRetryAfter(Header header) {
+		if (header == null) return -1;
+		String value = header.getValue().trim();
+		try {
+			return Math.max(0, 1000L * Long.parseLong(value));
+		}
+		catch (NumberFormatException e) {
+			Date date = DateUtils.parseDate(value);
+			if (date == null) return -1;
+			return Math.max(0, date.getTime() - System.currentTimeMillis());
+		}
+	}
+
+	/**
+	 * Current concurrency cap
+	 */
+	public synchronized int getConcurrency() {
+		return (int) concurrency;
+	}
+
+	/**
+	 * Number of permits which have been acquired and not released
+	 */
+	public synchronized int getInFlight() {
+		return inFlight;
+	}
+
+	/**
+	 * Number of 429, 502, 503 or 504 responses
+	 */
+	public synchronized long getThrottleCount() {
+		return throttleCount;
+	}
+
+	/**
+	 * Milliseconds until requests are no longer paused by a Retry-After header
+	 */
+	public synchronized long getPauseMillis() {
+		return Math.max(0, TimeUnit.NANOSECONDS.toMillis(pausedUntil - System.nanoTime()));
+	}
+
+	/**
+	 * Total milliseconds that requests have waited for a permit
+	 */
+	public synchronized long getWaitMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(waitNanos);
+	}
+
+	@Override
+	public synchronized String toString() {
+		return String.format("concurrency=%d in_flight=%d throttled=%d limiter_wait=%dms",
+			(int) concurrency, inFlight, throttleCount, getWaitMillis());
+	}
+
+}
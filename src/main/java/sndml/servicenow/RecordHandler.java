@@ -0,0 +1,14 @@
+package sndml.servicenow;
+
+import java.io.IOException;
+import java.sql.SQLException;
+
+/**
+ * Receives records one at a time as they are parsed from a response stream.
+ */
+@FunctionalInterface
+public interface RecordHandler {
+
+	void processRecord(TableRecord rec) throws IOException, SQLException;
+	
+}
@@ -13,6 +13,7 @@ public class RecordList extends ArrayList<TableRecord> {
 	private static final long serialVersionUID = 1L;
 	
 	final protected Table table;
+	private long responseBytes = 0;
 	
 	public RecordList(Table table) {
 		super();
@@ -33,6 +34,18 @@ public class RecordList extends ArrayList<TableRecord> {
 		}
 	}
 		
+	/**
+	 * Size of the response from which this list was parsed (after decompression).
+	 * Used as an estimate of the memory held by the list.
+	 */
+	public long getResponseBytes() {
+		return responseBytes;
+	}
+	
+	public void setResponseBytes(long value) {
+		this.responseBytes = value;
+	}
+	
 	public RecordIterator iterator() {
 		return new RecordIterator(this);
 	}
@@ -12,6 +12,8 @@ import java.sql.SQLException;
  */
 public abstract class RecordWriter {
 
+	private RecordList buffer = null;
+	
 	public RecordWriter() {
 	}
 			
@@ -19,6 +21,51 @@ public abstract class RecordWriter {
 			RecordList recs, Metrics metrics, ProgressLogger progressLogger) 
 		throws IOException, SQLException;	
 
+	/**
+	 * Return true if this writer can accept records one at a time 
+	 * using {@link #processRecord(TableRecord, Metrics)} and {@link #endPage(Metrics, ProgressLogger)}.
+	 */
+	public boolean isStreaming() {
+		return false;
+	}
+	
+	/**
+	 * Return the fields which this writer uses, or null if it uses all fields.
+	 * When records are streamed they will be parsed directly into 
+	 * a {@link CompactRecord} using this index.
+	 */
+	public FieldIndex getFieldIndex() {
+		return null;
+	}
+	
+	/**
+	 * Process a single record as it is streamed from a response.
+	 * The default implementation holds the record until {@link #endPage(Metrics, ProgressLogger)}.
+	 * Subclasses which return true from {@link #isStreaming()} should override this.
+	 */
+	public synchronized void processRecord(TableRecord rec, Metrics metrics) 
+			throws IOException, SQLException {
+		assert rec != null;
+		if (buffer == null) buffer = new RecordList(rec.getTable());
+		buffer.add(rec);
+	}
+	
+	/**
+	 * Called after the last record of a page has been passed to 
+	 * {@link #processRecord(TableRecord, Metrics)}.
+	 * The default implementation passes the held records to 
+	 * {@link #processRecords(RecordList, Metrics, ProgressLogger)}.
+	 */
+	public void endPage(Metrics metrics, ProgressLogger progressLogger) 
+			throws IOException, SQLException {
+		RecordList recs;
+		synchronized (this) {
+			recs = buffer;
+			buffer = null;
+		}
+		if (recs != null) processRecords(recs, metrics, progressLogger);
+	}
+	
 	public RecordWriter open(Metrics metrics) throws IOException, SQLException {
 		metrics.start();
 		return this;
@@ -2,6 +2,8 @@ package sndml.servicenow;
 
 import java.io.IOException;
 import java.net.URI;
+import java.sql.SQLException;
+
 import org.slf4j.Logger;
 
 import com.fasterxml.jackson.databind.JsonNode;
@@ -68,6 +70,31 @@ public class RestTableAPI extends TableAPI {
 		return tableStats;		
 	}
 	
+	/**
+	 * Return the number of records and the maximum sys_updated_on
+	 * for records matching the filter.
+	 * If there are no matching records then the maximum will be null.
+	 */
+	public TableStats getUpdatedStats(EncodedQuery filter) throws IOException {
+		Log.setMethodContext(table, "STATS");
+		TableStats tableStats = new TableStats();
+		Parameters params = new Parameters();
+		if (filter != null && !filter.isEmpty()) params.add("sysparm_query", filter.toString());
+		params.add("sysparm_count", "true");
+		params.add("sysparm_max_fields", "sys_updated_on");
+		URI uri = getURI("stats", null, params);
+		JsonRequest request = new JsonRequest(session, uri, HttpMethod.GET, null);
+		ObjectNode root = request.execute();
+		if (logger.isDebugEnabled()) logger.debug(Log.PROCESS, request.dumpResponseText());
+		request.checkForInsufficientRights();
+		tableStats.count = root.at("/result/stats/count").asInt();
+		tableStats.maxUpdated = DateTime.from(root.at("/result/stats/max/sys_updated_on").asText());
+		logger.debug(Log.PROCESS, String.format(
+			"getUpdatedStats count=%d maxUpdated=%s query=%s", 
+			tableStats.count, tableStats.maxUpdated, filter));
+		return tableStats;
+	}
+	
 	public TableRecord getRecord(RecordKey key) throws IOException {
 		Log.setMethodContext(table, "GET");
 		URI uri = getURI("table", key, null);
@@ -106,17 +133,76 @@ public class RestTableAPI extends TableAPI {
 		return getRecords(params);
 	}
 	
-	public RecordList getRecords(Parameters params) throws IOException {		
+	public RecordList getRecords(Parameters params) throws IOException {
+		return getRecords(params, (Metrics) null);
+	}
+	
+	/**
+	 * Retrieve a list of records. 
+	 * If metrics is not null then the bytes received will be added to it.
+	 */
+	public RecordList getRecords(Parameters params, Metrics metrics) throws IOException {		
 		Log.setMethodContext(table, "GET");
 		URI uri = getURI("table", null, params);
 		JsonRequest request = new JsonRequest(session, uri, HttpMethod.GET, null);
+		request.setMetrics(metrics);
 		ObjectNode root = request.execute();
 		request.checkForInsufficientRights();
 		ArrayNode resultObj = (ArrayNode) root.get("result");
 		RecordList list = new RecordList(table, resultObj);
+		list.setResponseBytes(request.getBytesDecoded());
 		return list;
 	}
 
+	/**
+	 * Pass records to a handler one at a time as they are parsed from the response,
+	 * without reading the entire response into memory.
+	 * @return Number of records processed
+	 */
+	public int getRecords(Parameters params, RecordHandler handler) throws IOException, SQLException {
+		return getRecords(params, null, handler);
+	}
+	
+	/**
+	 * Pass records to a handler one at a time as they are parsed from the response.
+	 * If an index is specified then each record will be parsed directly into a 
+	 * {@link CompactRecord} and fields which are not in the index will be discarded.
+	 * Otherwise each record will be a {@link JsonRecord}.
+	 * @return Number of records processed
+	 */
+	public int getRecords(Parameters params, FieldIndex index, RecordHandler handler) 
+			throws IOException, SQLException {
+		return getRecords(params, index, handler, null);
+	}
+	
+	/**
+	 * Pass records to a handler one at a time as they are parsed from the response.
+	 * If metrics is not null then the bytes received will be added to it.
+	 * @return Number of records processed
+	 */
+	public int getRecords(Parameters params, FieldIndex index, RecordHandler handler, Metrics metrics) 
+			throws IOException, SQLException {
+		Log.setMethodContext(table, "GET");
+		URI uri = getURI("table", null, params);
+		JsonRequest request = new JsonRequest(session, uri, HttpMethod.GET, null);
+		request.setMetrics(metrics);
+		int count = request.executeStream("result", parser -> {
+			TableRecord rec;
+			if (index == null) {
+				ObjectNode entry = JsonRequest.mapper.readTree(parser);
+				rec = new JsonRecord(table, entry);
+			}
+			else {
+				rec = CompactRecord.parse(table, index, parser);
+			}
+			long start = System.nanoTime();
+			handler.processRecord(rec);
+			request.excludeNanos(System.nanoTime() - start);
+		});
+		request.checkForInsufficientRights();
+		return count;
+	}
+
 	public InsertResponse insertRecord(Parameters fields) throws IOException {
 		Log.setMethodContext(table, "POST");
 		URI uri = getURI("table", null, null);
@@ -1,23 +1,48 @@
 package sndml.servicenow;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.sql.SQLException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
 public class RestTableReader extends TableReader {
 
 	final protected RestTableAPI restAPI;
 	protected boolean statsEnabled;
 	protected TableStats stats = null;
+	// prefetch is the depth of the page queue; zero disables the pipeline
+	protected int prefetch = 0;
+	// if streaming then records are passed to the writer as they are parsed
+	protected boolean streaming;
 	
 	private final int DEFAULT_PAGE_SIZE = 200;
+	
+	// size of pages which have been fetched but not yet written, for all readers
+	private static final LongAdder inFlightBytes = new LongAdder();
 		
 	public RestTableReader(Table table) {
 		super(table);
 		this.restAPI = table.rest();
 		this.statsEnabled = true;
 		this.orderBy = OrderBy.KEYS;
+		this.streaming = table.session.getPropertyBoolean("streaming", false);
 	}
 			
+	/**
+	 * Decoded size of all pages which have been fetched but not yet written.
+	 * This is an estimate of the memory used by in-flight {@link RecordList}s.
+	 */
+	public static long getInFlightBytes() {
+		return inFlightBytes.sum();
+	}
+	
 	public int getDefaultPageSize() {
 		return DEFAULT_PAGE_SIZE;
 	}
@@ -27,6 +52,33 @@ public class RestTableReader extends TableReader {
 		return this;
 	}
 	
+	/**
+	 * Number of pages which may be fetched ahead of the writer.
+	 * If greater than zero then pages are fetched by a separate thread
+	 * so that HTTP requests overlap with database writes.
+	 */
+	public RestTableReader setPrefetch(Integer depth) {
+		if (initialized) throw new IllegalStateException();
+		this.prefetch = depth == null ? 0 : depth.intValue();
+		return this;
+	}
+	
+	public int getPrefetch() {
+		return this.prefetch;
+	}
+	
+	/**
+	 * If true, and if the writer supports it, records will be passed to the writer
+	 * one at a time as they are parsed from the response stream, 
+	 * rather than reading each page into a {@link RecordList}.
+	 * Streaming is not used if prefetch is enabled.
+	 */
+	public RestTableReader setStreaming(boolean value) {
+		if (initialized) throw new IllegalStateException();
+		this.streaming = value;
+		return this;
+	}
+	
 	public void prepare(RecordWriter writer, Metrics metrics, ProgressLogger progressLogger) 
 			throws IOException, InterruptedException  {
 		beginPrepare(writer, metrics, progressLogger);
@@ -48,51 +100,219 @@ public class RestTableReader extends TableReader {
 		progress.logStart();
 		assert writer != null;
 		assert metrics != null;
-		int rowCount = 0;
-		RecordKey maxKey = null;
-		boolean finished = false;
+		int rowCount;
 		if (statsEnabled && stats.count == 0) {
-			finished = true;
+			rowCount = 0;
 			logger.debug(Log.PROCESS, "expecting 0 rows; bypassing query");
 		}
+		else if (prefetch > 0) {
+			rowCount = callPipelined();
+		}
+		else if (streaming && writer.isStreaming()) {
+			rowCount = callStreaming();
+		}
+		else {
+			rowCount = callSequential();			
+		}
+		if (statsEnabled) {
+			if (rowCount != getExpected()) {
+				logger.warn(Log.PROCESS, 
+					String.format("Expected %d rows but processed %d rows", getExpected(), rowCount));
+			}
+		}
+		progress.logComplete();
+		return metrics;
+	}
+	
+	/**
+	 * Fetch a page and then write it before fetching the next page.
+	 */
+	private int callSequential() throws IOException, SQLException, InterruptedException {
+		int rowCount = 0;
+		RecordKey maxKey = null;
+		boolean finished = false;
 		int offset = 0;
-		int pageSize = getPageSize();
-		assert pageSize > 0;
 		while (!finished) {
-			Parameters params = new Parameters();
-			if (orderBy == OrderBy.KEYS) {
-				setKeyExclusion(maxKey);
+			RecordList recs = fetchPage(maxKey, offset);
+			maxKey = recs.maxKey();
+			try {
+				writer.processRecords(recs, metrics, progress);
 			}
-			else {
-				params.add("sysparm_offset", Integer.toString(offset));				
+			finally {
+				inFlightBytes.add(-recs.getResponseBytes());
 			}
-			params.add("sysparm_limit", Integer.toString(pageSize));
-			params.add("sysparm_exclude_reference_link", "true");			
-			params.add("sysparm_display_value", displayValue ? "all" : "false");
-			if (fieldNames != null) params.add("sysparm_fields", fieldNames.addKey().toString());
-			if (viewName != null) params.add("sysparm_view", viewName);
-			EncodedQuery query = getQuery();
-			if (!query.isEmpty()) params.add("sysparm_query", query.toString());
-			RecordList recs = restAPI.getRecords(params);
-			logger.debug(Log.RESPONSE, String.format("retrieved %d rows", recs.size()));
-			incrementInput(recs.size());
-			maxKey = recs.maxKey();
-			writer.processRecords(recs, metrics, progress);	
 			rowCount += recs.size();
 			offset += recs.size();
 			if (isFinished(recs.size(), rowCount)) finished = true;
 			logger.debug(Log.PROCESS, String.format("processed %d rows so far", rowCount));
-			if (maxRows != null && rowCount > maxRows)
-				throw new TooManyRowsException(table, maxRows, rowCount);
+			checkMaxRows(rowCount);
 		}
-		if (statsEnabled) {
-			if (rowCount != getExpected()) {
-				logger.warn(Log.PROCESS, 
-					String.format("Expected %d rows but processed %d rows", getExpected(), rowCount));
+		return rowCount;
+	}
+	
+	/**
+	 * Pass records to the writer as they are parsed from each response.
+	 */
+	private int callStreaming() throws IOException, SQLException, InterruptedException {
+		int rowCount = 0;
+		RecordKey maxKey = null;
+		boolean finished = false;
+		int offset = 0;
+		while (!finished) {
+			Parameters params = getPageParameters(maxKey, offset);
+			StreamedPage page = new StreamedPage();
+			restAPI.getRecords(params, writer.getFieldIndex(), page, metrics);
+			logger.debug(Log.RESPONSE, String.format("streamed %d rows", page.rows));
+			incrementInput(page.rows);
+			writer.endPage(metrics, progress);
+			maxKey = page.maxKey;
+			rowCount += page.rows;
+			offset += page.rows;
+			if (isFinished(page.rows, rowCount)) finished = true;
+			logger.debug(Log.PROCESS, String.format("processed %d rows so far", rowCount));
+			checkMaxRows(rowCount);
+		}
+		return rowCount;		
+	}
+	
+	/**
+	 * Passes streamed records to the writer and tracks the page size and maximum key.
+	 */
+	private class StreamedPage implements RecordHandler {
+		int rows = 0;
+		RecordKey maxKey = null;
+		
+		@Override
+		public void processRecord(TableRecord rec) throws IOException, SQLException {
+			RecordKey key = rec.getKey();
+			if (maxKey == null || key.greaterThan(maxKey)) maxKey = key;
+			writer.processRecord(rec, metrics);
+			rows += 1;
+		}
+	}
+	
+	/**
+	 * Fetch pages in a separate thread and place them in a bounded queue.
+	 * The calling thread drains the queue into the writer.
+	 */
+	private int callPipelined() throws IOException, SQLException, InterruptedException {
+		final RecordList endOfData = new RecordList(table);
+		final BlockingQueue<RecordList> queue = new ArrayBlockingQueue<RecordList>(prefetch);
+		final String readerName = this.getReaderName();
+		logger.debug(Log.PROCESS, String.format("prefetch=%d", prefetch));
+		ExecutorService fetcher = Executors.newSingleThreadExecutor();
+		Future<Integer> fetchResult = fetcher.submit(() -> {
+			Log.setTableContext(table, readerName);
+			int fetchCount = 0;
+			RecordKey maxKey = null;
+			boolean finished = false;
+			int offset = 0;
+			while (!finished) {
+				RecordList recs = fetchPage(maxKey, offset);
+				boolean queued = false;
+				try {
+					maxKey = recs.maxKey();
+					fetchCount += recs.size();
+					offset += recs.size();
+					if (isFinished(recs.size(), fetchCount)) finished = true;
+					checkMaxRows(fetchCount);
+					if (recs.size() > 0) {
+						queue.put(recs);
+						queued = true;
+					}
+				}
+				finally {
+					// a page which is not queued will not be written
+					if (!queued) inFlightBytes.add(-recs.getResponseBytes());
+				}
 			}
+			queue.put(endOfData);
+			return fetchCount;
+		});
+		fetcher.shutdown();
+		int rowCount = 0;
+		try {
+			while (true) {
+				RecordList recs = queue.poll(1, TimeUnit.SECONDS);
+				if (recs == null) {
+					// if the fetch thread died then this will throw the exception
+					if (fetchResult.isDone() && queue.isEmpty()) getFetchResult(fetchResult);
+					continue;
+				}
+				if (recs == endOfData) break;
+				try {
+					writer.processRecords(recs, metrics, progress);
+				}
+				finally {
+					inFlightBytes.add(-recs.getResponseBytes());
+				}
+				rowCount += recs.size();
+				logger.debug(Log.PROCESS, String.format("processed %d rows so far", rowCount));
+			}
+			int fetchCount = getFetchResult(fetchResult);
+			assert fetchCount == rowCount;
 		}
-		progress.logComplete();
-		return metrics;
+		finally {
+			// if the writer failed then stop the fetch thread
+			// and wait for it so that no page is queued after the queue is drained
+			if (!fetchResult.isDone()) fetchResult.cancel(true);
+			if (!fetcher.awaitTermination(1, TimeUnit.MINUTES))
+				logger.warn(Log.PROCESS, "fetch thread did not terminate");
+			for (RecordList recs : queue) inFlightBytes.add(-recs.getResponseBytes());
+		}
+		return rowCount;
+	}
+	
+	private int getFetchResult(Future<Integer> fetchResult) 
+			throws IOException, InterruptedException {
+		try {
+			return fetchResult.get();
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException) throw (IOException) cause;
+			if (cause instanceof InterruptedException) throw new InterruptedIOException(cause.getMessage());
+			if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+			if (cause instanceof Error) throw (Error) cause;
+			throw new ServiceNowError(cause);
+		}		
+	}
+	
+	/**
+	 * Fetch the next page. If reading by keys then the page begins
+	 * after maxKey; otherwise the page begins at offset.
+	 */
+	protected RecordList fetchPage(RecordKey maxKey, int offset) throws IOException {
+		Parameters params = getPageParameters(maxKey, offset);
+		RecordList recs = restAPI.getRecords(params, metrics);
+		inFlightBytes.add(recs.getResponseBytes());
+		logger.debug(Log.RESPONSE, String.format("retrieved %d rows", recs.size()));
+		incrementInput(recs.size());
+		return recs;
+	}
+	
+	protected Parameters getPageParameters(RecordKey maxKey, int offset) {
+		int pageSize = getPageSize();
+		assert pageSize > 0;
+		Parameters params = new Parameters();
+		if (orderBy == OrderBy.KEYS) {
+			setKeyExclusion(maxKey);
+		}
+		else {
+			params.add("sysparm_offset", Integer.toString(offset));				
+		}
+		params.add("sysparm_limit", Integer.toString(pageSize));
+		params.add("sysparm_exclude_reference_link", "true");			
+		params.add("sysparm_display_value", displayValue ? "all" : "false");
+		if (fieldNames != null) params.add("sysparm_fields", fieldNames.addKey().toString());
+		if (viewName != null) params.add("sysparm_view", viewName);
+		EncodedQuery query = getQuery();
+		if (!query.isEmpty()) params.add("sysparm_query", query.toString());
+		return params;
+	}
+	
+	private void checkMaxRows(int rowCount) throws TooManyRowsException {
+		if (maxRows != null && rowCount > maxRows)
+			throw new TooManyRowsException(table, maxRows, rowCount);		
 	}
 	
 	protected boolean isFinished(int pageRows, int totalRows) {
@@ -1,13 +1,33 @@
 package sndml.servicenow;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.net.URI;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+
 import org.slf4j.Logger;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.CountingInputStream;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
 import org.apache.http.StatusLine;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.entity.ContentType;
 import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.util.EntityUtils;
 
 public abstract class ServiceNowRequest {
 
+	// time from sending each request until the response headers are received
+	private static final LatencyHistogram latency = new LatencyHistogram();
+
 	final CloseableHttpClient client;
+	final RateLimiter limiter;
+	final boolean compression;
 	final URI uri;
 	final HttpMethod method;
 	protected StatusLine statusLine;
@@ -15,12 +35,182 @@ public abstract class ServiceNowRequest {
 	protected String responseContentType;
 	protected String requestText;
 	protected String responseText;
+	private RateLimiter.Permit permit;
+	protected Metrics metrics = null;
+	private TimedInputStream wireCounter = null;
+	private CountingInputStream decodedCounter = null;
+	private long executeNanos = 0; // time waiting for response headers
+	
+	/**
+	 * Counts bytes and the time spent waiting for them.
+	 */
+	private static class TimedInputStream extends CountingInputStream {
+		long nanos = 0;
+		private long start;
+		
+		TimedInputStream(InputStream in) {
+			super(in);
+		}
+		
+		@Override
+		protected void beforeRead(int n) throws IOException {
+			start = System.nanoTime();
+			super.beforeRead(n);
+		}
+		
+		@Override
+		protected synchronized void afterRead(int n) {
+			nanos += System.nanoTime() - start;
+			super.afterRead(n);
+		}
+	}
 		
-	ServiceNowRequest(CloseableHttpClient client, URI uri, HttpMethod method) {
-		this.client = client;
+	ServiceNowRequest(Session session, URI uri, HttpMethod method) {
+		this.client = session.getClient();
+		this.limiter = session.getRateLimiter();
+		this.compression = session.getPropertyBoolean("compression", true);
 		this.uri = uri;
 		this.method = method;
 	}
+	
+	/**
+	 * If specified, the number of bytes received and the time spent waiting for
+	 * the response will be added to the metrics when the response is closed.
+	 */
+	public void setMetrics(Metrics metrics) {
+		this.metrics = metrics;
+	}
+	
+	/**
+	 * Send the request after obtaining a permit from the {@link RateLimiter}.
+	 * If the instance responds with 429 or 503 then the request is retried 
+	 * after the delay requested by the instance. If there is no Retry-After header
+	 * then only this request waits before the retry.
+	 * The response must be closed using {@link #closeResponse}.
+	 */
+	protected CloseableHttpResponse sendRequest(HttpUriRequest request) throws IOException {
+		if (compression) request.setHeader("Accept-Encoding", "gzip");
+		int attempt = 0;
+		while (true) {
+			permit = limiter.acquire();
+			CloseableHttpResponse response;
+			long start = System.nanoTime();
+			try {
+				response = client.execute(request);
+			}
+			catch (IOException e) {
+				releasePermit(0, 0);
+				throw e;
+			}
+			finally {
+				long elapsed = System.nanoTime() - start;
+				executeNanos += elapsed;
+				latency.observe(elapsed);
+			}
+			int status = response.getStatusLine().getStatusCode();
+			if (!RateLimiter.isRetryable(status) || attempt >= limiter.getMaxRetries()) 
+				return response;
+			attempt += 1;
+			long retryAfter = limiter.getRetryAfter(response);
+			long delay = retryAfter < 0 ? limiter.getBackoff(attempt) : retryAfter;
+			EntityUtils.consumeQuietly(response.getEntity());
+			response.close();
+			// only a Retry-After header pauses the other requests to the instance
+			releasePermit(status, Math.max(retryAfter, 0));
+			Log.logger(this.getClass()).warn(Log.RESPONSE, String.format(
+				"%s status=%d retry=%d delay=%dms", 
+				uri.getPath(), status, attempt, delay));
+			if (retryAfter < 0) {
+				try {
+					Thread.sleep(delay);
+				}
+				catch (InterruptedException e) {
+					throw new InterruptedIOException("interrupted waiting to retry " + uri.getPath());
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Close the response and release the permit obtained by {@link #sendRequest}.
+	 */
+	protected void closeResponse(CloseableHttpResponse response) throws IOException {
+		try {
+			response.close();
+		}
+		finally {
+			releasePermit(response.getStatusLine().getStatusCode(), 0);
+		}
+		if (metrics != null) {
+			if (wireCounter != null)
+				metrics.addBytesReceived(wireCounter.getByteCount(), decodedCounter.getByteCount());
+			metrics.addNanos(Metrics.Phase.FETCH, executeNanos + getReadNanos());
+		}
+	}
+	
+	/**
+	 * Return the content of a response entity. If the content is gzip encoded
+	 * then it is decompressed as it is read. 
+	 * Bytes are counted before and after decompression.
+	 */
+	protected InputStream getContent(HttpEntity entity) throws IOException {
+		assert entity != null;
+		wireCounter = new TimedInputStream(entity.getContent());
+		InputStream decoded = isGzip(entity) ? new GZIPInputStream(wireCounter, 8192) : wireCounter;
+		decodedCounter = new CountingInputStream(decoded);
+		return decodedCounter;
+	}
+	
+	/**
+	 * Read the decompressed content of a response entity as a String.
+	 */
+	protected String readText(HttpEntity entity) throws IOException {
+		Charset charset = ContentType.getOrDefault(entity).getCharset();
+		if (charset == null) charset = StandardCharsets.UTF_8;
+		try (InputStream content = getContent(entity)) {
+			return IOUtils.toString(content, charset);
+		}
+	}
+	
+	private static boolean isGzip(HttpEntity entity) {
+		Header encoding = entity.getContentEncoding();
+		if (encoding == null) return false;
+		String value = encoding.getValue().trim();
+		return value.equalsIgnoreCase("gzip") || value.equalsIgnoreCase("x-gzip");
+	}
+	
+	/**
+	 * Number of bytes received for the last response (before decompression)
+	 */
+	public long getBytesReceived() {
+		return wireCounter == null ? 0 : wireCounter.getByteCount();
+	}
+	
+	/**
+	 * Number of bytes after decompression for the last response
+	 */
+	public long getBytesDecoded() {
+		return decodedCounter == null ? 0 : decodedCounter.getByteCount();
+	}
+	
+	/**
+	 * Time spent waiting to read the response body, in nanoseconds
+	 */
+	protected long getReadNanos() {
+		return wireCounter == null ? 0 : wireCounter.nanos;
+	}
+	
+	/**
+	 * Latency of all requests sent by this process
+	 */
+	public static LatencyHistogram getLatencyHistogram() {
+		return latency;
+	}
+	
+	private void releasePermit(int statusCode, long retryAfterMillis) {
+		if (permit != null) permit.release(statusCode, retryAfterMillis);
+		permit = null;
+	}
 
 	public String dumpRequestText() {
 		return requestText;
@@ -4,6 +4,7 @@ import java.io.IOException;
 import java.net.URI;
 import java.util.Properties;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.http.HttpHost;
 import org.apache.http.auth.AuthScope;
@@ -14,7 +15,6 @@ import org.apache.http.impl.client.BasicCookieStore;
 import org.apache.http.impl.client.BasicCredentialsProvider;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClients;
-import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 import org.slf4j.Logger;
 
 import sndml.daemon.AgentDaemon;
@@ -34,7 +34,8 @@ public class Session {
 	private final UsernamePasswordCredentials userPassCreds;
 	private final CredentialsProvider credsProvider;
 	final private BasicCookieStore cookieStore = new BasicCookieStore();
-	final private PoolingHttpClientConnectionManager connectionManager;	
+	final private ConnectionPool connectionManager;
+	final private RateLimiter rateLimiter;
 	private final ConcurrentHashMap<String,TableSchema> schemaCache = 
 			new ConcurrentHashMap<String,TableSchema>();
 	private final ConcurrentHashMap<String,TableWSDL> wsdlCache = 
@@ -66,7 +67,8 @@ public class Session {
 		assert instancename != "";
 		assert username != null;
 		assert username != "";
-		this.instance = new Instance(instancename);
+		this.instance = new Instance(instancename, 
+			Boolean.parseBoolean(this.getProperty("allow_http")));
 		this.username = username;
 		this.domain = (domainname == null || domainname.length() == 0) ? 
 			null : new Domain(domainname);		
@@ -75,7 +77,8 @@ public class Session {
 		this.credsProvider = new BasicCredentialsProvider();
 		this.userPassCreds = new UsernamePasswordCredentials(username, password);		
 		this.credsProvider.setCredentials(this.authScope, this.userPassCreds);	
-		this.connectionManager = new PoolingHttpClientConnectionManager();
+		this.connectionManager = ConnectionPool.get(this);
+		this.rateLimiter = RateLimiter.get(this);
 //		client is now created on initial request
 //		this.client = HttpClients.custom().
 //				setConnectionManager(connectionManager).
@@ -94,6 +97,7 @@ public class Session {
 	/**
 	 * Create a new Session with the same properties as this one. 
 	 * The URL and credentials will be the same, but the Session ID will be different.
+	 * The new Session shares the same {@link ConnectionPool}.
 	 */
 	public Session duplicate() throws IOException {
 		return new Session(this.properties);
@@ -125,7 +129,7 @@ public class Session {
 		return value;		
 	}
 	
-	private boolean getPropertyBoolean(String propname, boolean defaultValue) {
+	public boolean getPropertyBoolean(String propname, boolean defaultValue) {
 		String propvalue = getProperty(propname);
 		if (propvalue == null) return defaultValue;
 		return Boolean.parseBoolean(propvalue);
@@ -168,13 +172,35 @@ public class Session {
 		return client;
 	}
 
+	/**
+	 * Return the {@link ConnectionPool} shared by all sessions 
+	 * for this instance and user.
+	 */
+	public ConnectionPool getConnectionPool() {
+		return this.connectionManager;
+	}
+
+	/**
+	 * Return the {@link RateLimiter} shared by all sessions for this instance.
+	 */
+	public RateLimiter getRateLimiter() {
+		return this.rateLimiter;
+	}
+
 	public void reset() {
-		closeClient();
+		if (client != null) closeClient();
+		connectionManager.closeExpiredConnections();
+		connectionManager.closeIdleConnections(0, TimeUnit.SECONDS);
 	}
 	
 	private void createClient() {
+		// the pool is shared so closing the client must not shut it down
 		client = HttpClients.custom().
 			setConnectionManager(connectionManager).
+			setConnectionManagerShared(true).
+			// gzip is negotiated and decoded by ServiceNowRequest so bytes can be counted
+			disableContentCompression().
+			setKeepAliveStrategy(connectionManager.getKeepAliveStrategy()).
 			setDefaultCredentialsProvider(credsProvider).
 			setDefaultCookieStore(cookieStore).
 			build();			
@@ -67,7 +67,7 @@ public class SoapClient {
 			logger.debug(Log.REQUEST, "\n" + requestText);
 		}
 		
-		XmlRequest xmlRequest = new XmlRequest(session.getClient(), uri, requestDoc);
+		XmlRequest xmlRequest = new XmlRequest(session, uri, requestDoc);
 		Document responseDoc = xmlRequest.getDocument();
 		if (logger.isDebugEnabled()) {
 			String responseText = XmlFormatter.format(responseDoc);
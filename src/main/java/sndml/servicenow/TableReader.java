@@ -15,10 +15,11 @@ public abstract class TableReader implements Callable<Metrics> {
 	protected String readerName;
 	protected String partName;
 	
-	// filter is a base query to which createdRange, updatedRange and keyExclusion are appended
+	// filter is a base query to which createdRange, updatedRange, keyRange and keyExclusion are appended
 	protected EncodedQuery filter; 
 	protected DateTimeRange createdRange;
 	protected DateTimeRange updatedRange;
+	protected KeyRange keyRange;
 	// keyExclusion is use for pagination; only values greater than the current key will be returned
 	private RecordKey keyExclusion = null;
 	
@@ -161,6 +162,20 @@ public abstract class TableReader implements Callable<Metrics> {
 		return this.updatedRange;
 	}
 	
+	/**
+	 * Restrict the reader to a range of sys_id values.
+	 */
+	public TableReader setKeyRange(KeyRange range) {
+		if (initialized) throw new IllegalStateException();
+		// argument may be null to clear the range
+		this.keyRange = range;
+		return this;
+	}
+	
+	public KeyRange getKeyRange() {
+		return this.keyRange;
+	}
+	
 	public TableReader orderByKeys(boolean value) {
 		this.orderBy = value ? OrderBy.KEYS : OrderBy.NONE;
 		return this;
@@ -210,20 +225,21 @@ public abstract class TableReader implements Callable<Metrics> {
 
 	/**
 	 * Return a composite query built from base query, 
-	 * plus created range, updated range and key exclusion
+	 * plus created range, updated range, key range and key exclusion
 	 */
 	public EncodedQuery getStatsQuery() {
 		EncodedQuery result = (filter == null) ? 
 				new EncodedQuery(table) : new EncodedQuery(filter);
 		if (createdRange != null) result.addCreated(createdRange);
 		if (updatedRange != null) result.addUpdated(updatedRange);
+		if (keyRange != null) result.addKeyRange(keyRange);
 		if (keyExclusion != null) result.excludeKeys(keyExclusion);
 		return result;
 	}
 	
 	/**
 	 * Return a composite query built from base query, 
-	 * plus created range, updated range and key exclusion
+	 * plus created range, updated range, key range and key exclusion
 	 * plus order by clause
 	 */
 	public EncodedQuery getQuery() {
@@ -4,6 +4,7 @@ public class TableStats {
 	
 	public int count;
 	public DateTimeRange created;
+	public DateTime maxUpdated;
 	
 	public int getCount() {
 		return count;
@@ -23,4 +24,8 @@ public class TableStats {
 		return this.created;
 	}
 
+	public DateTime getMaxUpdated() {
+		return this.maxUpdated;
+	}
+
 }
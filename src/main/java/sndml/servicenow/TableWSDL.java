@@ -38,7 +38,7 @@ public class TableWSDL {
 		Log.setURIContext(uri);
 		logger.debug(Log.WSDL, uri.toString());
 
-		XmlRequest request = new XmlRequest(session.getClient(), uri, null);
+		XmlRequest request = new XmlRequest(session, uri, null);
 		try {
 			doc = request.getDocument();
 		} catch (NoContentException e) {
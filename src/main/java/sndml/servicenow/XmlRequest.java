@@ -13,8 +13,6 @@ import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.methods.HttpUriRequest;
 import org.apache.http.entity.ContentType;
 import org.apache.http.entity.StringEntity;
-import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.util.EntityUtils;
 import org.jdom2.Document;
 import org.jdom2.JDOMException;
 import org.jdom2.input.SAXBuilder;
@@ -27,8 +25,8 @@ class XmlRequest extends ServiceNowRequest {
 	final Document requestDoc;
 	final HttpUriRequest request;
 	
-	public XmlRequest(CloseableHttpClient client, URI uri, Document requestDoc) {
-		super(client, uri, getMethod(requestDoc));
+	public XmlRequest(Session session, URI uri, Document requestDoc) {
+		super(session, uri, getMethod(requestDoc));
 		this.requestDoc = requestDoc;
 		logger.debug(Log.REQUEST, uri.toString());
 		// if requestDoc is null then use GET
@@ -55,17 +53,22 @@ class XmlRequest extends ServiceNowRequest {
 	}
 	
 	public Document getDocument() throws IOException {
-		CloseableHttpResponse response = client.execute(request);		
-		statusLine = response.getStatusLine();		
-		statusCode = statusLine.getStatusCode();
-		HttpEntity responseEntity = response.getEntity();
-		Header contentTypeHeader = responseEntity.getContentType();
-		responseContentType = contentTypeHeader == null ? null : contentTypeHeader.getValue();
-		responseText = EntityUtils.toString(responseEntity);
+		CloseableHttpResponse response = sendRequest(request);
+		try {
+			statusLine = response.getStatusLine();		
+			statusCode = statusLine.getStatusCode();
+			HttpEntity responseEntity = response.getEntity();
+			Header contentTypeHeader = responseEntity.getContentType();
+			responseContentType = contentTypeHeader == null ? null : contentTypeHeader.getValue();
+			responseText = readText(responseEntity);
+		}
+		finally {
+			closeResponse(response);
+		}
 		int responseLen = responseText == null ? 0 : responseText.length();
 		logger.debug(Log.RESPONSE,
-			String.format("status=\"%s\" contentType=%s len=%d", 
-				statusLine, responseContentType, responseLen));
+			String.format("status=\"%s\" contentType=%s len=%d received=%d", 
+				statusLine, responseContentType, responseLen, getBytesReceived()));
 		if (statusCode == 401 || statusCode == 403) {
 			logger.error(Log.RESPONSE, this.dump());
 			throw new InsufficientRightsException(this);
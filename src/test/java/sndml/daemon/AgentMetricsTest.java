@@ -0,0 +1,84 @@
+package sndml.daemon;
+
+import static org.junit.Assert.*;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+import sndml.datamart.DatabaseTableWriter;
+import sndml.servicenow.Metrics;
+import sndml.servicenow.Metrics.Phase;
+
+public class AgentMetricsTest {
+
+	static final String LABEL = "[a-zA-Z_][a-zA-Z0-9_]*=\"(?:[^\"\\\\]|\\\\.)*\"";
+	static final Pattern SAMPLE = Pattern.compile(
+		"[a-zA-Z_:][a-zA-Z0-9_:]*(\\{" + LABEL + "(," + LABEL + ")*\\})? \\S+");
+
+	static List<String> prometheus(AgentMetrics metrics) {
+		StringWriter text = new StringWriter();
+		metrics.writePrometheus(new PrintWriter(text));
+		return Arrays.asList(text.toString().split("\n"));
+	}
+
+	@Test
+	public void testFormat() {
+		AgentMetrics agent = new AgentMetrics();
+		Metrics job = new Metrics("load");
+		job.start();
+		agent.jobStarted("load", "incident", job);
+		for (String line : prometheus(agent)) {
+			if (line.startsWith("# HELP ") || line.startsWith("# TYPE ")) continue;
+			assertTrue(line, SAMPLE.matcher(line).matches());
+			// Prometheus uses the label job for the scrape target
+			assertFalse(line, line.contains("{job=") || line.contains(",job="));
+		}
+		agent.jobFinished(job);
+	}
+
+	@Test
+	public void testJobs() {
+		AgentMetrics agent = new AgentMetrics();
+		Metrics job = new Metrics("load");
+		job.start();
+		agent.jobStarted("load", "incident", job);
+		job.addInserted(10);
+		job.addNanos(Phase.FETCH, 1500000000L);
+		List<String> lines = prometheus(agent);
+		assertTrue(lines.contains("# TYPE sndml_job_rows_processed_total counter"));
+		assertTrue(lines.contains("sndml_job_rows_processed_total{job_name=\"load\"} 10"));
+		assertTrue(lines.contains("sndml_table_rows_processed_total{table_name=\"incident\"} 10"));
+		assertTrue(lines.contains(
+			"sndml_job_phase_seconds_total{job_name=\"load\",phase=\"fetch\"} 1.5"));
+		assertTrue(lines.contains("sndml_jobs_active 1"));
+		agent.jobFinished(job);
+		lines = prometheus(agent);
+		assertTrue(lines.contains("sndml_jobs_active 0"));
+		// totals of finished jobs are kept
+		assertTrue(lines.contains("sndml_job_rows_processed_total{job_name=\"load\"} 10"));
+		assertTrue(lines.contains("sndml_job_rows_per_second{job_name=\"load\"} 0.0"));
+	}
+
+	@Test
+	public void testHistogram() {
+		List<String> lines = prometheus(new AgentMetrics());
+		String name = "sndml_jdbc_commit_duration_seconds";
+		assertTrue(lines.contains("# TYPE " + name + " histogram"));
+		assertTrue(lines.contains(name + "_bucket{le=\"0.005\"} " +
+			DatabaseTableWriter.getCommitLatency().getCumulativeCount(0)));
+		long count = DatabaseTableWriter.getCommitLatency().getCount();
+		assertTrue(lines.contains(name + "_bucket{le=\"+Inf\"} " + count));
+		assertTrue(lines.contains(name + "_count " + count));
+	}
+
+	@Test
+	public void testLabel() {
+		assertEquals("job_name=\"a\\\"b\\\\c\\nd\"", AgentMetrics.label("job_name", "a\"b\\c\nd"));
+	}
+
+}
@@ -0,0 +1,78 @@
+package sndml.daemon;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+public class AppStatusPublisherTest {
+
+	/**
+	 * Records the updates instead of sending them to an instance.
+	 */
+	static class StubPublisher extends AppStatusPublisher {
+		final List<String> sent = new ArrayList<String>();
+
+		StubPublisher(int intervalSeconds) {
+			super(intervalSeconds);
+		}
+
+		@Override
+		synchronized void send(Update update) {
+			sent.add(update.body.get("status").asText());
+		}
+
+		synchronized List<String> getSent() {
+			return new ArrayList<String>(sent);
+		}
+	}
+
+	static ObjectNode status(String value) {
+		ObjectNode body = new ObjectMapper().createObjectNode();
+		body.put("status", value);
+		return body;
+	}
+
+	@Test
+	public void testLatestWins() {
+		// the interval is long enough that nothing is sent until the publisher is closed
+		StubPublisher publisher = new StubPublisher(3600);
+		publisher.publish("run1", null, null, status("a1"), false);
+		publisher.publish("run2", null, null, status("b1"), false);
+		publisher.publish("run1", null, null, status("a2"), false);
+		publisher.publish("run1", null, null, status("a3"), false);
+		assertEquals(0, publisher.getSent().size());
+		publisher.close();
+		// one update for each key, in the order in which they were last modified
+		assertEquals("[b1, a3]", publisher.getSent().toString());
+	}
+
+	@Test
+	public void testFinal() {
+		StubPublisher publisher = new StubPublisher(3600);
+		publisher.publish("run1", null, null, status("running"), false);
+		publisher.publish("run1", null, null, status("complete"), true);
+		publisher.flush();
+		assertEquals("[complete]", publisher.getSent().toString());
+		publisher.close();
+		assertEquals(1, publisher.getSent().size());
+		// after the publisher is closed updates are sent immediately
+		publisher.publish("run1", null, null, status("failed"), false);
+		assertEquals("[complete, failed]", publisher.getSent().toString());
+	}
+
+	@Test
+	public void testSynchronous() {
+		StubPublisher publisher = new StubPublisher(0);
+		publisher.publish("run1", null, null, status("a1"), false);
+		publisher.publish("run1", null, null, status("a2"), false);
+		assertEquals("[a1, a2]", publisher.getSent().toString());
+		publisher.close();
+	}
+
+}
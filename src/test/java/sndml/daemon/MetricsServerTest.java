@@ -0,0 +1,58 @@
+package sndml.daemon;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.ServerSocket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+import sndml.datamart.ConnectionProfile;
+
+public class MetricsServerTest {
+
+	int getResponseCode(int port, String path) throws Exception {
+		URL url = new URL("http://localhost:" + port + path);
+		HttpURLConnection conn = (HttpURLConnection) url.openConnection();
+		try {
+			return conn.getResponseCode();
+		}
+		finally {
+			conn.disconnect();
+		}
+	}
+
+	@Test
+	public void testMetricsOnly() throws Exception {
+		int port;
+		try (ServerSocket socket = new ServerSocket(0)) {
+			port = socket.getLocalPort();
+		}
+		File propFile = File.createTempFile("metricsserver", ".properties");
+		FileWriter writer = new FileWriter(propFile);
+		writer.write("daemon.metrics_port=" + port + "\n");
+		writer.close();
+		MetricsServer server = new MetricsServer(new ConnectionProfile(propFile));
+		server.start();
+		try {
+			assertEquals(200, getResponseCode(port, "/metrics"));
+			URL url = new URL("http://localhost:" + port + "/metrics");
+			try (InputStream input = url.openStream()) {
+				String text = new String(input.readAllBytes(), StandardCharsets.UTF_8);
+				assertTrue(text.contains("# TYPE sndml_jobs_active gauge"));
+			}
+			// jobs cannot be started
+			assertEquals(404, getResponseCode(port, "/start"));
+		}
+		finally {
+			server.stop();
+			propFile.delete();
+		}
+	}
+
+}
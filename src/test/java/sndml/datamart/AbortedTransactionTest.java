@@ -0,0 +1,216 @@
+package sndml.datamart;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.sql.DriverPropertyInfo;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.util.Properties;
+import java.util.logging.Logger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import sndml.servicenow.FakeInstance;
+import sndml.servicenow.Metrics;
+
+/**
+ * Inserts duplicate rows with a commit policy using a connection which behaves like PostgreSQL:
+ * once a statement fails, every statement is refused until the transaction
+ * (or the savepoint) is rolled back.
+ */
+public class AbortedTransactionTest {
+
+	static final int ROWS = 101;
+
+	FakeInstance instance;
+	File folder;
+	Loader loader;
+
+	/**
+	 * JDBC driver for URLs of the form <b>jdbc:abortsqlite:</b><i>path</i>
+	 * which wraps a SQLite connection.
+	 */
+	static class AbortingDriver implements Driver {
+
+		static final String PREFIX = "jdbc:abortsqlite:";
+
+		@Override
+		public Connection connect(String url, Properties info) throws SQLException {
+			if (!acceptsURL(url)) return null;
+			Connection dbc = DriverManager.getConnection("jdbc:sqlite:" + url.substring(PREFIX.length()), info);
+			return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(),
+					new Class<?>[] {Connection.class}, new ConnectionHandler(dbc));
+		}
+
+		@Override
+		public boolean acceptsURL(String url) {
+			return url.startsWith(PREFIX);
+		}
+
+		@Override
+		public DriverPropertyInfo[] getPropertyInfo(String url, Properties info) {
+			return new DriverPropertyInfo[0];
+		}
+
+		@Override
+		public int getMajorVersion() {
+			return 1;
+		}
+
+		@Override
+		public int getMinorVersion() {
+			return 0;
+		}
+
+		@Override
+		public boolean jdbcCompliant() {
+			return false;
+		}
+
+		@Override
+		public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+			throw new SQLFeatureNotSupportedException();
+		}
+
+	}
+
+	static class ConnectionHandler implements InvocationHandler {
+
+		final Connection dbc;
+		boolean aborted = false;
+
+		ConnectionHandler(Connection dbc) {
+			this.dbc = dbc;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			String name = method.getName();
+			if (name.equals("commit") && aborted) {
+				// PostgreSQL silently rolls back a failed transaction
+				name = "rollback";
+				method = Connection.class.getMethod("rollback");
+			}
+			if (name.equals("rollback") || name.equals("setAutoCommit")) aborted = false;
+			Object result = delegate(dbc, method, args);
+			if (result instanceof Statement) {
+				return Proxy.newProxyInstance(getClass().getClassLoader(),
+					new Class<?>[] {method.getReturnType()}, new StatementHandler(this, (Statement) result));
+			}
+			return result;
+		}
+
+	}
+
+	static class StatementHandler implements InvocationHandler {
+
+		final ConnectionHandler connection;
+		final Statement stmt;
+
+		StatementHandler(ConnectionHandler connection, Statement stmt) {
+			this.connection = connection;
+			this.stmt = stmt;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			if (!method.getName().startsWith("execute")) return delegate(stmt, method, args);
+			if (connection.aborted)
+				throw new SQLException(
+					"current transaction is aborted, commands ignored until end of transaction block", "25P02");
+			try {
+				return delegate(stmt, method, args);
+			}
+			catch (SQLException e) {
+				if (!connection.dbc.getAutoCommit()) connection.aborted = true;
+				throw e;
+			}
+		}
+
+	}
+
+	static Object delegate(Object target, Method method, Object[] args) throws Throwable {
+		try {
+			return method.invoke(target, args);
+		}
+		catch (InvocationTargetException e) {
+			throw e.getCause();
+		}
+	}
+
+	@BeforeClass
+	public static void registerDriver() throws SQLException {
+		DriverManager.registerDriver(new AbortingDriver());
+	}
+
+	@Before
+	public void setUp() throws Exception {
+		instance = new FakeInstance().start();
+		instance.addTable("incident", ROWS, 4);
+		folder = java.nio.file.Files.createTempDirectory("abortedtransactiontest").toFile();
+		Properties props = instance.getProperties();
+		props.setProperty("database.url",
+			AbortingDriver.PREFIX + new File(folder, "abortedtransactiontest.db").getPath());
+		props.setProperty("datamart.dialect", "sqlite");
+		File propFile = new File(folder, "abortedtransactiontest.properties");
+		try (OutputStream out = new FileOutputStream(propFile)) {
+			props.store(out, null);
+		}
+		ConnectionProfile profile = new ConnectionProfile(propFile);
+		String yaml =
+			"tables:\n" +
+			"- {name: create, source: incident, action: create, drop: true}\n" +
+			"- {name: load, source: incident, action: load, pagesize: 10}\n" +
+			"- {name: rows, source: incident, action: insert, commitrows: 25, pagesize: 10}\n";
+		LoaderConfig config = new ConfigFactory().loaderConfig(profile, new StringReader(yaml));
+		loader = new Loader(profile, config);
+		loader.getJob("create").call();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		loader.database.close();
+		instance.stop();
+		for (File file : folder.listFiles()) file.delete();
+		folder.delete();
+	}
+
+	int count() throws SQLException {
+		try (Statement stmt = loader.database.getConnection().createStatement();
+				ResultSet rs = stmt.executeQuery("select count(*) from incident")) {
+			rs.next();
+			return rs.getInt(1);
+		}
+	}
+
+	@Test
+	public void testDuplicates() throws Exception {
+		assertEquals(ROWS, loader.getJob("load").call().getInserted());
+		// keep rows 7, 17, ..., 97 and the last row, which is in a page by itself
+		loader.database.executeStatement(
+			"delete from incident where number not like '%7' and number <> 'SYN0000100'");
+		assertEquals(11, count());
+		Metrics metrics = loader.getJob("rows").call();
+		assertEquals(ROWS - 11, metrics.getInserted());
+		assertEquals(11, metrics.getSkipped());
+		assertEquals(ROWS, count());
+		assertTrue(loader.database.getConnection().getAutoCommit());
+	}
+
+}
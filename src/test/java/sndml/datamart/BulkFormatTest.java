@@ -0,0 +1,38 @@
+package sndml.datamart;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class BulkFormatTest {
+
+	private static String csv(String value) {
+		StringBuilder line = new StringBuilder();
+		PostgreSQLCopyWriter.appendCsv(line, value);
+		return line.toString();
+	}
+
+	private static String tsv(String value) {
+		StringBuilder text = new StringBuilder();
+		MySQLLoadDataWriter.appendField(text, value);
+		return text.toString();
+	}
+
+	@Test
+	public void testCsv() {
+		assertEquals("", csv(null));
+		assertEquals("\"\"", csv(""));
+		assertEquals("\"abc\"", csv("abc"));
+		assertEquals("\"say \"\"hi\"\", ok\"", csv("say \"hi\", ok"));
+		assertEquals("\"line1\nline2\"", csv("line1\nline2"));
+	}
+
+	@Test
+	public void testLoadData() {
+		assertEquals("\\N", tsv(null));
+		assertEquals("", tsv(""));
+		assertEquals("a\\tb\\nc\\\\d", tsv("a\tb\nc\\d"));
+		assertEquals("x\\r\\0", tsv("x\r\0"));
+	}
+
+}
@@ -0,0 +1,134 @@
+package sndml.datamart;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.sql.Types;
+import java.util.Arrays;
+import java.util.TimeZone;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import sndml.servicenow.FakeInstance;
+import sndml.servicenow.JsonRecord;
+import sndml.servicenow.Metrics;
+import sndml.servicenow.Session;
+import sndml.servicenow.Table;
+
+/**
+ * Checks the rows which the bulk writers send to the database,
+ * using a SQLite table whose columns are not in the ServiceNow order.
+ * The bulk load itself is not run since it requires the database in question.
+ */
+public class BulkWriterTest {
+
+	static final String KEY = "0123456789abcdef0123456789abcdef";
+	static FakeInstance instance;
+	static File folder;
+	static Database db;
+	static Table table;
+	static Object[] row;
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		instance = new FakeInstance().start();
+		instance.addTable("incident", 1, 7);
+		Session session = new Session(instance.getProperties());
+		table = session.table("incident");
+		folder = java.nio.file.Files.createTempDirectory("bulktest").toFile();
+		File propFile = new File(folder, "bulktest.properties");
+		FileWriter writer = new FileWriter(propFile);
+		writer.write("database.url=jdbc:sqlite:" + new File(folder, "bulktest.db").getPath() + "\n");
+		writer.close();
+		db = new ConnectionProfile(propFile).getDatabase();
+		db.executeStatement("create table incident (sys_id char(32) primary key, " +
+			"u_column_03 boolean, u_column_01 varchar(100), u_column_02 integer, " +
+			"u_column_06 float, number varchar(40))");
+		ObjectNode obj = new ObjectMapper().createObjectNode();
+		obj.put("sys_id", KEY);
+		obj.put("number", "INC0000001");
+		obj.put("u_column_01", "say \"hi\"\tthere");
+		obj.put("u_column_02", "");
+		obj.put("u_column_03", "true");
+		obj.put("u_column_06", "1.5");
+		PostgreSQLCopyWriter copyWriter = new PostgreSQLCopyWriter(db, table, "incident", "bulktest");
+		copyWriter.open(new Metrics("bulktest"));
+		row = copyWriter.convertRecord(new JsonRecord(table, obj));
+		copyWriter.close(new Metrics("bulktest"));
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception {
+		db.close();
+		instance.stop();
+		for (File file : folder.listFiles()) file.delete();
+		folder.delete();
+	}
+
+	@Test
+	public void testConvertRecord() {
+		// columns are in the order of the database table,
+		// the boolean is stored in an integer column and an empty value is null
+		assertEquals(Arrays.asList(KEY, 1, "say \"hi\"\tthere", null, 1.5, "INC0000001"), Arrays.asList(row));
+	}
+
+	@Test
+	public void testCopyRow() throws Exception {
+		PostgreSQLCopyWriter writer = new PostgreSQLCopyWriter(db, table, "incident", "bulktest");
+		StringBuilder line = new StringBuilder();
+		Object[] values = row.clone();
+		values[4] = null;
+		writer.appendRow(line, values);
+		assertEquals("\"" + KEY + "\",\"1\",\"say \"\"hi\"\"\tthere\",,,\"INC0000001\"\n", line.toString());
+	}
+
+	@Test
+	public void testLoadDataRow() throws Exception {
+		MySQLLoadDataWriter writer = new MySQLLoadDataWriter(db, table, "incident", "bulktest");
+		StringBuilder text = new StringBuilder();
+		Object[] values = row.clone();
+		values[4] = null;
+		writer.appendRow(text, values);
+		assertEquals(KEY + "\t1\tsay \"hi\"\\tthere\t\\N\t\\N\tINC0000001\n", text.toString());
+	}
+
+	@Test
+	public void testBulkCopyData() throws Exception {
+		MSSQLBulkCopyWriter writer = new MSSQLBulkCopyWriter(db, table, "incident", "bulktest");
+		writer.open(new Metrics("bulktest"));
+		Object[] values = row.clone();
+		values[4] = null;
+		MSSQLBulkCopyWriter.BulkData data = writer.new BulkData(Arrays.asList(values, row));
+		assertEquals(6, data.getColumnOrdinals().size());
+		assertEquals("u_column_03", data.getColumnName(2));
+		assertEquals(Types.INTEGER, data.getColumnType(2));
+		assertEquals(Types.NVARCHAR, data.getColumnType(3));
+		assertEquals(Types.DOUBLE, data.getColumnType(5));
+		assertTrue(data.next());
+		assertNull(data.getRowData()[4]);
+		assertTrue(data.next());
+		assertEquals(1.5, data.getRowData()[4]);
+		assertFalse(data.next());
+		writer.close(new Metrics("bulktest"));
+	}
+
+	@Test
+	public void testFormatValue() throws Exception {
+		MySQLLoadDataWriter writer = new MySQLLoadDataWriter(db, table, "incident", "bulktest");
+		assertNull(writer.formatValue(null));
+		assertEquals("1", writer.formatValue(Boolean.TRUE));
+		assertEquals("0", writer.formatValue(Boolean.FALSE));
+		// database.timezone defaults to GMT
+		long millis = 1612325106000L;
+		assertEquals("2021-02-03 04:05:06", writer.formatValue(new java.sql.Timestamp(millis)));
+		assertEquals("2021-02-03", writer.formatValue(new java.sql.Date(millis)));
+		assertEquals(TimeZone.getTimeZone("GMT"), db.getCalendar().getTimeZone());
+	}
+
+}
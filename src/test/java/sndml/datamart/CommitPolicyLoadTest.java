@@ -0,0 +1,120 @@
+package sndml.datamart;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Properties;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import sndml.servicenow.FakeInstance;
+import sndml.servicenow.Metrics;
+
+/**
+ * Runs loads with a commit policy against a {@link FakeInstance} and SQLite,
+ * which uses autocommit.
+ */
+public class CommitPolicyLoadTest {
+
+	static final int ROWS = 1000;
+
+	FakeInstance instance;
+	File folder;
+	ConnectionProfile profile;
+	Loader loader;
+
+	@Before
+	public void setUp() throws Exception {
+		instance = new FakeInstance().start();
+		instance.addTable("incident", ROWS, 4);
+		folder = java.nio.file.Files.createTempDirectory("commitpolicyloadtest").toFile();
+		Properties props = instance.getProperties();
+		props.setProperty("database.url", "jdbc:sqlite:" + new File(folder, "commitpolicyloadtest.db").getPath());
+		File propFile = new File(folder, "commitpolicyloadtest.properties");
+		try (OutputStream out = new FileOutputStream(propFile)) {
+			props.store(out, null);
+		}
+		profile = new ConnectionProfile(propFile);
+		String yaml =
+			"tables:\n" +
+			"- {name: create, source: incident, action: create, drop: true}\n" +
+			"- {name: single, source: incident, action: load, truncate: true, " +
+				"singletransaction: true, pagesize: 100}\n" +
+			"- {name: rows, source: incident, action: load, truncate: true, " +
+				"commitrows: 250, pagesize: 100}\n";
+		LoaderConfig config = new ConfigFactory().loaderConfig(profile, new StringReader(yaml));
+		loader = new Loader(profile, config);
+		loader.getJob("create").call();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		loader.database.close();
+		instance.stop();
+		for (File file : folder.listFiles()) file.delete();
+		folder.delete();
+	}
+
+	int count() throws SQLException {
+		try (Statement stmt = loader.database.getConnection().createStatement();
+				ResultSet rs = stmt.executeQuery("select count(*) from incident")) {
+			rs.next();
+			return rs.getInt(1);
+		}
+	}
+
+	/**
+	 * Run a job which fails when it inserts the row with the specified index.
+	 */
+	void assertFails(String jobName, int row) throws SQLException {
+		loader.database.executeStatement(String.format(
+			"create trigger fail before insert on incident when new.number = 'SYN%07d' " +
+			"begin select raise(abort, 'failed'); end", row));
+		try {
+			loader.getJob(jobName).call();
+			fail(jobName + " did not fail");
+		}
+		catch (SQLException e) {
+			// expected
+		}
+		catch (Exception e) {
+			throw new AssertionError(e);
+		}
+	}
+
+	@Test
+	public void testSingleTransaction() throws Exception {
+		Metrics metrics = loader.getJob("single").call();
+		assertEquals(ROWS, metrics.getInserted());
+		assertEquals(1, metrics.getCommits());
+		assertEquals(ROWS, count());
+		assertTrue(loader.database.getConnection().getAutoCommit());
+		// a load which fails after writing some rows is rolled back, including the truncate
+		assertFails("single", 350);
+		assertTrue(loader.database.getConnection().getAutoCommit());
+		assertEquals(ROWS, count());
+	}
+
+	@Test
+	public void testCommitRows() throws Exception {
+		Metrics metrics = loader.getJob("rows").call();
+		assertEquals(ROWS, metrics.getInserted());
+		// commits after 300, 600 and 900 rows and when the writer is closed
+		assertEquals(4, metrics.getCommits());
+		assertEquals(ROWS, count());
+		assertTrue(loader.database.getConnection().getAutoCommit());
+		// rows which were committed before the failure are kept
+		assertFails("rows", 650);
+		assertTrue(loader.database.getConnection().getAutoCommit());
+		assertEquals(600, count());
+	}
+
+}
@@ -0,0 +1,36 @@
+package sndml.datamart;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class CommitPolicyTest {
+
+	@Test
+	public void testEveryPage() {
+		CommitPolicy policy = CommitPolicy.EVERY_PAGE;
+		assertTrue(policy.isEveryPage());
+		assertFalse(policy.hasBytes());
+		assertFalse(policy.isDue(1000000, 0, 1000000));
+	}
+
+	@Test
+	public void testLimits() {
+		CommitPolicy policy = new CommitPolicy(5000, 1000000L, 30, false);
+		assertFalse(policy.isEveryPage());
+		assertTrue(policy.hasBytes());
+		assertFalse(policy.isDue(0, 0, 60000));
+		assertFalse(policy.isDue(4999, 999999L, 29999));
+		assertTrue(policy.isDue(5000, 0, 0));
+		assertTrue(policy.isDue(1, 1000000L, 0));
+		assertTrue(policy.isDue(1, 0, 30000));
+	}
+
+	@Test
+	public void testSingleTransaction() {
+		CommitPolicy policy = new CommitPolicy(null, null, null, true);
+		assertFalse(policy.isEveryPage());
+		assertFalse(policy.isDue(Integer.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE));
+	}
+
+}
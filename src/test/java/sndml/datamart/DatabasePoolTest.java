@@ -0,0 +1,77 @@
+package sndml.datamart;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class DatabasePoolTest {
+
+	File propFile;
+	File dbFile;
+	ConnectionProfile profile;
+
+	@Before
+	public void setUp() throws IOException {
+		dbFile = File.createTempFile("pooltest", ".db");
+		propFile = File.createTempFile("pooltest", ".properties");
+		FileWriter writer = new FileWriter(propFile);
+		writer.write("database.url=jdbc:sqlite:" + dbFile.getPath() + "\n");
+		writer.write("database.pool_size=1\n");
+		writer.close();
+		profile = new ConnectionProfile(propFile);
+	}
+
+	@After
+	public void tearDown() {
+		profile.getDatabasePool().close();
+		propFile.delete();
+		dbFile.delete();
+	}
+
+	@Test
+	public void testReuse() throws SQLException {
+		DatabasePool pool = profile.getDatabasePool();
+		assertNotNull(pool);
+		Database db1 = profile.getDatabase();
+		Database db2 = profile.getDatabase();
+		assertNotSame(db1, db2);
+		db1.close();
+		assertEquals(1, pool.getIdleCount());
+		// pool is full so this connection is closed
+		db2.close();
+		assertTrue(db2.isClosed());
+		assertEquals(1, pool.getIdleCount());
+		Database db3 = profile.getDatabase();
+		assertSame(db1, db3);
+		assertFalse(db3.isClosed());
+		assertEquals(0, pool.getIdleCount());
+		db3.close();
+	}
+
+	@Test
+	public void testStatementCache() throws SQLException {
+		Database db = profile.getDatabase();
+		db.executeStatement("create table t1 (a varchar(10))");
+		String sql = "insert into t1 values (?)";
+		PreparedStatement stmt1 = db.prepareStatement("insert", "t1", sql);
+		db.releaseStatement("insert", "t1", sql, stmt1);
+		PreparedStatement stmt2 = db.prepareStatement("insert", "t1", sql);
+		assertSame(stmt1, stmt2);
+		db.releaseStatement("insert", "t1", sql, stmt2);
+		db.dropTable("t1", false);
+		PreparedStatement stmt3 = db.prepareStatement("select", "t2", "select 1");
+		assertNotSame(stmt1, stmt3);
+		assertTrue(stmt1.isClosed());
+		db.releaseStatement("select", "t2", "select 1", stmt3);
+		db.close();
+	}
+
+}
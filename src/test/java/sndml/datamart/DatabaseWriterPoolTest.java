@@ -0,0 +1,139 @@
+package sndml.datamart;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileWriter;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import sndml.servicenow.FakeInstance;
+import sndml.servicenow.JsonRecord;
+import sndml.servicenow.Metrics;
+import sndml.servicenow.NullProgressLogger;
+import sndml.servicenow.RecordList;
+import sndml.servicenow.Session;
+import sndml.servicenow.Table;
+
+/**
+ * Writes records from several threads using a {@link DatabaseWriterPool}
+ * and SQLite connections from a {@link DatabasePool}.
+ */
+public class DatabaseWriterPoolTest {
+
+	FakeInstance instance;
+	File folder;
+	ConnectionProfile profile;
+	Database db;
+	Table table;
+
+	@Before
+	public void setUp() throws Exception {
+		instance = new FakeInstance().start();
+		instance.addTable("incident", 1, 7);
+		Session session = new Session(instance.getProperties());
+		table = session.table("incident");
+		folder = java.nio.file.Files.createTempDirectory("writerpooltest").toFile();
+		File propFile = new File(folder, "writerpooltest.properties");
+		FileWriter writer = new FileWriter(propFile);
+		writer.write("database.url=jdbc:sqlite:" + new File(folder, "writerpooltest.db").getPath() + "\n");
+		writer.write("database.pool_size=4\n");
+		writer.close();
+		profile = new ConnectionProfile(propFile);
+		db = profile.getDatabase();
+		db.createMissingTable(table, "incident");
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		db.close();
+		profile.getDatabasePool().close();
+		instance.stop();
+		for (File file : folder.listFiles()) file.delete();
+		folder.delete();
+	}
+
+	DatabaseWriterPool createPool(CommitPolicy policy) {
+		return new DatabaseWriterPool(db, "pool", workerDb -> {
+			DatabaseTableWriter writer = new DatabaseInsertWriter(workerDb, table, "incident", "pool");
+			writer.setCommitPolicy(policy);
+			return writer;
+		});
+	}
+
+	/**
+	 * Write one record from each of several threads.
+	 */
+	void write(DatabaseWriterPool pool, Metrics metrics, int threads) throws Exception {
+		Exception[] errors = new Exception[threads];
+		Thread[] workers = new Thread[threads];
+		for (int i = 0; i < threads; ++i) {
+			final int n = i;
+			workers[i] = new Thread(() -> {
+				ObjectNode obj = new ObjectMapper().createObjectNode();
+				obj.put("sys_id", String.format("%032d", n + 1));
+				RecordList recs = new RecordList(table);
+				recs.add(new JsonRecord(table, obj));
+				try {
+					pool.processRecords(recs, metrics, new NullProgressLogger());
+				}
+				catch (Exception e) {
+					errors[n] = e;
+				}
+			});
+			workers[i].start();
+			// the threads run one at a time so that SQLite is not busy
+			workers[i].join();
+		}
+		for (Exception e : errors) if (e != null) throw e;
+	}
+
+	@Test
+	public void testClose() throws Exception {
+		Metrics metrics = new Metrics("pool");
+		DatabaseWriterPool pool = createPool(CommitPolicy.EVERY_PAGE);
+		pool.open(metrics);
+		write(pool, metrics, 3);
+		// the first thread uses the primary writer
+		assertEquals(2, pool.getWorkerCount());
+		pool.close(metrics);
+		assertEquals(3, metrics.getInserted());
+		assertEquals(0, pool.getWorkerCount());
+		assertEquals(2, profile.getDatabasePool().getIdleCount());
+	}
+
+	@Test
+	public void testWorkerCommits() throws Exception {
+		Metrics metrics = new Metrics("pool");
+		// SQLite uses autocommit, so only a commit policy produces commits which are counted,
+		// and only one connection at a time can hold a transaction
+		DatabaseWriterPool pool = createPool(new CommitPolicy(1000, null, null, false));
+		pool.open(metrics);
+		write(pool, metrics, 1);
+		assertEquals(0, metrics.getCommits());
+		pool.close(metrics);
+		// the primary writer commits when it is closed
+		assertEquals(1, metrics.getInserted());
+		assertEquals(1, metrics.getCommits());
+		assertEquals(0, profile.getDatabasePool().getIdleCount());
+	}
+
+	@Test
+	public void testCloseConnections() throws Exception {
+		Metrics metrics = new Metrics("pool");
+		DatabaseWriterPool pool = createPool(CommitPolicy.EVERY_PAGE);
+		pool.open(metrics);
+		write(pool, metrics, 3);
+		// the job failed, so the writers are not closed
+		pool.closeConnections();
+		assertEquals(2, profile.getDatabasePool().getIdleCount());
+		pool.closeConnections();
+		assertEquals(2, profile.getDatabasePool().getIdleCount());
+	}
+
+}
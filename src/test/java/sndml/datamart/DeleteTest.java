@@ -0,0 +1,121 @@
+package sndml.datamart;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import sndml.servicenow.FakeInstance;
+import sndml.servicenow.KeySet;
+import sndml.servicenow.Metrics;
+import sndml.servicenow.NullProgressLogger;
+import sndml.servicenow.RecordKey;
+import sndml.servicenow.Session;
+import sndml.servicenow.Table;
+
+/**
+ * Deletes a mix of present and missing keys using SQLite.
+ */
+public class DeleteTest {
+
+	static final String[] PRESENT = {
+		"00000000000000000000000000000001",
+		"00000000000000000000000000000002",
+		"00000000000000000000000000000003" };
+	static final String[] MISSING = {
+		"00000000000000000000000000000004",
+		"00000000000000000000000000000005" };
+
+	FakeInstance instance;
+	File folder;
+	Database db;
+	Table table;
+
+	@Before
+	public void setUp() throws Exception {
+		instance = new FakeInstance().start();
+		instance.addTable("incident", 1, 7);
+		Session session = new Session(instance.getProperties());
+		table = session.table("incident");
+		folder = java.nio.file.Files.createTempDirectory("deletetest").toFile();
+		File propFile = new File(folder, "deletetest.properties");
+		FileWriter writer = new FileWriter(propFile);
+		writer.write("database.url=jdbc:sqlite:" + new File(folder, "deletetest.db").getPath() + "\n");
+		writer.close();
+		db = new ConnectionProfile(propFile).getDatabase();
+		db.createMissingTable(table, "incident");
+		try (Statement stmt = db.getConnection().createStatement()) {
+			for (String key : PRESENT)
+				stmt.executeUpdate("insert into incident(sys_id) values ('" + key + "')");
+		}
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		db.close();
+		instance.stop();
+		for (File file : folder.listFiles()) file.delete();
+		folder.delete();
+	}
+
+	int count() throws SQLException {
+		try (Statement stmt = db.getConnection().createStatement();
+				ResultSet rs = stmt.executeQuery("select count(*) from incident")) {
+			rs.next();
+			return rs.getInt(1);
+		}
+	}
+
+	KeySet keys() {
+		// present and missing keys are interleaved
+		KeySet keys = new KeySet();
+		keys.add(new RecordKey(PRESENT[0]));
+		keys.add(new RecordKey(MISSING[0]));
+		keys.add(new RecordKey(PRESENT[2]));
+		keys.add(new RecordKey(MISSING[1]));
+		return keys;
+	}
+
+	@Test
+	public void testMixedKeys() throws Exception {
+		Metrics metrics = new Metrics("delete");
+		DatabaseDeleteWriter writer = new DatabaseDeleteWriter(db, table, "incident", "delete");
+		writer.open(metrics);
+		writer.deleteRecords(keys(), metrics, new NullProgressLogger());
+		writer.close(metrics);
+		assertEquals(2, metrics.getDeleted());
+		assertEquals(2, metrics.getSkipped());
+		assertEquals(1, count());
+	}
+
+	@Test
+	public void testNoInfo() throws Exception {
+		Metrics metrics = new Metrics("delete");
+		DatabaseDeleteWriter writer = new DatabaseDeleteWriter(db, table, "incident", "delete");
+		writer.open(metrics);
+		// simulate a driver which does not report a count for each statement
+		writer.deleteStmt = new DatabaseDeleteStatement(db, "incident") {
+			@Override
+			int[] executeBatch() throws SQLException {
+				int[] counts = super.executeBatch();
+				Arrays.fill(counts, Statement.SUCCESS_NO_INFO);
+				return counts;
+			}
+		};
+		writer.deleteRecords(keys(), metrics, new NullProgressLogger());
+		writer.deleteStmt.close();
+		writer.close(metrics);
+		assertEquals(2, metrics.getDeleted());
+		assertEquals(2, metrics.getSkipped());
+		assertEquals(1, count());
+	}
+
+}
@@ -0,0 +1,77 @@
+package sndml.datamart;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.sql.Types;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import sndml.servicenow.Log;
+import sndml.servicenow.RecordKey;
+
+/**
+ * Converts values for integer and boolean columns using the SQLite dialect.
+ */
+public class FieldConverterTest {
+
+	static final RecordKey KEY = new RecordKey("00000000000000000000000000000001");
+
+	File folder;
+	Database db;
+	FieldConverter converter;
+
+	@Before
+	public void setUp() throws Exception {
+		folder = java.nio.file.Files.createTempDirectory("fieldconvertertest").toFile();
+		File propFile = new File(folder, "fieldconvertertest.properties");
+		FileWriter writer = new FileWriter(propFile);
+		writer.write("database.url=jdbc:sqlite:" + new File(folder, "fieldconvertertest.db").getPath() + "\n");
+		writer.close();
+		db = new ConnectionProfile(propFile).getDatabase();
+		converter = new FieldConverter(db, Log.logger(this.getClass()));
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		db.close();
+		for (File file : folder.listFiles()) file.delete();
+		folder.delete();
+	}
+
+	Object convert(int sqltype, String value) {
+		DatabaseFieldDefinition defn = new DatabaseFieldDefinition("active", sqltype, 0, "boolean");
+		return converter.convert(KEY, defn, "active", value);
+	}
+
+	@Test
+	public void testBooleanAsInteger() {
+		// boolean fields are stored in integer columns if the dialect has no boolean type
+		assertEquals(Short.valueOf((short) 1), convert(Types.SMALLINT, "true"));
+		assertEquals(Short.valueOf((short) 0), convert(Types.SMALLINT, "false"));
+		assertEquals(Byte.valueOf((byte) 1), convert(Types.TINYINT, "TRUE"));
+		assertEquals(Integer.valueOf(0), convert(Types.INTEGER, "False"));
+	}
+
+	@Test
+	public void testBoolean() {
+		assertEquals(Boolean.TRUE, convert(Types.BOOLEAN, "true"));
+		assertEquals(Boolean.FALSE, convert(Types.BIT, "0"));
+	}
+
+	@Test
+	public void testInteger() {
+		assertEquals(Integer.valueOf(42), convert(Types.INTEGER, "42"));
+		assertEquals(Integer.valueOf(0), convert(Types.INTEGER, ""));
+		assertEquals(Short.valueOf((short) 3), convert(Types.SMALLINT, "3.75"));
+	}
+
+	@Test(expected = NumberFormatException.class)
+	public void testNotANumber() {
+		convert(Types.INTEGER, "yes");
+	}
+
+}
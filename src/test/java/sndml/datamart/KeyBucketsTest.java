@@ -0,0 +1,48 @@
+package sndml.datamart;
+
+import sndml.servicenow.*;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class KeyBucketsTest {
+
+	@Test
+	public void testAggregate() {
+		KeyBuckets buckets = new KeyBuckets(2);
+		buckets.add("00", 5, 100);
+		buckets.add("0f", 3, 300);
+		buckets.add("a1", 7, 200);
+		assertEquals(8, buckets.getCount(1, 0));
+		assertEquals(300, buckets.getMaxSeconds(1, 0));
+		assertEquals(7, buckets.getCount(1, 10));
+		assertEquals(7, buckets.getCount(2, 0xa1));
+		assertEquals(0, buckets.getCount(1, 5));
+		assertEquals(0, buckets.getMaxSeconds(1, 5));
+	}
+
+	@Test
+	public void testRange() {
+		KeyRange first = KeyBuckets.getRange(1, 0);
+		assertNull(first.getStart());
+		assertEquals("10000000000000000000000000000000", first.getEnd().toString());
+		KeyRange middle = KeyBuckets.getRange(2, 0xa1);
+		assertEquals("a1000000000000000000000000000000", middle.getStart().toString());
+		assertEquals("a2000000000000000000000000000000", middle.getEnd().toString());
+		KeyRange last = KeyBuckets.getRange(2, 0xff);
+		assertNull(last.getEnd());
+		assertTrue(first.contains(new RecordKey("0fffffffffffffffffffffffffffffff")));
+		assertFalse(first.contains(new RecordKey("10000000000000000000000000000000")));
+	}
+
+	@Test
+	public void testNonHexPrefix() {
+		KeyBuckets buckets = new KeyBuckets(1);
+		buckets.add("z", 2, 50);
+		buckets.add("-", 1, 60);
+		assertEquals(2, buckets.getCount(1, 15));
+		assertEquals(1, buckets.getCount(1, 0));
+	}
+
+}
@@ -0,0 +1,82 @@
+package sndml.datamart;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.sql.SQLException;
+import java.util.Properties;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import sndml.servicenow.FakeInstance;
+import sndml.servicenow.Metrics;
+
+/**
+ * Runs a load partitioned by year against a {@link FakeInstance} and SQLite,
+ * with the parts read by separate threads.
+ */
+public class PartitionedTableReaderTest {
+
+	static final int ROWS = 600;
+
+	FakeInstance instance;
+	File folder;
+	Loader loader;
+
+	@Before
+	public void setUp() throws Exception {
+		instance = new FakeInstance().start();
+		instance.addTable("incident", ROWS, 4);
+		folder = java.nio.file.Files.createTempDirectory("partitionedtablereadertest").toFile();
+		Properties props = instance.getProperties();
+		props.setProperty("database.url",
+			"jdbc:sqlite:" + new File(folder, "partitionedtablereadertest.db").getPath());
+		File propFile = new File(folder, "partitionedtablereadertest.properties");
+		try (OutputStream out = new FileOutputStream(propFile)) {
+			props.store(out, null);
+		}
+		ConnectionProfile profile = new ConnectionProfile(propFile);
+		String yaml =
+			"tables:\n" +
+			"- {name: create, source: incident, action: create, drop: true}\n" +
+			"- {name: years, source: incident, action: load, truncate: true, " +
+				"partition: year, threads: 3, pagesize: 50}\n";
+		LoaderConfig config = new ConfigFactory().loaderConfig(profile, new StringReader(yaml));
+		loader = new Loader(profile, config);
+		loader.getJob("create").call();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		loader.database.close();
+		instance.stop();
+		for (File file : folder.listFiles()) file.delete();
+		folder.delete();
+	}
+
+	@Test
+	public void testThreads() throws Exception {
+		Metrics metrics = loader.getJob("years").call();
+		assertEquals(ROWS, metrics.getInserted());
+	}
+
+	@Test
+	public void testPartFailure() throws Exception {
+		loader.database.executeStatement(
+			"create trigger fail before insert on incident when new.number = 'SYN0000123' " +
+			"begin select raise(abort, 'failed'); end");
+		try {
+			loader.getJob("years").call();
+			fail("part failure was not reported");
+		}
+		catch (SQLException e) {
+			assertTrue(e.getMessage().contains("failed"));
+		}
+	}
+
+}
@@ -0,0 +1,126 @@
+package sndml.datamart;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import sndml.servicenow.FakeInstance;
+import sndml.servicenow.JsonRecord;
+import sndml.servicenow.Metrics;
+import sndml.servicenow.NullProgressLogger;
+import sndml.servicenow.RecordList;
+import sndml.servicenow.Session;
+import sndml.servicenow.Table;
+import sndml.servicenow.TableRecord;
+
+/**
+ * Writes records through a staging table (<b>staging: true</b>) using SQLite.
+ */
+public class StagingTest {
+
+	FakeInstance instance;
+	File folder;
+	Database db;
+	Table table;
+
+	@Before
+	public void setUp() throws Exception {
+		instance = new FakeInstance().start();
+		instance.addTable("incident", 1, 7);
+		Session session = new Session(instance.getProperties());
+		table = session.table("incident");
+		folder = java.nio.file.Files.createTempDirectory("stagingtest").toFile();
+		File propFile = new File(folder, "stagingtest.properties");
+		FileWriter writer = new FileWriter(propFile);
+		writer.write("database.url=jdbc:sqlite:" + new File(folder, "stagingtest.db").getPath() + "\n");
+		writer.close();
+		db = new ConnectionProfile(propFile).getDatabase();
+		db.createMissingTable(table, "incident");
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		db.close();
+		instance.stop();
+		for (File file : folder.listFiles()) file.delete();
+		folder.delete();
+	}
+
+	static String key(int n) {
+		return String.format("%032x", n);
+	}
+
+	TableRecord record(int n, String value) {
+		ObjectNode obj = new ObjectMapper().createObjectNode();
+		obj.put("sys_id", key(n));
+		obj.put("number", String.format("INC%07d", n));
+		obj.put("u_column_01", value);
+		return new JsonRecord(table, obj);
+	}
+
+	void write(DatabaseMergeWriter writer, Metrics metrics, TableRecord... recs) throws Exception {
+		RecordList list = new RecordList(table);
+		for (TableRecord rec : recs) list.add(rec);
+		writer.processRecords(list, metrics, new NullProgressLogger());
+	}
+
+	String getValue(int n) throws SQLException {
+		try (Statement stmt = db.getConnection().createStatement();
+				ResultSet rs = stmt.executeQuery(
+					"select u_column_01 from incident where sys_id = '" + key(n) + "'")) {
+			return rs.next() ? rs.getString(1) : null;
+		}
+	}
+
+	@Test
+	public void testMerge() throws Exception {
+		assertTrue(DatabaseMergeWriter.isSupported(db));
+		Metrics metrics1 = new Metrics("job1");
+		Metrics metrics2 = new Metrics("job2");
+		DatabaseMergeWriter writer1 = new DatabaseMergeWriter(db, table, "incident", "job1");
+		DatabaseMergeWriter writer2 = new DatabaseMergeWriter(db, table, "incident", "job2");
+		assertNotEquals(writer1.stagingTableName, writer2.stagingTableName);
+		writer1.open(metrics1);
+		writer2.open(metrics2);
+		write(writer1, metrics1, record(1, "one"), record(3, "three"));
+		assertEquals(2, metrics1.getInserted());
+		assertEquals(0, metrics1.getUpdated());
+		// row 1 is updated, row 2 is inserted and row 3 is unchanged
+		write(writer1, metrics1, record(1, "uno"), record(2, "two"));
+		assertEquals(3, metrics1.getInserted());
+		assertEquals(1, metrics1.getUpdated());
+		assertEquals("uno", getValue(1));
+		assertEquals("two", getValue(2));
+		assertEquals("three", getValue(3));
+		writer1.close(metrics1);
+		assertFalse(db.tableExists(writer1.stagingTableName));
+		// the second writer still has its own staging table
+		assertTrue(db.tableExists(writer2.stagingTableName));
+		write(writer2, metrics2, record(3, "tres"), record(4, "four"));
+		writer2.close(metrics2);
+		assertFalse(db.tableExists(writer2.stagingTableName));
+		assertEquals(1, metrics2.getInserted());
+		assertEquals(1, metrics2.getUpdated());
+		assertEquals("tres", getValue(3));
+		assertEquals("four", getValue(4));
+	}
+
+	@Test
+	public void testStagingTableName() {
+		String name = DatabaseMergeWriter.getStagingTableName("Load incident.Daily");
+		assertTrue(name, name.matches("load_incident_da_stg_[0-9a-f]{8}"));
+		assertTrue(name.length() <= 30);
+	}
+
+}
@@ -0,0 +1,210 @@
+package sndml.datamart;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.DefaultParser;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+
+import sndml.servicenow.FakeInstance;
+import sndml.servicenow.Metrics;
+import sndml.servicenow.SyntheticTable;
+
+/**
+ * Runs the Loader end to end against a {@link FakeInstance} and an embedded
+ * SQLite database, and reports rows per second for each action.
+ * <p>The actions are run in order against one synthetic table:
+ * <b>create</b>, <b>load</b>, <b>refresh</b> (after updating 10% of the rows),
+ * <b>prune</b> (after deleting 1% of the rows) and
+ * <b>sync</b> (after updating 10% and deleting 1% of the rows).</p>
+ * <p>Options:</p>
+ * <ul>
+ * <li><b>--rows</b> - rows in the synthetic table (default 20000)</li>
+ * <li><b>--columns</b> - generated columns in addition to the five system fields (default 20)</li>
+ * <li><b>--latency</b> - milliseconds added to every response (default 0)</li>
+ * <li><b>--throttle</b> - fraction of requests refused with 429 (default 0)</li>
+ * <li><b>--pagesize</b> - page size for every job</li>
+ * <li><b>--profile</b> - property file whose values override the defaults,
+ * for example <b>database.url</b> to use a different database,
+ * or <b>servicenow.streaming</b></li>
+ * </ul>
+ * <p>To run: <code>mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=sndml.datamart.ThroughputHarness -Dexec.args="--rows 100000"</code></p>
+ */
+public class ThroughputHarness {
+
+	static final String TABLE = "incident";
+	static final String[] ACTIONS = {"create", "load", "refresh", "prune", "sync"};
+
+	final int rows;
+	final int columns;
+	final Integer pageSize;
+	final FakeInstance instance;
+	final SyntheticTable table;
+	final File folder;
+	final ConnectionProfile profile;
+	final Map<String,String> options = new HashMap<String,String>();
+
+	/**
+	 * Result of one job.
+	 */
+	static class Result {
+		final String action;
+		final Metrics metrics;
+		final long requests;
+		final long throttled;
+
+		Result(String action, Metrics metrics, long requests, long throttled) {
+			this.action = action;
+			this.metrics = metrics;
+			this.requests = requests;
+			this.throttled = throttled;
+		}
+
+		double getRowsPerSec() {
+			double elapsed = metrics.getElapsedSec();
+			return elapsed > 0 ? metrics.getProcessed() / elapsed : 0;
+		}
+	}
+
+	ThroughputHarness(int rows, int columns, int latency, double throttle,
+			Integer pageSize, Properties overrides) throws IOException {
+		this.rows = rows;
+		this.columns = columns;
+		this.pageSize = pageSize;
+		instance = new FakeInstance().setLatency(latency).setThrottle(throttle, 0).start();
+		table = instance.addTable(TABLE, rows, columns);
+		folder = Files.createTempDirectory("sndml-harness").toFile();
+		Properties props = instance.getProperties();
+		props.setProperty("database.url", "jdbc:sqlite:" + new File(folder, "harness.db").getPath());
+		if (overrides != null) props.putAll(overrides);
+		File profileFile = new File(folder, "harness.properties");
+		try (OutputStream out = new FileOutputStream(profileFile)) {
+			props.store(out, "ThroughputHarness");
+		}
+		profile = new ConnectionProfile(profileFile);
+	}
+
+	/**
+	 * Add YAML options to the job for an action, for example <code>syncmode: merge</code>.
+	 */
+	ThroughputHarness addOption(String action, String option) {
+		String previous = options.get(action);
+		options.put(action, previous == null ? option : previous + ", " + option);
+		return this;
+	}
+
+	String getYaml() {
+		StringBuilder yaml = new StringBuilder("tables:\n");
+		for (String action : ACTIONS) {
+			yaml.append(String.format("- {name: %s, source: %s, action: %s", action, TABLE, action));
+			if (action.equals("create")) yaml.append(", drop: true");
+			if (action.equals("load")) yaml.append(", truncate: true");
+			if (pageSize != null && !action.equals("create")) yaml.append(", pagesize: " + pageSize);
+			if (options.containsKey(action)) yaml.append(", " + options.get(action));
+			yaml.append("}\n");
+		}
+		return yaml.toString();
+	}
+
+	/**
+	 * Run each job in turn, changing the table in the instance before each job as required.
+	 */
+	List<Result> run() throws Exception {
+		ConfigFactory factory = new ConfigFactory();
+		LoaderConfig config = factory.loaderConfig(profile, new StringReader(getYaml()));
+		Loader loader = new Loader(profile, config);
+		List<Result> results = new ArrayList<Result>();
+		for (String action : ACTIONS) {
+			switch (action) {
+			case "refresh":
+				table.touch(rows / 10);
+				break;
+			case "prune":
+				instance.delete(TABLE, rows / 100);
+				break;
+			case "sync":
+				table.touch(rows / 10);
+				instance.delete(TABLE, rows / 100);
+				break;
+			}
+			long requests = instance.getRequestCount();
+			long throttled = instance.getThrottleCount();
+			Metrics metrics = loader.getJob(action).call();
+			results.add(new Result(action, metrics,
+				instance.getRequestCount() - requests, instance.getThrottleCount() - throttled));
+		}
+		loader.database.close();
+		return results;
+	}
+
+	void report(List<Result> results, PrintStream out) {
+		out.println(String.format("rows=%d columns=%d url=%s", rows, columns, instance.getURL()));
+		out.println(String.format("%-8s %9s %9s %9s %9s %9s %9s %8s %10s",
+			"action", "input", "inserted", "updated", "deleted", "requests", "throttled", "seconds", "rows/sec"));
+		for (Result result : results) {
+			Metrics metrics = result.metrics;
+			out.println(String.format("%-8s %9d %9d %9d %9d %9d %9d %8.2f %10.0f",
+				result.action, metrics.getInput(), metrics.getInserted(), metrics.getUpdated(),
+				metrics.getDeleted(), result.requests, result.throttled,
+				metrics.getElapsedSec(), result.getRowsPerSec()));
+		}
+	}
+
+	void close() {
+		instance.stop();
+		for (File file : folder.listFiles()) file.delete();
+		folder.delete();
+	}
+
+	public static void main(String[] args) throws Exception {
+		Options options = new Options();
+		options.addOption(Option.builder().longOpt("rows").hasArg(true).
+				desc("Rows in the synthetic table (default 20000)").build());
+		options.addOption(Option.builder().longOpt("columns").hasArg(true).
+				desc("Generated columns (default 20)").build());
+		options.addOption(Option.builder().longOpt("latency").hasArg(true).
+				desc("Milliseconds added to every response (default 0)").build());
+		options.addOption(Option.builder().longOpt("throttle").hasArg(true).
+				desc("Fraction of requests refused with 429 (default 0)").build());
+		options.addOption(Option.builder().longOpt("pagesize").hasArg(true).
+				desc("Page size for every job").build());
+		options.addOption(Option.builder().longOpt("profile").hasArg(true).
+				desc("Property file with overrides").build());
+		CommandLine cmd = new DefaultParser().parse(options, args);
+		int rows = Integer.parseInt(cmd.getOptionValue("rows", "20000"));
+		int columns = Integer.parseInt(cmd.getOptionValue("columns", "20"));
+		int latency = Integer.parseInt(cmd.getOptionValue("latency", "0"));
+		double throttle = Double.parseDouble(cmd.getOptionValue("throttle", "0"));
+		Integer pageSize = cmd.hasOption("pagesize") ?
+				Integer.valueOf(cmd.getOptionValue("pagesize")) : null;
+		Properties overrides = new Properties();
+		if (cmd.hasOption("profile")) {
+			try (FileInputStream input = new FileInputStream(cmd.getOptionValue("profile"))) {
+				overrides.load(input);
+			}
+		}
+		ThroughputHarness harness =
+			new ThroughputHarness(rows, columns, latency, throttle, pageSize, overrides);
+		try {
+			harness.report(harness.run(), System.out);
+		}
+		finally {
+			harness.close();
+		}
+	}
+
+}
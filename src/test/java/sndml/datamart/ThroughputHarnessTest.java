@@ -0,0 +1,60 @@
+package sndml.datamart;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+import java.util.Properties;
+
+import org.junit.Test;
+
+import sndml.servicenow.Metrics;
+
+public class ThroughputHarnessTest {
+
+	@Test
+	public void testAllActions() throws Exception {
+		checkAllActions(new ThroughputHarness(1000, 8, 0, 0, 200, null));
+	}
+
+	@Test
+	public void testStreaming() throws Exception {
+		Properties overrides = new Properties();
+		overrides.setProperty("servicenow.streaming", "true");
+		checkAllActions(new ThroughputHarness(1000, 8, 0, 0, 200, overrides));
+	}
+
+	@Test
+	public void testMergeSync() throws Exception {
+		ThroughputHarness harness = new ThroughputHarness(1000, 8, 0, 0, 200, null);
+		harness.addOption("sync", "syncmode: merge");
+		checkAllActions(harness);
+	}
+
+	@Test
+	public void testPooledLoad() throws Exception {
+		ThroughputHarness harness = new ThroughputHarness(1000, 8, 0, 0, 200, null);
+		harness.addOption("load", "partition: year, threads: 3");
+		checkAllActions(harness);
+	}
+
+	private void checkAllActions(ThroughputHarness harness) throws Exception {
+		List<ThroughputHarness.Result> results;
+		try {
+			results = harness.run();
+		}
+		finally {
+			harness.close();
+		}
+		assertEquals(ThroughputHarness.ACTIONS.length, results.size());
+		Metrics load = results.get(1).metrics;
+		assertEquals(1000, load.getInserted());
+		Metrics refresh = results.get(2).metrics;
+		assertEquals(1000, refresh.getUpdated());
+		Metrics prune = results.get(3).metrics;
+		assertEquals(10, prune.getDeleted());
+		Metrics sync = results.get(4).metrics;
+		assertEquals(10, sync.getDeleted());
+		assertTrue(sync.getUpdated() > 0);
+	}
+
+}
@@ -52,5 +52,30 @@ public class TimestampHashTest {
 		assertNotEquals(h.get(key1), h.get(key3));
 	}
 
+	@Test
+	public void testGrowth() {
+		java.util.Random random = new java.util.Random(42);
+		TimestampHash h = new TimestampHash(16);
+		KeySet keys = new KeySet();
+		for (int i = 0; i < 10000; ++i) {
+			RecordKey key = new RecordKey(random.nextLong(), random.nextLong());
+			keys.add(key);
+			assertEquals(TimestampHash.NO_VALUE, h.putSeconds(key, 1500000000L + i));
+		}
+		RecordKey other = new RecordKey("not_a_guid");
+		h.put(other, new DateTime("2016-03-24 17:47:36"));
+		assertEquals(10001, h.size());
+		for (int i = 0; i < keys.size(); ++i) {
+			assertEquals(1500000000L + i, h.getSeconds(keys.get(i)));
+		}
+		assertEquals(new DateTime("2016-03-24 17:47:36"), h.get(other));
+		assertEquals(1500000000L, h.putSeconds(keys.get(0), 1600000000L));
+		assertEquals(10001, h.size());
+		KeySet all = h.keySet();
+		assertEquals(10001, all.size());
+		assertTrue(all.contains(other));
+		assertTrue(all.contains(keys.get(9999)));
+		assertFalse(h.containsKey(new RecordKey(random.nextLong(), random.nextLong())));
+	}
 
 }
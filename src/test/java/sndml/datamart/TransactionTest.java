@@ -0,0 +1,98 @@
+package sndml.datamart;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.sql.Statement;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TransactionTest {
+
+	File propFile;
+	File dbFile;
+	ConnectionProfile profile;
+	Database db;
+
+	@Before
+	public void setUp() throws IOException, SQLException {
+		dbFile = File.createTempFile("txntest", ".db");
+		propFile = File.createTempFile("txntest", ".properties");
+		FileWriter writer = new FileWriter(propFile);
+		writer.write("database.url=jdbc:sqlite:" + dbFile.getPath() + "\n");
+		writer.close();
+		profile = new ConnectionProfile(propFile);
+		db = profile.getDatabase();
+		db.executeStatement("create table t1 (a varchar(10))");
+	}
+
+	@After
+	public void tearDown() throws SQLException {
+		db.close();
+		propFile.delete();
+		dbFile.delete();
+	}
+
+	int count() throws SQLException {
+		try (Statement stmt = db.getConnection().createStatement();
+				ResultSet rs = stmt.executeQuery("select count(*) from t1")) {
+			rs.next();
+			return rs.getInt(1);
+		}
+	}
+
+	@Test
+	public void testBatchCommits() throws SQLException {
+		Connection dbc = db.getConnection();
+		assertTrue(dbc.getAutoCommit());
+		Savepoint savepoint = db.beginBatch();
+		assertNull(savepoint);
+		db.executeStatement("insert into t1 values ('a')");
+		db.rollbackBatch(savepoint);
+		assertTrue(dbc.getAutoCommit());
+		assertEquals(0, count());
+		savepoint = db.beginBatch();
+		db.executeStatement("insert into t1 values ('b')");
+		db.endBatch(savepoint);
+		assertTrue(dbc.getAutoCommit());
+		assertEquals(1, count());
+	}
+
+	@Test
+	public void testBatchInTransaction() throws SQLException {
+		Connection dbc = db.getConnection();
+		dbc.setAutoCommit(false);
+		db.executeStatement("insert into t1 values ('a')");
+		Savepoint savepoint = db.beginBatch();
+		assertNotNull(savepoint);
+		db.executeStatement("insert into t1 values ('b')");
+		db.rollbackBatch(savepoint);
+		assertEquals(1, count());
+		savepoint = db.beginBatch();
+		db.executeStatement("insert into t1 values ('c')");
+		db.endBatch(savepoint);
+		assertEquals(2, count());
+		// the savepoint has been released
+		try {
+			dbc.rollback(savepoint);
+			fail("savepoint was not released");
+		}
+		catch (SQLException e) {
+			// expected
+		}
+		// nothing was committed by the batches
+		assertFalse(dbc.getAutoCommit());
+		dbc.rollback();
+		assertEquals(0, count());
+		dbc.setAutoCommit(true);
+	}
+
+}
@@ -0,0 +1,119 @@
+package sndml.datamart;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import sndml.servicenow.FakeInstance;
+import sndml.servicenow.JsonRecord;
+import sndml.servicenow.Metrics;
+import sndml.servicenow.NullProgressLogger;
+import sndml.servicenow.RecordList;
+import sndml.servicenow.Session;
+import sndml.servicenow.Table;
+import sndml.servicenow.TableRecord;
+
+/**
+ * Writes records with <b>database.upsert=true</b> using SQLite.
+ */
+public class UpsertTest {
+
+	static final String KEY1 = "00000000000000000000000000000001";
+	static final String KEY2 = "00000000000000000000000000000002";
+
+	FakeInstance instance;
+	File folder;
+	Database db;
+	Table table;
+
+	@Before
+	public void setUp() throws Exception {
+		instance = new FakeInstance().start();
+		instance.addTable("incident", 1, 7);
+		Session session = new Session(instance.getProperties());
+		table = session.table("incident");
+		folder = java.nio.file.Files.createTempDirectory("upserttest").toFile();
+		File propFile = new File(folder, "upserttest.properties");
+		FileWriter writer = new FileWriter(propFile);
+		writer.write("database.url=jdbc:sqlite:" + new File(folder, "upserttest.db").getPath() + "\n");
+		writer.write("database.upsert=true\n");
+		writer.close();
+		db = new ConnectionProfile(propFile).getDatabase();
+		db.createMissingTable(table, "incident");
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		db.close();
+		instance.stop();
+		for (File file : folder.listFiles()) file.delete();
+		folder.delete();
+	}
+
+	TableRecord record(String key, String value) {
+		ObjectNode obj = new ObjectMapper().createObjectNode();
+		obj.put("sys_id", key);
+		obj.put("number", "INC" + key.substring(28));
+		obj.put("u_column_01", value);
+		return new JsonRecord(table, obj);
+	}
+
+	void write(DatabaseUpdateWriter writer, Metrics metrics, TableRecord... recs) throws Exception {
+		RecordList list = new RecordList(table);
+		for (TableRecord rec : recs) list.add(rec);
+		writer.processRecords(list, metrics, new NullProgressLogger());
+	}
+
+	String getValue(String key) throws SQLException {
+		try (Statement stmt = db.getConnection().createStatement();
+				ResultSet rs = stmt.executeQuery(
+					"select u_column_01 from incident where sys_id = '" + key + "'")) {
+			return rs.next() ? rs.getString(1) : null;
+		}
+	}
+
+	int count() throws SQLException {
+		try (Statement stmt = db.getConnection().createStatement();
+				ResultSet rs = stmt.executeQuery("select count(*) from incident")) {
+			rs.next();
+			return rs.getInt(1);
+		}
+	}
+
+	@Test
+	public void testInsertThenUpdate() throws Exception {
+		assertTrue(db.getUpsert());
+		Metrics metrics = new Metrics("upsert");
+		DatabaseUpdateWriter writer = new DatabaseUpdateWriter(db, table, "incident", "upsert");
+		writer.open(metrics);
+		// a batch which inserts two rows
+		write(writer, metrics, record(KEY1, "one"), record(KEY2, "two"));
+		assertEquals(2, count());
+		assertEquals("one", getValue(KEY1));
+		// a single row which updates an existing key
+		write(writer, metrics, record(KEY1, "uno"));
+		assertEquals(2, count());
+		assertEquals("uno", getValue(KEY1));
+		// a batch which updates both keys
+		write(writer, metrics, record(KEY1, "eins"), record(KEY2, "zwei"));
+		writer.close(metrics);
+		assertEquals(2, count());
+		assertEquals("eins", getValue(KEY1));
+		assertEquals("zwei", getValue(KEY2));
+		// every row written by an upsert is counted as updated
+		assertEquals(0, metrics.getInserted());
+		assertEquals(5, metrics.getUpdated());
+	}
+
+}
@@ -9,6 +9,11 @@ import org.junit.runners.Suite.SuiteClasses;
 	DateTimeTest.class, 
 	ParametersTest.class,
 	FieldNamesTest.class,
+	CompactRecordTest.class,
+	KeyRangeTest.class,
+	KeySetTest.class,
+	RateLimiterTest.class,
+	CompressionTest.class,
 	InstanceTest.class, 
 	SessionIDTest.class,
 	SessionVerificationTest.class,
@@ -0,0 +1,50 @@
+package sndml.servicenow;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+public class CompactRecordTest {
+
+	static final FieldIndex index = 
+		new FieldIndex(new FieldNames("sys_id,sys_created_on,short_description,assigned_to"));
+	
+	CompactRecord parse(String json) throws IOException {
+		JsonParser parser = new JsonFactory().createParser(json);
+		assertEquals(JsonToken.START_OBJECT, parser.nextToken());
+		CompactRecord rec = CompactRecord.parse(null, index, parser);
+		assertEquals(JsonToken.END_OBJECT, parser.currentToken());
+		assertNull(parser.nextToken());
+		return rec;
+	}
+	
+	@Test
+	public void testValues() throws Exception {
+		CompactRecord rec = parse(
+			"{\"sys_id\":\"0123456789abcdef0123456789abcdef\",\"sys_created_on\":\"2021-01-01 12:00:00\"," +
+			"\"short_description\":\"\",\"priority\":\"3\",\"extra\":{\"a\":[1,2]}}");
+		assertEquals("0123456789abcdef0123456789abcdef", rec.getKey().toString());
+		assertEquals("2021-01-01 12:00:00", rec.getValue(1));
+		assertNull(rec.getValue("short_description"));
+		assertNull(rec.getValue("priority"));
+		assertNull(rec.getValue("assigned_to"));
+		assertEquals(2, rec.getFieldNames().size());
+	}
+
+	@Test
+	public void testDisplayValues() throws Exception {
+		CompactRecord rec = parse(
+			"{\"sys_id\":{\"value\":\"0123456789abcdef0123456789abcdef\",\"display_value\":\"x\"}," +
+			"\"assigned_to\":{\"display_value\":\"Fred Luddy\",\"value\":\"5137153cc611227c000bbd1bd8cd2005\"}}");
+		assertEquals("5137153cc611227c000bbd1bd8cd2005", rec.getValue("assigned_to"));
+		assertEquals("Fred Luddy", rec.getDisplayValue("assigned_to"));
+		assertNull(rec.getDisplayValue("short_description"));
+	}
+	
+}
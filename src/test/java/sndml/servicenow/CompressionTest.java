@@ -0,0 +1,73 @@
+package sndml.servicenow;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Properties;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.junit.Test;
+
+public class CompressionTest {
+
+	static Session offlineSession() throws Exception {
+		Properties props = new Properties();
+		props.setProperty("servicenow.instance", "dev00000");
+		props.setProperty("servicenow.username", "test");
+		props.setProperty("servicenow.password", "test");
+		return new Session(props);
+	}
+	
+	static String sampleText() {
+		StringBuilder text = new StringBuilder("{\"result\":[");
+		for (int i = 0; i < 1000; ++i) {
+			if (i > 0) text.append(",");
+			text.append("{\"short_description\":\"The quick brown fox jumped over the lazy dog\"}");
+		}
+		text.append("]}");
+		return text.toString();
+	}
+	
+	@Test
+	public void testGzip() throws Exception {
+		String text = sampleText();
+		byte[] plain = text.getBytes(StandardCharsets.UTF_8);
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		try (GZIPOutputStream gzip = new GZIPOutputStream(buffer)) {
+			gzip.write(plain);
+		}
+		byte[] compressed = buffer.toByteArray();
+		ByteArrayEntity entity = new ByteArrayEntity(compressed, ContentType.APPLICATION_JSON);
+		entity.setContentEncoding("gzip");
+		JsonRequest request = new JsonRequest(offlineSession(), new URI("https://dev00000.service-now.com/"));
+		assertEquals(text, request.readText(entity));
+		assertEquals(compressed.length, request.getBytesReceived());
+		assertEquals(plain.length, request.getBytesDecoded());
+		assertTrue(request.getBytesReceived() < request.getBytesDecoded());
+	}
+	
+	@Test
+	public void testIdentity() throws Exception {
+		String text = sampleText();
+		byte[] plain = text.getBytes(StandardCharsets.UTF_8);
+		ByteArrayEntity entity = new ByteArrayEntity(plain, ContentType.APPLICATION_JSON);
+		JsonRequest request = new JsonRequest(offlineSession(), new URI("https://dev00000.service-now.com/"));
+		assertEquals(text, request.readText(entity));
+		assertEquals(plain.length, request.getBytesReceived());
+		assertEquals(plain.length, request.getBytesDecoded());
+	}
+	
+	@Test
+	public void testMetrics() {
+		Metrics parent = new Metrics(null);
+		Metrics child = new Metrics("child", parent);
+		child.addBytesReceived(100, 800);
+		assertEquals(100, parent.getBytesReceived());
+		assertEquals(800, parent.getBytesDecoded());
+	}
+	
+}
@@ -2,6 +2,10 @@ package sndml.servicenow;
 
 import static org.junit.Assert.*;
 
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
 import org.junit.Test;
 import org.slf4j.Logger;
 
@@ -54,6 +58,27 @@ public class DatePartitionTest {
 		testRange("testUnevenHour", "2020-01-01 03:47:15", "2020-01-02 15:19:07", Interval.HOUR);
 	}
 	
+	@Test
+	public void testExplicit() {
+		TestManager.bannerStart(this.getClass(), "testExplicit");
+		DateTime d1 = new DateTime("2019-01-01");
+		DateTime d2 = new DateTime("2019-07-01");
+		DateTime d3 = new DateTime("2019-08-01");
+		DateTime d4 = new DateTime("2020-01-01");
+		List<DatePart> parts = new ArrayList<DatePart>();
+		parts.add(new DatePart(Interval.MONTH, d3, d4));
+		parts.add(new DatePart(Interval.MONTH, d2, d3));
+		parts.add(new DatePart(Interval.MONTH, d1, d2));
+		DatePartition partition = new DatePartition(new DateTimeRange(d1, d4), Interval.MONTH, parts);
+		logger.info(Log.TEST, String.format("Testing: %s", partition.toString()));
+		assertTrue(partition.isExplicit());
+		Iterator<DatePart> iter = partition.iterator();
+		assertEquals(d3, iter.next().getStart());
+		assertEquals("M2019-07-01", iter.next().getName());
+		assertEquals(d1, iter.next().getStart());
+		assertFalse(iter.hasNext());
+	}
+	
 	public int testRange(String name, String start, String end, Interval interval) {
 		TestManager.bannerStart(this.getClass(), name);
 		DateTime startDate = new DateTime(start);
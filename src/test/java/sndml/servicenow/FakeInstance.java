@@ -0,0 +1,631 @@
+package sndml.servicenow;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.GZIPOutputStream;
+
+import org.slf4j.Logger;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * A local stand-in for a ServiceNow instance, used to test and measure
+ * the readers and writers end to end without a network or an instance.
+ * It runs in the JDK HTTP server on an ephemeral port of the loopback address.
+ * <p>The following are implemented, for GET unless noted:</p>
+ * <ul>
+ * <li><b>api/now/table/{table}</b> with sysparm_query, sysparm_fields, sysparm_limit,
+ * sysparm_offset and sysparm_display_value, plus field=value parameters</li>
+ * <li><b>api/now/table/{table}/{sys_id}</b></li>
+ * <li><b>api/now/stats/{table}</b> with sysparm_count, sysparm_min_fields,
+ * sysparm_max_fields, sysparm_avg_fields, sysparm_sum_fields and sysparm_group_by</li>
+ * <li><b>{table}.do?JSONv2</b> (POST) with sysparm_action getKeys, getRecords or get</li>
+ * <li><b>{table}.do?WSDL</b></li>
+ * </ul>
+ * <p>Queries are evaluated by {@link FakeQuery}.
+ * <b>sys_db_object</b> and <b>sys_dictionary</b> are generated from the other tables,
+ * and <b>sys_audit_delete</b> records every row deleted by {@link #delete(String, int)}.
+ * Credentials are not checked. Responses are gzip encoded if the client asks.</p>
+ * <p>Every response can be delayed by a fixed latency, and a fraction of
+ * requests can be refused with 429 (Too Many Requests) and a Retry-After header.</p>
+ */
+public class FakeInstance {
+
+	static final String USERNAME = "admin";
+	static final String PASSWORD = "admin";
+	static final int DEFAULT_LIMIT = 10000;
+
+	private final HttpServer server;
+	private final ExecutorService executor;
+	private final Map<String, FakeTable> tables = new ConcurrentHashMap<String, FakeTable>();
+	private final FakeTable.Records audit;
+
+	private volatile int latencyMillis = 0;
+	private volatile double throttleRate = 0;
+	private volatile int retryAfterSeconds = 0;
+	private final LongAdder requestCount = new LongAdder();
+	private final LongAdder throttleCount = new LongAdder();
+
+	final private Logger logger = Log.logger(this.getClass());
+
+	/**
+	 * Writes the body of a JSON response.
+	 */
+	private interface JsonBody {
+		void write(JsonGenerator gen) throws IOException;
+	}
+
+	/**
+	 * Thrown by a handler to return a status other than 200.
+	 */
+	@SuppressWarnings("serial")
+	private static class StatusException extends Exception {
+		final int status;
+		StatusException(int status, String message) {
+			super(message);
+			this.status = status;
+		}
+	}
+
+	public FakeInstance() throws IOException {
+		audit = new FakeTable.Records("sys_audit_delete").
+			addField("tablename", "string", 80).
+			addField("documentkey", "GUID", 32).
+			addField("sys_created_on", "glide_date_time", 40);
+		tables.put(audit.getName(), audit);
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+		executor = Executors.newCachedThreadPool(runnable -> {
+			Thread thread = new Thread(runnable, "fake-instance");
+			thread.setDaemon(true);
+			return thread;
+		});
+		server.setExecutor(executor);
+		server.createContext("/", this::handle);
+	}
+
+	public FakeInstance start() {
+		server.start();
+		logger.info(Log.INIT, "started " + getURL());
+		return this;
+	}
+
+	public void stop() {
+		server.stop(0);
+		executor.shutdownNow();
+	}
+
+	public String getURL() {
+		InetSocketAddress address = server.getAddress();
+		return "http://" + address.getHostString() + ":" + address.getPort() + "/";
+	}
+
+	/**
+	 * Properties for a {@link Session} connected to this instance.
+	 */
+	public Properties getProperties() {
+		Properties props = new Properties();
+		props.setProperty("servicenow.instance", getURL());
+		props.setProperty("servicenow.username", USERNAME);
+		props.setProperty("servicenow.password", PASSWORD);
+		return props;
+	}
+
+	/**
+	 * Add a {@link SyntheticTable} with the specified number of rows and generated columns.
+	 */
+	public SyntheticTable addTable(String name, int rows, int columns) {
+		SyntheticTable table = new SyntheticTable(name, rows, columns, name.hashCode());
+		tables.put(name, table);
+		return table;
+	}
+
+	public FakeInstance addTable(FakeTable table) {
+		tables.put(table.getName(), table);
+		return this;
+	}
+
+	/**
+	 * Delete randomly chosen rows from a {@link SyntheticTable}
+	 * and record the deletions in sys_audit_delete.
+	 * @return The keys of the deleted rows
+	 */
+	public String[] delete(String tablename, int count) {
+		SyntheticTable table = (SyntheticTable) tables.get(tablename);
+		String now = SyntheticTable.formatDateTime(System.currentTimeMillis() / 1000);
+		String[] keys = table.delete(count);
+		for (String key : keys)
+			audit.addRow(newKey(), tablename, key, now);
+		return keys;
+	}
+
+	/**
+	 * Delay every response by a number of milliseconds.
+	 */
+	public FakeInstance setLatency(int millis) {
+		this.latencyMillis = millis;
+		return this;
+	}
+
+	/**
+	 * Refuse a fraction of requests with 429 (Too Many Requests).
+	 * @param rate Fraction of requests to refuse, from 0 to 1
+	 * @param retryAfter Value of the Retry-After header in seconds; if negative there is no header
+	 */
+	public FakeInstance setThrottle(double rate, int retryAfter) {
+		this.throttleRate = rate;
+		this.retryAfterSeconds = retryAfter;
+		return this;
+	}
+
+	public long getRequestCount() {
+		return requestCount.sum();
+	}
+
+	public long getThrottleCount() {
+		return throttleCount.sum();
+	}
+
+	FakeTable getTable(String name) {
+		switch (name) {
+		case "sys_db_object": return hierarchy();
+		case "sys_dictionary": return dictionary();
+		}
+		return tables.get(name);
+	}
+
+	/**
+	 * Return the table definition without generating rows for sys_db_object or sys_dictionary.
+	 */
+	private FakeTable getDefinition(String name) {
+		switch (name) {
+		case "sys_db_object": return newHierarchy();
+		case "sys_dictionary": return newDictionary();
+		}
+		return tables.get(name);
+	}
+
+	private void handle(HttpExchange exchange) throws IOException {
+		requestCount.increment();
+		try {
+			if (latencyMillis > 0) Thread.sleep(latencyMillis);
+			if (throttleRate > 0 && ThreadLocalRandom.current().nextDouble() < throttleRate) {
+				throttleCount.increment();
+				if (retryAfterSeconds >= 0)
+					exchange.getResponseHeaders().set("Retry-After", Integer.toString(retryAfterSeconds));
+				sendError(exchange, 429, "Too Many Requests");
+				return;
+			}
+			route(exchange);
+		}
+		catch (StatusException e) {
+			sendError(exchange, e.status, e.getMessage());
+		}
+		catch (IllegalArgumentException e) {
+			sendError(exchange, 400, e.getMessage());
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		catch (IOException | RuntimeException e) {
+			logger.error(Log.RESPONSE, exchange.getRequestURI().toString(), e);
+			if (exchange.getResponseCode() < 0) sendError(exchange, 500, e.toString());
+		}
+		finally {
+			exchange.close();
+		}
+	}
+
+	private void route(HttpExchange exchange) throws IOException, StatusException {
+		String path = exchange.getRequestURI().getRawPath();
+		String method = exchange.getRequestMethod();
+		Map<String, String> params = parseQuery(exchange.getRequestURI().getRawQuery());
+		logger.debug(Log.REQUEST, method + " " + exchange.getRequestURI());
+		if (path.startsWith("/api/now/table/")) {
+			if (!method.equals("GET")) throw new StatusException(405, "Method not supported");
+			String[] parts = path.substring(15).split("/");
+			FakeTable table = requireTable(parts[0]);
+			if (parts.length > 1)
+				getRecord(exchange, table, parts[1], params);
+			else
+				getRecords(exchange, table, params);
+		}
+		else if (path.startsWith("/api/now/stats/")) {
+			if (!method.equals("GET")) throw new StatusException(405, "Method not supported");
+			getStats(exchange, requireTable(path.substring(15)), params);
+		}
+		else if (path.endsWith(".do") && params.containsKey("JSONv2")) {
+			if (!method.equals("POST")) throw new StatusException(405, "Method not supported");
+			jsonv2(exchange, requireTable(path.substring(1, path.length() - 3)));
+		}
+		else if (path.endsWith(".do") && params.containsKey("WSDL")) {
+			FakeTable table = getTable(path.substring(1, path.length() - 3));
+			if (table == null) {
+				// the client treats a response with no content as an invalid table
+				exchange.sendResponseHeaders(404, -1);
+				return;
+			}
+			wsdl(exchange, table);
+		}
+		else {
+			throw new StatusException(404, "Not found: " + path);
+		}
+	}
+
+	private FakeTable requireTable(String name) throws StatusException {
+		FakeTable table = getTable(name);
+		if (table == null) throw new StatusException(400, "Invalid table " + name);
+		return table;
+	}
+
+	private void getRecords(HttpExchange exchange, FakeTable table, Map<String, String> params)
+			throws IOException {
+		FakeQuery query = new FakeQuery(params.get("sysparm_query")).addParameters(params);
+		int offset = Integer.parseInt(params.getOrDefault("sysparm_offset", "0"));
+		int limit = Integer.parseInt(params.getOrDefault("sysparm_limit", Integer.toString(DEFAULT_LIMIT)));
+		List<String> fieldnames = getFieldNames(table, params.get("sysparm_fields"));
+		boolean displayValue = "all".equals(params.get("sysparm_display_value"));
+		int[] rows = query.select(table, offset, limit);
+		sendJson(exchange, 200, gen -> {
+			gen.writeStartObject();
+			gen.writeArrayFieldStart("result");
+			for (int row : rows) writeRecord(gen, table, row, fieldnames, displayValue);
+			gen.writeEndArray();
+			gen.writeEndObject();
+		});
+	}
+
+	private void getRecord(HttpExchange exchange, FakeTable table, String key, Map<String, String> params)
+			throws IOException, StatusException {
+		int row = table.indexOf(key);
+		if (row < 0 || !table.exists(row)) throw new StatusException(404, "No Record found");
+		List<String> fieldnames = getFieldNames(table, params.get("sysparm_fields"));
+		boolean displayValue = "all".equals(params.get("sysparm_display_value"));
+		sendJson(exchange, 200, gen -> {
+			gen.writeStartObject();
+			gen.writeFieldName("result");
+			writeRecord(gen, table, row, fieldnames, displayValue);
+			gen.writeEndObject();
+		});
+	}
+
+	private void getStats(HttpExchange exchange, FakeTable table, Map<String, String> params)
+			throws IOException {
+		FakeQuery query = new FakeQuery(params.get("sysparm_query")).addParameters(params);
+		int[] rows = query.select(table, 0, -1);
+		boolean count = "true".equals(params.get("sysparm_count"));
+		String[] groupBy = split(params.get("sysparm_group_by"));
+		if (groupBy.length == 0) {
+			sendJson(exchange, 200, gen -> {
+				gen.writeStartObject();
+				gen.writeObjectFieldStart("result");
+				writeStats(gen, table, rows, count, params);
+				gen.writeEndObject();
+				gen.writeEndObject();
+			});
+			return;
+		}
+		Map<List<String>, List<Integer>> groups = new LinkedHashMap<List<String>, List<Integer>>();
+		for (int row : rows) {
+			List<String> values = new ArrayList<String>(groupBy.length);
+			for (String field : groupBy) {
+				String value = table.getValue(row, field);
+				values.add(value == null ? "" : value);
+			}
+			groups.computeIfAbsent(values, k -> new ArrayList<Integer>()).add(row);
+		}
+		sendJson(exchange, 200, gen -> {
+			gen.writeStartObject();
+			gen.writeArrayFieldStart("result");
+			for (Map.Entry<List<String>, List<Integer>> group : groups.entrySet()) {
+				gen.writeStartObject();
+				gen.writeArrayFieldStart("groupby_fields");
+				for (int i = 0; i < groupBy.length; ++i) {
+					gen.writeStartObject();
+					gen.writeStringField("field", groupBy[i]);
+					gen.writeStringField("value", group.getKey().get(i));
+					gen.writeEndObject();
+				}
+				gen.writeEndArray();
+				int[] groupRows = group.getValue().stream().mapToInt(Integer::intValue).toArray();
+				writeStats(gen, table, groupRows, count, params);
+				gen.writeEndObject();
+			}
+			gen.writeEndArray();
+			gen.writeEndObject();
+		});
+	}
+
+	private void writeStats(JsonGenerator gen, FakeTable table, int[] rows, boolean count,
+			Map<String, String> params) throws IOException {
+		gen.writeObjectFieldStart("stats");
+		if (count) gen.writeStringField("count", Integer.toString(rows.length));
+		for (String aggregate : new String[] {"min", "max", "avg", "sum"}) {
+			String[] fields = split(params.get("sysparm_" + aggregate + "_fields"));
+			if (fields.length == 0) continue;
+			gen.writeObjectFieldStart(aggregate);
+			for (String field : fields)
+				gen.writeStringField(field, aggregate(aggregate, table, rows, field));
+			gen.writeEndObject();
+		}
+		gen.writeEndObject();
+	}
+
+	private static String aggregate(String aggregate, FakeTable table, int[] rows, String field) {
+		String best = null;
+		double sum = 0;
+		int n = 0;
+		for (int row : rows) {
+			String value = table.getValue(row, field);
+			if (value == null || value.isEmpty()) continue;
+			switch (aggregate) {
+			case "min":
+				if (best == null || FakeQuery.compare(value, best) < 0) best = value;
+				break;
+			case "max":
+				if (best == null || FakeQuery.compare(value, best) > 0) best = value;
+				break;
+			default:
+				if (!FakeQuery.NUMBER.matcher(value).matches()) continue;
+				sum += Double.parseDouble(value);
+				n += 1;
+			}
+		}
+		switch (aggregate) {
+		case "sum": return Double.toString(sum);
+		case "avg": return n == 0 ? "" : Double.toString(sum / n);
+		default: return best == null ? "" : best;
+		}
+	}
+
+	private void jsonv2(HttpExchange exchange, FakeTable table) throws IOException, StatusException {
+		ObjectNode request;
+		try (InputStream input = exchange.getRequestBody()) {
+			request = (ObjectNode) JsonRequest.mapper.readTree(input);
+		}
+		String action = text(request, "sysparm_action");
+		FakeQuery query = new FakeQuery(text(request, "sysparm_query"));
+		List<String> fieldnames = getFieldNames(table, null);
+		switch (action == null ? "" : action) {
+		case "getKeys": {
+			int[] rows = query.select(table, 0, -1);
+			sendJson(exchange, 200, gen -> {
+				gen.writeStartObject();
+				gen.writeArrayFieldStart("records");
+				for (int row : rows) gen.writeString(table.getKey(row));
+				gen.writeEndArray();
+				gen.writeEndObject();
+			});
+			break;
+		}
+		case "getRecords":
+		case "get": {
+			int[] rows;
+			if (action.equals("get")) {
+				int row = table.indexOf(String.valueOf(text(request, "sysparm_sys_id")));
+				rows = (row >= 0 && table.exists(row)) ? new int[] {row} : new int[0];
+			}
+			else
+				rows = query.select(table, 0, DEFAULT_LIMIT);
+			sendJson(exchange, 200, gen -> {
+				gen.writeStartObject();
+				gen.writeArrayFieldStart("records");
+				for (int row : rows) writeRecord(gen, table, row, fieldnames, false);
+				gen.writeEndArray();
+				gen.writeEndObject();
+			});
+			break;
+		}
+		default:
+			throw new StatusException(400, "Unsupported action " + action);
+		}
+	}
+
+	private void wsdl(HttpExchange exchange, FakeTable table) throws IOException {
+		String ns = "http://www.service-now.com/" + table.getName();
+		StringBuilder xml = new StringBuilder();
+		xml.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+		xml.append("<wsdl:definitions xmlns:wsdl=\"http://schemas.xmlsoap.org/wsdl/\"");
+		xml.append(" xmlns:xsd=\"http://www.w3.org/2001/XMLSchema\"");
+		xml.append(" targetNamespace=\"").append(ns).append("\">\n");
+		xml.append("<wsdl:types>\n<xsd:schema elementFormDefault=\"unqualified\"");
+		xml.append(" targetNamespace=\"").append(ns).append("\">\n");
+		for (String element : new String[] {"getResponse", "update"}) {
+			xml.append("<xsd:element name=\"").append(element).append("\">");
+			xml.append("<xsd:complexType><xsd:sequence>\n");
+			for (FakeTable.Field field : table.getFields()) {
+				xml.append("<xsd:element maxOccurs=\"1\" minOccurs=\"0\" name=\"");
+				xml.append(field.name).append("\" type=\"").append(xsdType(field.type)).append("\"/>\n");
+			}
+			xml.append("</xsd:sequence></xsd:complexType></xsd:element>\n");
+		}
+		xml.append("</xsd:schema>\n</wsdl:types>\n</wsdl:definitions>\n");
+		send(exchange, 200, "text/xml;charset=UTF-8",
+			out -> out.write(xml.toString().getBytes(StandardCharsets.UTF_8)));
+	}
+
+	private static String xsdType(String glideType) {
+		switch (glideType) {
+		case "integer": return "xsd:integer";
+		case "boolean": return "xsd:boolean";
+		case "decimal": return "xsd:decimal";
+		default: return "xsd:string";
+		}
+	}
+
+	/**
+	 * Generate sys_db_object from the tables.
+	 */
+	private FakeTable hierarchy() {
+		FakeTable.Records result = newHierarchy();
+		for (String name : allTableNames())
+			result.addRow(nameKey(name), name, name, null);
+		return result;
+	}
+
+	/**
+	 * Generate sys_dictionary from the tables.
+	 * Each table has a collection record with no element, followed by its fields.
+	 */
+	private FakeTable dictionary() {
+		FakeTable.Records result = newDictionary();
+		for (String name : allTableNames()) {
+			FakeTable table = getDefinition(name);
+			result.addRow(nameKey(name + "."), name, null, "collection", "40", null, "true");
+			for (FakeTable.Field field : table.getFields())
+				result.addRow(nameKey(name + "." + field.name), name, field.name, field.type,
+					Integer.toString(field.length), field.reference, "true");
+		}
+		return result;
+	}
+
+	private static FakeTable.Records newHierarchy() {
+		return new FakeTable.Records("sys_db_object").
+			addField("name", "string", 80).
+			addField("label", "string", 80).
+			addField("super_class", "reference", 32);
+	}
+
+	private static FakeTable.Records newDictionary() {
+		return new FakeTable.Records("sys_dictionary").
+			addField("name", "string", 80).
+			addField("element", "string", 80).
+			addField("internal_type", "string", 40).
+			addField("max_length", "integer", 40).
+			addField("reference", "string", 80).
+			addField("active", "boolean", 40);
+	}
+
+	private List<String> allTableNames() {
+		List<String> names = new ArrayList<String>(tables.keySet());
+		names.add("sys_db_object");
+		names.add("sys_dictionary");
+		return names;
+	}
+
+	private void writeRecord(JsonGenerator gen, FakeTable table, int row,
+			List<String> fieldnames, boolean displayValue) throws IOException {
+		gen.writeStartObject();
+		for (String fieldname : fieldnames) {
+			String value = table.getValue(row, fieldname);
+			if (value == null) continue;
+			if (displayValue) {
+				gen.writeObjectFieldStart(fieldname);
+				gen.writeStringField("display_value", value);
+				gen.writeStringField("value", value);
+				gen.writeEndObject();
+			}
+			else {
+				gen.writeStringField(fieldname, value);
+			}
+		}
+		gen.writeEndObject();
+	}
+
+	private static List<String> getFieldNames(FakeTable table, String sysparmFields) {
+		if (sysparmFields != null && sysparmFields.length() > 0)
+			return Arrays.asList(split(sysparmFields));
+		List<String> result = new ArrayList<String>();
+		for (FakeTable.Field field : table.getFields()) result.add(field.name);
+		return result;
+	}
+
+	private interface Body {
+		void write(OutputStream out) throws IOException;
+	}
+
+	private void sendJson(HttpExchange exchange, int status, JsonBody body) throws IOException {
+		send(exchange, status, "application/json;charset=UTF-8", out -> {
+			try (JsonGenerator gen = JsonRequest.mapper.getFactory().createGenerator(out)) {
+				body.write(gen);
+			}
+		});
+	}
+
+	private void sendError(HttpExchange exchange, int status, String message) throws IOException {
+		sendJson(exchange, status, gen -> {
+			gen.writeStartObject();
+			gen.writeObjectFieldStart("error");
+			gen.writeStringField("message", message);
+			gen.writeNullField("detail");
+			gen.writeEndObject();
+			gen.writeStringField("status", "failure");
+			gen.writeEndObject();
+		});
+	}
+
+	private void send(HttpExchange exchange, int status, String contentType, Body body) throws IOException {
+		String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+		boolean gzip = acceptEncoding != null && acceptEncoding.contains("gzip");
+		exchange.getResponseHeaders().set("Content-Type", contentType);
+		if (gzip) exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+		exchange.sendResponseHeaders(status, 0);
+		OutputStream out = new BufferedOutputStream(exchange.getResponseBody(), 65536);
+		if (gzip) out = new GZIPOutputStream(out, 65536);
+		try {
+			body.write(out);
+		}
+		finally {
+			out.close();
+		}
+	}
+
+	private static Map<String, String> parseQuery(String rawQuery) {
+		Map<String, String> params = new LinkedHashMap<String, String>();
+		if (rawQuery == null || rawQuery.isEmpty()) return params;
+		for (String pair : rawQuery.split("&")) {
+			int eq = pair.indexOf('=');
+			String name = eq < 0 ? pair : pair.substring(0, eq);
+			String value = eq < 0 ? "" : pair.substring(eq + 1);
+			params.put(decode(name), decode(value));
+		}
+		return params;
+	}
+
+	private static String decode(String value) {
+		return URLDecoder.decode(value, StandardCharsets.UTF_8);
+	}
+
+	private static String[] split(String list) {
+		if (list == null || list.isEmpty()) return new String[0];
+		return list.split(",");
+	}
+
+	private static String text(ObjectNode obj, String fieldname) {
+		JsonNode node = obj.get(fieldname);
+		return node == null ? null : node.asText();
+	}
+
+	/**
+	 * A repeatable sys_id for a name.
+	 */
+	static String nameKey(String name) {
+		return UUID.nameUUIDFromBytes(name.getBytes(StandardCharsets.UTF_8)).toString().replace("-", "");
+	}
+
+	private static String newKey() {
+		return UUID.randomUUID().toString().replace("-", "");
+	}
+
+}
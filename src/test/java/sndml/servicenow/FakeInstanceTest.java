@@ -0,0 +1,136 @@
+package sndml.servicenow;
+
+import static org.junit.Assert.*;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+public class FakeInstanceTest {
+
+	static final int ROWS = 1500;
+	static FakeInstance instance;
+	static Session session;
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		instance = new FakeInstance().start();
+		instance.addTable("incident", ROWS, 7);
+		session = new Session(instance.getProperties());
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() {
+		instance.stop();
+	}
+
+	@Test
+	public void testStats() throws Exception {
+		TableStats stats = session.table("incident").rest().getStats(null, true);
+		assertEquals(ROWS, stats.getCount());
+		DateTimeRange created = stats.getCreated();
+		assertTrue(created.getStart().compareTo(new DateTime("2020-01-01 00:00:00")) >= 0);
+		assertTrue(created.getEnd().compareTo(new DateTime("2023-01-01 00:00:00")) < 0);
+	}
+
+	@Test
+	public void testGroupBy() throws Exception {
+		Parameters params = new Parameters();
+		params.add("sysparm_count", "true");
+		params.add("sysparm_group_by", "u_column_03");
+		JsonRequest request = new JsonRequest(session,
+			session.getURI("api/now/stats/incident", params), HttpMethod.GET, null);
+		ObjectNode root = request.execute();
+		JsonNode groups = root.get("result");
+		assertEquals(2, groups.size());
+		int total = 0;
+		for (JsonNode group : groups) {
+			assertEquals("u_column_03", group.at("/groupby_fields/0/field").asText());
+			total += group.at("/stats/count").asInt();
+		}
+		assertEquals(ROWS, total);
+	}
+
+	@Test
+	public void testReadByKeys() throws Exception {
+		RestTableReader reader = new RestTableReader(session.table("incident"));
+		reader.setPageSize(100);
+		RecordList recs = reader.getAllRecords();
+		assertEquals(ROWS, recs.size());
+		for (int i = 1; i < recs.size(); ++i)
+			assertTrue(recs.get(i).getKey().greaterThan(recs.get(i - 1).getKey()));
+	}
+
+	@Test
+	public void testKeySetReader() throws Exception {
+		Table incident = session.table("incident");
+		EncodedQuery query = new EncodedQuery(incident).addQuery("sys_created_on>=2021-01-01 00:00:00");
+		int expected = incident.rest().getStats(query, false).getCount();
+		assertTrue(expected > 0 && expected < ROWS);
+		KeySet keys = incident.json().getKeys(query);
+		assertEquals(expected, keys.size());
+		KeySetTableReader reader = new KeySetTableReader(incident);
+		reader.setPageSize(200);
+		RecordListAccumulator accumulator = new RecordListAccumulator(reader);
+		reader.prepare(keys, accumulator, new Metrics("keyset"), new NullProgressLogger());
+		reader.call();
+		RecordList recs = accumulator.getRecords();
+		assertEquals(expected, recs.size());
+		for (TableRecord rec : recs)
+			assertTrue(rec.getValue("sys_created_on").compareTo("2021-01-01") > 0);
+	}
+
+	@Test
+	public void testStreamingDefault() throws Exception {
+		// A writer which does not override processRecord and endPage
+		// receives each streamed page through processRecords
+		Table incident = session.table("incident");
+		RestTableReader reader = new RestTableReader(incident);
+		reader.setPageSize(100);
+		reader.setStreaming(true);
+		RateLimiter limiter = session.getRateLimiter();
+		RecordListAccumulator accumulator = new RecordListAccumulator(incident) {
+			@Override
+			public boolean isStreaming() {
+				return true;
+			}
+			@Override
+			public void processRecords(RecordList recs, Metrics metrics, ProgressLogger progressLogger) {
+				// the response has been read and the permit released before records are written
+				assertEquals(0, limiter.getInFlight());
+				super.processRecords(recs, metrics, progressLogger);
+			}
+		};
+		reader.prepare(accumulator, new Metrics("stream"), new NullProgressLogger());
+		reader.call();
+		assertEquals(ROWS, accumulator.getRecords().size());
+	}
+
+	@Test
+	public void testSchema() throws Exception {
+		TableSchema schema = session.getSchema("incident");
+		assertEquals(5 + 7, schema.numFields());
+		assertEquals("reference", schema.getFieldDefinition("u_column_05").getType());
+		TableWSDL wsdl = session.getWSDL("incident");
+		assertTrue(wsdl.canReadField("u_column_07"));
+	}
+
+	@Test
+	public void testThrottle() throws Exception {
+		long throttled = instance.getThrottleCount();
+		instance.setThrottle(0.3, 0);
+		try {
+			RestTableReader reader = new RestTableReader(session.table("incident"));
+			reader.setPageSize(100);
+			assertEquals(ROWS, reader.getAllRecords().size());
+		}
+		finally {
+			instance.setThrottle(0, 0);
+		}
+		assertTrue(instance.getThrottleCount() > throttled);
+	}
+
+}
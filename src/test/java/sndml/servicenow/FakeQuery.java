@@ -0,0 +1,210 @@
+package sndml.servicenow;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Evaluates an encoded query against a {@link FakeTable}.
+ * <p>Supports the conditions generated by this project:
+ * <b>=</b>, <b>!=</b>, <b>&gt;</b>, <b>&gt;=</b>, <b>&lt;</b>, <b>&lt;=</b>,
+ * <b>IN</b>, <b>NOT IN</b>, <b>STARTSWITH</b>, <b>LIKE</b>,
+ * <b>ISEMPTY</b> and <b>ISNOTEMPTY</b>, joined by <b>^</b>.
+ * Values are compared as numbers if both are numeric, otherwise as strings,
+ * which is correct for sys_id and for dates in GMT.
+ * <b>ORDERBYsys_id</b> and <b>ORDERBYDESCsys_id</b> are honored;
+ * ordering by any other field is ignored.
+ * <b>^OR</b> and <b>^NQ</b> are not supported.</p>
+ * <p>Conditions on sys_id are resolved by binary search
+ * so that paging by key does not scan the table.</p>
+ */
+public class FakeQuery {
+
+	static final Pattern TERM = Pattern.compile(
+		"([a-z0-9_.]+)(ISNOTEMPTY|ISEMPTY|NOT IN|IN|STARTSWITH|LIKE|>=|<=|!=|=|>|<)(.*)");
+
+	static final Pattern NUMBER = Pattern.compile("-?[0-9]+(\\.[0-9]+)?");
+
+	private final List<Condition> conditions = new ArrayList<Condition>();
+	private boolean descending = false;
+	private String lowerKey = null;
+	private boolean lowerInclusive = true;
+	private String upperKey = null;
+	private Set<String> keys = null;
+
+	private static class Condition {
+		final String field;
+		final String op;
+		final String value;
+		final Set<String> values;
+
+		Condition(String field, String op, String value) {
+			this.field = field;
+			this.op = op;
+			this.value = value;
+			this.values = (op.endsWith("IN")) ?
+				new HashSet<String>(Arrays.asList(value.split(","))) : null;
+		}
+
+		boolean matches(String actual) {
+			if (actual == null) actual = "";
+			switch (op) {
+			case "ISEMPTY": return actual.isEmpty();
+			case "ISNOTEMPTY": return !actual.isEmpty();
+			case "IN": return values.contains(actual);
+			case "NOT IN": return !values.contains(actual);
+			case "STARTSWITH": return actual.startsWith(value);
+			case "LIKE": return actual.contains(value);
+			case "=": return actual.equals(value);
+			case "!=": return !actual.equals(value);
+			}
+			if (actual.isEmpty()) return false;
+			int cmp = FakeQuery.compare(actual, value);
+			switch (op) {
+			case ">": return cmp > 0;
+			case ">=": return cmp >= 0;
+			case "<": return cmp < 0;
+			case "<=": return cmp <= 0;
+			}
+			throw new AssertionError(op);
+		}
+	}
+
+	/**
+	 * Compare two values as numbers if both are numeric, otherwise as strings.
+	 */
+	static int compare(String a, String b) {
+		if (NUMBER.matcher(a).matches() && NUMBER.matcher(b).matches())
+			return Double.compare(Double.parseDouble(a), Double.parseDouble(b));
+		return a.compareTo(b);
+	}
+
+	public FakeQuery(String encodedQuery) {
+		if (encodedQuery == null || encodedQuery.isEmpty()) return;
+		for (String term : encodedQuery.split("\\^")) {
+			if (term.isEmpty()) continue;
+			if (term.startsWith(EncodedQuery.ORDER_BY_DESC)) {
+				if (term.equals(EncodedQuery.ORDER_BY_DESC + "sys_id")) descending = true;
+				continue;
+			}
+			if (term.startsWith(EncodedQuery.ORDER_BY)) continue;
+			if (term.startsWith("OR") || term.startsWith("NQ"))
+				throw new IllegalArgumentException("Not supported: " + term);
+			Matcher matcher = TERM.matcher(term);
+			if (!matcher.matches())
+				throw new IllegalArgumentException("Not supported: " + term);
+			Condition condition = new Condition(matcher.group(1), matcher.group(2), matcher.group(3));
+			if (!useKeyCondition(condition)) conditions.add(condition);
+		}
+	}
+
+	/**
+	 * Add a condition for each request parameter which is not a sysparm_ parameter,
+	 * as the Table API does.
+	 */
+	public FakeQuery addParameters(Map<String, String> params) {
+		for (Map.Entry<String, String> param : params.entrySet()) {
+			if (!param.getKey().startsWith("sysparm_"))
+				conditions.add(new Condition(param.getKey(), "=", param.getValue()));
+		}
+		return this;
+	}
+
+	private boolean useKeyCondition(Condition condition) {
+		if (!condition.field.equals("sys_id")) return false;
+		switch (condition.op) {
+		case ">":
+		case ">=":
+			if (lowerKey != null) return false;
+			lowerKey = condition.value;
+			lowerInclusive = condition.op.equals(">=");
+			return true;
+		case "<":
+			if (upperKey != null) return false;
+			upperKey = condition.value;
+			return true;
+		case "IN":
+			if (keys != null) return false;
+			keys = condition.values;
+			return true;
+		case "=":
+			if (keys != null) return false;
+			keys = condition.values == null ?
+				new HashSet<String>(Arrays.asList(condition.value)) : condition.values;
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Return true if the row exists and satisfies every condition.
+	 * The sys_id range is assumed to have been applied by {@link #select}.
+	 */
+	public boolean matches(FakeTable table, int row) {
+		if (!table.exists(row)) return false;
+		if (keys != null && !keys.contains(table.getKey(row))) return false;
+		for (Condition condition : conditions) {
+			if (!condition.matches(table.getValue(row, condition.field))) return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Return the matching rows in order, skipping the first <b>offset</b> rows.
+	 * @param limit Maximum number of rows, or -1 for no limit
+	 */
+	public int[] select(FakeTable table, int offset, int limit) {
+		int from, to;
+		synchronized (table) {
+			from = (lowerKey == null) ? 0 : position(table, lowerKey, !lowerInclusive);
+			to = (upperKey == null) ? table.size() : position(table, upperKey, false);
+		}
+		int[] result = new int[(limit < 0 || limit > 1024) ? 1024 : limit];
+		int found = 0;
+		int skipped = 0;
+		if (keys != null && keys.size() < (to - from) / 16) {
+			// look up each key rather than scanning the range
+			String[] sorted = keys.toArray(new String[0]);
+			Arrays.sort(sorted);
+			int[] rows = new int[sorted.length];
+			int n = 0;
+			for (String key : sorted) {
+				int row = table.indexOf(key);
+				if (row >= from && row < to) rows[n++] = row;
+			}
+			for (int i = 0; i < n; ++i) {
+				int row = descending ? rows[n - 1 - i] : rows[i];
+				if (!matches(table, row)) continue;
+				if (skipped++ < offset) continue;
+				if (limit >= 0 && found >= limit) break;
+				if (found == result.length) result = Arrays.copyOf(result, 2 * found);
+				result[found++] = row;
+			}
+			return Arrays.copyOf(result, found);
+		}
+		for (int i = from; i < to; ++i) {
+			int row = descending ? (to - 1 - (i - from)) : i;
+			if (!matches(table, row)) continue;
+			if (skipped++ < offset) continue;
+			if (limit >= 0 && found >= limit) break;
+			if (found == result.length) result = Arrays.copyOf(result, 2 * found);
+			result[found++] = row;
+		}
+		return Arrays.copyOf(result, found);
+	}
+
+	/**
+	 * Index of the first row whose key is greater than (or equal to) the key.
+	 */
+	private static int position(FakeTable table, String key, boolean after) {
+		int index = table.indexOf(key);
+		if (index < 0) return -(index + 1);
+		return after ? index + 1 : index;
+	}
+
+}
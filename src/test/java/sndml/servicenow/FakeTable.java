@@ -0,0 +1,166 @@
+package sndml.servicenow;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A table served by a {@link FakeInstance}.
+ * Rows are addressed by index and are always in ascending order by sys_id,
+ * so that readers which page by key see the same order as a real instance.
+ */
+public abstract class FakeTable {
+
+	final String name;
+	final List<Field> fields = new ArrayList<Field>();
+
+	/**
+	 * A column as described by sys_dictionary.
+	 */
+	public static class Field {
+		final String name;
+		final String type;
+		final int length;
+		final String reference;
+
+		Field(String name, String type, int length, String reference) {
+			this.name = name;
+			this.type = type;
+			this.length = length;
+			this.reference = reference;
+		}
+
+		Field(String name, String type, int length) {
+			this(name, type, length, null);
+		}
+	}
+
+	FakeTable(String name) {
+		this.name = name;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public List<Field> getFields() {
+		return fields;
+	}
+
+	Field getField(String fieldname) {
+		for (Field field : fields)
+			if (field.name.equals(fieldname)) return field;
+		return null;
+	}
+
+	/**
+	 * Number of rows including deleted rows.
+	 */
+	abstract public int size();
+
+	/**
+	 * The sys_id of a row.
+	 */
+	abstract public String getKey(int row);
+
+	/**
+	 * The value of a field, or null if the table has no such field.
+	 */
+	abstract public String getValue(int row, String fieldname);
+
+	/**
+	 * Return false if the row has been deleted.
+	 */
+	public boolean exists(int row) {
+		return true;
+	}
+
+	/**
+	 * Number of rows which have not been deleted.
+	 */
+	public int getCount() {
+		int count = 0;
+		for (int row = 0; row < size(); ++row)
+			if (exists(row)) count += 1;
+		return count;
+	}
+
+	/**
+	 * Binary search for a key. Return the index of the row,
+	 * or (-(insertion point) - 1) if the key is not found.
+	 */
+	public int indexOf(String key) {
+		int low = 0;
+		int high = size() - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			int cmp = getKey(mid).compareTo(key);
+			if (cmp < 0) low = mid + 1;
+			else if (cmp > 0) high = mid - 1;
+			else return mid;
+		}
+		return -(low + 1);
+	}
+
+	/**
+	 * A table whose rows are held as maps.
+	 * Used for sys_db_object, sys_dictionary and sys_audit_delete.
+	 */
+	public static class Records extends FakeTable {
+
+		private final List<Map<String, String>> rows = new ArrayList<Map<String, String>>();
+		private boolean sorted = true;
+
+		Records(String name) {
+			super(name);
+			fields.add(new Field("sys_id", "GUID", 32));
+		}
+
+		Records addField(String fieldname, String type, int length) {
+			fields.add(new Field(fieldname, type, length));
+			return this;
+		}
+
+		/**
+		 * Add a row. Values must be supplied for each field in order,
+		 * beginning with sys_id.
+		 */
+		synchronized Records addRow(String... values) {
+			assert values.length == fields.size();
+			Map<String, String> row = new LinkedHashMap<String, String>();
+			for (int i = 0; i < values.length; ++i)
+				row.put(fields.get(i).name, values[i] == null ? "" : values[i]);
+			rows.add(row);
+			sorted = false;
+			return this;
+		}
+
+		private synchronized void sort() {
+			if (sorted) return;
+			rows.sort(Comparator.comparing(row -> row.get("sys_id")));
+			sorted = true;
+		}
+
+		@Override
+		public synchronized int size() {
+			sort();
+			return rows.size();
+		}
+
+		@Override
+		public synchronized String getKey(int row) {
+			sort();
+			return rows.get(row).get("sys_id");
+		}
+
+		@Override
+		public synchronized String getValue(int row, String fieldname) {
+			sort();
+			return rows.get(row).get(fieldname);
+		}
+
+	}
+
+}
@@ -0,0 +1,41 @@
+package sndml.servicenow;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+
+import org.junit.Test;
+
+public class KeyRangeTest {
+
+	@Test
+	public void testSplit() {
+		List<KeyRange> ranges = KeyRange.all().split(4);
+		assertEquals(4, ranges.size());
+		assertNull(ranges.get(0).getStart());
+		assertEquals("40000000000000000000000000000000", ranges.get(0).getEnd().toString());
+		assertEquals("80000000000000000000000000000000", ranges.get(1).getEnd().toString());
+		assertEquals("c0000000000000000000000000000000", ranges.get(2).getEnd().toString());
+		assertNull(ranges.get(3).getEnd());
+		for (int i = 1; i < ranges.size(); ++i) {
+			assertEquals(ranges.get(i - 1).getEnd(), ranges.get(i).getStart());
+		}
+	}
+	
+	@Test
+	public void testContains() {
+		KeyRange range = KeyRange.all().split(2).get(1);
+		assertTrue(range.contains(new RecordKey("80000000000000000000000000000000")));
+		assertTrue(range.contains(new RecordKey("ffffffffffffffffffffffffffffffff")));
+		assertFalse(range.contains(new RecordKey("7fffffffffffffffffffffffffffffff")));
+	}
+	
+	@Test
+	public void testMerge() {
+		List<KeyRange> ranges = KeyRange.all().split(3);
+		KeyRange merged = ranges.get(0).merge(ranges.get(1)).merge(ranges.get(2));
+		assertNull(merged.getStart());
+		assertNull(merged.getEnd());
+	}
+	
+}
@@ -0,0 +1,117 @@
+package sndml.servicenow;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class KeySetTest {
+
+	static String randomGUID(Random random) {
+		return String.format("%016x%016x", random.nextLong(), random.nextLong());
+	}
+	
+	@Test
+	public void testRecordKey() {
+		String guid = "f9e8d7c6b5a4938271605f4e3d2c1b0a";
+		RecordKey key = new RecordKey(guid);
+		assertTrue(key.isGUID());
+		assertEquals(guid, key.toString());
+		assertEquals(new RecordKey(guid), key);
+		assertEquals(new RecordKey(guid).hashCode(), key.hashCode());
+		RecordKey other = new RecordKey("not_a_guid");
+		assertFalse(other.isGUID());
+		assertEquals("not_a_guid", other.toString());
+		assertNotEquals(key, other);
+		// unsigned comparison must agree with the hex strings
+		RecordKey low = new RecordKey("0fffffffffffffffffffffffffffffff");
+		assertTrue(key.greaterThan(low));
+		assertTrue(low.lessThan(key));
+	}
+	
+	@Test
+	public void testSortAndSearch() {
+		Random random = new Random(12345);
+		List<String> strings = new ArrayList<String>();
+		KeySet keys = new KeySet();
+		for (int i = 0; i < 5000; ++i) {
+			String guid = randomGUID(random);
+			strings.add(guid);
+			keys.add(new RecordKey(guid));
+		}
+		assertEquals(5000, keys.size());
+		assertEquals(strings.get(17), keys.get(17).toString());
+		Collections.sort(strings);
+		assertEquals(strings.get(0), keys.minValue().toString());
+		assertEquals(strings.get(4999), keys.maxValue().toString());
+		assertTrue(keys.contains(new RecordKey(strings.get(1234))));
+		// reading does not reorder the list
+		assertEquals(strings.get(0), keys.minValue().toString());
+		keys.sort();
+		for (int i = 0; i < 5000; ++i) {
+			assertEquals(strings.get(i), keys.get(i).toString());
+		}
+		assertTrue(keys.contains(new RecordKey(strings.get(1234))));
+		assertFalse(keys.contains(new RecordKey(randomGUID(random))));
+		assertEquals(String.join(",", strings.subList(10, 13)), keys.getSlice(10, 13).toString());
+	}
+	
+	@Test
+	public void testOthers() {
+		KeySet keys = new KeySet();
+		keys.add(new RecordKey("5137153cc611227c000bbd1bd8cd2005"));
+		keys.add(new RecordKey("zzz"));
+		keys.add(new RecordKey("global"));
+		assertEquals(3, keys.size());
+		assertTrue(keys.contains(new RecordKey("global")));
+		assertEquals("5137153cc611227c000bbd1bd8cd2005", keys.minValue().toString());
+		assertEquals("zzz", keys.maxValue().toString());
+		keys.clear();
+		assertEquals(0, keys.size());
+		assertNull(keys.minValue());
+	}
+	
+	@Test
+	public void testReadWhileIterating() {
+		Random random = new Random(54321);
+		KeySet keys = new KeySet();
+		for (int i = 0; i < 100; ++i) keys.add(new RecordKey(randomGUID(random)));
+		RecordKey first = keys.get(0);
+		int n = 0;
+		for (RecordKey key : keys) {
+			assertTrue(keys.contains(key));
+			assertNotNull(keys.minValue());
+			assertNotNull(keys.maxValue());
+			n += 1;
+		}
+		assertEquals(100, n);
+		assertEquals(first, keys.get(0));
+	}
+	
+	@Test
+	public void testAddAtIndex() {
+		String a = "aaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaa";
+		String b = "bbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbb";
+		String c = "cccccccccccccccccccccccccccccccc";
+		KeySet keys = new KeySet();
+		keys.add(new RecordKey(a));
+		keys.add(new RecordKey(c));
+		keys.add(1, new RecordKey(b));
+		assertEquals(a + "," + b + "," + c, keys.toString());
+		keys.add(1, new RecordKey("global"));
+		assertEquals(a + ",global," + b + "," + c, keys.toString());
+		keys.add(0, new RecordKey(c));
+		assertEquals(c + "," + a + ",global," + b + "," + c, keys.toString());
+		assertEquals(5, keys.size());
+		assertTrue(keys.contains(new RecordKey(b)));
+		assertEquals(a, keys.minValue().toString());
+		assertEquals("global", keys.maxValue().toString());
+		keys.add(keys.size(), new RecordKey("zzz"));
+		assertEquals("zzz", keys.get(5).toString());
+	}
+	
+}
@@ -0,0 +1,42 @@
+package sndml.servicenow;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+	static final long MILLIS = 1000000L;
+
+	@Test
+	public void testBuckets() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		int last = LatencyHistogram.getBucketCount() - 1;
+		assertEquals(0.005, LatencyHistogram.getUpperBound(0), 0.0);
+		assertEquals(60.0, LatencyHistogram.getUpperBound(last - 1), 0.0);
+		assertTrue(Double.isInfinite(LatencyHistogram.getUpperBound(last)));
+		histogram.observe(0);            // 0.005
+		histogram.observe(5 * MILLIS);   // 0.005 (upper bounds are inclusive)
+		histogram.observe(6 * MILLIS);   // 0.01
+		histogram.observe(300 * MILLIS); // 0.5
+		histogram.observe(61000 * MILLIS); // +Inf
+		assertEquals(2, histogram.getCumulativeCount(0));
+		assertEquals(3, histogram.getCumulativeCount(1));
+		assertEquals(3, histogram.getCumulativeCount(5));
+		assertEquals(4, histogram.getCumulativeCount(6));
+		assertEquals(4, histogram.getCumulativeCount(last - 1));
+		assertEquals(5, histogram.getCumulativeCount(last));
+		assertEquals(5, histogram.getCount());
+		assertEquals(61.311, histogram.getSumSeconds(), 1e-9);
+		assertEquals(61311.0 / 5, histogram.getMeanMillis(), 1e-9);
+	}
+
+	@Test
+	public void testEmpty() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		assertEquals(0, histogram.getCount());
+		assertEquals(0, histogram.getCumulativeCount(LatencyHistogram.getBucketCount() - 1));
+		assertEquals(0.0, histogram.getMeanMillis(), 0.0);
+	}
+
+}
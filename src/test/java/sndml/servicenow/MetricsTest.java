@@ -0,0 +1,89 @@
+package sndml.servicenow;
+
+import static org.junit.Assert.*;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+import org.junit.Test;
+
+import sndml.servicenow.Metrics.Phase;
+
+public class MetricsTest {
+
+	@Test
+	public void testChildTotals() throws Exception {
+		Metrics parent = new Metrics("job");
+		Metrics child1 = new Metrics("part1", parent);
+		Metrics child2 = new Metrics("part2", parent);
+		Thread thread1 = new Thread(() -> { for (int i = 0; i < 1000; ++i) child1.incrementInserted(); });
+		Thread thread2 = new Thread(() -> { for (int i = 0; i < 1000; ++i) child2.incrementInserted(); });
+		thread1.start();
+		thread2.start();
+		thread1.join();
+		thread2.join();
+		child1.addUpdated(5);
+		assertEquals(1000, child1.getInserted());
+		assertEquals(2000, parent.getInserted());
+		assertEquals(5, parent.getUpdated());
+		assertEquals(2005, parent.getProcessed());
+	}
+
+	@Test
+	public void testPhases() {
+		Metrics parent = new Metrics(null);
+		Metrics child = new Metrics("part", parent);
+		child.start();
+		child.addNanos(Phase.FETCH, 2000000000L);
+		child.addNanos(Phase.BIND, 500000000L);
+		child.incrementCommits();
+		child.finish();
+		assertEquals(2.0, parent.getSeconds(Phase.FETCH), 0.0001);
+		assertEquals(0.5, parent.getSeconds(Phase.BIND), 0.0001);
+		assertEquals(0, parent.getNanos(Phase.COMMIT));
+		assertEquals(1, parent.getCommits());
+		StringWriter text = new StringWriter();
+		parent.write(new PrintWriter(text));
+		assertTrue(text.toString().contains("fetchtime=2.000"));
+		assertTrue(text.toString().contains("commits=1"));
+	}
+
+	@Test
+	public void testFinishedChildren() {
+		Metrics parent = new Metrics("job");
+		for (int i = 0; i < 1000; ++i) {
+			Metrics child = new Metrics("part" + i, parent);
+			child.start();
+			child.incrementInserted();
+			child.addNanos(Phase.FETCH, 1000);
+			child.finish();
+			// finishing twice does not count the child twice
+			child.finish();
+			assertEquals(1, child.getInserted());
+		}
+		assertEquals(0, parent.getChildCount());
+		assertEquals(1000, parent.getInserted());
+		assertEquals(1000000, parent.getNanos(Phase.FETCH));
+	}
+
+	@Test
+	public void testUpdateAfterFinish() {
+		Metrics job = new Metrics("job");
+		Metrics part = new Metrics("part", job);
+		Metrics writer = new Metrics("writer", part);
+		writer.start();
+		writer.addInserted(5);
+		writer.finish();
+		assertEquals(1, job.getChildCount());
+		assertEquals(0, part.getChildCount());
+		part.finish();
+		assertEquals(0, job.getChildCount());
+		writer.addInserted(2);
+		part.addUpdated(3);
+		assertEquals(7, writer.getInserted());
+		assertEquals(7, part.getInserted());
+		assertEquals(7, job.getInserted());
+		assertEquals(3, job.getUpdated());
+	}
+
+}
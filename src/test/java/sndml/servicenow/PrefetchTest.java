@@ -0,0 +1,110 @@
+package sndml.servicenow;
+
+import static org.junit.Assert.*;
+
+import java.sql.SQLException;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Reads with prefetch enabled, so that pages are fetched by a separate thread.
+ */
+public class PrefetchTest {
+
+	static final int ROWS = 1050;
+	static FakeInstance instance;
+	static Session session;
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		instance = new FakeInstance().start();
+		instance.addTable("incident", ROWS, 4);
+		session = new Session(instance.getProperties());
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() {
+		instance.stop();
+	}
+
+	RestTableReader newReader(Integer prefetch) {
+		RestTableReader reader = new RestTableReader(session.table("incident"));
+		reader.setPageSize(100);
+		reader.setPrefetch(prefetch);
+		return reader;
+	}
+
+	RecordList read(RestTableReader reader, Metrics metrics) throws Exception {
+		RecordListAccumulator accumulator = new RecordListAccumulator(reader);
+		reader.prepare(accumulator, metrics, new NullProgressLogger());
+		reader.call();
+		return accumulator.getRecords();
+	}
+
+	@Test
+	public void testRowCounts() throws Exception {
+		Metrics sequential = new Metrics("sequential");
+		RecordList expected = read(newReader(null), sequential);
+		Metrics pipelined = new Metrics("pipelined");
+		RecordList recs = read(newReader(3), pipelined);
+		assertEquals(ROWS, expected.size());
+		assertEquals(expected.size(), recs.size());
+		assertEquals(sequential.getInput(), pipelined.getInput());
+		assertEquals(sequential.getInserted(), pipelined.getInserted());
+		for (int i = 0; i < recs.size(); ++i)
+			assertEquals(expected.get(i).getKey(), recs.get(i).getKey());
+		assertEquals(0, RestTableReader.getInFlightBytes());
+	}
+
+	@Test
+	public void testFetchFailure() throws Exception {
+		// the fetch thread throws when it exceeds maxRows
+		RestTableReader reader = newReader(2);
+		reader.setMaxRows(250);
+		try {
+			read(reader, new Metrics("maxrows"));
+			fail("fetch failure was not reported");
+		}
+		catch (TooManyRowsException e) {
+			// expected
+		}
+		assertEquals(0, RestTableReader.getInFlightBytes());
+	}
+
+	@Test
+	public void testWriterFailure() throws Exception {
+		instance.setLatency(20);
+		try {
+			RestTableReader reader = newReader(2);
+			long requests = instance.getRequestCount();
+			RecordWriter writer = new RecordWriter() {
+				int pages = 0;
+				@Override
+				public void processRecords(RecordList recs, Metrics metrics, ProgressLogger progressLogger)
+						throws SQLException {
+					if (++pages == 2) throw new SQLException("writer failed");
+				}
+			};
+			reader.prepare(writer, new Metrics("writer"), new NullProgressLogger());
+			try {
+				reader.call();
+				fail("writer failure was not reported");
+			}
+			catch (SQLException e) {
+				assertEquals("writer failed", e.getMessage());
+			}
+			// the fetch thread has stopped and no pages are left in flight
+			assertEquals(0, RestTableReader.getInFlightBytes());
+			long fetched = instance.getRequestCount() - requests;
+			Thread.sleep(200);
+			assertEquals(fetched, instance.getRequestCount() - requests);
+			assertTrue(fetched < ROWS / 100);
+		}
+		finally {
+			instance.setLatency(0);
+		}
+	}
+
+}
@@ -0,0 +1,99 @@
+package sndml.servicenow;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.Properties;
+
+import org.apache.http.message.BasicHeader;
+import org.junit.Test;
+
+public class RateLimiterTest {
+
+	@Test
+	public void testDecrease() throws Exception {
+		RateLimiter limiter = new RateLimiter("test", 0, 0, 1, 8, 3, 60);
+		assertEquals(8, limiter.getConcurrency());
+		RateLimiter.Permit p1 = limiter.acquire();
+		RateLimiter.Permit p2 = limiter.acquire();
+		// both requests were in flight so the cap is only halved once
+		p1.release(429, 0);
+		p2.release(429, 0);
+		assertEquals(4, limiter.getConcurrency());
+		assertEquals(2, limiter.getThrottleCount());
+		limiter.acquire().release(503, 0);
+		assertEquals(2, limiter.getConcurrency());
+	}
+	
+	@Test
+	public void testIncrease() throws Exception {
+		RateLimiter limiter = new RateLimiter("test", 0, 0, 1, 8, 3, 60);
+		limiter.acquire().release(503, 0);
+		assertEquals(4, limiter.getConcurrency());
+		// an internal error is not a sign of load
+		limiter.acquire().release(500, 0);
+		assertEquals(4, limiter.getConcurrency());
+		assertEquals(1, limiter.getThrottleCount());
+		for (int i = 0; i < 5; ++i) limiter.acquire().release(200, 0);
+		assertEquals(5, limiter.getConcurrency());
+		for (int i = 0; i < 100; ++i) limiter.acquire().release(200, 0);
+		assertEquals(8, limiter.getConcurrency());
+	}
+	
+	@Test
+	public void testRetryAfter() throws Exception {
+		assertEquals(-1, RateLimiter.parseRetryAfter(null));
+		assertEquals(3000, RateLimiter.parseRetryAfter(new BasicHeader("Retry-After", "3")));
+		assertEquals(-1, RateLimiter.parseRetryAfter(new BasicHeader("Retry-After", "soon")));
+		RateLimiter limiter = new RateLimiter("test", 0, 0, 1, 8, 3, 60);
+		limiter.acquire().release(429, 200);
+		long start = System.currentTimeMillis();
+		limiter.acquire().release(200, 0);
+		assertTrue(System.currentTimeMillis() - start >= 150);
+	}
+	
+	@Test
+	public void testBackoff() throws Exception {
+		// 429 without a Retry-After header
+		FakeInstance instance = new FakeInstance().start().setThrottle(1.0, -1);
+		try {
+			Properties props = instance.getProperties();
+			props.setProperty("servicenow.limiter.retries", "1");
+			props.setProperty("servicenow.limiter.max_backoff", "1");
+			Session session = new Session(props);
+			RateLimiter limiter = session.getRateLimiter();
+			Thread thread = new Thread(() -> {
+				try {
+					new JsonRequest(session, 
+						session.getURI("api/now/table/incident"), HttpMethod.GET, null).execute();
+				}
+				catch (IOException e) {
+					// still refused after the retry
+				}
+			});
+			thread.start();
+			// the first backoff is at least 500ms; other requests must not be paused
+			while (limiter.getThrottleCount() == 0) Thread.sleep(10);
+			assertEquals(0, limiter.getPauseMillis());
+			long start = System.currentTimeMillis();
+			limiter.acquire().release(200, 0);
+			assertTrue(System.currentTimeMillis() - start < 200);
+			thread.join();
+			assertEquals(2, instance.getThrottleCount());
+			assertEquals(0, limiter.getInFlight());
+		}
+		finally {
+			instance.stop();
+		}
+	}
+	
+	@Test
+	public void testRate() throws Exception {
+		RateLimiter limiter = new RateLimiter("test", 20, 1, 1, 8, 3, 60);
+		long start = System.currentTimeMillis();
+		for (int i = 0; i < 5; ++i) limiter.acquire().release(200, 0);
+		// first token is available immediately, then one every 50ms
+		assertTrue(System.currentTimeMillis() - start >= 150);
+	}
+	
+}
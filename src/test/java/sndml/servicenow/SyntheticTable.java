@@ -0,0 +1,197 @@
+package sndml.servicenow;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Random;
+
+/**
+ * A {@link FakeTable} of generated records.
+ * Only the keys and timestamps are stored; every other value is
+ * computed from the row, the column and the modification count,
+ * so that tables of a million rows fit comfortably in memory.
+ * <p>Records are created between 2020-01-01 and 2022-12-31.
+ * The table has the fields <b>sys_id</b>, <b>number</b>, <b>sys_created_on</b>,
+ * <b>sys_updated_on</b> and <b>sys_mod_count</b> plus the requested number of
+ * columns named <b>u_column_<i>nn</i></b>, whose types rotate through
+ * string, integer, boolean, glide_date_time, reference, decimal and glide_date.</p>
+ */
+public class SyntheticTable extends FakeTable {
+
+	static final DateTimeFormatter DATE_TIME = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+	static final DateTimeFormatter DATE = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+	static final long START_SECONDS = 1577836800L; // 2020-01-01 00:00:00
+	static final int RANGE_SECONDS = 94608000; // 3 years
+
+	static final String[] TYPES =
+		{"string", "integer", "boolean", "glide_date_time", "reference", "decimal", "glide_date"};
+
+	private final int rows;
+	private final long[] hi;
+	private final long[] lo;
+	private final long[] created;
+	private final long[] updated;
+	private final int[] modCount;
+	private final BitSet deleted;
+	private final Random random;
+
+	public SyntheticTable(String name, int rows, int columns, long seed) {
+		super(name);
+		assert rows >= 0;
+		assert columns >= 0;
+		this.rows = rows;
+		this.random = new Random(seed);
+		fields.add(new Field("sys_id", "GUID", 32));
+		fields.add(new Field("number", "string", 40));
+		fields.add(new Field("sys_created_on", "glide_date_time", 40));
+		fields.add(new Field("sys_updated_on", "glide_date_time", 40));
+		fields.add(new Field("sys_mod_count", "integer", 40));
+		for (int col = 0; col < columns; ++col) {
+			String type = TYPES[col % TYPES.length];
+			String fieldname = String.format("u_column_%02d", col + 1);
+			if (type.equals("reference"))
+				fields.add(new Field(fieldname, type, 32, "sys_user"));
+			else
+				fields.add(new Field(fieldname, type, type.equals("string") ? 100 : 40));
+		}
+		RecordKey[] keys = new RecordKey[rows];
+		for (int row = 0; row < rows; ++row)
+			keys[row] = new RecordKey(random.nextLong(), random.nextLong());
+		Arrays.sort(keys);
+		hi = new long[rows];
+		lo = new long[rows];
+		created = new long[rows];
+		updated = new long[rows];
+		modCount = new int[rows];
+		deleted = new BitSet(rows);
+		for (int row = 0; row < rows; ++row) {
+			hi[row] = keys[row].hi;
+			lo[row] = keys[row].lo;
+			created[row] = START_SECONDS + random.nextInt(RANGE_SECONDS);
+			updated[row] = created[row] + random.nextInt(30 * 86400);
+		}
+	}
+
+	@Override
+	public int size() {
+		return rows;
+	}
+
+	@Override
+	public String getKey(int row) {
+		return new RecordKey(hi[row], lo[row]).toString();
+	}
+
+	@Override
+	public boolean exists(int row) {
+		return !deleted.get(row);
+	}
+
+	@Override
+	public String getValue(int row, String fieldname) {
+		switch (fieldname) {
+		case "sys_id": return getKey(row);
+		case "number": return String.format("SYN%07d", row);
+		case "sys_created_on": return formatDateTime(created[row]);
+		case "sys_updated_on": return formatDateTime(updated[row]);
+		case "sys_mod_count": return Integer.toString(modCount[row]);
+		}
+		if (!fieldname.startsWith("u_column_")) return null;
+		int col;
+		try {
+			col = Integer.parseInt(fieldname.substring(9)) - 1;
+		}
+		catch (NumberFormatException e) {
+			return null;
+		}
+		if (col < 0 || col >= fields.size() - 5) return null;
+		long hash = mix(hi[row] ^ (31L * col) ^ ((long) modCount[row] << 48));
+		switch (TYPES[col % TYPES.length]) {
+		case "integer": return Long.toString(hash & 0xFFFF);
+		case "boolean": return (hash & 1) == 0 ? "true" : "false";
+		case "glide_date_time": return formatDateTime(START_SECONDS + (hash & 0x3FFFFFF));
+		case "reference": return new RecordKey(hash, mix(hash)).toString();
+		case "decimal": return String.format("%d.%02d", (hash >>> 8) & 0xFFFF, hash & 0x3F);
+		case "glide_date": return LocalDateTime.ofEpochSecond(
+				START_SECONDS + (hash & 0x3FFFFFF), 0, ZoneOffset.UTC).format(DATE);
+		default: return text(hash);
+		}
+	}
+
+	/**
+	 * Mark a number of randomly chosen rows as updated now.
+	 * Each updated row has a new value in every generated column.
+	 * @return Number of rows updated
+	 */
+	public synchronized int touch(int count) {
+		long now = System.currentTimeMillis() / 1000;
+		int updatedRows = 0;
+		for (int row : choose(count)) {
+			updated[row] = now;
+			modCount[row] += 1;
+			updatedRows += 1;
+		}
+		return updatedRows;
+	}
+
+	/**
+	 * Mark a number of randomly chosen rows as deleted.
+	 * @return The keys of the deleted rows
+	 */
+	public synchronized String[] delete(int count) {
+		int[] chosen = choose(count);
+		String[] keys = new String[chosen.length];
+		for (int i = 0; i < chosen.length; ++i) {
+			deleted.set(chosen[i]);
+			keys[i] = getKey(chosen[i]);
+		}
+		return keys;
+	}
+
+	/**
+	 * Choose distinct rows which have not been deleted.
+	 */
+	private int[] choose(int count) {
+		int live = rows - deleted.cardinality();
+		if (count > live) count = live;
+		BitSet chosen = new BitSet(rows);
+		int found = 0;
+		while (found < count) {
+			int row = random.nextInt(rows);
+			if (deleted.get(row) || chosen.get(row)) continue;
+			chosen.set(row);
+			found += 1;
+		}
+		return chosen.stream().toArray();
+	}
+
+	static String formatDateTime(long seconds) {
+		return LocalDateTime.ofEpochSecond(seconds, 0, ZoneOffset.UTC).format(DATE_TIME);
+	}
+
+	private static final String[] WORDS = {
+		"network", "printer", "email", "password", "database", "server", "laptop", "access",
+		"outage", "request", "update", "install", "error", "slow", "cannot", "login"};
+
+	private static String text(long hash) {
+		StringBuilder text = new StringBuilder();
+		int words = 2 + (int) ((hash >>> 60) & 7);
+		for (int i = 0; i < words; ++i) {
+			if (i > 0) text.append(' ');
+			text.append(WORDS[(int) (hash >>> (4 * i)) & 15]);
+		}
+		return text.toString();
+	}
+
+	/**
+	 * Finalizer from SplitMix64
+	 */
+	private static long mix(long z) {
+		z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+		return z ^ (z >>> 31);
+	}
+
+}